@@ -0,0 +1,651 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.async.processingframework.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import ddf.catalog.CatalogFramework;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.operation.ResourceResponse;
+import ddf.catalog.operation.impl.ResourceRequestById;
+import ddf.catalog.resource.ResourceNotFoundException;
+import ddf.catalog.resource.ResourceNotSupportedException;
+import ddf.security.SecurityConstants;
+import ddf.security.Subject;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+import org.codice.ddf.catalog.async.data.api.internal.ProcessCreateItem;
+import org.codice.ddf.catalog.async.data.api.internal.ProcessDeleteItem;
+import org.codice.ddf.catalog.async.data.api.internal.ProcessItem;
+import org.codice.ddf.catalog.async.data.api.internal.ProcessRequest;
+import org.codice.ddf.catalog.async.data.api.internal.ProcessResource;
+import org.codice.ddf.catalog.async.data.api.internal.ProcessResourceItem;
+import org.codice.ddf.catalog.async.data.api.internal.ProcessUpdateItem;
+import org.codice.ddf.catalog.async.data.impl.LazyProcessResourceImpl;
+import org.codice.ddf.catalog.async.data.impl.ProcessCreateItemImpl;
+import org.codice.ddf.catalog.async.data.impl.ProcessDeleteItemImpl;
+import org.codice.ddf.catalog.async.data.impl.ProcessRequestImpl;
+import org.codice.ddf.catalog.async.data.impl.ProcessUpdateItemImpl;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
+import org.codice.ddf.security.common.Security;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@code DurableProcessingFramework} processes requests the same way as the {@link
+ * InMemoryProcessingFramework}, but records every submitted request in a {@link ProcessingJournal}
+ * before queueing it. Requests that were not processed when the system stopped are resumed on the
+ * next start, using the system subject.
+ *
+ * <p>At most {@code maxQueuedRequests} requests are held in memory. Once that limit is reached,
+ * submitting a request blocks until a worker takes the next request off the queue. When an update
+ * is submitted for a metacard that already has an update waiting in the queue, the waiting update
+ * is dropped in favour of the newer one.
+ *
+ * <p>Request properties that cannot be serialized, such as the subject, are not recorded in the
+ * journal.
+ */
+public class DurableProcessingFramework extends InMemoryProcessingFramework {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DurableProcessingFramework.class);
+
+  private static final String METRICS_DOMAIN = "ddf.metrics.catalog.async.processing";
+
+  private static final String JOURNAL_FILE_NAME = "processing.journal";
+
+  private static final int DEFAULT_MAX_QUEUED_REQUESTS = 1000;
+
+  private static final long NOT_JOURNALED = -1;
+
+  private static final long PLUGIN_WAIT_INTERVAL_MILLIS = 1000;
+
+  private static final long PLUGIN_WAIT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+  private final CatalogFramework catalogFramework;
+
+  private final ThreadPoolExecutor workers;
+
+  /** The worker thread count used when no count is configured. */
+  private final int defaultWorkerThreads;
+
+  private final ProcessingJournal journal;
+
+  private final ExecutorService resumeExecutor =
+      Executors.newSingleThreadExecutor(
+          StandardThreadFactoryBuilder.newThreadFactory("catalogAsyncProcessingResumeThread"));
+
+  private final Deque<QueuedRequest> queue = new ArrayDeque<>();
+
+  private final ReentrantLock queueLock = new ReentrantLock();
+
+  private final Condition notFull = queueLock.newCondition();
+
+  private final AtomicLong order = new AtomicLong();
+
+  private final MetricRegistry metrics = new MetricRegistry();
+
+  private final JmxReporter reporter =
+      JmxReporter.forRegistry(metrics).inDomain(METRICS_DOMAIN).build();
+
+  private final Timer lagTimer = metrics.timer("ProcessingLag");
+
+  private final Timer processingTimer = metrics.timer("Processing");
+
+  private final Meter coalescedUpdates = metrics.meter("CoalescedUpdates");
+
+  private volatile int maxQueuedRequests = DEFAULT_MAX_QUEUED_REQUESTS;
+
+  private volatile boolean stopping = false;
+
+  private boolean journalAvailable = false;
+
+  public DurableProcessingFramework(
+      CatalogFramework catalogFramework, String journalDirectory, int workerThreads) {
+    this(
+        catalogFramework,
+        Paths.get(journalDirectory, JOURNAL_FILE_NAME),
+        newWorkers(workerThreads));
+  }
+
+  DurableProcessingFramework(
+      CatalogFramework catalogFramework, Path journalFile, ThreadPoolExecutor workers) {
+    super(catalogFramework, workers);
+    this.catalogFramework = catalogFramework;
+    this.workers = workers;
+    this.defaultWorkerThreads = workers.getMaximumPoolSize();
+    this.journal = new ProcessingJournal(journalFile);
+
+    metrics.register(MetricRegistry.name("QueueDepth"), (Gauge<Integer>) this::getQueueDepth);
+    metrics.register(
+        MetricRegistry.name("JournaledRequests"), (Gauge<Integer>) journal::getOutstanding);
+  }
+
+  private static ThreadPoolExecutor newWorkers(int workerThreads) {
+    return new ThreadPoolExecutor(
+        workerThreads,
+        workerThreads,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(),
+        StandardThreadFactoryBuilder.newThreadFactory(
+            "catalogAsyncProcessingThread", false, Thread.NORM_PRIORITY));
+  }
+
+  /** Opens the journal and resumes the requests that were not processed before the last stop. */
+  public void init() {
+    reporter.start();
+
+    SortedMap<Long, byte[]> unfinished;
+    try {
+      unfinished = journal.open();
+      journalAvailable = true;
+    } catch (IOException e) {
+      LOGGER.warn(
+          "Unable to open the asynchronous processing journal. Queued requests will not be resumed after a restart.",
+          e);
+      return;
+    }
+
+    if (!unfinished.isEmpty()) {
+      LOGGER.info("Resuming {} unfinished asynchronous processing requests", unfinished.size());
+      List<QueuedRequest> resumed = new ArrayList<>();
+      unfinished.forEach(
+          (sequence, payload) -> {
+            JournalEntry entry = toJournalEntry(sequence, payload);
+            if (entry != null) {
+              resumed.add(new QueuedRequest(sequence, order.getAndIncrement(), entry));
+            }
+          });
+      resumeExecutor.submit(() -> resume(resumed));
+    }
+  }
+
+  @Override
+  public void cleanUp() {
+    stopping = true;
+    resumeExecutor.shutdownNow();
+
+    queueLock.lock();
+    try {
+      LOGGER.debug(
+          "Leaving {} queued asynchronous processing requests for the next start", queue.size());
+      queue.clear();
+      notFull.signalAll();
+    } finally {
+      queueLock.unlock();
+    }
+
+    super.cleanUp();
+
+    try {
+      journal.close();
+    } catch (IOException e) {
+      LOGGER.debug("Unable to close the asynchronous processing journal", e);
+    }
+    reporter.stop();
+  }
+
+  @Override
+  public void submitCreate(ProcessRequest<ProcessCreateItem> input) {
+    submit(Operation.CREATE, input);
+  }
+
+  @Override
+  public void submitUpdate(ProcessRequest<ProcessUpdateItem> input) {
+    submit(Operation.UPDATE, input);
+  }
+
+  @Override
+  public void submitDelete(ProcessRequest<ProcessDeleteItem> input) {
+    submit(Operation.DELETE, input);
+  }
+
+  /**
+   * Sets the number of worker threads. A count of 0 uses the system thread pool size the framework
+   * was created with.
+   */
+  public void setWorkerThreads(Integer workerThreads) {
+    if (workerThreads == null || workerThreads < 0) {
+      return;
+    }
+    if (workerThreads == 0) {
+      workerThreads = defaultWorkerThreads;
+    }
+
+    // The core pool size may not exceed the maximum pool size, so the order of the updates
+    // depends on whether the pool grows or shrinks.
+    if (workerThreads > workers.getMaximumPoolSize()) {
+      workers.setMaximumPoolSize(workerThreads);
+      workers.setCorePoolSize(workerThreads);
+    } else {
+      workers.setCorePoolSize(workerThreads);
+      workers.setMaximumPoolSize(workerThreads);
+    }
+  }
+
+  public void setMaxQueuedRequests(Integer maxQueuedRequests) {
+    if (maxQueuedRequests == null || maxQueuedRequests < 1) {
+      return;
+    }
+
+    queueLock.lock();
+    try {
+      this.maxQueuedRequests = maxQueuedRequests;
+      notFull.signalAll();
+    } finally {
+      queueLock.unlock();
+    }
+  }
+
+  int getQueueDepth() {
+    queueLock.lock();
+    try {
+      return queue.size();
+    } finally {
+      queueLock.unlock();
+    }
+  }
+
+  private <T extends ProcessItem> void submit(Operation operation, ProcessRequest<T> request) {
+    if (!hasPostProcessPlugins()) {
+      LOGGER.debug("postProcessPlugins is empty. Not queueing process request");
+      return;
+    }
+
+    JournalEntry entry = new JournalEntry(operation, request);
+    enqueue(new QueuedRequest(append(entry), order.getAndIncrement(), entry, request));
+  }
+
+  private long append(JournalEntry entry) {
+    if (!journalAvailable) {
+      return NOT_JOURNALED;
+    }
+
+    try {
+      return journal.append(SerializationUtils.serialize(entry));
+    } catch (IOException | SerializationException e) {
+      LOGGER.info(
+          "Unable to record process request in the journal. It will not be resumed after a restart.",
+          e);
+      return NOT_JOURNALED;
+    }
+  }
+
+  private void enqueue(QueuedRequest request) {
+    queueLock.lock();
+    try {
+      if (request.operation == Operation.UPDATE) {
+        coalesce(request);
+        if (request.items.isEmpty()) {
+          complete(request);
+          return;
+        }
+      }
+
+      while (queue.size() >= maxQueuedRequests && !stopping) {
+        notFull.await();
+      }
+
+      if (stopping) {
+        LOGGER.debug("Asynchronous processing is stopping. Leaving request for the next start.");
+        return;
+      }
+
+      queue.add(request);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOGGER.debug(
+          "Interrupted while waiting to queue process request. It will be resumed after a restart.");
+      return;
+    } finally {
+      queueLock.unlock();
+    }
+
+    try {
+      workers.execute(this::processNext);
+    } catch (RejectedExecutionException e) {
+      LOGGER.debug("Asynchronous processing is stopping. Leaving request for the next start.", e);
+    }
+  }
+
+  /**
+   * Drops the items of queued updates that are superseded by an update of the same metacard that
+   * was submitted later. Must be called while holding the queue lock.
+   */
+  private void coalesce(QueuedRequest update) {
+    Set<String> ids =
+        update.items.stream().map(item -> item.getMetacard().getId()).collect(Collectors.toSet());
+
+    Iterator<QueuedRequest> queued = queue.iterator();
+    while (queued.hasNext()) {
+      QueuedRequest other = queued.next();
+      if (other.operation != Operation.UPDATE) {
+        continue;
+      }
+
+      QueuedRequest older = other.order < update.order ? other : update;
+      QueuedRequest newer = older == other ? update : other;
+      Set<String> newerIds =
+          newer == update
+              ? ids
+              : newer
+                  .items
+                  .stream()
+                  .map(item -> item.getMetacard().getId())
+                  .collect(Collectors.toSet());
+
+      Iterator<ProcessItem> items = older.items.iterator();
+      while (items.hasNext()) {
+        ProcessItem item = items.next();
+        if (newerIds.contains(item.getMetacard().getId())) {
+          items.remove();
+          closeProcessResource(item);
+          coalescedUpdates.mark();
+        }
+      }
+
+      if (other.items.isEmpty()) {
+        queued.remove();
+        complete(other);
+        notFull.signal();
+      }
+    }
+  }
+
+  private void processNext() {
+    QueuedRequest request;
+    queueLock.lock();
+    try {
+      request = queue.poll();
+      notFull.signal();
+    } finally {
+      queueLock.unlock();
+    }
+
+    if (request == null || stopping) {
+      return;
+    }
+
+    lagTimer.update(System.nanoTime() - request.queuedAt, TimeUnit.NANOSECONDS);
+    try (Timer.Context time = processingTimer.time()) {
+      switch (request.operation) {
+        case CREATE:
+          processCreate(request.toProcessRequest());
+          break;
+        case UPDATE:
+          processUpdate(request.toProcessRequest());
+          break;
+        case DELETE:
+          processDelete(request.toProcessRequest());
+          break;
+        default:
+          LOGGER.debug("Unknown process request operation {}", request.operation);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.info("Unable to process {} request", request.operation, e);
+    }
+
+    complete(request);
+  }
+
+  private void complete(QueuedRequest request) {
+    if (request.sequence == NOT_JOURNALED) {
+      return;
+    }
+
+    try {
+      journal.complete(request.sequence);
+    } catch (IOException e) {
+      LOGGER.debug(
+          "Unable to mark process request {} as completed. It will be resumed after a restart.",
+          request.sequence,
+          e);
+    }
+  }
+
+  private void resume(List<QueuedRequest> resumed) {
+    try {
+      long waited = 0;
+      while (!hasPostProcessPlugins() && waited < PLUGIN_WAIT_TIMEOUT_MILLIS) {
+        Thread.sleep(PLUGIN_WAIT_INTERVAL_MILLIS);
+        waited += PLUGIN_WAIT_INTERVAL_MILLIS;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+
+    if (!hasPostProcessPlugins()) {
+      LOGGER.info(
+          "No post process plugins are available. Leaving {} unfinished requests for the next start.",
+          resumed.size());
+      return;
+    }
+
+    Subject systemSubject = getSystemSubject();
+    if (systemSubject == null) {
+      LOGGER.info(
+          "Unable to get the system subject. Leaving {} unfinished requests for the next start.",
+          resumed.size());
+      return;
+    }
+
+    for (QueuedRequest request : resumed) {
+      if (stopping) {
+        return;
+      }
+      request.restore(systemSubject);
+      enqueue(request);
+    }
+  }
+
+  Subject getSystemSubject() {
+    Security security = Security.getInstance();
+    return AccessController.doPrivileged(
+        (PrivilegedAction<Subject>) () -> security.runAsAdmin(security::getSystemSubject));
+  }
+
+  private ProcessResource getProcessResource(Metacard metacard, Subject subject) {
+    LazyProcessResourceImpl processResource =
+        new LazyProcessResourceImpl(
+            metacard.getId(),
+            () ->
+                subject.execute(
+                    () -> {
+                      try {
+                        ResourceResponse response =
+                            catalogFramework.getResource(
+                                new ResourceRequestById(metacard.getId()), metacard.getSourceId());
+                        return response.getResource();
+                      } catch (IOException
+                          | ResourceNotFoundException
+                          | ResourceNotSupportedException
+                          | RuntimeException e) {
+                        LOGGER.debug(
+                            "Unable to get resource id:{}, sourceId:{}. Returning null",
+                            metacard.getId(),
+                            metacard.getSourceId(),
+                            e);
+                      }
+                      return null;
+                    }));
+
+    if (metacard.getResourceURI() != null) {
+      processResource.setUri(metacard.getResourceURI());
+    }
+    return processResource;
+  }
+
+  private static JournalEntry toJournalEntry(long sequence, byte[] payload) {
+    try {
+      return SerializationUtils.deserialize(payload);
+    } catch (SerializationException | ClassCastException e) {
+      LOGGER.info("Unable to read process request {} from the journal. Skipping it.", sequence, e);
+      return null;
+    }
+  }
+
+  private static void closeProcessResource(ProcessItem item) {
+    if (item instanceof ProcessResourceItem) {
+      ProcessResource processResource = ((ProcessResourceItem) item).getProcessResource();
+      if (processResource != null) {
+        processResource.close();
+      }
+    }
+  }
+
+  private enum Operation {
+    CREATE,
+    UPDATE,
+    DELETE
+  }
+
+  /** The serializable part of a process request, as recorded in the journal. */
+  private static class JournalEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Operation operation;
+
+    private final ArrayList<Metacard> metacards = new ArrayList<>();
+
+    private final ArrayList<Metacard> oldMetacards = new ArrayList<>();
+
+    private final HashMap<String, Serializable> properties = new HashMap<>();
+
+    private JournalEntry(Operation operation, ProcessRequest<? extends ProcessItem> request) {
+      this.operation = operation;
+
+      for (ProcessItem item : request.getProcessItems()) {
+        metacards.add(item.getMetacard());
+        if (item instanceof ProcessUpdateItem) {
+          oldMetacards.add(((ProcessUpdateItem) item).getOldMetacard());
+        }
+      }
+
+      request
+          .getProperties()
+          .forEach(
+              (key, value) -> {
+                if (!SecurityConstants.SECURITY_SUBJECT.equals(key) && isSerializable(value)) {
+                  properties.put(key, value);
+                }
+              });
+    }
+
+    private static boolean isSerializable(Serializable value) {
+      try {
+        SerializationUtils.serialize(value);
+        return true;
+      } catch (SerializationException e) {
+        return false;
+      }
+    }
+  }
+
+  /** A request waiting in the in-memory queue. */
+  private class QueuedRequest {
+
+    private final long sequence;
+
+    private final long order;
+
+    private final long queuedAt = System.nanoTime();
+
+    private final Operation operation;
+
+    private final JournalEntry entry;
+
+    private final List<ProcessItem> items;
+
+    private Map<String, Serializable> properties;
+
+    private QueuedRequest(long sequence, long order, JournalEntry entry) {
+      this.sequence = sequence;
+      this.order = order;
+      this.operation = entry.operation;
+      this.entry = entry;
+      this.items = new ArrayList<>();
+    }
+
+    private QueuedRequest(
+        long sequence, long order, JournalEntry entry, ProcessRequest<?> request) {
+      this.sequence = sequence;
+      this.order = order;
+      this.operation = entry.operation;
+      this.entry = entry;
+      this.items = new ArrayList<>(request.getProcessItems());
+      this.properties = request.getProperties();
+    }
+
+    /** Rebuilds the process items of a request read from the journal. */
+    private void restore(Subject subject) {
+      properties = new HashMap<>(entry.properties);
+      properties.put(SecurityConstants.SECURITY_SUBJECT, subject);
+
+      for (int i = 0; i < entry.metacards.size(); i++) {
+        Metacard metacard = entry.metacards.get(i);
+        switch (operation) {
+          case CREATE:
+            items.add(
+                new ProcessCreateItemImpl(getProcessResource(metacard, subject), metacard, false));
+            break;
+          case UPDATE:
+            items.add(
+                new ProcessUpdateItemImpl(
+                    getProcessResource(metacard, subject),
+                    metacard,
+                    entry.oldMetacards.get(i),
+                    false));
+            break;
+          default:
+            items.add(new ProcessDeleteItemImpl(metacard));
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends ProcessItem> ProcessRequest<T> toProcessRequest() {
+      return new ProcessRequestImpl<>((List<T>) (List<?>) items, properties);
+    }
+  }
+}
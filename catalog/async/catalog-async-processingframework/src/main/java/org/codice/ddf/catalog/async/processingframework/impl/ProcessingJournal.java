@@ -0,0 +1,272 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.async.processingframework.impl;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log of the requests queued by the {@link DurableProcessingFramework}. A request is
+ * written to the log before it is queued and marked as completed once it has been processed, so
+ * that requests that were still outstanding when the system stopped can be resumed on the next
+ * start. Each request is stored with the CRC32 of its payload, and reading stops at the first
+ * record that is incomplete or does not match its checksum.
+ *
+ * <p>Opening the log rewrites it with only the outstanding requests, and the log is truncated
+ * whenever no requests are outstanding. Under steady load there may always be something
+ * outstanding, so the log is also rewritten once the records of completed requests take up more
+ * than {@code compactionThreshold} bytes and at least half of the log.
+ */
+class ProcessingJournal implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProcessingJournal.class);
+
+  private static final byte SUBMITTED = 'S';
+
+  private static final byte COMPLETED = 'C';
+
+  private static final int COMPLETED_SIZE = 1 + Long.BYTES;
+
+  static final long DEFAULT_COMPACTION_THRESHOLD = 16L * 1024 * 1024;
+
+  private final Path file;
+
+  private final long compactionThreshold;
+
+  /** Size in bytes of the submitted record of each outstanding request, keyed by sequence. */
+  private final Map<Long, Integer> outstanding = new HashMap<>();
+
+  /** Bytes of the log taken up by the records of completed requests. */
+  private long completedBytes;
+
+  private FileChannel channel;
+
+  private long nextSequence = 1;
+
+  ProcessingJournal(Path file) {
+    this(file, DEFAULT_COMPACTION_THRESHOLD);
+  }
+
+  /**
+   * @param file the log
+   * @param compactionThreshold the size in bytes the records of completed requests may take up
+   *     before the log is rewritten
+   */
+  ProcessingJournal(Path file, long compactionThreshold) {
+    this.file = file;
+    this.compactionThreshold = compactionThreshold;
+  }
+
+  /**
+   * Opens the log for appending.
+   *
+   * @return the payloads of the requests that were not completed, keyed and ordered by sequence
+   * @throws IOException if the log cannot be read or rewritten
+   */
+  synchronized SortedMap<Long, byte[]> open() throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+
+    SortedMap<Long, byte[]> unfinished = read();
+    rewrite(unfinished);
+
+    channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    for (SortedMap.Entry<Long, byte[]> entry : unfinished.entrySet()) {
+      outstanding.put(entry.getKey(), submittedSize(entry.getValue()));
+    }
+    completedBytes = 0;
+    nextSequence = unfinished.isEmpty() ? 1 : unfinished.lastKey() + 1;
+
+    LOGGER.debug("Opened {} with {} outstanding requests", file, unfinished.size());
+    return unfinished;
+  }
+
+  /**
+   * Appends a request to the log. The request is flushed to disk before this method returns.
+   *
+   * @return the sequence of the request, used to mark it as completed
+   */
+  synchronized long append(byte[] payload) throws IOException {
+    long start = channel.size();
+    long sequence = nextSequence;
+    try {
+      write(channel, submitted(sequence, payload));
+      channel.force(false);
+    } catch (IOException e) {
+      channel.truncate(start);
+      throw e;
+    }
+
+    nextSequence++;
+    outstanding.put(sequence, submittedSize(payload));
+    return sequence;
+  }
+
+  synchronized void complete(long sequence) throws IOException {
+    Integer size = outstanding.remove(sequence);
+    if (size == null) {
+      return;
+    }
+
+    if (outstanding.isEmpty()) {
+      channel.truncate(0);
+      completedBytes = 0;
+      return;
+    }
+
+    write(channel, completed(sequence));
+    completedBytes += size + COMPLETED_SIZE;
+    if (completedBytes >= compactionThreshold && completedBytes * 2 >= channel.size()) {
+      compact();
+    }
+  }
+
+  synchronized int getOutstanding() {
+    return outstanding.size();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
+  /** Rewrites the log with only the outstanding requests. */
+  private void compact() throws IOException {
+    SortedMap<Long, byte[]> unfinished = read();
+    unfinished.keySet().retainAll(outstanding.keySet());
+    completedBytes = 0;
+    if (unfinished.size() != outstanding.size()) {
+      LOGGER.warn(
+          "Not compacting the processing journal {}, some outstanding requests could not be read",
+          file);
+      return;
+    }
+
+    channel.close();
+    try {
+      rewrite(unfinished);
+    } finally {
+      channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    LOGGER.debug("Compacted {} to {} outstanding requests", file, unfinished.size());
+  }
+
+  /** Atomically replaces the log with one that holds only the given requests. */
+  private void rewrite(SortedMap<Long, byte[]> requests) throws IOException {
+    Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel out =
+        FileChannel.open(
+            compacted,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (SortedMap.Entry<Long, byte[]> entry : requests.entrySet()) {
+        write(out, submitted(entry.getKey(), entry.getValue()));
+      }
+      out.force(true);
+    }
+    Files.move(
+        compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private SortedMap<Long, byte[]> read() throws IOException {
+    SortedMap<Long, byte[]> entries = new TreeMap<>();
+    if (!Files.exists(file)) {
+      return entries;
+    }
+
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      int type;
+      while ((type = in.read()) != -1) {
+        long sequence = in.readLong();
+        if (type == SUBMITTED) {
+          int length = in.readInt();
+          if (length < 0) {
+            LOGGER.warn("Ignoring the rest of the corrupt processing journal {}", file);
+            break;
+          }
+          long checksum = in.readLong();
+          byte[] payload = new byte[length];
+          in.readFully(payload);
+          if (checksum != checksum(payload)) {
+            LOGGER.warn("Ignoring the rest of the corrupt processing journal {}", file);
+            break;
+          }
+          entries.put(sequence, payload);
+        } else if (type == COMPLETED) {
+          entries.remove(sequence);
+        } else {
+          LOGGER.warn("Ignoring the rest of the corrupt processing journal {}", file);
+          break;
+        }
+      }
+    } catch (EOFException e) {
+      LOGGER.debug("Ignoring the incomplete last record of {}", file);
+    }
+    return entries;
+  }
+
+  private static int submittedSize(byte[] payload) {
+    return 1 + Long.BYTES + Integer.BYTES + Long.BYTES + payload.length;
+  }
+
+  private static ByteBuffer submitted(long sequence, byte[] payload) {
+    ByteBuffer buffer = ByteBuffer.allocate(submittedSize(payload));
+    buffer
+        .put(SUBMITTED)
+        .putLong(sequence)
+        .putInt(payload.length)
+        .putLong(checksum(payload))
+        .put(payload);
+    buffer.flip();
+    return buffer;
+  }
+
+  private static ByteBuffer completed(long sequence) {
+    ByteBuffer buffer = ByteBuffer.allocate(COMPLETED_SIZE);
+    buffer.put(COMPLETED).putLong(sequence);
+    buffer.flip();
+    return buffer;
+  }
+
+  private static long checksum(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    return crc.getValue();
+  }
+
+  private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+}
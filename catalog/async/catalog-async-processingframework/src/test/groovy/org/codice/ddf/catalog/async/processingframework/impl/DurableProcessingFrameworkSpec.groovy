@@ -0,0 +1,309 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.async.processingframework.impl
+
+import ddf.catalog.CatalogFramework
+import ddf.catalog.data.impl.MetacardImpl
+import ddf.security.Subject
+import org.codice.ddf.catalog.async.data.api.internal.ProcessCreateItem
+import org.codice.ddf.catalog.async.data.api.internal.ProcessDeleteItem
+import org.codice.ddf.catalog.async.data.api.internal.ProcessRequest
+import org.codice.ddf.catalog.async.data.api.internal.ProcessUpdateItem
+import org.codice.ddf.catalog.async.data.impl.ProcessCreateItemImpl
+import org.codice.ddf.catalog.async.data.impl.ProcessDeleteItemImpl
+import org.codice.ddf.catalog.async.data.impl.ProcessRequestImpl
+import org.codice.ddf.catalog.async.data.impl.ProcessUpdateItemImpl
+import org.codice.ddf.catalog.async.plugin.api.internal.PostProcessPlugin
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+
+class DurableProcessingFrameworkSpec extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    CatalogFramework catalogFramework = Mock(CatalogFramework)
+
+    PostProcessPlugin postProcessPlugin = Mock(PostProcessPlugin)
+
+    Subject systemSubject = Mock(Subject)
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    Path journalFile
+
+    ManualExecutor workers
+
+    DurableProcessingFramework durableProcessingFramework
+
+    def setup() {
+        journalFile = temporaryFolder.getRoot().toPath().resolve('processing.journal')
+        durableProcessingFramework = createFramework()
+    }
+
+    def cleanup() {
+        durableProcessingFramework.cleanUp()
+    }
+
+    def 'test submit with no postProcessPlugins'(List<PostProcessPlugin> postProcessPlugins) {
+        given:
+        durableProcessingFramework.setPostProcessPlugins(postProcessPlugins)
+
+        when:
+        durableProcessingFramework.submitCreate(createRequest('1'))
+
+        then:
+        durableProcessingFramework.getQueueDepth() == 0
+        workers.pending.isEmpty()
+        Files.size(journalFile) == 0
+
+        where:
+        postProcessPlugins << [null, []]
+    }
+
+    def 'test submitCreate journals the request until it is processed'() {
+        given:
+        def request = createRequest('1')
+
+        when:
+        durableProcessingFramework.submitCreate(request)
+
+        then:
+        durableProcessingFramework.getQueueDepth() == 1
+        Files.size(journalFile) > 0
+
+        when:
+        workers.runPending()
+
+        then:
+        1 * postProcessPlugin.processCreate(_ as ProcessRequest) >> { ProcessRequest<ProcessCreateItem> processRequest ->
+            assert processRequest.getProcessItems()*.getMetacard()*.getId() == ['1']
+            assert processRequest.getProperties().get('ddf.security.subject').is(systemSubject)
+            processRequest
+        }
+        0 * catalogFramework._
+        durableProcessingFramework.getQueueDepth() == 0
+        Files.size(journalFile) == 0
+    }
+
+    def 'test submitDelete'() {
+        when:
+        durableProcessingFramework.submitDelete(deleteRequest('1'))
+        workers.runPending()
+
+        then:
+        1 * postProcessPlugin.processDelete(_ as ProcessRequest) >> { ProcessRequest<ProcessDeleteItem> processRequest ->
+            assert processRequest.getProcessItems()*.getMetacard()*.getId() == ['1']
+            processRequest
+        }
+        Files.size(journalFile) == 0
+    }
+
+    def 'test queued updates of the same metacard are coalesced'() {
+        when:
+        durableProcessingFramework.submitUpdate(updateRequest('1', 'first'))
+        durableProcessingFramework.submitUpdate(updateRequest('1', 'second'))
+
+        then:
+        durableProcessingFramework.getQueueDepth() == 1
+
+        when:
+        workers.runPending()
+
+        then:
+        1 * postProcessPlugin.processUpdate(_ as ProcessRequest) >> { ProcessRequest<ProcessUpdateItem> processRequest ->
+            assert processRequest.getProcessItems()*.getMetacard()*.getTitle() == ['second']
+            processRequest
+        }
+        Files.size(journalFile) == 0
+    }
+
+    def 'test queued updates of different metacards are not coalesced'() {
+        when:
+        durableProcessingFramework.submitUpdate(updateRequest('1', 'first'))
+        durableProcessingFramework.submitUpdate(updateRequest('2', 'second'))
+        workers.runPending()
+
+        then:
+        2 * postProcessPlugin.processUpdate(_ as ProcessRequest) >> { ProcessRequest<ProcessUpdateItem> processRequest ->
+            processRequest
+        }
+    }
+
+    def 'test submit blocks while the queue is full'() {
+        given:
+        durableProcessingFramework.setMaxQueuedRequests(1)
+        durableProcessingFramework.submitCreate(createRequest('1'))
+
+        when:
+        def submitter = Thread.start {
+            durableProcessingFramework.submitCreate(createRequest('2'))
+        }
+
+        then:
+        conditions.eventually {
+            assert submitter.getState() == Thread.State.WAITING
+        }
+        durableProcessingFramework.getQueueDepth() == 1
+
+        when:
+        workers.pending.poll().run()
+        submitter.join(5000)
+
+        then:
+        !submitter.isAlive()
+        durableProcessingFramework.getQueueDepth() == 1
+    }
+
+    def 'test unfinished requests are resumed as the system subject after a restart'() {
+        given:
+        durableProcessingFramework.submitUpdate(updateRequest('1', 'updated'))
+        durableProcessingFramework.submitDelete(deleteRequest('2'))
+        durableProcessingFramework.cleanUp()
+
+        when:
+        durableProcessingFramework = createFramework()
+
+        then:
+        conditions.eventually {
+            assert durableProcessingFramework.getQueueDepth() == 2
+        }
+
+        when:
+        workers.runPending()
+
+        then:
+        1 * postProcessPlugin.processUpdate(_ as ProcessRequest) >> { ProcessRequest<ProcessUpdateItem> processRequest ->
+            def item = processRequest.getProcessItems().get(0)
+            assert item.getMetacard().getTitle() == 'updated'
+            assert item.getOldMetacard().getId() == '1'
+            assert processRequest.getProperties().get('ddf.security.subject').is(systemSubject)
+            assert processRequest.getProperties().get('property') == 'value'
+            processRequest
+        }
+
+        then:
+        1 * postProcessPlugin.processDelete(_ as ProcessRequest) >> { ProcessRequest<ProcessDeleteItem> processRequest ->
+            assert processRequest.getProcessItems()*.getMetacard()*.getId() == ['2']
+            processRequest
+        }
+        Files.size(journalFile) == 0
+    }
+
+    def 'test corrupt journal is ignored'() {
+        given:
+        durableProcessingFramework.cleanUp()
+        journalFile.toFile().bytes = [0x53, 0x00, 0x01] as byte[]
+
+        when:
+        durableProcessingFramework = createFramework()
+
+        then:
+        durableProcessingFramework.getQueueDepth() == 0
+        Files.size(journalFile) == 0
+    }
+
+    def 'test setWorkerThreads'(Integer workerThreads, int expected) {
+        when:
+        durableProcessingFramework.setWorkerThreads(workerThreads)
+
+        then:
+        workers.getCorePoolSize() == expected
+        workers.getMaximumPoolSize() == expected
+
+        where:
+        workerThreads | expected
+        4             | 4
+        1             | 1
+        0             | 2
+        null          | 2
+    }
+
+    def 'test setWorkerThreads to zero restores the system thread pool size'() {
+        given:
+        durableProcessingFramework.setWorkerThreads(4)
+
+        when:
+        durableProcessingFramework.setWorkerThreads(0)
+
+        then:
+        workers.getCorePoolSize() == 2
+        workers.getMaximumPoolSize() == 2
+    }
+
+    private DurableProcessingFramework createFramework() {
+        workers = new ManualExecutor()
+        def framework = new DurableProcessingFramework(catalogFramework, journalFile, workers) {
+            @Override
+            Subject getSystemSubject() {
+                return systemSubject
+            }
+        }
+        framework.setPostProcessPlugins([postProcessPlugin])
+        framework.init()
+        return framework
+    }
+
+    private ProcessRequest<ProcessCreateItem> createRequest(String id) {
+        return new ProcessRequestImpl<>([new ProcessCreateItemImpl(null, metacard(id, 'created'))],
+                ['ddf.security.subject': systemSubject])
+    }
+
+    private ProcessRequest<ProcessUpdateItem> updateRequest(String id, String title) {
+        return new ProcessRequestImpl<>([new ProcessUpdateItemImpl(null, metacard(id, title), metacard(id, 'original'))],
+                ['ddf.security.subject': systemSubject, 'property': 'value'])
+    }
+
+    private ProcessRequest<ProcessDeleteItem> deleteRequest(String id) {
+        return new ProcessRequestImpl<>([new ProcessDeleteItemImpl(metacard(id, 'deleted'))],
+                ['ddf.security.subject': systemSubject])
+    }
+
+    private static MetacardImpl metacard(String id, String title) {
+        def metacard = new MetacardImpl()
+        metacard.setId(id)
+        metacard.setTitle(title)
+        return metacard
+    }
+
+    /** Holds submitted tasks until the test runs them. */
+    static class ManualExecutor extends ThreadPoolExecutor {
+
+        final Queue<Runnable> pending = new LinkedBlockingQueue<>()
+
+        ManualExecutor() {
+            super(2, 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>())
+        }
+
+        @Override
+        void execute(Runnable command) {
+            pending.add(command)
+        }
+
+        void runPending() {
+            Runnable command
+            while ((command = pending.poll()) != null) {
+                command.run()
+            }
+        }
+    }
+}
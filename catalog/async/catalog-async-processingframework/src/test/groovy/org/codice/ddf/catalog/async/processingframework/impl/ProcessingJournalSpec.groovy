@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.async.processingframework.impl
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class ProcessingJournalSpec extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    Path journalFile
+
+    def setup() {
+        journalFile = temporaryFolder.getRoot().toPath().resolve('processing.journal')
+    }
+
+    def 'test journal is compacted while requests are always outstanding'() {
+        given:
+        def journal = new ProcessingJournal(journalFile, 4096)
+        journal.open()
+        def payload = new byte[100]
+        long stuck = journal.append('stuck'.bytes)
+
+        when:
+        1000.times {
+            journal.complete(journal.append(payload))
+        }
+        long last = journal.append('last'.bytes)
+        journal.close()
+
+        then:
+        Files.size(journalFile) < 2 * 4096
+
+        when:
+        def reopened = new ProcessingJournal(journalFile)
+        def unfinished = reopened.open()
+        reopened.close()
+
+        then:
+        unfinished.keySet() as List == [stuck, last]
+        new String(unfinished[stuck]) == 'stuck'
+        new String(unfinished[last]) == 'last'
+    }
+}
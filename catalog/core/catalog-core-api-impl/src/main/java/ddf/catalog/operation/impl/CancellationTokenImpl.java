@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.operation.impl;
+
+import ddf.catalog.Constants;
+import ddf.catalog.operation.CancellationToken;
+import ddf.catalog.operation.Operation;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <b> This code is experimental. While this class is functional and tested, it may change or be
+ * removed in a future version of the library. </b>
+ *
+ * <p>A {@link CancellationToken} with an optional deadline, which is cancelled along with its
+ * parent. A token with a parent should be {@link #close() closed} once the operation it guards has
+ * completed, so that a long lived parent does not keep it.
+ */
+public class CancellationTokenImpl implements CancellationToken, AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CancellationTokenImpl.class);
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Registration NO_REGISTRATION = () -> {};
+
+  /** A token that is never cancelled, used when a request does not carry one. */
+  private static final CancellationToken NONE =
+      new CancellationToken() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean isCancelled() {
+          return false;
+        }
+
+        @Override
+        public long getDeadline() {
+          return 0;
+        }
+
+        @Override
+        public long getRemainingMillis() {
+          return Long.MAX_VALUE;
+        }
+
+        @Override
+        public void cancel() {
+          // nothing to cancel
+        }
+
+        @Override
+        public Registration onCancel(Runnable callback) {
+          return NO_REGISTRATION;
+        }
+      };
+
+  private final long deadline;
+
+  private transient List<Runnable> callbacks = new ArrayList<>();
+
+  /** Guarded by this. */
+  private transient Registration parentRegistration = NO_REGISTRATION;
+
+  private volatile boolean cancelled;
+
+  /** Creates a token without a deadline. */
+  public CancellationTokenImpl() {
+    this(null, 0);
+  }
+
+  /**
+   * Creates a token.
+   *
+   * @param parent a token whose cancellation cancels this one, or {@code null}
+   * @param deadline the deadline in milliseconds since the epoch, or 0 for none. The earlier of
+   *     this and the deadline of the parent is used.
+   */
+  public CancellationTokenImpl(@Nullable CancellationToken parent, long deadline) {
+    if (parent != null && parent.getDeadline() > 0) {
+      deadline = deadline > 0 ? Math.min(deadline, parent.getDeadline()) : parent.getDeadline();
+    }
+    this.deadline = deadline;
+    if (parent != null) {
+      Registration registration = parent.onCancel(this::cancel);
+      synchronized (this) {
+        if (cancelled) {
+          registration.close();
+        } else {
+          parentRegistration = registration;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the token carried by the operation, or a token that is never cancelled if there is
+   * none.
+   */
+  public static CancellationToken of(@Nullable Operation operation) {
+    if (operation == null) {
+      return NONE;
+    }
+    Serializable token = operation.getPropertyValue(Constants.QUERY_CANCELLATION_TOKEN_KEY);
+    return token instanceof CancellationToken ? (CancellationToken) token : NONE;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return cancelled || (deadline > 0 && System.currentTimeMillis() >= deadline);
+  }
+
+  @Override
+  public long getDeadline() {
+    return deadline;
+  }
+
+  @Override
+  public long getRemainingMillis() {
+    if (deadline <= 0) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(0, deadline - System.currentTimeMillis());
+  }
+
+  @Override
+  public void cancel() {
+    List<Runnable> toRun;
+    synchronized (this) {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      toRun = callbacks;
+      callbacks = new ArrayList<>();
+    }
+    close();
+    toRun.forEach(CancellationTokenImpl::run);
+  }
+
+  /**
+   * Detaches the token from its parent. The token is no longer cancelled along with the parent, but
+   * can still be cancelled directly.
+   */
+  @Override
+  public void close() {
+    Registration registration;
+    synchronized (this) {
+      registration = parentRegistration;
+      parentRegistration = NO_REGISTRATION;
+    }
+    registration.close();
+  }
+
+  @Override
+  public Registration onCancel(Runnable callback) {
+    synchronized (this) {
+      if (!cancelled) {
+        callbacks.add(callback);
+        return () -> {
+          synchronized (this) {
+            callbacks.remove(callback);
+          }
+        };
+      }
+    }
+    run(callback);
+    return NO_REGISTRATION;
+  }
+
+  private static void run(Runnable callback) {
+    try {
+      callback.run();
+    } catch (RuntimeException e) {
+      LOGGER.debug("Cancellation callback failed.", e);
+    }
+  }
+
+  private void readObject(java.io.ObjectInputStream in)
+      throws java.io.IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    callbacks = new ArrayList<>();
+    parentRegistration = NO_REGISTRATION;
+  }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.operation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import ddf.catalog.Constants;
+import ddf.catalog.operation.impl.CancellationTokenImpl;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.opengis.filter.Filter;
+
+public class CancellationTokenImplTest {
+
+  @Test
+  public void testCallbacksRunOnceOnCancel() {
+    CancellationTokenImpl token = new CancellationTokenImpl();
+    AtomicInteger calls = new AtomicInteger();
+    token.onCancel(calls::incrementAndGet);
+
+    assertFalse(token.isCancelled());
+    token.cancel();
+    token.cancel();
+
+    assertTrue(token.isCancelled());
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testCallbackRunsImmediatelyWhenAlreadyCancelled() {
+    CancellationTokenImpl token = new CancellationTokenImpl();
+    token.cancel();
+    AtomicInteger calls = new AtomicInteger();
+
+    token.onCancel(calls::incrementAndGet);
+
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testClosedRegistrationIsNotRun() {
+    CancellationTokenImpl token = new CancellationTokenImpl();
+    AtomicInteger calls = new AtomicInteger();
+
+    token.onCancel(calls::incrementAndGet).close();
+    token.cancel();
+
+    assertEquals(0, calls.get());
+  }
+
+  @Test
+  public void testChildIsCancelledWithParent() {
+    CancellationTokenImpl parent = new CancellationTokenImpl();
+    CancellationTokenImpl child = new CancellationTokenImpl(parent, 0);
+
+    child.cancel();
+    assertFalse(parent.isCancelled());
+
+    CancellationTokenImpl sibling = new CancellationTokenImpl(parent, 0);
+    parent.cancel();
+    assertTrue(sibling.isCancelled());
+  }
+
+  @Test
+  public void testChildReleasesParentRegistration() {
+    AtomicInteger registrations = new AtomicInteger();
+    CancellationTokenImpl parent =
+        new CancellationTokenImpl() {
+          @Override
+          public Registration onCancel(Runnable callback) {
+            Registration registration = super.onCancel(callback);
+            registrations.incrementAndGet();
+            return () -> {
+              registrations.decrementAndGet();
+              registration.close();
+            };
+          }
+        };
+
+    CancellationTokenImpl closed = new CancellationTokenImpl(parent, 0);
+    CancellationTokenImpl cancelled = new CancellationTokenImpl(parent, 0);
+    assertEquals(2, registrations.get());
+
+    closed.close();
+    cancelled.cancel();
+    assertEquals(0, registrations.get());
+
+    parent.cancel();
+    assertFalse(closed.isCancelled());
+  }
+
+  @Test
+  public void testDeadline() {
+    long now = System.currentTimeMillis();
+    CancellationTokenImpl parent = new CancellationTokenImpl(null, now + 60_000);
+    CancellationTokenImpl child = new CancellationTokenImpl(parent, now + 120_000);
+    CancellationTokenImpl expired = new CancellationTokenImpl(null, now - 1);
+
+    assertEquals(now + 60_000, child.getDeadline());
+    assertTrue(child.getRemainingMillis() <= 60_000);
+    assertFalse(child.isCancelled());
+    assertTrue(expired.isCancelled());
+    assertEquals(0, expired.getRemainingMillis());
+    assertEquals(Long.MAX_VALUE, new CancellationTokenImpl().getRemainingMillis());
+  }
+
+  @Test
+  public void testTokenFromRequest() {
+    QueryImpl query = new QueryImpl(Filter.INCLUDE);
+    CancellationTokenImpl token = new CancellationTokenImpl();
+    Map<String, Serializable> properties = new HashMap<>();
+    properties.put(Constants.QUERY_CANCELLATION_TOKEN_KEY, token);
+
+    assertSame(token, CancellationTokenImpl.of(new QueryRequestImpl(query, properties)));
+
+    CancellationToken none = CancellationTokenImpl.of(new QueryRequestImpl(query));
+    none.cancel();
+    assertFalse(none.isCancelled());
+    assertEquals(0, none.getDeadline());
+  }
+}
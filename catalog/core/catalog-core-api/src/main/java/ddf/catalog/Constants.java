@@ -154,4 +154,16 @@ public final class Constants {
   public static final String SUGGESTION_BUILD_KEY = "suggestion-build";
 
   public static final String ADDITIONAL_SORT_BYS = "additional-sort-bys";
+
+  /**
+   * Key of the {@link ddf.catalog.operation.SourceResponseListener} in the query request properties
+   * that is notified as each source of a federated query completes.
+   */
+  public static final String SOURCE_RESPONSE_LISTENER_KEY = "source-response-listener";
+
+  /**
+   * Key of the {@link ddf.catalog.operation.CancellationToken} in the query request properties that
+   * sources use to stop working on a query that was cancelled or ran past its deadline.
+   */
+  public static final String QUERY_CANCELLATION_TOKEN_KEY = "query-cancellation-token";
 }
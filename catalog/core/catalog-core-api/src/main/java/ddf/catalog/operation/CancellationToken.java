@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.operation;
+
+import java.io.Serializable;
+
+/**
+ * <b> This code is experimental. While this interface is functional and tested, it may change or be
+ * removed in a future version of the library. </b>
+ *
+ * <p>Signals to the {@link ddf.catalog.source.Source} answering a {@link QueryRequest} that its
+ * answer is no longer wanted, either because the query was cancelled or because its deadline
+ * passed. A token is carried in the request properties under {@link
+ * ddf.catalog.Constants#QUERY_CANCELLATION_TOKEN_KEY}.
+ *
+ * <p>Sources should check {@link #isCancelled()} before starting expensive work, bound remote calls
+ * by {@link #getRemainingMillis()}, and register a callback with {@link #onCancel(Runnable)} to
+ * abort calls that are already in flight.
+ */
+public interface CancellationToken extends Serializable {
+
+  /** @return {@code true} if the token was cancelled or its deadline has passed */
+  boolean isCancelled();
+
+  /** @return the deadline of the query in milliseconds since the epoch, or 0 if it has none */
+  long getDeadline();
+
+  /**
+   * @return the number of milliseconds left before the deadline, 0 if it has passed, or {@link
+   *     Long#MAX_VALUE} if the query has no deadline
+   */
+  long getRemainingMillis();
+
+  /** Cancels the token, running every registered callback. Has no effect if already cancelled. */
+  void cancel();
+
+  /**
+   * Registers a callback to run when the token is cancelled. The callback runs right away on the
+   * calling thread if the token is already cancelled, otherwise on the thread that cancels it.
+   * Callbacks are not run when the deadline merely passes.
+   *
+   * @param callback the callback to run
+   * @return a registration that removes the callback when closed
+   */
+  Registration onCancel(Runnable callback);
+
+  /** Removes a callback registered with {@link #onCancel(Runnable)}. */
+  interface Registration extends AutoCloseable {
+
+    @Override
+    void close();
+  }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.operation;
+
+import java.io.Serializable;
+
+/**
+ * <b> This code is experimental. While this interface is functional and tested, it may change or be
+ * removed in a future version of the library. </b>
+ *
+ * <p>Receives the {@link SourceResponse} of each {@link ddf.catalog.source.Source} of a federated
+ * query as soon as that source has answered, before the responses of all sources are merged into
+ * the final {@link QueryResponse}. A listener is registered by adding it to the {@link
+ * QueryRequest} properties under {@link ddf.catalog.Constants#SOURCE_RESPONSE_LISTENER_KEY}.
+ *
+ * <p>Listeners are called from the thread that collects the source responses, so implementations
+ * should return quickly.
+ */
+public interface SourceResponseListener extends Serializable {
+
+  /**
+   * Called once for every source of the query, in the order the sources complete.
+   *
+   * @param sourceId the id of the source that completed
+   * @param sourceResponse the response of the source, with its results sorted the same way as the
+   *     final response. A source that failed or timed out is reported with no results and the
+   *     failure in {@link QueryResponse#getProcessingDetails()}.
+   */
+  void onSourceResponse(String sourceId, QueryResponse sourceResponse);
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.source;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * <b> This code is experimental. While this interface is functional and tested, it may change or be
+ * removed in a future version of the library. </b>
+ *
+ * <p>Checks the availability of remote {@link Source}s on a shared, bounded pool so that sources do
+ * not need a scheduler of their own.
+ *
+ * <p>Checks of available sources run at the poll interval of the source, with jitter so that
+ * sources configured at the same time do not ping their servers in step. A source whose check fails
+ * is probed again quickly, then less and less often while it stays down. A source that {@linkplain
+ * Registration#reportSuccess() reports} successful requests is not pinged while those requests keep
+ * coming.
+ */
+public interface SourceAvailabilityService {
+
+  /**
+   * Starts checking the availability of a source. Checks run asynchronously on the pool of the
+   * service.
+   *
+   * @param sourceId id of the source, used for logging
+   * @param pollIntervalMillis how often to check the source while it is available
+   * @param initialDelayMillis delay before the first check, e.g. the poll interval if the caller
+   *     has just checked the source itself
+   * @param availabilityCheck pings the source and returns {@code true} if it answered. It is never
+   *     run concurrently with itself.
+   * @return the registration to report request outcomes to and to close when the source goes away
+   */
+  Registration register(
+      String sourceId,
+      long pollIntervalMillis,
+      long initialDelayMillis,
+      BooleanSupplier availabilityCheck);
+
+  /** The checks of one source. */
+  interface Registration extends AutoCloseable {
+
+    /** Changes the poll interval and reschedules the next check accordingly. */
+    void setPollInterval(long pollIntervalMillis);
+
+    /**
+     * Records that a request to the source succeeded. Pings are skipped while the source keeps
+     * answering requests, and a source last seen as unavailable is probed right away.
+     */
+    void reportSuccess();
+
+    /** Records that a request to the source failed to reach it, so that it is probed soon. */
+    void reportFailure();
+
+    /** Stops checking the source. */
+    @Override
+    void close();
+  }
+}
@@ -23,6 +23,18 @@
 public class ContentEndpoint extends DefaultEndpoint {
   private static final transient Logger LOGGER = LoggerFactory.getLogger(ContentEndpoint.class);
 
+  private static final long DEFAULT_MAX_BATCH_BYTES = 100L * 1024 * 1024;
+
+  private static final long DEFAULT_MAX_BATCH_WAIT_MILLIS = 1000;
+
+  private int maxBatchSize = 1;
+
+  private long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+
+  private long maxBatchWaitMillis = DEFAULT_MAX_BATCH_WAIT_MILLIS;
+
+  private CreateStorageRequestBatcher createBatcher;
+
   public ContentEndpoint(String uri, ContentComponent component) {
     super(uri, component);
     LOGGER.debug("INSIDE CamelContentEndpoint(uri, component)");
@@ -54,6 +66,52 @@ public Consumer createConsumer(Processor processor) throws Exception {
     return null;
   }
 
+  /**
+   * Sets the maximum number of files created in a single request, e.g. {@code
+   * content:framework?maxBatchSize=10}. Batching is disabled when this is {@code 1}, which is the
+   * default.
+   */
+  public void setMaxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /** Sets the total size of the files after which a batch is sent without waiting for more. */
+  public void setMaxBatchBytes(long maxBatchBytes) {
+    this.maxBatchBytes = maxBatchBytes;
+  }
+
+  public long getMaxBatchBytes() {
+    return maxBatchBytes;
+  }
+
+  /** Sets how long the first file of a batch waits for other files to join it. */
+  public void setMaxBatchWaitMillis(long maxBatchWaitMillis) {
+    this.maxBatchWaitMillis = maxBatchWaitMillis;
+  }
+
+  public long getMaxBatchWaitMillis() {
+    return maxBatchWaitMillis;
+  }
+
+  /**
+   * @return the batcher shared by every producer of this endpoint, or {@code null} if batching is
+   *     disabled
+   */
+  public synchronized CreateStorageRequestBatcher getCreateBatcher() {
+    if (maxBatchSize <= 1) {
+      return null;
+    }
+    if (createBatcher == null) {
+      createBatcher =
+          new CreateStorageRequestBatcher(maxBatchSize, maxBatchBytes, maxBatchWaitMillis);
+    }
+    return createBatcher;
+  }
+
   @Override
   public boolean isSingleton() {
     return true;
@@ -17,6 +17,7 @@
 import com.google.common.io.Files;
 import ddf.catalog.CatalogFramework;
 import ddf.catalog.Constants;
+import ddf.catalog.content.data.ContentItem;
 import ddf.catalog.content.data.impl.ContentItemImpl;
 import ddf.catalog.content.operation.CreateStorageRequest;
 import ddf.catalog.content.operation.UpdateStorageRequest;
@@ -54,6 +55,7 @@
 import net.jodah.failsafe.Failsafe;
 import net.jodah.failsafe.RetryPolicy;
 import net.jodah.failsafe.function.Predicate;
+import org.apache.camel.Exchange;
 import org.apache.camel.Message;
 import org.apache.camel.component.file.GenericFile;
 import org.apache.camel.component.file.GenericFileMessage;
@@ -71,6 +73,8 @@ public class ContentProducerDataAccessObject {
   public static final Kind<Path> ENTRY_MODIFY = StandardWatchEventKinds.ENTRY_MODIFY;
   public static final Kind<Path> ENTRY_DELETE = StandardWatchEventKinds.ENTRY_DELETE;
 
+  private static final String CAMEL_HEADER_PREFIX = "Camel";
+
   private UuidGenerator uuidGenerator;
 
   public ContentProducerDataAccessObject(UuidGenerator uuidGenerator) {
@@ -173,22 +177,35 @@ public void createContentItem(
       }
     }
     if (ENTRY_CREATE.equals(eventType)) {
-      CreateStorageRequest createRequest =
-          new CreateStorageRequestImpl(
-              Collections.singletonList(
-                  new ContentItemImpl(
-                      uuidGenerator.generateUuid(),
-                      Files.asByteSource(ingestedFile),
-                      mimeType,
-                      ingestedFile.getName(),
-                      ingestedFile.length(),
-                      null)),
-              getProperties(headers));
+      ContentItem contentItem =
+          new ContentItemImpl(
+              uuidGenerator.generateUuid(),
+              Files.asByteSource(ingestedFile),
+              mimeType,
+              ingestedFile.getName(),
+              ingestedFile.length(),
+              null);
 
       CatalogFramework catalogFramework = endpoint.getComponent().getCatalogFramework();
 
       waitForAvailableSource(catalogFramework);
 
+      // Files stored by reference need the key in their own request, so they are never batched
+      CreateStorageRequestBatcher batcher = endpoint.getCreateBatcher();
+      if (batcher != null && safeKey == null) {
+        Metacard createdMetacard =
+            batcher.create(
+                catalogFramework, contentItem, ingestedFile.length(), getBatchProperties(headers));
+        if (createdMetacard != null) {
+          logIds(Collections.singletonList(createdMetacard), "created");
+        }
+        return;
+      }
+
+      CreateStorageRequest createRequest =
+          new CreateStorageRequestImpl(
+              Collections.singletonList(contentItem), getProperties(headers));
+
       CreateResponse createResponse = catalogFramework.create(createRequest);
 
       if (createResponse != null) {
@@ -254,6 +271,18 @@ protected HashMap<String, Serializable> getProperties(Map<String, Object> header
     return Maps.newHashMap(Maps.transformValues(headers, Serializable.class::cast));
   }
 
+  /**
+   * Request properties shared by the files of a batch. The Camel headers describe the individual
+   * file and would keep any two files from being batched together, so they are left out.
+   */
+  protected HashMap<String, Serializable> getBatchProperties(Map<String, Object> headers) {
+    HashMap<String, Serializable> properties = getProperties(headers);
+    properties
+        .keySet()
+        .removeIf(key -> key.startsWith(CAMEL_HEADER_PREFIX) || Exchange.BREADCRUMB_ID.equals(key));
+    return properties;
+  }
+
   private void waitForAvailableSource(CatalogFramework catalogFramework)
       throws SourceUnavailableException {
     RetryPolicy retryPolicy =
@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.camel.component.catalog.content;
+
+import ddf.catalog.CatalogFramework;
+import ddf.catalog.content.data.ContentItem;
+import ddf.catalog.content.operation.impl.CreateStorageRequestImpl;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.source.IngestException;
+import ddf.catalog.source.SourceUnavailableException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces the content items created by concurrent exchanges into multi-item {@link
+ * ddf.catalog.content.operation.CreateStorageRequest}s, so that the plugin chain, policy evaluation
+ * and the add to the catalog provider are paid once per batch instead of once per file.
+ *
+ * <p>The first item added to a batch makes its calling thread the leader of the batch. The leader
+ * waits until the batch holds {@code maxItems} items or {@code maxBytes} bytes, or until {@code
+ * maxWaitMillis} have passed, and then sends the whole batch to the {@link CatalogFramework} on its
+ * own thread, so the request is made with the subject bound to that thread. The other threads block
+ * until the batch has been processed. Since every caller blocks, the size of a batch is also
+ * bounded by the number of threads routing to the endpoint.
+ *
+ * <p>For the same reason a batch can only grow while some thread that routes to the endpoint is not
+ * already blocked here. The batcher remembers the threads that have called it, and the leader stops
+ * waiting as soon as every one of them is blocked, so a route with a single thread never waits.
+ * Threads are only known after their first call, so the first files of a route may be created
+ * alone.
+ *
+ * <p>Only items with equal request properties are batched together. If a batch of more than one
+ * item fails, every item is retried in a request of its own on its own thread, so that a failure is
+ * reported only for the files that actually caused it.
+ */
+public class CreateStorageRequestBatcher {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CreateStorageRequestBatcher.class);
+
+  private final int maxItems;
+
+  private final long maxBytes;
+
+  private final long maxWaitMillis;
+
+  private final Map<Map<String, Serializable>, Batch> openBatches = new HashMap<>();
+
+  /** The threads that have created content through this batcher. Guarded by openBatches. */
+  private final Map<Thread, Boolean> producers = new WeakHashMap<>();
+
+  /** The number of threads blocked in {@link #create}. Guarded by openBatches. */
+  private int activeProducers = 0;
+
+  public CreateStorageRequestBatcher(int maxItems, long maxBytes, long maxWaitMillis) {
+    this.maxItems = maxItems;
+    this.maxBytes = maxBytes;
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  /**
+   * Creates the content item as part of a batch, blocking until the batch has been processed.
+   *
+   * @param catalogFramework the framework used to create the batch
+   * @param contentItem the content item to create
+   * @param size the size of the content item in bytes
+   * @param properties the request properties for the item
+   * @return the metacard created for the content item, or {@code null} if the framework did not
+   *     return one
+   * @throws IngestException if the content item could not be created
+   * @throws SourceUnavailableException if the catalog provider is unavailable
+   */
+  @Nullable
+  public Metacard create(
+      CatalogFramework catalogFramework,
+      ContentItem contentItem,
+      long size,
+      Map<String, Serializable> properties)
+      throws IngestException, SourceUnavailableException {
+    synchronized (openBatches) {
+      producers.put(Thread.currentThread(), Boolean.TRUE);
+      activeProducers++;
+      // Leaders waiting for this thread to join their batch need to check again
+      openBatches.notifyAll();
+    }
+
+    try {
+      return createInBatch(catalogFramework, contentItem, size, properties);
+    } finally {
+      synchronized (openBatches) {
+        activeProducers--;
+      }
+    }
+  }
+
+  @Nullable
+  private Metacard createInBatch(
+      CatalogFramework catalogFramework,
+      ContentItem contentItem,
+      long size,
+      Map<String, Serializable> properties)
+      throws IngestException, SourceUnavailableException {
+    BatchEntry entry = new BatchEntry(contentItem);
+    Batch batch;
+    boolean leader;
+
+    synchronized (openBatches) {
+      batch = openBatches.get(properties);
+      leader = batch == null;
+      if (leader) {
+        batch = new Batch();
+        openBatches.put(properties, batch);
+      }
+      batch.add(entry, size);
+      if (batch.entries.size() >= maxItems || batch.bytes >= maxBytes) {
+        closeBatch(properties, batch);
+      }
+    }
+
+    if (leader) {
+      try {
+        awaitBatch(properties, batch);
+      } catch (IngestException e) {
+        batch.entries.forEach(batchEntry -> batchEntry.complete(BatchResult.retry()));
+        throw e;
+      }
+      return process(catalogFramework, batch, entry, properties);
+    }
+
+    BatchResult result = entry.await();
+    if (result.isRetry()) {
+      return createIndividually(catalogFramework, contentItem, properties);
+    }
+    return result.getMetacard();
+  }
+
+  private void awaitBatch(Map<String, Serializable> properties, Batch batch)
+      throws IngestException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    synchronized (openBatches) {
+      try {
+        long remaining;
+        while (!batch.closed
+            && hasIdleProducers()
+            && (remaining = deadline - System.nanoTime()) > 0) {
+          TimeUnit.NANOSECONDS.timedWait(openBatches, remaining);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IngestException("Interrupted while waiting for the batch to fill.");
+      } finally {
+        closeBatch(properties, batch);
+      }
+    }
+  }
+
+  /** Whether a thread that routes to the endpoint could still add an item to a batch. */
+  private boolean hasIdleProducers() {
+    return producers.keySet().stream().filter(Thread::isAlive).count() > activeProducers;
+  }
+
+  private void closeBatch(Map<String, Serializable> properties, Batch batch) {
+    if (openBatches.get(properties) == batch) {
+      openBatches.remove(properties);
+    }
+    batch.closed = true;
+    openBatches.notifyAll();
+  }
+
+  @Nullable
+  private Metacard process(
+      CatalogFramework catalogFramework,
+      Batch batch,
+      BatchEntry leaderEntry,
+      Map<String, Serializable> properties)
+      throws IngestException, SourceUnavailableException {
+    if (batch.entries.size() == 1) {
+      return createIndividually(catalogFramework, leaderEntry.contentItem, properties);
+    }
+
+    LOGGER.debug("Creating a batch of {} content items.", batch.entries.size());
+    try {
+      CreateResponse response =
+          catalogFramework.create(
+              new CreateStorageRequestImpl(
+                  batch.entries.stream().map(e -> e.contentItem).collect(Collectors.toList()),
+                  new HashMap<>(properties)));
+
+      Map<String, Metacard> createdMetacards =
+          response == null
+              ? Collections.emptyMap()
+              : response
+                  .getCreatedMetacards()
+                  .stream()
+                  .collect(Collectors.toMap(Metacard::getId, m -> m, (a, b) -> a));
+
+      for (BatchEntry entry : batch.entries) {
+        entry.complete(BatchResult.created(createdMetacards.get(entry.contentItem.getId())));
+      }
+      return createdMetacards.get(leaderEntry.contentItem.getId());
+    } catch (IngestException | SourceUnavailableException | RuntimeException e) {
+      LOGGER.debug(
+          "Failed to create a batch of {} content items, creating them individually.",
+          batch.entries.size(),
+          e);
+      batch.entries.forEach(entry -> entry.complete(BatchResult.retry()));
+      return createIndividually(catalogFramework, leaderEntry.contentItem, properties);
+    } finally {
+      //  Never leave the other threads of the batch waiting
+      batch.entries.forEach(entry -> entry.complete(BatchResult.retry()));
+    }
+  }
+
+  @Nullable
+  private Metacard createIndividually(
+      CatalogFramework catalogFramework,
+      ContentItem contentItem,
+      Map<String, Serializable> properties)
+      throws IngestException, SourceUnavailableException {
+    CreateResponse response =
+        catalogFramework.create(
+            new CreateStorageRequestImpl(
+                Collections.singletonList(contentItem), new HashMap<>(properties)));
+    if (response == null || response.getCreatedMetacards().isEmpty()) {
+      return null;
+    }
+    return response.getCreatedMetacards().get(0);
+  }
+
+  private static class Batch {
+
+    private final List<BatchEntry> entries = new ArrayList<>();
+
+    private long bytes = 0;
+
+    private boolean closed = false;
+
+    void add(BatchEntry entry, long size) {
+      entries.add(entry);
+      bytes += Math.max(size, 0);
+    }
+  }
+
+  private static class BatchEntry {
+
+    private final ContentItem contentItem;
+
+    private final CompletableFuture<BatchResult> result = new CompletableFuture<>();
+
+    BatchEntry(ContentItem contentItem) {
+      this.contentItem = contentItem;
+    }
+
+    void complete(BatchResult batchResult) {
+      result.complete(batchResult);
+    }
+
+    BatchResult await() throws IngestException {
+      try {
+        return result.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IngestException("Interrupted while waiting for the batch to be created.");
+      } catch (ExecutionException e) {
+        throw new IngestException("Failed to create the batch.", e.getCause());
+      }
+    }
+  }
+
+  private static class BatchResult {
+
+    private static final BatchResult RETRY = new BatchResult(null, true);
+
+    @Nullable private final Metacard metacard;
+
+    private final boolean retry;
+
+    private BatchResult(@Nullable Metacard metacard, boolean retry) {
+      this.metacard = metacard;
+      this.retry = retry;
+    }
+
+    static BatchResult created(@Nullable Metacard metacard) {
+      return new BatchResult(metacard, false);
+    }
+
+    static BatchResult retry() {
+      return RETRY;
+    }
+
+    @Nullable
+    Metacard getMetacard() {
+      return metacard;
+    }
+
+    boolean isRetry() {
+      return retry;
+    }
+  }
+}
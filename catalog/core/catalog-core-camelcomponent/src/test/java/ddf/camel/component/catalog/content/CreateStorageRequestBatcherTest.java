@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.camel.component.catalog.content;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.io.ByteSource;
+import ddf.catalog.CatalogFramework;
+import ddf.catalog.content.data.ContentItem;
+import ddf.catalog.content.data.impl.ContentItemImpl;
+import ddf.catalog.content.operation.CreateStorageRequest;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.source.IngestException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+
+public class CreateStorageRequestBatcherTest {
+
+  private static final Map<String, Serializable> PROPERTIES = Collections.emptyMap();
+
+  private static final String BAD_FILE = "bad";
+
+  private static final int THREADS = 4;
+
+  private CatalogFramework catalogFramework;
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    catalogFramework = mock(CatalogFramework.class);
+    when(catalogFramework.create(any(CreateStorageRequest.class))).thenAnswer(this::create);
+    executor = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private CreateResponse create(InvocationOnMock invocation) throws IngestException {
+    CreateStorageRequest request = (CreateStorageRequest) invocation.getArguments()[0];
+    List<Metacard> metacards = new ArrayList<>();
+    for (ContentItem item : request.getContentItems()) {
+      if (BAD_FILE.equals(item.getFilename())) {
+        throw new IngestException("Unable to create " + item.getFilename());
+      }
+      MetacardImpl metacard = new MetacardImpl();
+      metacard.setId(item.getId());
+      metacards.add(metacard);
+    }
+    CreateResponse response = mock(CreateResponse.class);
+    when(response.getCreatedMetacards()).thenReturn(metacards);
+    return response;
+  }
+
+  private static ContentItem contentItem(String filename) {
+    return new ContentItemImpl(
+        UUID.randomUUID().toString().replaceAll("-", ""),
+        ByteSource.wrap(filename.getBytes()),
+        "text/plain",
+        filename,
+        filename.length(),
+        null);
+  }
+
+  private List<Future<Metacard>> submit(
+      CreateStorageRequestBatcher batcher, List<ContentItem> items) {
+    return items
+        .stream()
+        .map(item -> executor.submit(() -> batcher.create(catalogFramework, item, 1, PROPERTIES)))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Makes every thread of the executor known to the batcher. Each thread creates its own item, and
+   * the items are only created once every thread has called the batcher, so no thread waits.
+   */
+  private void warmUp(CreateStorageRequestBatcher batcher) throws Exception {
+    CountDownLatch started = new CountDownLatch(THREADS);
+    when(catalogFramework.create(any(CreateStorageRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              started.countDown();
+              started.await();
+              return create(invocation);
+            });
+
+    List<Future<Metacard>> futures = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      ContentItem item = contentItem("warmUp" + i);
+      Map<String, Serializable> properties = Collections.singletonMap("warmUp", i);
+      futures.add(executor.submit(() -> batcher.create(catalogFramework, item, 1, properties)));
+    }
+    for (Future<Metacard> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+
+    reset(catalogFramework);
+    when(catalogFramework.create(any(CreateStorageRequest.class))).thenAnswer(this::create);
+  }
+
+  @Test
+  public void testItemsAreCreatedInOneRequest() throws Exception {
+    CreateStorageRequestBatcher batcher =
+        new CreateStorageRequestBatcher(4, Long.MAX_VALUE, TimeUnit.SECONDS.toMillis(30));
+    warmUp(batcher);
+    List<ContentItem> items = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      items.add(contentItem("file" + i));
+    }
+
+    List<String> createdIds = new ArrayList<>();
+    for (Future<Metacard> future : submit(batcher, items)) {
+      createdIds.add(future.get(10, TimeUnit.SECONDS).getId());
+    }
+
+    ArgumentCaptor<CreateStorageRequest> captor =
+        ArgumentCaptor.forClass(CreateStorageRequest.class);
+    verify(catalogFramework).create(captor.capture());
+    assertThat(captor.getValue().getContentItems().size(), is(4));
+    assertThat(
+        createdIds,
+        containsInAnyOrder(items.stream().map(ContentItem::getId).toArray(String[]::new)));
+  }
+
+  @Test
+  public void testPartialBatchIsSentAfterWaiting() throws Exception {
+    CreateStorageRequestBatcher batcher = new CreateStorageRequestBatcher(10, Long.MAX_VALUE, 10);
+    warmUp(batcher);
+    ContentItem item = contentItem("file");
+
+    Metacard created = submit(batcher, Collections.singletonList(item)).get(0).get(10, SECONDS);
+
+    assertThat(created.getId(), is(item.getId()));
+    verify(catalogFramework).create(any(CreateStorageRequest.class));
+  }
+
+  @Test
+  public void testSingleProducerDoesNotWait() throws Exception {
+    CreateStorageRequestBatcher batcher =
+        new CreateStorageRequestBatcher(10, Long.MAX_VALUE, TimeUnit.MINUTES.toMillis(5));
+    ExecutorService singleThread = Executors.newSingleThreadExecutor();
+    try {
+      for (int i = 0; i < 3; i++) {
+        ContentItem item = contentItem("file" + i);
+        Metacard created =
+            singleThread
+                .submit(() -> batcher.create(catalogFramework, item, 1, PROPERTIES))
+                .get(10, SECONDS);
+        assertThat(created.getId(), is(item.getId()));
+      }
+    } finally {
+      singleThread.shutdownNow();
+    }
+
+    verify(catalogFramework, times(3)).create(any(CreateStorageRequest.class));
+  }
+
+  @Test
+  public void testFailuresAreReportedPerItem() throws Exception {
+    CreateStorageRequestBatcher batcher =
+        new CreateStorageRequestBatcher(3, Long.MAX_VALUE, TimeUnit.SECONDS.toMillis(30));
+    warmUp(batcher);
+    ContentItem bad = contentItem(BAD_FILE);
+    List<ContentItem> items = new ArrayList<>();
+    items.add(contentItem("good1"));
+    items.add(bad);
+    items.add(contentItem("good2"));
+
+    int failures = 0;
+    int created = 0;
+    for (Future<Metacard> future : submit(batcher, items)) {
+      try {
+        future.get(10, TimeUnit.SECONDS);
+        created++;
+      } catch (ExecutionException e) {
+        assertThat(e.getCause(), instanceOf(IngestException.class));
+        failures++;
+      }
+    }
+
+    assertThat(created, is(2));
+    assertThat(failures, is(1));
+    // the failed batch and then one request per item
+    verify(catalogFramework, times(4)).create(any(CreateStorageRequest.class));
+  }
+}
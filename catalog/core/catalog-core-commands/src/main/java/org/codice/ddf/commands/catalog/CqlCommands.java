@@ -13,12 +13,14 @@
  */
 package org.codice.ddf.commands.catalog;
 
+import com.google.common.hash.Hashing;
 import ddf.catalog.data.AttributeDescriptor;
 import ddf.catalog.data.AttributeType;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.MetacardType;
 import ddf.catalog.data.types.Core;
 import ddf.catalog.filter.FilterBuilder;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
@@ -42,6 +44,8 @@ public abstract class CqlCommands extends CatalogCommands {
 
   public static final String DEFAULT_TEMPORAL_PROPERTY = Core.CREATED;
 
+  private static final int FILTER_KEY_LENGTH = 12;
+
   private static final String MUTUALLY_EXCLUSIVE_OPTION_MESSAGE =
       " NOTE: Does not apply to CQL filters. Does not stack with other --lastXXXX options.";
 
@@ -289,6 +293,36 @@ private Boolean isDateType(AttributeDescriptor attributeDescriptor) {
     return attributeDescriptor.getType().getAttributeFormat() == AttributeType.AttributeFormat.DATE;
   }
 
+  /**
+   * Identifies the filter described by the options. Relative time ranges are identified by their
+   * length rather than by the dates they resolve to, so the key is the same from one run to the
+   * next.
+   *
+   * @return a short hash of the filter options
+   */
+  protected String getFilterKey() {
+    String options =
+        Arrays.asList(
+                cqlFilter,
+                isUseTemporal,
+                getTemporalProperty(),
+                startDate,
+                endDate,
+                lastSeconds,
+                lastMinutes,
+                lastHours,
+                lastDays,
+                lastWeeks,
+                lastMonths,
+                searchPhrase,
+                caseSensitive)
+            .toString();
+    return Hashing.sha256()
+        .hashString(options, StandardCharsets.UTF_8)
+        .toString()
+        .substring(0, FILTER_KEY_LENGTH);
+  }
+
   protected Boolean hasFilter() {
     return isAnyNonNull(cqlFilter, startDate, endDate)
         || isAnyNotZero(lastSeconds, lastMinutes, lastHours, lastDays, lastWeeks, lastMonths);
@@ -17,6 +17,8 @@
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.Result;
 import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.types.Core;
+import ddf.catalog.federation.FederationException;
 import ddf.catalog.filter.impl.SortByImpl;
 import ddf.catalog.operation.CreateRequest;
 import ddf.catalog.operation.CreateResponse;
@@ -27,6 +29,7 @@
 import ddf.catalog.operation.impl.QueryRequestImpl;
 import ddf.catalog.source.IngestException;
 import ddf.catalog.source.SourceUnavailableException;
+import ddf.catalog.source.UnsupportedQueryException;
 import ddf.catalog.util.impl.ResultIterable;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -50,7 +53,12 @@
 import java.util.stream.Collectors;
 import org.apache.commons.lang.StringUtils;
 import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.codice.ddf.commands.catalog.facade.CatalogFacade;
+import org.codice.ddf.commands.catalog.sync.CatalogSync;
+import org.codice.ddf.commands.catalog.sync.CatalogSyncScheduler;
+import org.codice.ddf.commands.catalog.sync.SyncCheckpointStore;
+import org.codice.ddf.commands.catalog.sync.SyncResult;
 import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
 import org.opengis.filter.Filter;
 import org.opengis.filter.sort.SortOrder;
@@ -109,6 +117,123 @@ public abstract class DuplicateCommands extends CqlCommands {
   )
   int maxMetacards;
 
+  @Option(
+    name = "--incremental",
+    required = false,
+    aliases = {"-i"},
+    multiValued = false,
+    description =
+        "Only copy the Metacards created or modified since the previous incremental run, ordered by "
+            + Core.METACARD_MODIFIED
+            + ". The position reached is saved after every batch so an interrupted run resumes where it stopped. The --maxMetacards option is ignored."
+  )
+  boolean incremental = false;
+
+  @Option(
+    name = "--schedule",
+    required = false,
+    multiValued = false,
+    description =
+        "Option to keep running the incremental copy in the background, waiting the given number of seconds between runs. Implies --incremental."
+  )
+  long scheduleSeconds;
+
+  @Option(
+    name = "--unschedule",
+    required = false,
+    multiValued = false,
+    description =
+        "Option to stop running the incremental copy in the background. The filter options have to match the ones it was scheduled with."
+  )
+  boolean unschedule = false;
+
+  SyncCheckpointStore checkpointStore = new SyncCheckpointStore();
+
+  @Reference CatalogSyncScheduler syncScheduler;
+
+  protected boolean isIncremental() {
+    return incremental || scheduleSeconds > 0 || unschedule;
+  }
+
+  /**
+   * Copies the metacards created or modified since the previous run of the named sync, or schedules
+   * or unschedules the sync when asked to.
+   *
+   * @param queryFacade - the CatalogFacade to duplicate from
+   * @param ingestFacade - the CatalogFacade to duplicate to
+   * @param filter - the filter to query with
+   * @param syncName - identifies the sync along with a key of the filter options, since the saved
+   *     position of a sync only applies to the filter it was reached with
+   * @return true if the metacards were copied, false if the sync was only scheduled or unscheduled
+   */
+  protected boolean duplicateIncrementally(
+      CatalogFacade queryFacade,
+      CatalogFacade ingestFacade,
+      Filter filter,
+      String sourceId,
+      String syncName)
+      throws IOException, InterruptedException, UnsupportedQueryException,
+          SourceUnavailableException, FederationException {
+    String name = syncName + "-" + getFilterKey();
+    if (unschedule) {
+      if (syncScheduler.cancel(name)) {
+        console.printf("Stopped the scheduled sync %s.%n", name);
+      } else {
+        console.printf("The sync %s is not scheduled.%n", name);
+      }
+      return false;
+    }
+
+    CatalogSync sync =
+        new CatalogSync(name, queryFacade, ingestFacade, filterBuilder, checkpointStore);
+    sync.setFilter(filter);
+    sync.setSourceId(sourceId);
+    sync.setBatchSize(batchSize);
+    sync.setIngestThreads(Math.max(multithreaded, 1));
+
+    if (scheduleSeconds > 0) {
+      if (!security.javaSubjectHasAdminRole()) {
+        console.println("Only administrators can schedule a sync.");
+        return false;
+      }
+      // Scheduled runs outlive the shell session, so each run gets a current system subject
+      Runnable job =
+          () ->
+              security
+                  .runAsAdmin(security::getSystemSubject)
+                  .execute(
+                      () -> {
+                        try {
+                          SyncResult result = sync.run();
+                          LOGGER.info(
+                              "Sync {} created {} and updated {} records; {} failed.",
+                              name,
+                              result.getCreated(),
+                              result.getUpdated(),
+                              result.getFailed());
+                        } catch (InterruptedException e) {
+                          Thread.currentThread().interrupt();
+                        } catch (Exception e) {
+                          LOGGER.warn("Sync {} failed", name, e);
+                        }
+                      });
+      syncScheduler.schedule(name, job, scheduleSeconds);
+      console.printf("Scheduled the sync %s to run every %d seconds.%n", name, scheduleSeconds);
+      return false;
+    }
+
+    SyncResult result = sync.run();
+    console.printf(
+        "%d record(s) created; %d record(s) updated; %d record(s) unchanged.%n",
+        result.getCreated(), result.getUpdated(), result.getUnchanged());
+
+    ingestedCount.addAndGet((int) result.getSynchronized());
+    failedCount.addAndGet((int) result.getFailed());
+    failedMetacards.addAll(result.getFailedMetacards());
+    writeFailedMetacards();
+    return true;
+  }
+
   /**
    * In batches, loops through a query of the queryFacade and an ingest to the ingestFacade of the
    * metacards from the response until there are no more metacards from the queryFacade or the
@@ -256,6 +381,10 @@ protected void duplicateInBatches(
 
     printProgressAndFlush(start, totalWanted, ingestedCount.get());
 
+    writeFailedMetacards();
+  }
+
+  private void writeFailedMetacards() {
     if (failedCount.get() > 0) {
       LOGGER.info("Not all records were ingested. [{}] failed", failedCount.get());
       if (StringUtils.isNotBlank(failedDir)) {
@@ -118,7 +118,19 @@ protected Object executeWithSubject() throws Exception {
 
     console.println("Starting migration.");
 
-    duplicateInBatches(queryProvider, ingestProvider, getFilter(), fromProviderId);
+    if (isIncremental()) {
+      String syncName =
+          "migrate-"
+              + fromProvider.getClass().getSimpleName()
+              + "-"
+              + toProvider.getClass().getSimpleName();
+      if (!duplicateIncrementally(
+          queryProvider, ingestProvider, getFilter(), fromProviderId, syncName)) {
+        return null;
+      }
+    } else {
+      duplicateInBatches(queryProvider, ingestProvider, getFilter(), fromProviderId);
+    }
 
     console.println();
     long end = System.currentTimeMillis();
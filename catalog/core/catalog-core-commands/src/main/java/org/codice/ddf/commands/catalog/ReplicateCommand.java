@@ -69,7 +69,14 @@ protected Object executeWithSubject() throws Exception {
 
     console.println("Starting replication.");
 
-    duplicateInBatches(framework, catalog, getFilter(), sourceId);
+    if (isIncremental()) {
+      if (!duplicateIncrementally(
+          framework, catalog, getFilter(), sourceId, "replicate-" + sourceId)) {
+        return null;
+      }
+    } else {
+      duplicateInBatches(framework, catalog, getFilter(), sourceId);
+    }
 
     console.println();
     long end = System.currentTimeMillis();
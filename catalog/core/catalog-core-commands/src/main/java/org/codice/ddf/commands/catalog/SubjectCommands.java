@@ -36,7 +36,7 @@ public abstract class SubjectCommands extends CommandSupport {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SubjectCommands.class);
 
-  private final Security security;
+  protected final Security security;
 
   @Option(
     name = "--user",
@@ -0,0 +1,572 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.commands.catalog.sync;
+
+import ddf.catalog.Constants;
+import ddf.catalog.data.Attribute;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.data.types.Core;
+import ddf.catalog.federation.FederationException;
+import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.filter.impl.SortByImpl;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.Update;
+import ddf.catalog.operation.impl.CreateRequestImpl;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+import ddf.catalog.operation.impl.UpdateRequestImpl;
+import ddf.catalog.source.IngestException;
+import ddf.catalog.source.SourceUnavailableException;
+import ddf.catalog.source.UnsupportedQueryException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.codice.ddf.commands.catalog.facade.CatalogFacade;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
+import org.geotools.filter.FilterFactoryImpl;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies the records of a source into a destination catalog, resuming from where the previous run
+ * of the same named sync stopped.
+ *
+ * <p>Records are read in pages ordered by their version attribute ({@link Core#METACARD_MODIFIED}
+ * by default) and then by id. Each page is requested with a keyset filter that starts after the
+ * last record of the previous page instead of an offset, so a page costs the same however deep into
+ * the source it is. One thread fetches pages into a bounded queue that the ingest threads drain, so
+ * fetching blocks when ingest falls behind. Each ingest thread transforms its page, looks up the
+ * versions of the page's records in the destination and creates the missing records and updates the
+ * outdated ones. Records whose destination version is current are left alone.
+ *
+ * <p>The checkpoint is saved after each page once it and every page before it have been ingested
+ * without failures. A failed page stops the checkpoint from moving past it, so the next run fetches
+ * it again while the pages after it that did succeed are found unchanged.
+ *
+ * <p>Records without a version are never synchronized. Keyset paging relies on the source honoring
+ * the secondary sort on id that is requested through {@link Constants#ADDITIONAL_SORT_BYS}.
+ */
+public class CatalogSync {
+
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CatalogSync.class);
+
+  private static final long QUERY_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private static final FilterFactory FILTER_FACTORY = new FilterFactoryImpl();
+
+  private static final Page END = new Page(-1, Collections.emptyList(), null);
+
+  private final String name;
+
+  private final CatalogFacade source;
+
+  private final CatalogFacade destination;
+
+  private final FilterBuilder filterBuilder;
+
+  private final SyncCheckpointStore checkpointStore;
+
+  private Filter filter;
+
+  private String sourceId;
+
+  private String versionAttribute = Core.METACARD_MODIFIED;
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  private int ingestThreads = 1;
+
+  private UnaryOperator<Metacard> transformer = UnaryOperator.identity();
+
+  private Consumer<SyncResult> progressListener = result -> {};
+
+  /**
+   * @param name identifies the checkpoint of this sync in the {@code checkpointStore}
+   * @param source the catalog to copy the records from
+   * @param destination the catalog to copy the records into
+   */
+  public CatalogSync(
+      String name,
+      CatalogFacade source,
+      CatalogFacade destination,
+      FilterBuilder filterBuilder,
+      SyncCheckpointStore checkpointStore) {
+    this.name = name;
+    this.source = source;
+    this.destination = destination;
+    this.filterBuilder = filterBuilder;
+    this.checkpointStore = checkpointStore;
+    this.filter = filterBuilder.attribute(Metacard.ANY_TEXT).is().like().text("*");
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** Restricts the records copied to the ones matching the filter. Copies everything by default. */
+  public void setFilter(Filter filter) {
+    this.filter = filter;
+  }
+
+  /** Sets the id of the source queried through the {@code source} catalog, if any. */
+  public void setSourceId(@Nullable String sourceId) {
+    this.sourceId = sourceId;
+  }
+
+  /** Sets the date attribute that orders the records and tells newer versions from older ones. */
+  public void setVersionAttribute(String versionAttribute) {
+    this.versionAttribute = versionAttribute;
+  }
+
+  public void setBatchSize(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive");
+    }
+    this.batchSize = batchSize;
+  }
+
+  public void setIngestThreads(int ingestThreads) {
+    if (ingestThreads < 1) {
+      throw new IllegalArgumentException("The number of ingest threads must be positive");
+    }
+    this.ingestThreads = ingestThreads;
+  }
+
+  /**
+   * Sets the transformation applied to each record before it is ingested. Records transformed to
+   * {@code null} are skipped.
+   */
+  public void setTransformer(UnaryOperator<Metacard> transformer) {
+    this.transformer = transformer;
+  }
+
+  /** Sets a listener that is called after each page is ingested. */
+  public void setProgressListener(Consumer<SyncResult> progressListener) {
+    this.progressListener = progressListener;
+  }
+
+  /**
+   * Copies the records created or modified since the saved checkpoint, or every record if there is
+   * none.
+   *
+   * @return the counts of this run and the checkpoint reached
+   * @throws IOException if the saved checkpoint could not be read
+   */
+  public SyncResult run()
+      throws IOException, InterruptedException, UnsupportedQueryException,
+          SourceUnavailableException, FederationException {
+    SyncCheckpoint start = checkpointStore.load(name);
+    LOGGER.debug("Starting sync {} from checkpoint {}", name, start);
+
+    SyncResult result = new SyncResult(start);
+    CheckpointTracker tracker = new CheckpointTracker(result);
+    BlockingQueue<Page> queue = new ArrayBlockingQueue<>(ingestThreads);
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            ingestThreads, StandardThreadFactoryBuilder.newThreadFactory("catalogSyncThread"));
+
+    List<Future<Void>> ingesters = new ArrayList<>();
+    for (int i = 0; i < ingestThreads; i++) {
+      ingesters.add(executor.submit(new Ingester(queue, tracker, result)));
+    }
+    executor.shutdown();
+
+    try {
+      fetch(start, queue);
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      throw e;
+    } catch (UnsupportedQueryException
+        | SourceUnavailableException
+        | FederationException
+        | RuntimeException e) {
+      // let the pages already fetched be ingested so that the checkpoint reflects them
+      awaitIngesters(queue, ingesters);
+      throw e;
+    }
+    awaitIngesters(queue, ingesters);
+
+    LOGGER.debug(
+        "Sync {} created {}, updated {}, left {} unchanged and failed {} records. Checkpoint: {}",
+        name,
+        result.getCreated(),
+        result.getUpdated(),
+        result.getUnchanged(),
+        result.getFailed(),
+        result.getCheckpoint());
+    return result;
+  }
+
+  private void awaitIngesters(BlockingQueue<Page> queue, List<Future<Void>> ingesters)
+      throws InterruptedException {
+    for (int i = 0; i < ingesters.size(); i++) {
+      queue.put(END);
+    }
+    for (Future<Void> ingester : ingesters) {
+      try {
+        ingester.get();
+      } catch (ExecutionException e) {
+        LOGGER.debug("Unexpected failure of a sync ingest thread", e.getCause());
+      }
+    }
+  }
+
+  private void fetch(@Nullable SyncCheckpoint start, BlockingQueue<Page> queue)
+      throws InterruptedException, UnsupportedQueryException, SourceUnavailableException,
+          FederationException {
+    SyncCheckpoint position = start;
+    long sequence = 0;
+    while (true) {
+      SourceResponse response = source.query(getPageRequest(position));
+      List<Metacard> metacards =
+          response
+              .getResults()
+              .stream()
+              .map(Result::getMetacard)
+              .filter(Objects::nonNull)
+              .collect(Collectors.toList());
+      if (metacards.isEmpty()) {
+        return;
+      }
+
+      SyncCheckpoint next = getCheckpoint(metacards.get(metacards.size() - 1));
+      if (next == null || next.equals(position)) {
+        LOGGER.warn(
+            "Stopping sync {} because the source did not return records ordered by {} and id.",
+            name,
+            versionAttribute);
+        return;
+      }
+
+      queue.put(new Page(sequence++, metacards, next));
+      position = next;
+
+      if (metacards.size() < batchSize) {
+        return;
+      }
+    }
+  }
+
+  private QueryRequest getPageRequest(@Nullable SyncCheckpoint position) {
+    Filter keyset;
+    if (position == null) {
+      keyset = FILTER_FACTORY.not(filterBuilder.attribute(versionAttribute).is().empty());
+    } else {
+      keyset =
+          filterBuilder.anyOf(
+              filterBuilder.attribute(versionAttribute).is().after().date(position.getModified()),
+              filterBuilder.allOf(
+                  filterBuilder
+                      .attribute(versionAttribute)
+                      .is()
+                      .equalTo()
+                      .date(position.getModified()),
+                  FILTER_FACTORY.greater(
+                      FILTER_FACTORY.property(Core.ID), FILTER_FACTORY.literal(position.getId()))));
+    }
+
+    QueryImpl query =
+        new QueryImpl(
+            filterBuilder.allOf(filter, keyset),
+            1,
+            batchSize,
+            new SortByImpl(versionAttribute, SortOrder.ASCENDING),
+            false,
+            QUERY_TIMEOUT_MILLIS);
+
+    Map<String, Serializable> properties = new HashMap<>();
+    properties.put(
+        Constants.ADDITIONAL_SORT_BYS, new SortBy[] {new SortByImpl(Core.ID, SortOrder.ASCENDING)});
+
+    return new QueryRequestImpl(
+        query, false, sourceId == null ? null : Collections.singletonList(sourceId), properties);
+  }
+
+  /**
+   * Transforms and ingests a page.
+   *
+   * @return true if every record of the page was synchronized
+   */
+  private boolean ingest(List<Metacard> page, SyncResult result) {
+    List<Metacard> metacards =
+        page.stream().map(transformer).filter(Objects::nonNull).collect(Collectors.toList());
+    result.addUnchanged(page.size() - metacards.size());
+    if (metacards.isEmpty()) {
+      return true;
+    }
+
+    Map<String, Date> destinationVersions;
+    try {
+      destinationVersions = getDestinationVersions(metacards);
+    } catch (UnsupportedQueryException | SourceUnavailableException | FederationException e) {
+      LOGGER.debug("Unable to query the destination for the versions of {} records", name, e);
+      result.addFailed(metacards);
+      return false;
+    }
+
+    List<Metacard> toCreate = new ArrayList<>();
+    List<Metacard> toUpdate = new ArrayList<>();
+    for (Metacard metacard : metacards) {
+      if (!destinationVersions.containsKey(metacard.getId())) {
+        toCreate.add(metacard);
+        continue;
+      }
+      Date existing = destinationVersions.get(metacard.getId());
+      Date version = getVersion(metacard);
+      if (existing == null || (version != null && version.after(existing))) {
+        toUpdate.add(metacard);
+      } else {
+        result.addUnchanged(1);
+      }
+    }
+
+    List<Metacard> failed = new ArrayList<>();
+    failed.addAll(create(toCreate, result));
+    failed.addAll(update(toUpdate, result));
+    if (!failed.isEmpty()) {
+      result.addFailed(failed);
+    }
+    return failed.isEmpty();
+  }
+
+  private Map<String, Date> getDestinationVersions(List<Metacard> metacards)
+      throws UnsupportedQueryException, SourceUnavailableException, FederationException {
+    List<Filter> idFilters =
+        metacards
+            .stream()
+            .map(metacard -> filterBuilder.attribute(Core.ID).is().equalTo().text(metacard.getId()))
+            .collect(Collectors.toList());
+
+    QueryImpl query = new QueryImpl(filterBuilder.anyOf(idFilters));
+    query.setPageSize(metacards.size());
+    query.setRequestsTotalResultsCount(false);
+
+    Map<String, Date> versions = new HashMap<>();
+    for (Result result : destination.query(new QueryRequestImpl(query)).getResults()) {
+      Metacard metacard = result.getMetacard();
+      if (metacard != null) {
+        versions.put(metacard.getId(), getVersion(metacard));
+      }
+    }
+    return versions;
+  }
+
+  /** @return the metacards that could not be created */
+  private List<Metacard> create(List<Metacard> metacards, SyncResult result) {
+    if (metacards.isEmpty()) {
+      return Collections.emptyList();
+    }
+    try {
+      List<Metacard> created =
+          destination.create(new CreateRequestImpl(metacards)).getCreatedMetacards();
+      result.addCreated(created.size());
+      return subtract(metacards, created);
+    } catch (IngestException e) {
+      return retrySingly(metacards, single -> create(single, result), e);
+    } catch (SourceUnavailableException | RuntimeException e) {
+      LOGGER.debug("Unable to create {} records", metacards.size(), e);
+      return metacards;
+    }
+  }
+
+  /** @return the metacards that could not be updated */
+  private List<Metacard> update(List<Metacard> metacards, SyncResult result) {
+    if (metacards.isEmpty()) {
+      return Collections.emptyList();
+    }
+    try {
+      String[] ids = metacards.stream().map(Metacard::getId).toArray(String[]::new);
+      List<Metacard> updated =
+          destination
+              .update(new UpdateRequestImpl(ids, metacards))
+              .getUpdatedMetacards()
+              .stream()
+              .map(Update::getNewMetacard)
+              .collect(Collectors.toList());
+      result.addUpdated(updated.size());
+      return subtract(metacards, updated);
+    } catch (IngestException e) {
+      return retrySingly(metacards, single -> update(single, result), e);
+    } catch (SourceUnavailableException | RuntimeException e) {
+      LOGGER.debug("Unable to update {} records", metacards.size(), e);
+      return metacards;
+    }
+  }
+
+  private List<Metacard> retrySingly(
+      List<Metacard> metacards,
+      Function<List<Metacard>, List<Metacard>> operation,
+      IngestException cause) {
+    if (metacards.size() == 1) {
+      LOGGER.debug("Unable to ingest record {}", metacards.get(0).getId(), cause);
+      return metacards;
+    }
+    LOGGER.debug("Error ingesting {} records. Retrying individually.", metacards.size(), cause);
+    return metacards
+        .stream()
+        .flatMap(metacard -> operation.apply(Collections.singletonList(metacard)).stream())
+        .collect(Collectors.toList());
+  }
+
+  private List<Metacard> subtract(List<Metacard> requested, List<Metacard> ingested) {
+    Set<String> ingestedIds =
+        ingested.stream().filter(Objects::nonNull).map(Metacard::getId).collect(Collectors.toSet());
+    return requested
+        .stream()
+        .filter(metacard -> !ingestedIds.contains(metacard.getId()))
+        .collect(Collectors.toList());
+  }
+
+  @Nullable
+  private Date getVersion(Metacard metacard) {
+    Attribute attribute = metacard.getAttribute(versionAttribute);
+    if (attribute != null && attribute.getValue() instanceof Date) {
+      return (Date) attribute.getValue();
+    }
+    return null;
+  }
+
+  @Nullable
+  private SyncCheckpoint getCheckpoint(Metacard metacard) {
+    Date version = getVersion(metacard);
+    if (version == null || metacard.getId() == null) {
+      return null;
+    }
+    return new SyncCheckpoint(version, metacard.getId());
+  }
+
+  /** A page of records along with the checkpoint reached once it is ingested. */
+  private static class Page {
+
+    private final long sequence;
+
+    private final List<Metacard> metacards;
+
+    private final SyncCheckpoint checkpoint;
+
+    Page(long sequence, List<Metacard> metacards, SyncCheckpoint checkpoint) {
+      this.sequence = sequence;
+      this.metacards = metacards;
+      this.checkpoint = checkpoint;
+    }
+  }
+
+  private class Ingester implements Callable<Void> {
+
+    private final BlockingQueue<Page> queue;
+
+    private final CheckpointTracker tracker;
+
+    private final SyncResult result;
+
+    Ingester(BlockingQueue<Page> queue, CheckpointTracker tracker, SyncResult result) {
+      this.queue = queue;
+      this.tracker = tracker;
+      this.result = result;
+    }
+
+    @Override
+    public Void call() throws InterruptedException {
+      while (true) {
+        Page page = queue.take();
+        if (page == END) {
+          return null;
+        }
+
+        boolean succeeded = false;
+        try {
+          succeeded = ingest(page.metacards, result);
+        } catch (RuntimeException e) {
+          LOGGER.debug("Unexpected error ingesting a page of {}", name, e);
+          result.addFailed(page.metacards);
+        } finally {
+          tracker.complete(page, succeeded);
+        }
+        try {
+          progressListener.accept(result);
+        } catch (RuntimeException e) {
+          LOGGER.debug("Progress listener of sync {} failed", name, e);
+        }
+      }
+    }
+  }
+
+  /** Saves the checkpoint of the last page that it and all of the pages before it succeeded. */
+  private class CheckpointTracker {
+
+    private final SyncResult result;
+
+    private final SortedMap<Long, SyncCheckpoint> completed = new TreeMap<>();
+
+    private long nextSequence = 0;
+
+    private long firstFailure = Long.MAX_VALUE;
+
+    CheckpointTracker(SyncResult result) {
+      this.result = result;
+    }
+
+    synchronized void complete(Page page, boolean succeeded) {
+      if (!succeeded) {
+        firstFailure = Math.min(firstFailure, page.sequence);
+      }
+      completed.put(page.sequence, page.checkpoint);
+
+      SyncCheckpoint checkpoint = null;
+      while (nextSequence < firstFailure && completed.containsKey(nextSequence)) {
+        checkpoint = completed.remove(nextSequence++);
+      }
+      if (checkpoint == null) {
+        return;
+      }
+
+      try {
+        checkpointStore.save(name, checkpoint);
+        result.setCheckpoint(checkpoint);
+      } catch (IOException e) {
+        LOGGER.warn("Unable to save the checkpoint of sync {}", name, e);
+      }
+    }
+  }
+}
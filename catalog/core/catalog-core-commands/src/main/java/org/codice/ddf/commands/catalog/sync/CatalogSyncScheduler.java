@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.commands.catalog.sync;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs {@link CatalogSync}s in the background at a fixed delay so that a mirror is kept current
+ * without anyone running a command. Scheduled syncs run one at a time and each run only copies the
+ * records changed since the previous one. The scheduler is a service of the commands bundle and its
+ * thread is stopped with the bundle.
+ */
+public class CatalogSyncScheduler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CatalogSyncScheduler.class);
+
+  private static final int SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(
+          StandardThreadFactoryBuilder.newThreadFactory("catalogSyncSchedulerThread"));
+
+  private final Map<String, ScheduledFuture<?>> scheduledSyncs = new ConcurrentHashMap<>();
+
+  /**
+   * Runs the job every {@code intervalSeconds} seconds after the previous run finished, starting
+   * now. A job already scheduled under the same name is replaced.
+   *
+   * @param name the name of the sync the job runs
+   * @param job runs the sync and reports its outcome; any exception it throws is logged
+   */
+  public void schedule(String name, Runnable job, long intervalSeconds) {
+    if (intervalSeconds < 1) {
+      throw new IllegalArgumentException("The sync interval must be at least one second");
+    }
+
+    ScheduledFuture<?> future =
+        executor.scheduleWithFixedDelay(
+            () -> {
+              try {
+                job.run();
+              } catch (RuntimeException e) {
+                LOGGER.warn("Scheduled sync {} failed", name, e);
+              }
+            },
+            0,
+            intervalSeconds,
+            TimeUnit.SECONDS);
+
+    ScheduledFuture<?> previous = scheduledSyncs.put(name, future);
+    if (previous != null) {
+      previous.cancel(false);
+    }
+  }
+
+  /**
+   * Stops running the named sync. A run in progress is allowed to finish.
+   *
+   * @return true if the sync was scheduled
+   */
+  public boolean cancel(String name) {
+    ScheduledFuture<?> future = scheduledSyncs.remove(name);
+    if (future == null) {
+      return false;
+    }
+    future.cancel(false);
+    return true;
+  }
+
+  public Set<String> getScheduledSyncs() {
+    return new TreeSet<>(scheduledSyncs.keySet());
+  }
+
+  /** Cancels every scheduled sync and interrupts a run in progress. */
+  public void destroy() {
+    scheduledSyncs.clear();
+    executor.shutdownNow();
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOGGER.warn(
+            "The catalog sync scheduler did not stop within {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.commands.catalog.sync;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Position reached by a {@link CatalogSync}: the version date of the last record synchronized and
+ * its id, which breaks ties between records that share the same version date.
+ */
+public class SyncCheckpoint {
+
+  private final Date modified;
+
+  private final String id;
+
+  public SyncCheckpoint(Date modified, String id) {
+    this.modified = new Date(modified.getTime());
+    this.id = id;
+  }
+
+  public Date getModified() {
+    return new Date(modified.getTime());
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    SyncCheckpoint that = (SyncCheckpoint) o;
+    return modified.equals(that.modified) && Objects.equals(id, that.id);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(modified, id);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%tFT%<tT.%<tLZ/%s", modified, id);
+  }
+}
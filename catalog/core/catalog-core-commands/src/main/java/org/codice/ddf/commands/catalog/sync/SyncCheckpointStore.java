@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.commands.catalog.sync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Properties;
+import javax.annotation.Nullable;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Stores the {@link SyncCheckpoint} of each named sync in its own properties file. Files are
+ * replaced atomically so that a crash while saving leaves the previous checkpoint in place.
+ */
+public class SyncCheckpointStore {
+
+  private static final String MODIFIED_KEY = "modified";
+
+  private static final String ID_KEY = "id";
+
+  private final Path directory;
+
+  /** Creates a store under {@code <ddf.home>/data/sync}. */
+  public SyncCheckpointStore() {
+    this(Paths.get(System.getProperty("ddf.home", ""), "data", "sync"));
+  }
+
+  public SyncCheckpointStore(Path directory) {
+    this.directory = directory;
+  }
+
+  /** @return the saved checkpoint of the sync, or {@code null} if it has never completed a page */
+  @Nullable
+  public SyncCheckpoint load(String name) throws IOException {
+    Path file = getFile(name);
+    if (!file.toFile().exists()) {
+      return null;
+    }
+
+    Properties properties = new Properties();
+    try (InputStream inputStream = Files.newInputStream(file)) {
+      properties.load(inputStream);
+    }
+
+    String modified = properties.getProperty(MODIFIED_KEY);
+    if (StringUtils.isBlank(modified)) {
+      return null;
+    }
+    try {
+      return new SyncCheckpoint(
+          new Date(Long.parseLong(modified)), properties.getProperty(ID_KEY, ""));
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid checkpoint in " + file, e);
+    }
+  }
+
+  public void save(String name, SyncCheckpoint checkpoint) throws IOException {
+    Files.createDirectories(directory);
+
+    Properties properties = new Properties();
+    properties.setProperty(MODIFIED_KEY, Long.toString(checkpoint.getModified().getTime()));
+    properties.setProperty(ID_KEY, checkpoint.getId());
+
+    Path file = getFile(name);
+    Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      try (OutputStream outputStream = Files.newOutputStream(temp)) {
+        properties.store(outputStream, "Checkpoint of sync " + name);
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /** Forgets the checkpoint so that the next run of the sync starts from the beginning. */
+  public void delete(String name) throws IOException {
+    Files.deleteIfExists(getFile(name));
+  }
+
+  private Path getFile(String name) {
+    return directory.resolve(name.replaceAll("[^A-Za-z0-9._-]", "_") + ".properties");
+  }
+}
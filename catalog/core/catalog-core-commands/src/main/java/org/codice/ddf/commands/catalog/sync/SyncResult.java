@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.commands.catalog.sync;
+
+import ddf.catalog.data.Metacard;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/** Counts of what a single run of a {@link CatalogSync} did. */
+public class SyncResult {
+
+  private final AtomicLong created = new AtomicLong();
+
+  private final AtomicLong updated = new AtomicLong();
+
+  private final AtomicLong unchanged = new AtomicLong();
+
+  private final AtomicLong failed = new AtomicLong();
+
+  private final List<Metacard> failedMetacards = new ArrayList<>();
+
+  private volatile SyncCheckpoint checkpoint;
+
+  SyncResult(@Nullable SyncCheckpoint checkpoint) {
+    this.checkpoint = checkpoint;
+  }
+
+  /** @return the number of records that did not exist in the destination */
+  public long getCreated() {
+    return created.get();
+  }
+
+  /** @return the number of records that had an older version in the destination */
+  public long getUpdated() {
+    return updated.get();
+  }
+
+  /** @return the number of records whose version in the destination was already current */
+  public long getUnchanged() {
+    return unchanged.get();
+  }
+
+  public long getFailed() {
+    return failed.get();
+  }
+
+  /** @return the number of records that were created or updated */
+  public long getSynchronized() {
+    return getCreated() + getUpdated();
+  }
+
+  public synchronized List<Metacard> getFailedMetacards() {
+    return new ArrayList<>(failedMetacards);
+  }
+
+  /** @return the checkpoint the next run will start from, or {@code null} if none */
+  @Nullable
+  public SyncCheckpoint getCheckpoint() {
+    return checkpoint;
+  }
+
+  void addCreated(long count) {
+    created.addAndGet(count);
+  }
+
+  void addUpdated(long count) {
+    updated.addAndGet(count);
+  }
+
+  void addUnchanged(long count) {
+    unchanged.addAndGet(count);
+  }
+
+  synchronized void addFailed(List<Metacard> metacards) {
+    failed.addAndGet(metacards.size());
+    failedMetacards.addAll(metacards);
+  }
+
+  void setCheckpoint(SyncCheckpoint checkpoint) {
+    this.checkpoint = checkpoint;
+  }
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.commands.catalog.sync;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.data.types.Core;
+import ddf.catalog.filter.proxy.builder.GeotoolsFilterBuilder;
+import ddf.catalog.operation.CreateRequest;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.UpdateRequest;
+import ddf.catalog.operation.UpdateResponse;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.UpdateImpl;
+import ddf.catalog.source.SourceUnavailableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.codice.ddf.commands.catalog.facade.CatalogFacade;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.opengis.filter.And;
+import org.opengis.filter.Not;
+import org.opengis.filter.Or;
+
+public class CatalogSyncTest {
+
+  private static final String SYNC_NAME = "replicate-source";
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private CatalogFacade source;
+
+  private CatalogFacade destination;
+
+  private SyncCheckpointStore checkpointStore;
+
+  private CatalogSync catalogSync;
+
+  @Before
+  public void setUp() throws Exception {
+    source = mock(CatalogFacade.class);
+    destination = mock(CatalogFacade.class);
+    checkpointStore = new SyncCheckpointStore(temporaryFolder.getRoot().toPath());
+
+    catalogSync =
+        new CatalogSync(
+            SYNC_NAME, source, destination, new GeotoolsFilterBuilder(), checkpointStore);
+    catalogSync.setSourceId("source");
+    catalogSync.setBatchSize(2);
+
+    mockDestinationContents();
+    when(destination.create(any(CreateRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              CreateRequest request = (CreateRequest) invocation.getArguments()[0];
+              CreateResponse response = mock(CreateResponse.class);
+              when(response.getCreatedMetacards()).thenReturn(request.getMetacards());
+              return response;
+            });
+    when(destination.update(any(UpdateRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              UpdateRequest request = (UpdateRequest) invocation.getArguments()[0];
+              UpdateResponse response = mock(UpdateResponse.class);
+              when(response.getUpdatedMetacards())
+                  .thenReturn(
+                      request
+                          .getUpdates()
+                          .stream()
+                          .map(update -> new UpdateImpl(update.getValue(), update.getValue()))
+                          .collect(Collectors.toList()));
+              return response;
+            });
+  }
+
+  @Test
+  public void testCreatesMissingAndUpdatesOutdatedRecords() throws Exception {
+    Metacard created = metacard("1", 1000);
+    Metacard updated = metacard("2", 2000);
+    Metacard unchanged = metacard("3", 3000);
+    mockSourcePages(Arrays.asList(created, updated), Collections.singletonList(unchanged));
+    mockDestinationContents(metacard("2", 1500), metacard("3", 3000));
+
+    SyncResult result = catalogSync.run();
+
+    assertThat(result.getCreated(), is(1L));
+    assertThat(result.getUpdated(), is(1L));
+    assertThat(result.getUnchanged(), is(1L));
+    assertThat(result.getFailed(), is(0L));
+
+    ArgumentCaptor<CreateRequest> createCaptor = ArgumentCaptor.forClass(CreateRequest.class);
+    verify(destination).create(createCaptor.capture());
+    assertThat(createCaptor.getValue().getMetacards(), contains(created));
+    ArgumentCaptor<UpdateRequest> updateCaptor = ArgumentCaptor.forClass(UpdateRequest.class);
+    verify(destination).update(updateCaptor.capture());
+    assertThat(updateCaptor.getValue().getUpdates().get(0).getValue(), is(updated));
+
+    SyncCheckpoint expected = new SyncCheckpoint(new Date(3000), "3");
+    assertThat(result.getCheckpoint(), is(expected));
+    assertThat(checkpointStore.load(SYNC_NAME), is(expected));
+  }
+
+  @Test
+  public void testFirstRunQueriesAllVersionedRecords() throws Exception {
+    mockSourcePages(Collections.emptyList());
+
+    catalogSync.run();
+
+    QueryRequest request = getSourceRequests(1).get(0);
+    assertThat(request.getSourceIds(), contains("source"));
+    assertThat(
+        request.getQuery().getSortBy().getPropertyName().getPropertyName(),
+        is(Core.METACARD_MODIFIED));
+    assertThat(getKeysetFilter(request), instanceOf(Not.class));
+    verify(destination, never()).create(any(CreateRequest.class));
+  }
+
+  @Test
+  public void testResumesAfterSavedCheckpoint() throws Exception {
+    checkpointStore.save(SYNC_NAME, new SyncCheckpoint(new Date(3000), "3"));
+    mockSourcePages(Collections.singletonList(metacard("4", 4000)));
+
+    SyncResult result = catalogSync.run();
+
+    assertThat(getKeysetFilter(getSourceRequests(1).get(0)), instanceOf(Or.class));
+    assertThat(result.getCreated(), is(1L));
+    assertThat(checkpointStore.load(SYNC_NAME), is(new SyncCheckpoint(new Date(4000), "4")));
+  }
+
+  @Test
+  public void testFullPageFetchesNextPage() throws Exception {
+    mockSourcePages(
+        Arrays.asList(metacard("1", 1000), metacard("2", 2000)),
+        Arrays.asList(metacard("3", 3000), metacard("4", 4000)),
+        Collections.emptyList());
+
+    SyncResult result = catalogSync.run();
+
+    getSourceRequests(3);
+    assertThat(result.getCreated(), is(4L));
+    assertThat(checkpointStore.load(SYNC_NAME), is(new SyncCheckpoint(new Date(4000), "4")));
+  }
+
+  @Test
+  public void testFailedPageDoesNotAdvanceCheckpoint() throws Exception {
+    catalogSync.setBatchSize(1);
+    Metacard failed = metacard("1", 1000);
+    mockSourcePages(
+        Collections.singletonList(failed),
+        Collections.singletonList(metacard("2", 2000)),
+        Collections.emptyList());
+    doThrow(new SourceUnavailableException("unavailable"))
+        .doAnswer(
+            invocation -> {
+              CreateRequest request = (CreateRequest) invocation.getArguments()[0];
+              CreateResponse response = mock(CreateResponse.class);
+              when(response.getCreatedMetacards()).thenReturn(request.getMetacards());
+              return response;
+            })
+        .when(destination)
+        .create(any(CreateRequest.class));
+
+    SyncResult result = catalogSync.run();
+
+    assertThat(result.getCreated(), is(1L));
+    assertThat(result.getFailed(), is(1L));
+    assertThat(result.getFailedMetacards(), contains(failed));
+    assertThat(result.getCheckpoint(), is(nullValue()));
+    assertThat(checkpointStore.load(SYNC_NAME), is(nullValue()));
+  }
+
+  private Metacard metacard(String id, long modified) {
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setId(id);
+    metacard.setAttribute(Core.METACARD_MODIFIED, new Date(modified));
+    return metacard;
+  }
+
+  @SafeVarargs
+  private final void mockSourcePages(List<Metacard>... pages) throws Exception {
+    List<SourceResponse> responses = new ArrayList<>();
+    for (List<Metacard> page : pages) {
+      responses.add(response(page));
+    }
+    when(source.query(any(QueryRequest.class)))
+        .thenReturn(
+            responses.get(0),
+            responses.subList(1, responses.size()).toArray(new SourceResponse[0]));
+  }
+
+  private void mockDestinationContents(Metacard... metacards) throws Exception {
+    SourceResponse response = response(Arrays.asList(metacards));
+    when(destination.query(any(QueryRequest.class))).thenReturn(response);
+  }
+
+  private SourceResponse response(List<Metacard> metacards) {
+    List<Result> results = metacards.stream().map(ResultImpl::new).collect(Collectors.toList());
+    SourceResponse response = mock(SourceResponse.class);
+    when(response.getResults()).thenReturn(results);
+    return response;
+  }
+
+  private List<QueryRequest> getSourceRequests(int count) throws Exception {
+    ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+    verify(source, times(count)).query(captor.capture());
+    return captor.getAllValues();
+  }
+
+  private Object getKeysetFilter(QueryRequest request) {
+    return ((And) ((QueryImpl) request.getQuery()).getFilter()).getChildren().get(1);
+  }
+}
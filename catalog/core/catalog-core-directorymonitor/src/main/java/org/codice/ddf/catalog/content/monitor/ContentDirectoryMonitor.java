@@ -91,6 +91,10 @@ public class ContentDirectoryMonitor implements DirectoryMonitor {
 
   private Integer readLockIntervalMilliseconds;
 
+  private Integer maxBatchSize = 1;
+
+  private boolean eventDrivenMonitoring = false;
+
   Processor systemSubjectBinder = new SystemSubjectBinder();
 
   /**
@@ -149,6 +153,25 @@ public Integer getNumThreads() {
     return numThreads;
   }
 
+  /**
+   * Set the maximum number of files created in one request. If the given argument is less than 1,
+   * maxBatchSize is set to 1, which creates every file on its own.
+   *
+   * <p>A batch is formed from the files that are processed at the same time, so only up to
+   * numThreads files are created together.
+   *
+   * @param maxBatchSize - the maximum number of files to create in one request
+   */
+  public void setMaxBatchSize(Integer maxBatchSize) {
+    if (maxBatchSize != null) {
+      this.maxBatchSize = Math.max(maxBatchSize, 1);
+    }
+  }
+
+  public Integer getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
   /**
    * Set the read lock interval for the Camel Route with the given argument. If the
    * readLockIntervalMilliseconds is less than 100, set it to 100.
@@ -164,6 +187,20 @@ public Integer getReadLockIntervalMilliseconds() {
     return readLockIntervalMilliseconds;
   }
 
+  /**
+   * Set whether a monitor in place watches the file system for changes instead of comparing the
+   * whole directory on every poll. Has no effect for WebDAV directories.
+   *
+   * @param eventDrivenMonitoring
+   */
+  public void setEventDrivenMonitoring(Boolean eventDrivenMonitoring) {
+    this.eventDrivenMonitoring = Boolean.TRUE.equals(eventDrivenMonitoring);
+  }
+
+  public boolean isEventDrivenMonitoring() {
+    return eventDrivenMonitoring;
+  }
+
   /**
    * Invoked after all of the setter methods have been called (for initial route creation), and also
    * called whenever an existing route is updated.
@@ -230,6 +267,8 @@ public void updateCallback(Map<String, Object> properties) {
       setProcessingMechanism((String) properties.get("processingMechanism"));
       setNumThreads((Integer) properties.get("numThreads"));
       setReadLockIntervalMilliseconds((Integer) properties.get("readLockIntervalMilliseconds"));
+      setMaxBatchSize((Integer) properties.get("maxBatchSize"));
+      setEventDrivenMonitoring((Boolean) properties.get("eventDrivenMonitoring"));
 
       String[] parameterArray = (String[]) properties.get(Constants.ATTRIBUTE_OVERRIDES_KEY);
       if (parameterArray != null) {
@@ -378,6 +417,8 @@ public void configure() throws Exception {
             stringBuilder = new StringBuilder("durable:" + monitoredDirectory);
             if (isDav) {
               stringBuilder.append("?isDav=true");
+            } else if (eventDrivenMonitoring) {
+              stringBuilder.append("?eventDriven=true");
             }
             break;
         }
@@ -401,7 +442,10 @@ public void configure() throws Exception {
               .end()
               .to("catalog:framework");
         } else {
-          td.to("content:framework");
+          // Files can only be batched with the files being processed on the other threads
+          int batchSize = Math.min(maxBatchSize, numThreads);
+          td.to(
+              batchSize > 1 ? "content:framework?maxBatchSize=" + batchSize : "content:framework");
         }
       }
     };
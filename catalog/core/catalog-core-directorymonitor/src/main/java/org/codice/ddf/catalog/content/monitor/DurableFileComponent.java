@@ -42,13 +42,17 @@ protected GenericFileEndpoint<File> buildFileEndpoint(
     boolean isDav = Boolean.parseBoolean(davParam);
     parameters.remove("isDav");
 
+    boolean isEventDriven = Boolean.parseBoolean(String.valueOf(parameters.get("eventDriven")));
+    parameters.remove("eventDriven");
+
     GenericFileConfiguration config = new GenericFileConfiguration();
     File file = new File(remaining);
     if (isDav) {
       file = new File("");
     }
     config.setDirectory(file.getCanonicalPath());
-    DurableFileEndpoint result = new DurableFileEndpoint(uri, remaining, isDav, this);
+    DurableFileEndpoint result =
+        new DurableFileEndpoint(uri, remaining, isDav, isEventDriven, this);
     result.setFile(file);
     result.setConfiguration(config);
 
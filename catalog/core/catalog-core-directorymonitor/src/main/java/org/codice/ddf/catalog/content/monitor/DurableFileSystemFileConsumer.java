@@ -31,19 +31,30 @@ public class DurableFileSystemFileConsumer extends AbstractDurableFileConsumer {
 
   private AsyncFileAlterationObserver observer;
 
+  private EventDrivenFileAlterationObserver eventDrivenObserver;
+
+  private final boolean isEventDriven;
+
   DurableFileSystemFileConsumer(
       GenericFileEndpoint<File> endpoint,
       String remaining,
       Processor processor,
       GenericFileOperations<File> operations,
-      GenericFileProcessStrategy<File> processStrategy) {
+      GenericFileProcessStrategy<File> processStrategy,
+      boolean isEventDriven) {
     super(endpoint, remaining, processor, operations, processStrategy);
     listener = new DurableFileAlterationListener(this);
+    this.isEventDriven = isEventDriven;
   }
 
   @Override
   protected boolean doPoll(String sha1) {
-    if (observer != null) {
+    if (eventDrivenObserver != null) {
+      eventDrivenObserver.setListener(listener);
+      eventDrivenObserver.checkAndNotify();
+      eventDrivenObserver.removeListener();
+      return true;
+    } else if (observer != null) {
       observer.setListener(listener);
       observer.checkAndNotify();
       observer.removeListener();
@@ -62,6 +73,11 @@ protected void initialize(String fileName) {
       jsonSerializer = new JsonPersistantStore(getClass().getSimpleName());
     }
 
+    if (isEventDriven) {
+      initializeEventDriven(fileName);
+      return;
+    }
+
     if (observer == null && fileName != null) {
 
       observer = AsyncFileAlterationObserver.load(new File(fileName), jsonSerializer);
@@ -75,6 +91,23 @@ protected void initialize(String fileName) {
     }
   }
 
+  private void initializeEventDriven(String fileName) {
+    if (eventDrivenObserver != null || fileName == null) {
+      return;
+    }
+
+    File monitoredFile = new File(fileName);
+    eventDrivenObserver =
+        new EventDrivenFileAlterationObserver(monitoredFile, FileStateJournal.open(fileName));
+
+    //  Carry over the state of the polling observer so that its files are not processed again
+    AsyncFileEntry previousState =
+        jsonSerializer.load(monitoredFile.getName(), AsyncFileEntry.class);
+    if (previousState != null) {
+      eventDrivenObserver.importState(previousState);
+    }
+  }
+
   private boolean isOldVersion(String fileName) {
     String sha1 = DigestUtils.sha1Hex(fileName);
     return fileSystemPersistenceProvider.loadAllKeys().contains(sha1);
@@ -106,5 +139,8 @@ private AsyncFileAlterationObserver backwardsCompatibility(String fileName) {
   public void shutdown() throws Exception {
     super.shutdown();
     listener.destroy();
+    if (eventDrivenObserver != null) {
+      eventDrivenObserver.close();
+    }
   }
 }
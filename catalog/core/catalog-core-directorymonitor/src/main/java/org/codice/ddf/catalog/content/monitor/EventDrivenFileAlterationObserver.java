@@ -0,0 +1,487 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.content.monitor;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.apache.camel.Exchange;
+import org.apache.camel.spi.Synchronization;
+import org.codice.ddf.catalog.content.monitor.FileStateJournal.FileState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Event driven counterpart of {@link AsyncFileAlterationObserver}.
+ *
+ * <p>Instead of walking and comparing the whole directory tree on every poll, the directories are
+ * registered with a {@link WatchService} and only the paths reported by it are examined when {@link
+ * #checkAndNotify()} is called. The state of successfully processed files is kept in a {@link
+ * FileStateJournal}, so committing a file only appends a record rather than rewriting the state of
+ * the whole tree.
+ *
+ * <p>A full reconciliation scan of the directory is still done when the observer starts, when the
+ * {@link WatchService} reports that events were lost, when it can not be used for the monitored
+ * file system, and every {@code reconciliationIntervalMillis} as a safety net.
+ *
+ * <p>Files that fail to process are retried on the next call to {@link #checkAndNotify()}. Like the
+ * {@link AsyncFileAlterationObserver}, {@link #checkAndNotify()} returns {@code false} without
+ * doing anything while files from a previous call are still being processed.
+ *
+ * @see AsyncFileAlterationListener
+ */
+public class EventDrivenFileAlterationObserver implements Closeable {
+
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(EventDrivenFileAlterationObserver.class);
+
+  static final long DEFAULT_RECONCILIATION_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private final Path root;
+
+  private final FileStateJournal journal;
+
+  private final long reconciliationIntervalMillis;
+
+  private final AtomicLong processing = new AtomicLong(0);
+
+  private final Object processingLock = new Object();
+
+  private final Object listenerLock = new Object();
+
+  private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+  private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+  private AsyncFileAlterationListener listener = null;
+
+  @Nullable private WatchService watchService;
+
+  private boolean isProcessing = false;
+
+  private boolean fullScanRequired = true;
+
+  private long lastFullScan = 0;
+
+  public EventDrivenFileAlterationObserver(File fileToObserve, FileStateJournal journal) {
+    this(fileToObserve, journal, DEFAULT_RECONCILIATION_INTERVAL_MILLIS);
+  }
+
+  public EventDrivenFileAlterationObserver(
+      File fileToObserve, FileStateJournal journal, long reconciliationIntervalMillis) {
+    if (fileToObserve == null || journal == null) {
+      throw new IllegalArgumentException("Arguments can not be null");
+    }
+    this.root = fileToObserve.toPath().toAbsolutePath();
+    this.journal = journal;
+    this.reconciliationIntervalMillis = reconciliationIntervalMillis;
+  }
+
+  /**
+   * Seeds an empty journal with the state kept by an {@link AsyncFileAlterationObserver} for the
+   * same directory, so that switching to this observer does not process every file again. Files
+   * that changed since they were committed are recorded with an unknown state so that they are
+   * reported as changed rather than created.
+   *
+   * @param rootEntry the root entry loaded from the {@link ObjectPersistentStore}
+   */
+  public void importState(AsyncFileEntry rootEntry) {
+    if (!journal.isEmpty()) {
+      return;
+    }
+    rootEntry.initialize();
+    importEntries(rootEntry);
+    journal.flush();
+  }
+
+  private void importEntries(AsyncFileEntry parent) {
+    for (AsyncFileEntry entry : parent.getChildren()) {
+      if (entry.isDirectory()) {
+        importEntries(entry);
+        continue;
+      }
+      File file = entry.getFile();
+      String path = file.getAbsolutePath();
+      if (file.isFile() && !entry.hasChanged()) {
+        journal.put(path, file.length(), file.lastModified());
+      } else {
+        journal.put(path, -1, -1);
+      }
+    }
+  }
+
+  public void setListener(final AsyncFileAlterationListener listener) {
+    synchronized (listenerLock) {
+      this.listener = listener;
+    }
+  }
+
+  public void removeListener() {
+    synchronized (listenerLock) {
+      this.listener = null;
+    }
+  }
+
+  /**
+   * Notifies the listener of the files that were created, changed or deleted since the last call.
+   *
+   * @return {@code false} if files from the previous call are still processing, another thread is
+   *     already inside this method, or there is no listener
+   */
+  public boolean checkAndNotify() {
+    AsyncFileAlterationListener listenerCopy;
+
+    synchronized (processingLock) {
+      if (processing.get() != 0) {
+        LOGGER.debug(
+            "{} files are still processing. Waiting until the list is empty", processing.get());
+        return false;
+      } else if (isProcessing) {
+        LOGGER.debug("Another thread is currently running, returning until next poll");
+        return false;
+      }
+
+      isProcessing = true;
+      synchronized (listenerLock) {
+        if (listener == null) {
+          isProcessing = false;
+          return false;
+        }
+        listenerCopy = listener;
+      }
+    }
+
+    try {
+      if (Files.isDirectory(root)) {
+        notifyChanges(listenerCopy);
+      } else {
+        //  If we can't reach the directory then the files don't exist to us now.
+        LOGGER.debug(
+            "The monitored directory [{}] does not exist. No files will be processed", root);
+        closeWatchService();
+      }
+    } finally {
+      synchronized (processingLock) {
+        isProcessing = false;
+        if (processing.get() == 0) {
+          journal.flush();
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void close() {
+    closeWatchService();
+    journal.close();
+  }
+
+  @VisibleForTesting
+  boolean isWatching() {
+    return watchService != null;
+  }
+
+  private void notifyChanges(AsyncFileAlterationListener listenerCopy) {
+    if (watchService == null) {
+      startWatching();
+    }
+    drainEvents();
+
+    long now = System.currentTimeMillis();
+    if (fullScanRequired
+        || watchService == null
+        || now - lastFullScan >= reconciliationIntervalMillis) {
+      pending.clear();
+      fullScanRequired = !reconcile(root, listenerCopy);
+      lastFullScan = now;
+      return;
+    }
+
+    SortedSet<Path> changed = new TreeSet<>(pending);
+    pending.removeAll(changed);
+    for (Path path : changed) {
+      if (Files.isDirectory(path)) {
+        if (!reconcile(path, listenerCopy)) {
+          fullScanRequired = true;
+        }
+      } else if (Files.isRegularFile(path)) {
+        checkFile(path, listenerCopy);
+      } else {
+        checkDeleted(path, listenerCopy);
+      }
+    }
+  }
+
+  private void startWatching() {
+    try {
+      watchService = root.getFileSystem().newWatchService();
+      register(root);
+    } catch (IOException | UnsupportedOperationException e) {
+      LOGGER.debug(
+          "Unable to watch [{}] for changes, falling back to scanning the directory.", root, e);
+      closeWatchService();
+    }
+    fullScanRequired = true;
+  }
+
+  private void register(Path directory) throws IOException {
+    Files.walkFileTree(
+        directory,
+        EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+        Integer.MAX_VALUE,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+              throws IOException {
+            if (watchService != null) {
+              watchedDirectories.put(
+                  dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) {
+            LOGGER.debug("Unable to watch [{}] for changes.", file, e);
+            fullScanRequired = true;
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  private void drainEvents() {
+    if (watchService == null) {
+      return;
+    }
+
+    WatchKey key;
+    while ((key = watchService.poll()) != null) {
+      Path directory = watchedDirectories.get(key);
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == OVERFLOW || directory == null) {
+          fullScanRequired = true;
+          continue;
+        }
+        Path child = directory.resolve((Path) event.context());
+        boolean isDirectory = Files.isDirectory(child);
+        if (event.kind() == ENTRY_MODIFY && isDirectory) {
+          //  Changes to the contents of a sub-directory are reported by its own watch key
+          continue;
+        }
+        pending.add(child);
+        if (event.kind() == ENTRY_CREATE && isDirectory) {
+          try {
+            register(child);
+          } catch (IOException e) {
+            LOGGER.debug("Unable to watch the new directory [{}] for changes.", child, e);
+            fullScanRequired = true;
+          }
+        }
+      }
+      if (!key.reset()) {
+        watchedDirectories.remove(key);
+        if (directory != null) {
+          pending.add(directory);
+        }
+      }
+    }
+  }
+
+  /**
+   * Compares every file beneath {@code directory} with the journal.
+   *
+   * @return {@code false} if part of the directory could not be read, in which case deletions are
+   *     not reported since the files may only be temporarily unreachable
+   */
+  private boolean reconcile(Path directory, AsyncFileAlterationListener listenerCopy) {
+    SortedSet<Path> files = new TreeSet<>();
+    boolean[] complete = {true};
+    try {
+      Files.walkFileTree(
+          directory,
+          EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+          Integer.MAX_VALUE,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+              if (attrs.isRegularFile()) {
+                files.add(file);
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+              LOGGER.debug("There was a problem reading [{}].", file, e);
+              complete[0] = false;
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    } catch (IOException e) {
+      LOGGER.info("There was a problem reading the files contained within [{}]", directory);
+      return false;
+    }
+
+    for (Path file : files) {
+      checkFile(file, listenerCopy);
+    }
+
+    if (!complete[0]) {
+      return false;
+    }
+
+    Map<String, FileState> recorded =
+        directory.equals(root)
+            ? journal.getEntries()
+            : journal.getEntriesUnder(directory.toString());
+    List<String> deleted = new ArrayList<>();
+    for (String path : recorded.keySet()) {
+      if (!files.contains(root.getFileSystem().getPath(path))) {
+        deleted.add(path);
+      }
+    }
+    for (String path : deleted) {
+      doDelete(root.getFileSystem().getPath(path), listenerCopy);
+    }
+    return true;
+  }
+
+  private void checkFile(Path file, AsyncFileAlterationListener listenerCopy) {
+    BasicFileAttributes attrs;
+    try {
+      attrs = Files.readAttributes(file, BasicFileAttributes.class);
+    } catch (IOException e) {
+      LOGGER.debug("Unable to read the attributes of [{}], retrying on next poll.", file, e);
+      pending.add(file);
+      return;
+    }
+
+    long length = attrs.size();
+    long lastModified = attrs.lastModifiedTime().toMillis();
+    FileState state = journal.get(file.toString());
+
+    if (state == null) {
+      processing.incrementAndGet();
+      LOGGER.trace("Sending create Request for {}", file);
+      listenerCopy.onFileCreate(
+          file.toFile(),
+          new JournalSynchronization(file, () -> commit(file, length, lastModified)));
+    } else if (state.hasChanged(length, lastModified)) {
+      processing.incrementAndGet();
+      LOGGER.trace("Sending Match Request for {}...", file);
+      listenerCopy.onFileChange(
+          file.toFile(),
+          new JournalSynchronization(file, () -> commit(file, length, lastModified)));
+    }
+  }
+
+  /** Handles a path that no longer exists, which may be a file or a whole directory. */
+  private void checkDeleted(Path path, AsyncFileAlterationListener listenerCopy) {
+    List<String> deleted = new ArrayList<>(journal.getEntriesUnder(path.toString()).keySet());
+    if (journal.get(path.toString()) != null) {
+      deleted.add(path.toString());
+    }
+    for (String file : deleted) {
+      doDelete(root.getFileSystem().getPath(file), listenerCopy);
+    }
+  }
+
+  private void doDelete(Path file, AsyncFileAlterationListener listenerCopy) {
+    processing.incrementAndGet();
+    LOGGER.trace("Sending Delete Request for {}...", file);
+    listenerCopy.onFileDelete(
+        file.toFile(), new JournalSynchronization(file, () -> journal.remove(file.toString())));
+  }
+
+  private void commit(Path file, long length, long lastModified) {
+    journal.put(file.toString(), length, lastModified);
+  }
+
+  private void onFinish() {
+    synchronized (processingLock) {
+      if (processing.decrementAndGet() == 0 && !isProcessing) {
+        journal.flush();
+      }
+    }
+  }
+
+  private void closeWatchService() {
+    watchedDirectories.clear();
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        LOGGER.debug("Unable to close the watch service for [{}].", root, e);
+      }
+      watchService = null;
+    }
+  }
+
+  /** Commits the file to the journal on success and queues it to be retried on failure. */
+  private class JournalSynchronization implements Synchronization {
+
+    private final Path file;
+
+    private final Runnable commit;
+
+    JournalSynchronization(Path file, Runnable commit) {
+      this.file = file;
+      this.commit = commit;
+    }
+
+    @Override
+    public void onComplete(Exchange exchange) {
+      try {
+        commit.run();
+      } finally {
+        onFinish();
+      }
+    }
+
+    @Override
+    public void onFailure(Exchange exchange) {
+      LOGGER.debug("The file [{}] failed to process, retrying on next poll.", file);
+      pending.add(file);
+      onFinish();
+    }
+  }
+}
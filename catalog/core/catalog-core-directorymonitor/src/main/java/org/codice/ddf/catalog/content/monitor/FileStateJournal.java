@@ -0,0 +1,349 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.content.monitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.codice.ddf.configuration.AbsolutePathResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only record of the files that have been successfully processed under a monitored
+ * directory, keyed by absolute path.
+ *
+ * <p>Every change is a small binary record appended to the journal instead of a rewrite of the
+ * whole directory tree, so committing a single file costs the same no matter how many files are
+ * being monitored. The live state is replayed into memory when the journal is opened, and the
+ * journal is compacted once it holds more than twice as many records as there are live entries.
+ *
+ * <p>Appended records are synced to disk by {@link #flush()}, and also once 256 records or one
+ * second's worth of records are waiting, so a steady stream of changes cannot hold them back
+ * indefinitely.
+ *
+ * <p>A record that was only partially written, e.g. because the system went down in the middle of
+ * an append, is dropped on replay and the journal is rewritten without it.
+ */
+public class FileStateJournal implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileStateJournal.class);
+
+  private static final String JOURNAL_SUFFIX = ".journal";
+
+  private static final int MAGIC = 0x43444d4a;
+
+  private static final byte PUT = 1;
+
+  private static final byte REMOVE = 2;
+
+  private static final int MIN_RECORDS_BEFORE_COMPACTION = 1024;
+
+  private static final int MAX_UNSYNCED_RECORDS = 256;
+
+  private static final long MAX_UNSYNCED_MILLIS = 1000;
+
+  private final Path journalFile;
+
+  private final NavigableMap<String, FileState> entries = new ConcurrentSkipListMap<>();
+
+  private final Object writeLock = new Object();
+
+  private FileChannel channel;
+
+  private DataOutputStream output;
+
+  private long records;
+
+  private int unsyncedRecords;
+
+  private long firstUnsyncedMillis;
+
+  public FileStateJournal(Path journalFile) throws IOException {
+    this.journalFile = journalFile;
+    Files.createDirectories(journalFile.toAbsolutePath().getParent());
+    boolean clean = replay();
+    if (!clean) {
+      compact();
+    } else {
+      openForAppend();
+    }
+  }
+
+  /**
+   * Opens the journal for the monitored location under {@code <ddf.home>/data}, creating it if it
+   * does not exist.
+   *
+   * @param monitoredLocation the location the journal keeps track of
+   * @throws UncheckedIOException if the journal could not be read or created
+   */
+  public static FileStateJournal open(String monitoredLocation) {
+    Path path =
+        Paths.get(
+            new AbsolutePathResolver("data").getPath(),
+            FileStateJournal.class.getSimpleName(),
+            DigestUtils.sha1Hex(monitoredLocation) + JOURNAL_SUFFIX);
+    try {
+      return new FileStateJournal(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** @return the recorded state of {@code path}, or {@code null} if it has not been recorded */
+  @Nullable
+  public FileState get(String path) {
+    return entries.get(path);
+  }
+
+  /** @return {@code true} if nothing has been recorded */
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  /** @return a live, read-only view of every recorded path in sorted order */
+  public NavigableMap<String, FileState> getEntries() {
+    return Collections.unmodifiableNavigableMap(entries);
+  }
+
+  /**
+   * @param directory absolute path of a directory
+   * @return a live, read-only view of every recorded path beneath {@code directory}
+   */
+  public NavigableMap<String, FileState> getEntriesUnder(String directory) {
+    String prefix = directory.endsWith(File.separator) ? directory : directory + File.separator;
+    return Collections.unmodifiableNavigableMap(
+        entries.subMap(prefix, true, prefix + Character.MAX_VALUE, false));
+  }
+
+  public void put(String path, long length, long lastModified) {
+    FileState state = new FileState(length, lastModified);
+    synchronized (writeLock) {
+      if (state.equals(entries.get(path))) {
+        return;
+      }
+      append(PUT, path, state);
+      entries.put(path, state);
+    }
+  }
+
+  public void remove(String path) {
+    synchronized (writeLock) {
+      if (entries.containsKey(path)) {
+        append(REMOVE, path, null);
+        entries.remove(path);
+      }
+    }
+  }
+
+  /**
+   * Forces the appended records to disk, and compacts the journal if it has grown to more than
+   * twice the number of live entries.
+   */
+  public void flush() {
+    synchronized (writeLock) {
+      try {
+        if (output == null) {
+          return;
+        }
+        sync();
+        if (records > MIN_RECORDS_BEFORE_COMPACTION && records > 2L * entries.size()) {
+          compact();
+        }
+      } catch (IOException e) {
+        LOGGER.debug("Unable to flush the file state journal [{}].", journalFile, e);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    synchronized (writeLock) {
+      if (output != null) {
+        try {
+          sync();
+          output.close();
+        } catch (IOException e) {
+          LOGGER.debug("Unable to close the file state journal [{}].", journalFile, e);
+        }
+        output = null;
+        channel = null;
+      }
+    }
+  }
+
+  private void append(byte op, String path, @Nullable FileState state) {
+    if (output == null) {
+      throw new IllegalStateException("The file state journal has been closed");
+    }
+    try {
+      writeRecord(output, op, path, state);
+      records++;
+      if (unsyncedRecords++ == 0) {
+        firstUnsyncedMillis = System.currentTimeMillis();
+      }
+      if (unsyncedRecords >= MAX_UNSYNCED_RECORDS
+          || System.currentTimeMillis() - firstUnsyncedMillis >= MAX_UNSYNCED_MILLIS) {
+        sync();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void sync() throws IOException {
+    output.flush();
+    if (unsyncedRecords > 0) {
+      channel.force(false);
+      unsyncedRecords = 0;
+    }
+  }
+
+  private static void writeRecord(
+      DataOutputStream out, byte op, String path, @Nullable FileState state) throws IOException {
+    out.writeByte(op);
+    out.writeUTF(path);
+    if (state != null) {
+      out.writeLong(state.getLength());
+      out.writeLong(state.getLastModified());
+    }
+  }
+
+  /** @return {@code false} if the journal was truncated or unreadable and needs to be rewritten */
+  private boolean replay() throws IOException {
+    if (!Files.exists(journalFile)) {
+      return false;
+    }
+
+    try (InputStream file = Files.newInputStream(journalFile);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(file))) {
+      if (input.readInt() != MAGIC) {
+        LOGGER.info("Ignoring the unrecognized file state journal [{}].", journalFile);
+        return false;
+      }
+      while (true) {
+        int op = input.read();
+        if (op == -1) {
+          return true;
+        }
+        String path = input.readUTF();
+        if (op == PUT) {
+          entries.put(path, new FileState(input.readLong(), input.readLong()));
+        } else if (op == REMOVE) {
+          entries.remove(path);
+        } else {
+          LOGGER.info("Found a corrupt record in the file state journal [{}].", journalFile);
+          return false;
+        }
+        records++;
+      }
+    } catch (EOFException e) {
+      LOGGER.debug("The file state journal [{}] ends with a partial record.", journalFile);
+      return false;
+    }
+  }
+
+  private void compact() throws IOException {
+    close();
+    Path temp = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+    try (FileChannel file =
+            FileChannel.open(
+                temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      for (Map.Entry<String, FileState> entry : entries.entrySet()) {
+        writeRecord(out, PUT, entry.getKey(), entry.getValue());
+      }
+      out.flush();
+      file.force(false);
+    }
+    Files.move(
+        temp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    records = entries.size();
+    openForAppend();
+  }
+
+  private void openForAppend() throws IOException {
+    channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    unsyncedRecords = 0;
+  }
+
+  /** Snapshot of a file taken when it was last successfully processed. */
+  public static final class FileState {
+
+    private final long length;
+
+    private final long lastModified;
+
+    FileState(long length, long lastModified) {
+      this.length = length;
+      this.lastModified = lastModified;
+    }
+
+    public long getLength() {
+      return length;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    /** @return {@code true} if the file no longer matches this snapshot */
+    public boolean hasChanged(long currentLength, long currentLastModified) {
+      return length != currentLength || lastModified != currentLastModified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof FileState)) {
+        return false;
+      }
+      FileState that = (FileState) o;
+      return length == that.length && lastModified == that.lastModified;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Long.hashCode(length) + Long.hashCode(lastModified);
+    }
+  }
+}
@@ -13,6 +13,7 @@
  */
 package org.codice.ddf.catalog.content.monitor;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
@@ -28,14 +29,17 @@
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import net.jodah.failsafe.Failsafe;
 import net.jodah.failsafe.RetryPolicy;
 import org.apache.camel.CamelContext;
+import org.apache.camel.Endpoint;
 import org.apache.camel.Exchange;
 import org.apache.camel.component.mock.MockComponent;
 import org.apache.camel.model.FromDefinition;
 import org.apache.camel.model.ProcessorDefinition;
 import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.model.ToDefinition;
 import org.apache.camel.test.junit4.CamelTestSupport;
 import org.apache.commons.io.FileUtils;
 import org.codice.junit.rules.RestoreSystemProperties;
@@ -111,9 +115,11 @@ public void testUpdateCallback() {
     Map<String, Object> properties = new HashMap<>();
     properties.put("numThreads", 2);
     properties.put("readLockIntervalMilliseconds", 2000);
+    properties.put("maxBatchSize", 10);
     monitor.updateCallback(properties);
     assertThat(monitor.getNumThreads(), is(2));
     assertThat(monitor.getReadLockIntervalMilliseconds(), is(2000));
+    assertThat(monitor.getMaxBatchSize(), is(10));
   }
 
   @Test
@@ -145,6 +151,57 @@ public void testRouteCreationWithKeepIngestedFiles() {
     testRouteCreationWithGivenCopyStatus(ContentDirectoryMonitor.IN_PLACE);
   }
 
+  @Test
+  public void testRouteCreationWithEventDrivenMonitoring() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("monitoredDirectoryPath", monitoredDirectoryPath);
+    properties.put("processingMechanism", ContentDirectoryMonitor.IN_PLACE);
+    properties.put("numThreads", 1);
+    properties.put("readLockIntervalMilliseconds", 1000);
+    properties.put("eventDrivenMonitoring", true);
+    monitor.updateCallback(properties);
+
+    assertThat(camelContext.getRouteDefinitions(), hasSize(1));
+    String uri = camelContext.getRouteDefinitions().get(0).getInputs().get(0).getUri();
+    assertThat(uri, equalTo("durable:" + monitoredDirectoryPath + "?eventDriven=true"));
+  }
+
+  @Test
+  public void testRouteCreationWithBatching() {
+    // the mock endpoint does not know the batch options of the content endpoint
+    camelContext.removeComponent("content");
+    camelContext.addComponent(
+        "content",
+        new MockComponent() {
+          @Override
+          protected Endpoint createEndpoint(
+              String uri, String remaining, Map<String, Object> parameters) throws Exception {
+            parameters.remove("maxBatchSize");
+            return super.createEndpoint(uri, remaining, parameters);
+          }
+        });
+
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("monitoredDirectoryPath", monitoredDirectoryPath);
+    properties.put("processingMechanism", ContentDirectoryMonitor.DELETE);
+    properties.put("numThreads", 4);
+    properties.put("readLockIntervalMilliseconds", 1000);
+    properties.put("maxBatchSize", 10);
+    monitor.updateCallback(properties);
+
+    assertThat(camelContext.getRouteDefinitions(), hasSize(1));
+    ProcessorDefinition<?> threads = camelContext.getRouteDefinitions().get(0).getOutputs().get(0);
+    List<String> uris =
+        threads
+            .getOutputs()
+            .stream()
+            .filter(ToDefinition.class::isInstance)
+            .map(output -> ((ToDefinition) output).getUri())
+            .collect(Collectors.toList());
+    // a batch cannot hold more files than are processed at the same time
+    assertThat(uris, contains("content:framework?maxBatchSize=4"));
+  }
+
   private void testRouteCreationWithGivenCopyStatus(String processingMechanism) {
     submitConfigOptions(monitor, monitoredDirectoryPath, processingMechanism);
     assertThat(
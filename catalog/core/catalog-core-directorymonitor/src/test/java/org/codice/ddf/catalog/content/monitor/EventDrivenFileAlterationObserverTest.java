@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.content.monitor;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.camel.spi.Synchronization;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+
+public class EventDrivenFileAlterationObserverTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final AtomicBoolean fail = new AtomicBoolean(false);
+
+  private File monitoredDirectory;
+
+  private File journalFile;
+
+  private AsyncFileAlterationListener listener;
+
+  private EventDrivenFileAlterationObserver observer;
+
+  @Before
+  public void setup() throws IOException {
+    monitoredDirectory = temporaryFolder.newFolder("monitored");
+    journalFile = new File(temporaryFolder.getRoot(), "state.journal");
+
+    listener = mock(AsyncFileAlterationListener.class);
+    doAnswer(this::complete).when(listener).onFileCreate(any(), any());
+    doAnswer(this::complete).when(listener).onFileChange(any(), any());
+    doAnswer(this::complete).when(listener).onFileDelete(any(), any());
+
+    //  Reconcile on every poll so the results do not depend on the timing of the watch service
+    observer = createObserver();
+  }
+
+  @After
+  public void tearDown() {
+    observer.close();
+  }
+
+  private EventDrivenFileAlterationObserver createObserver() throws IOException {
+    EventDrivenFileAlterationObserver newObserver =
+        new EventDrivenFileAlterationObserver(
+            monitoredDirectory, new FileStateJournal(journalFile.toPath()), 0);
+    newObserver.setListener(listener);
+    return newObserver;
+  }
+
+  private Object complete(InvocationOnMock invocation) {
+    Synchronization callback = (Synchronization) invocation.getArguments()[1];
+    if (fail.get()) {
+      callback.onFailure(null);
+    } else {
+      callback.onComplete(null);
+    }
+    return null;
+  }
+
+  private File write(String path, String data) throws IOException {
+    File file = new File(monitoredDirectory, path);
+    FileUtils.writeStringToFile(file, data, StandardCharsets.UTF_8);
+    return file;
+  }
+
+  @Test
+  public void testCreateChangeDelete() throws IOException {
+    File file = write("a.txt", "data");
+    File nested = write("child/b.txt", "data");
+
+    assertThat(observer.checkAndNotify(), is(true));
+    verify(listener).onFileCreate(eq(file), any());
+    verify(listener).onFileCreate(eq(nested), any());
+
+    assertThat(observer.checkAndNotify(), is(true));
+    verifyNoMoreInteractions(listener);
+
+    write("a.txt", "changed data");
+    FileUtils.deleteDirectory(nested.getParentFile());
+    reset(listener);
+    doAnswer(this::complete).when(listener).onFileChange(any(), any());
+    doAnswer(this::complete).when(listener).onFileDelete(any(), any());
+
+    observer.checkAndNotify();
+    verify(listener).onFileChange(eq(file), any());
+    verify(listener).onFileDelete(eq(nested), any());
+    verify(listener, never()).onFileCreate(any(), any());
+  }
+
+  @Test
+  public void testFailedFilesAreRetried() throws IOException {
+    File file = write("a.txt", "data");
+    fail.set(true);
+
+    observer.checkAndNotify();
+    verify(listener).onFileCreate(eq(file), any());
+
+    fail.set(false);
+    reset(listener);
+    doAnswer(this::complete).when(listener).onFileCreate(any(), any());
+
+    observer.checkAndNotify();
+    verify(listener).onFileCreate(eq(file), any());
+  }
+
+  @Test
+  public void testStateSurvivesRestart() throws IOException {
+    write("a.txt", "data");
+    observer.checkAndNotify();
+    observer.close();
+
+    File added = write("b.txt", "data");
+    reset(listener);
+    doAnswer(this::complete).when(listener).onFileCreate(any(), any());
+
+    observer = createObserver();
+    observer.checkAndNotify();
+    verify(listener).onFileCreate(eq(added), any());
+    verifyNoMoreInteractions(listener);
+  }
+
+  @Test
+  public void testPollIsSkippedWhileProcessing() throws IOException {
+    write("a.txt", "data");
+    reset(listener);
+
+    //  The listener never completes the callback
+    observer.checkAndNotify();
+    write("b.txt", "data");
+
+    assertThat(observer.checkAndNotify(), is(false));
+  }
+
+  @Test
+  public void testImportStateFromPollingObserver() throws IOException {
+    File unchanged = write("a.txt", "data");
+    File changed = write("b.txt", "data");
+    AsyncFileEntry root = new AsyncFileEntry(monitoredDirectory);
+    root.addChild(new AsyncFileEntry(root, unchanged));
+    root.addChild(new AsyncFileEntry(root, changed));
+    write("b.txt", "changed data");
+
+    observer.importState(root);
+    observer.checkAndNotify();
+
+    verify(listener).onFileChange(eq(changed), any());
+    verify(listener, never()).onFileCreate(any(), any());
+    verify(listener, never()).onFileChange(eq(unchanged), any());
+  }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.content.monitor;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileStateJournalTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path journalFile;
+
+  @Before
+  public void setup() throws IOException {
+    journalFile = temporaryFolder.getRoot().toPath().resolve("state").resolve("test.journal");
+  }
+
+  @Test
+  public void testStateIsReplayed() throws IOException {
+    FileStateJournal journal = new FileStateJournal(journalFile);
+    journal.put("/dir/a", 1, 10);
+    journal.put("/dir/b", 2, 20);
+    journal.put("/dir/a", 3, 30);
+    journal.remove("/dir/b");
+    journal.close();
+
+    FileStateJournal reopened = new FileStateJournal(journalFile);
+    assertThat(reopened.getEntries().size(), is(1));
+    assertThat(reopened.get("/dir/a").getLength(), is(3L));
+    assertThat(reopened.get("/dir/a").getLastModified(), is(30L));
+    assertThat(reopened.get("/dir/b"), nullValue());
+  }
+
+  @Test
+  public void testPartialRecordIsDropped() throws IOException {
+    FileStateJournal journal = new FileStateJournal(journalFile);
+    journal.put("/dir/a", 1, 10);
+    journal.put("/dir/b", 2, 20);
+    journal.close();
+
+    try (RandomAccessFile file = new RandomAccessFile(journalFile.toFile(), "rw")) {
+      file.setLength(file.length() - 4);
+    }
+
+    FileStateJournal reopened = new FileStateJournal(journalFile);
+    assertThat(reopened.get("/dir/a"), notNullValue());
+    assertThat(reopened.get("/dir/b"), nullValue());
+
+    reopened.put("/dir/c", 3, 30);
+    reopened.close();
+    assertThat(new FileStateJournal(journalFile).get("/dir/c"), notNullValue());
+  }
+
+  @Test
+  public void testRecordsAreWrittenWithoutFlush() throws IOException {
+    FileStateJournal journal = new FileStateJournal(journalFile);
+    for (int i = 0; i < 300; i++) {
+      journal.put("/dir/" + i, i, i);
+    }
+
+    // Read the journal while it is still open, as after a crash
+    FileStateJournal reopened = new FileStateJournal(journalFile);
+    assertThat(reopened.getEntries().size() >= 256, is(true));
+    journal.close();
+  }
+
+  @Test
+  public void testJournalIsCompacted() throws IOException {
+    FileStateJournal journal = new FileStateJournal(journalFile);
+    for (int i = 0; i < 5000; i++) {
+      journal.put("/dir/a", i, i);
+    }
+    journal.flush();
+    long compactedSize = Files.size(journalFile);
+    journal.close();
+
+    assertThat(compactedSize < 100, is(true));
+    assertThat(new FileStateJournal(journalFile).get("/dir/a").getLength(), is(4999L));
+  }
+
+  @Test
+  public void testEntriesUnderDirectory() throws IOException {
+    FileStateJournal journal = new FileStateJournal(journalFile);
+    journal.put("/dir/a", 1, 1);
+    journal.put("/dir/sub/b", 1, 1);
+    journal.put("/dir-other/c", 1, 1);
+
+    assertThat(journal.getEntriesUnder("/dir").size(), is(2));
+    assertThat(journal.getEntriesUnder("/dir/sub").size(), is(1));
+    journal.close();
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testEntriesAreReadOnly() throws IOException {
+    try (FileStateJournal journal = new FileStateJournal(journalFile)) {
+      journal.put("/dir/a", 1, 1);
+      journal.getEntriesUnder("/dir").remove("/dir/a");
+    }
+  }
+}
@@ -13,6 +13,9 @@
  */
 package ddf.catalog.source.solr;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -111,6 +114,22 @@ public class SolrFilterDelegate extends FilterDelegate<SolrQuery> {
 
   private static final ShapeReader WKT_READER = SPATIAL_CONTEXT.getFormats().getWktReader();
 
+  /** Total length of the cached WKT, in characters. */
+  private static final long SPATIAL_LITERAL_CACHE_MAX_WEIGHT = 1024 * 1024;
+
+  /** Longer WKT would take up too much of the cache and is read for every query. */
+  private static final int MAX_CACHED_WKT_LENGTH = 64 * 1024;
+
+  // Saved searches and clients polling the same workspace send the same geometries with every
+  // query, and reading and repairing their WKT is the most expensive part of the translation.
+  // The cache is weighed by the WKT length since large polygons also parse into large geometries.
+  private static final Cache<String, SpatialLiteral> SPATIAL_LITERAL_CACHE =
+      CacheBuilder.newBuilder()
+          .maximumWeight(SPATIAL_LITERAL_CACHE_MAX_WEIGHT)
+          .weigher((String wkt, SpatialLiteral spatialLiteral) -> wkt.length())
+          .recordStats()
+          .build();
+
   private static final String END_PAREN = " ) ";
 
   private static final String START_PAREN = " ( ";
@@ -443,6 +462,30 @@ public SolrQuery propertyIsGreaterThan(String propertyName, Date startDate) {
         SOLR_INCLUSIVE_END);
   }
 
+  @Override
+  public SolrQuery propertyIsGreaterThan(String propertyName, String literal) {
+    return getStringRangeQuery(
+        propertyName, SOLR_EXCLUSIVE_START, literal, null, SOLR_INCLUSIVE_END);
+  }
+
+  @Override
+  public SolrQuery propertyIsGreaterThanOrEqualTo(String propertyName, String literal) {
+    return getStringRangeQuery(
+        propertyName, SOLR_INCLUSIVE_START, literal, null, SOLR_INCLUSIVE_END);
+  }
+
+  @Override
+  public SolrQuery propertyIsLessThan(String propertyName, String literal) {
+    return getStringRangeQuery(
+        propertyName, SOLR_INCLUSIVE_START, null, literal, SOLR_EXCLUSIVE_END);
+  }
+
+  @Override
+  public SolrQuery propertyIsLessThanOrEqualTo(String propertyName, String literal) {
+    return getStringRangeQuery(
+        propertyName, SOLR_INCLUSIVE_START, null, literal, SOLR_INCLUSIVE_END);
+  }
+
   @Override
   public SolrQuery propertyIsGreaterThan(String propertyName, int literal) {
     return getGreaterThanQuery(propertyName, AttributeFormat.INTEGER, literal);
@@ -748,18 +791,42 @@ public SolrQuery dwithin(String propertyName, String wkt, double distance) {
   }
 
   private Geometry getGeometry(String wkt) {
+    Geometry geo = getSpatialLiteral(wkt).geometry;
+    // Cached geometries are shared between queries, so callers get their own copy
+    return geo != null ? (Geometry) geo.clone() : null;
+  }
+
+  static CacheStats getSpatialLiteralCacheStats() {
+    return SPATIAL_LITERAL_CACHE.stats();
+  }
+
+  private SpatialLiteral getSpatialLiteral(String wkt) {
+    if (wkt == null || wkt.length() > MAX_CACHED_WKT_LENGTH) {
+      return readSpatialLiteral(wkt);
+    }
+
+    SpatialLiteral spatialLiteral = SPATIAL_LITERAL_CACHE.getIfPresent(wkt);
+    if (spatialLiteral == null) {
+      spatialLiteral = readSpatialLiteral(wkt);
+      SPATIAL_LITERAL_CACHE.put(wkt, spatialLiteral);
+    }
+    return spatialLiteral;
+  }
+
+  private static SpatialLiteral readSpatialLiteral(String wkt) {
+    String fixedWkt = fixSelfIntersectingGeometry(wkt);
     WKTReader reader = new WKTReader(GEOMETRY_FACTORY);
 
     Geometry geo = null;
     try {
-      geo = reader.read(fixSelfIntersectingGeometry(wkt));
+      geo = reader.read(fixedWkt);
     } catch (ParseException e) {
       LOGGER.info("Failed to read WKT: {}", wkt, e);
     }
-    return geo;
+    return new SpatialLiteral(fixedWkt, geo);
   }
 
-  private String fixSelfIntersectingGeometry(String wkt) {
+  private static String fixSelfIntersectingGeometry(String wkt) {
     try {
       Shape wktShape = WKT_READER.read(wkt);
       // All polygons will be an instance of JtsGeometry. If it is not a polygon we don't need
@@ -932,6 +999,32 @@ private SolrQuery getGreaterThanQuery(
     return query;
   }
 
+  /*
+   * Compares against the exact string field, which orders its values the same way results are
+   * sorted by that attribute. A null bound is open.
+   */
+  private SolrQuery getStringRangeQuery(
+      String propertyName, String startCondition, String start, String end, String endCondition) {
+    verifyInputData(propertyName, start != null ? start : end);
+    String mappedPropertyName = getMappedPropertyName(propertyName, AttributeFormat.STRING, true);
+
+    SolrQuery query = new SolrQuery();
+    query.setQuery(
+        " "
+            + mappedPropertyName
+            + startCondition
+            + getRangeBound(start)
+            + TO
+            + getRangeBound(end)
+            + endCondition);
+
+    return query;
+  }
+
+  private String getRangeBound(String literal) {
+    return literal == null ? SOLR_WILDCARD_CHAR : QUOTE + escapeSpecialCharacters(literal) + QUOTE;
+  }
+
   private SolrQuery getLessThanOrEqualToQuery(
       String propertyName, AttributeFormat format, Number literal) {
     String mappedPropertyName = getMappedPropertyName(propertyName, format, true);
@@ -1065,12 +1158,12 @@ private SolrQuery operationToQuery(String operation, String propertyName, String
       throw new UnsupportedOperationException("Wkt should not be null or empty.");
     }
 
-    String geoQuery =
-        geoIndexName + ":\"" + operation + "(" + fixSelfIntersectingGeometry(wkt) + ")\"";
+    SpatialLiteral spatialLiteral = getSpatialLiteral(wkt);
+    String geoQuery = geoIndexName + ":\"" + operation + "(" + spatialLiteral.wkt + ")\"";
 
-    Geometry pnt = getGeometry(wkt);
-    if (pnt != null) {
-      updateDistanceSort(propertyName, pnt.getCentroid());
+    // The centroid is a new geometry, so the cached geometry does not need to be copied
+    if (spatialLiteral.geometry != null) {
+      updateDistanceSort(propertyName, spatialLiteral.geometry.getCentroid());
     }
 
     return new SolrQuery(geoQuery);
@@ -1103,4 +1196,17 @@ public boolean isIdQuery() {
   public Set<String> getIds() {
     return Collections.unmodifiableSet(ids);
   }
+
+  /** A WKT literal after it has been repaired and read. */
+  private static class SpatialLiteral {
+
+    private final String wkt;
+
+    private final Geometry geometry;
+
+    private SpatialLiteral(String wkt, Geometry geometry) {
+      this.wkt = wkt;
+      this.geometry = geometry;
+    }
+  }
 }
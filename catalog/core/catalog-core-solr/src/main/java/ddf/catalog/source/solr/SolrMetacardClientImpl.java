@@ -41,10 +41,12 @@
 import ddf.catalog.data.impl.MetacardImpl;
 import ddf.catalog.data.impl.ResultImpl;
 import ddf.catalog.filter.FilterAdapter;
+import ddf.catalog.operation.CancellationToken;
 import ddf.catalog.operation.FacetAttributeResult;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.SourceResponse;
 import ddf.catalog.operation.TermFacetProperties;
+import ddf.catalog.operation.impl.CancellationTokenImpl;
 import ddf.catalog.operation.impl.FacetAttributeResultImpl;
 import ddf.catalog.operation.impl.QueryResponseImpl;
 import ddf.catalog.operation.impl.SourceResponseImpl;
@@ -215,6 +217,16 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
       }
     }
 
+    CancellationToken token = CancellationTokenImpl.of(request);
+    if (token.isCancelled()) {
+      throw new UnsupportedQueryException("The solr query was cancelled before it was sent.");
+    }
+    long remainingMillis = token.getRemainingMillis();
+    if (remainingMillis != Long.MAX_VALUE) {
+      // solr cannot abort a running request, but it can stop collecting results at the deadline
+      query.setTimeAllowed((int) Math.min(Integer.MAX_VALUE, Math.max(1, remainingMillis)));
+    }
+
     long totalHits = 0;
     List<Result> results = new ArrayList<>();
 
@@ -259,7 +271,7 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
         totalHits = docs.getNumFound();
         addDocsToResults(docs, results);
 
-        if (userSpellcheckIsOn && solrSpellcheckHasResults(solrResponse)) {
+        if (userSpellcheckIsOn && !token.isCancelled() && solrSpellcheckHasResults(solrResponse)) {
           query.set("q", findQueryToResend(query, solrResponse));
           QueryResponse solrResponseRequery = client.query(query, METHOD.POST);
           docs = solrResponseRequery.getResults();
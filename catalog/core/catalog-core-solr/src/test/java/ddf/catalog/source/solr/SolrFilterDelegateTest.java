@@ -13,6 +13,7 @@
  */
 package ddf.catalog.source.solr;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.junit.Assert.assertThat;
@@ -22,13 +23,19 @@
 import ddf.catalog.data.AttributeType.AttributeFormat;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.types.Core;
+import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.filter.proxy.adapter.GeotoolsFilterAdapterImpl;
+import ddf.catalog.filter.proxy.builder.GeotoolsFilterBuilder;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.TimeZone;
 import org.apache.solr.client.solrj.SolrQuery;
+import org.geotools.filter.FilterFactoryImpl;
 import org.junit.Test;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory;
 
 public class SolrFilterDelegateTest {
 
@@ -101,6 +108,39 @@ public void selfIntersectingPolygon() {
             "testProperty_geohash_index:\"Contains(POLYGON ((5 -5, 0 0, 0 20, 10 20, 10 0, 5 -5)))\""));
   }
 
+  @Test
+  public void repeatedSpatialLiteral() {
+    String wkt = "POLYGON((0 0, 10 0, 10 20, 5 -5, 0 20, 0 0))";
+    stub(mockResolver.getField(
+            "testProperty", AttributeFormat.GEOMETRY, false, Collections.EMPTY_MAP))
+        .toReturn("testProperty_geohash_index");
+    SolrQuery first = toTest.intersects("testProperty", wkt);
+    long hits = SolrFilterDelegate.getSpatialLiteralCacheStats().hitCount();
+    SolrQuery second =
+        new SolrFilterDelegate(mockResolver, Collections.EMPTY_MAP).intersects("testProperty", wkt);
+    assertThat(SolrFilterDelegate.getSpatialLiteralCacheStats().hitCount(), is(hits + 1));
+    assertThat(
+        second.getQuery(),
+        is(
+            "testProperty_geohash_index:\"Intersects(POLYGON ((5 -5, 0 0, 0 20, 10 20, 10 0, 5 -5)))\""));
+    assertThat(second.getQuery(), is(first.getQuery()));
+  }
+
+  @Test
+  public void largeSpatialLiteralIsNotCached() {
+    StringBuilder wkt = new StringBuilder("LINESTRING (");
+    for (int i = 0; i < 10000; i++) {
+      wkt.append(i == 0 ? "" : ", ").append(i % 180).append(".123 ").append(i % 90).append(".456");
+    }
+    wkt.append(")");
+    stub(mockResolver.getField(
+            "testProperty", AttributeFormat.GEOMETRY, false, Collections.EMPTY_MAP))
+        .toReturn("testProperty_geohash_index");
+    long requests = SolrFilterDelegate.getSpatialLiteralCacheStats().requestCount();
+    toTest.intersects("testProperty", wkt.toString());
+    assertThat(SolrFilterDelegate.getSpatialLiteralCacheStats().requestCount(), is(requests));
+  }
+
   @Test
   public void squarePolygon() {
     String wkt = "POLYGON ((0 10, 0 30, 20 30, 20 10, 0 10))";
@@ -529,6 +569,49 @@ public void testPropertyIsDivisibleBy() {
     assertThat(isLikeQuery.getQuery(), is(expectedQuery));
   }
 
+  @Test
+  public void testStringPropertyRanges() {
+    stub(mockResolver.getField("id", AttributeFormat.STRING, true, Collections.EMPTY_MAP))
+        .toReturn("id_txt");
+
+    assertThat(
+        toTest.propertyIsGreaterThan(Core.ID, "a b").getQuery(), is(" id_txt:{ \"a b\" TO * ] "));
+    assertThat(
+        toTest.propertyIsGreaterThanOrEqualTo(Core.ID, "a b").getQuery(),
+        is(" id_txt:[ \"a b\" TO * ] "));
+    assertThat(
+        toTest.propertyIsLessThan(Core.ID, "a b").getQuery(), is(" id_txt:[ * TO \"a b\" } "));
+    assertThat(
+        toTest.propertyIsLessThanOrEqualTo(Core.ID, "a b").getQuery(),
+        is(" id_txt:[ * TO \"a b\" ] "));
+  }
+
+  @Test
+  public void testKeysetPageFilter() throws Exception {
+    stub(mockResolver.getField("id", AttributeFormat.STRING, true, Collections.EMPTY_MAP))
+        .toReturn("id_txt");
+    stub(mockResolver.getField("modified", AttributeFormat.DATE, false, Collections.EMPTY_MAP))
+        .toReturn("modified_tdt");
+    stub(mockResolver.getField("modified", AttributeFormat.DATE, true, Collections.EMPTY_MAP))
+        .toReturn("modified_tdt");
+
+    // the filter used by the catalog sync commands to request the page after a checkpoint
+    FilterBuilder filterBuilder = new GeotoolsFilterBuilder();
+    FilterFactory filterFactory = new FilterFactoryImpl();
+    Filter keyset =
+        filterBuilder.anyOf(
+            filterBuilder.attribute(Core.MODIFIED).is().after().date(getCannedTime()),
+            filterBuilder.allOf(
+                filterBuilder.attribute(Core.MODIFIED).is().equalTo().date(getCannedTime()),
+                filterFactory.greater(
+                    filterFactory.property(Core.ID), filterFactory.literal("last-id"))));
+
+    SolrQuery query = new GeotoolsFilterAdapterImpl().adapt(keyset, toTest);
+
+    assertThat(query.getQuery(), containsString("modified_tdt:{ 1995-11-24T23:59:56.765Z TO * ]"));
+    assertThat(query.getQuery(), containsString("id_txt:{ \"last\\-id\" TO * ]"));
+  }
+
   private Date getCannedTime() {
     return getCannedTime(1995, Calendar.NOVEMBER, 24, 23);
   }
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.solr.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit for a single source that adapts to the latency the source is observed to have.
+ *
+ * <p>The limit follows a gradient: a long term average of the round trip time is compared with each
+ * new sample, and the limit shrinks when the source gets slower than it usually is and grows by
+ * roughly the square root of the limit when it keeps up. Failures and timeouts back the limit off
+ * multiplicatively. The limit is only allowed to grow while the source is actually being used at
+ * more than half of it, so an idle source does not accumulate an unbounded limit.
+ */
+class AdaptiveConcurrencyLimit {
+
+  private static final double BACKOFF_RATIO = 0.9;
+
+  private static final double RTT_TOLERANCE = 1.5;
+
+  private static final double SMOOTHING = 0.2;
+
+  private static final int LONG_WINDOW = 600;
+
+  private final int minLimit;
+
+  private final int maxLimit;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private volatile double limit;
+
+  private double longRtt;
+
+  private long samples;
+
+  AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+    this.minLimit = Math.max(1, minLimit);
+    this.maxLimit = Math.max(this.minLimit, maxLimit);
+    this.limit = clamp(initialLimit);
+  }
+
+  /**
+   * Reserves a slot if fewer requests than the current limit are in flight.
+   *
+   * @return {@code true} if a slot was reserved and {@link #release(long, boolean)} must be called
+   */
+  boolean tryAcquire() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= getLimit()) {
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Frees a slot reserved by {@link #tryAcquire()} and feeds the round trip time of the request
+   * into the limit.
+   *
+   * @param rttNanos how long the request took
+   * @param dropped {@code true} if the request failed or timed out
+   */
+  void release(long rttNanos, boolean dropped) {
+    int current = inFlight.getAndDecrement();
+    onSample(rttNanos, current, dropped);
+  }
+
+  private synchronized void onSample(long rttNanos, int inFlightAtRelease, boolean dropped) {
+    if (dropped) {
+      limit = clamp(limit * BACKOFF_RATIO);
+      return;
+    }
+
+    if (rttNanos <= 0) {
+      return;
+    }
+
+    samples++;
+    double window = Math.min(samples, LONG_WINDOW);
+    longRtt = samples == 1 ? rttNanos : longRtt + (rttNanos - longRtt) / window;
+
+    // Let the long term average recover quickly once a slow period is over
+    if (longRtt / rttNanos > 2) {
+      longRtt *= 0.95;
+    }
+
+    if (inFlightAtRelease * 2 < limit) {
+      return;
+    }
+
+    double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / rttNanos));
+    double newLimit = limit * gradient + Math.sqrt(limit);
+    limit = clamp(limit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+  }
+
+  private double clamp(double value) {
+    return Math.max(minLimit, Math.min(maxLimit, value));
+  }
+
+  int getLimit() {
+    return (int) limit;
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+}
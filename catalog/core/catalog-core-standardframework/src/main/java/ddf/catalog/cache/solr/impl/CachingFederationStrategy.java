@@ -22,12 +22,15 @@
 import ddf.catalog.federation.FederationStrategy;
 import ddf.catalog.operation.CreateResponse;
 import ddf.catalog.operation.DeleteResponse;
+import ddf.catalog.operation.ProcessingDetails;
 import ddf.catalog.operation.Query;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryResponse;
 import ddf.catalog.operation.SourceResponse;
 import ddf.catalog.operation.Update;
 import ddf.catalog.operation.UpdateResponse;
+import ddf.catalog.operation.impl.CancellationTokenImpl;
+import ddf.catalog.operation.impl.ProcessingDetailsImpl;
 import ddf.catalog.operation.impl.QueryImpl;
 import ddf.catalog.operation.impl.QueryRequestImpl;
 import ddf.catalog.operation.impl.QueryResponseImpl;
@@ -40,6 +43,7 @@
 import ddf.catalog.source.UnsupportedQueryException;
 import ddf.catalog.util.impl.RelevanceResultComparator;
 import ddf.catalog.util.impl.Requests;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -48,12 +52,19 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.apache.commons.lang3.Validate;
 import org.opengis.filter.sort.SortOrder;
 import org.slf4j.Logger;
@@ -141,6 +152,10 @@ public class CachingFederationStrategy implements FederationStrategy, PostIngest
 
   private CacheQueryFactory cacheQueryFactory;
 
+  private FederationBulkheads bulkheads = new FederationBulkheads();
+
+  private FederatedResultCache resultCache = new FederatedResultCache();
+
   /**
    * Instantiates an {@code AbstractFederationStrategy} with the provided {@link ExecutorService}.
    *
@@ -173,6 +188,8 @@ public CachingFederationStrategy(
     cacheBulkProcessor = new CacheBulkProcessor(cache);
     this.cacheQueryFactory = cacheQueryFactory;
     cacheSource = new SolrCacheSource(cache);
+    bulkheads.registerMBean();
+    resultCache.registerMBean();
   }
 
   void setSortedQueryMonitorFactory(SortedQueryMonitorFactory sortedQueryMonitorFactory) {
@@ -187,6 +204,14 @@ void setCacheBulkProcessor(CacheBulkProcessor cacheBulkProcessor) {
     this.cacheBulkProcessor = cacheBulkProcessor;
   }
 
+  void setBulkheads(FederationBulkheads bulkheads) {
+    this.bulkheads = bulkheads;
+  }
+
+  void setResultCache(FederatedResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
   @Override
   public QueryResponse federate(List<Source> sources, QueryRequest queryRequest) {
     Validate.noNullElements(sources, "Cannot federate with null sources.");
@@ -226,6 +251,35 @@ private QueryResponse sourceFederate(List<Source> sources, final QueryRequest qu
 
     Query originalQuery = queryRequest.getQuery();
 
+    FederationBulkheads.Admission admission;
+    try {
+      admission = bulkheads.admit(originalQuery.getTimeoutMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return rejectedResponse(sources, queryRequest, e);
+    }
+    if (admission == null) {
+      LOGGER.debug("Federation is at capacity, rejecting query.");
+      return rejectedResponse(
+          sources,
+          queryRequest,
+          new SourceSaturatedException("Too many federated queries are already running."));
+    }
+
+    try {
+      return sourceFederate(sources, queryRequest, admission);
+    } catch (RuntimeException e) {
+      admission.close();
+      throw e;
+    }
+  }
+
+  private QueryResponse sourceFederate(
+      List<Source> sources,
+      final QueryRequest queryRequest,
+      FederationBulkheads.Admission admission) {
+    Query originalQuery = getRemainingTimeQuery(queryRequest.getQuery(), admission);
+
     int offset = originalQuery.getStartIndex();
     final int pageSize = originalQuery.getPageSize();
 
@@ -246,20 +300,35 @@ private QueryResponse sourceFederate(List<Source> sources, final QueryRequest qu
             queryRequest.getSourceIds(),
             queryRequest.getProperties());
 
+    BlockingQueue<Future<SourceResponse>> completionQueue = new LinkedBlockingQueue<>();
     CompletionService<SourceResponse> queryCompletion =
-        new ExecutorCompletionService<>(queryExecutorService);
+        new ExecutorCompletionService<>(queryExecutorService, completionQueue);
+
+    long deadline =
+        modifiedQuery.getTimeoutMillis() > 0
+            ? System.currentTimeMillis() + modifiedQuery.getTimeoutMillis()
+            : 0;
+
+    // The monitor cancels the sources that are still running when it completes, after which the
+    // tokens no longer need to follow the token of the request
+    List<CancellationTokenImpl> sourceTokens = new ArrayList<>();
 
     // Do NOT call source.isAvailable() when checking sources
     for (final Source source : sources) {
       if (source != null) {
         LOGGER.debug("running query on source: {}", source.getId());
 
+        CancellationTokenImpl sourceToken =
+            new CancellationTokenImpl(CancellationTokenImpl.of(queryRequest), deadline);
+        sourceTokens.add(sourceToken);
+        Map<String, Serializable> sourceProperties = new HashMap<>(queryRequest.getProperties());
+        sourceProperties.put(Constants.QUERY_CANCELLATION_TOKEN_KEY, sourceToken);
         QueryRequest sourceQueryRequest =
             new QueryRequestImpl(
                 modifiedQuery,
                 queryRequest.isEnterprise(),
                 Collections.singleton(source.getId()),
-                new HashMap<>(queryRequest.getProperties()));
+                sourceProperties);
         try {
           for (PreFederatedQueryPlugin service : preQuery) {
             try {
@@ -272,9 +341,37 @@ private QueryResponse sourceFederate(List<Source> sources, final QueryRequest qu
           LOGGER.info("Plugin stopped processing", e);
         }
 
-        futures.put(
-            queryCompletion.submit(new CallableSourceResponse(source, sourceQueryRequest)),
-            sourceQueryRequest);
+        FederatedResultCache.Key cacheKey = getResultCacheKey(source, sourceQueryRequest);
+        if (cacheKey != null) {
+          FederatedResultCache.Entry cached = resultCache.get(cacheKey);
+          if (cached != null) {
+            LOGGER.debug("Answering query to source {} from the result cache.", source.getId());
+            SourceResponse cachedResponse = cached.getResponse(sourceQueryRequest);
+            futures.put(completed(() -> cachedResponse, completionQueue), sourceQueryRequest);
+            if (cached.startRefresh()) {
+              refresh(source, sourceQueryRequest, cacheKey, cached);
+            }
+            continue;
+          }
+        }
+
+        AdaptiveConcurrencyLimit bulkhead = bulkheads.tryAcquire(source.getId());
+        if (bulkhead == null) {
+          LOGGER.debug("Source {} is saturated, not querying it.", source.getId());
+          futures.put(saturated(source.getId(), completionQueue), sourceQueryRequest);
+          continue;
+        }
+
+        try {
+          futures.put(
+              queryCompletion.submit(
+                  new CallableSourceResponse(source, sourceQueryRequest, bulkhead, cacheKey)),
+              sourceQueryRequest);
+        } catch (RejectedExecutionException e) {
+          bulkhead.release(0, true);
+          sourceTokens.forEach(CancellationTokenImpl::close);
+          throw e;
+        }
       }
     }
 
@@ -289,9 +386,18 @@ private QueryResponse sourceFederate(List<Source> sources, final QueryRequest qu
           new OffsetResultHandler(queryResponseQueue, offsetResults, pageSize, offset));
     }
 
-    queryExecutorService.submit(
+    Runnable monitor =
         sortedQueryMonitorFactory.createMonitor(
-            queryCompletion, futures, queryResponseQueue, modifiedQueryRequest, postQuery));
+            queryCompletion, futures, queryResponseQueue, modifiedQueryRequest, postQuery);
+    queryExecutorService.submit(
+        () -> {
+          try {
+            monitor.run();
+          } finally {
+            sourceTokens.forEach(CancellationTokenImpl::close);
+            admission.close();
+          }
+        });
 
     QueryResponse queryResponse;
     if (offset > 1 && sources.size() > 1) {
@@ -306,6 +412,110 @@ private QueryResponse sourceFederate(List<Source> sources, final QueryRequest qu
     return queryResponse;
   }
 
+  /**
+   * Takes the time spent waiting for admission off the timeout of the query so that queueing does
+   * not extend the deadline the caller asked for.
+   */
+  private Query getRemainingTimeQuery(Query query, FederationBulkheads.Admission admission) {
+    long timeout = query.getTimeoutMillis();
+    if (timeout < 1 || admission.getWaitedMillis() <= 0) {
+      return query;
+    }
+    return new QueryImpl(
+        query,
+        query.getStartIndex(),
+        query.getPageSize(),
+        query.getSortBy(),
+        query.requestsTotalResultsCount(),
+        Math.max(1, timeout - admission.getWaitedMillis()));
+  }
+
+  /**
+   * Completes a source query immediately with a {@link SourceSaturatedException} so that the {@link
+   * SortedQueryMonitor} reports it like any other source failure without a thread ever being spent
+   * on it.
+   */
+  private Future<SourceResponse> saturated(
+      String sourceId, BlockingQueue<Future<SourceResponse>> completionQueue) {
+    return completed(
+        () -> {
+          throw new SourceSaturatedException(
+              String.format(
+                  "Source %s already has as many queries in flight as it can handle.", sourceId));
+        },
+        completionQueue);
+  }
+
+  /** Runs the callable on the calling thread and hands its outcome to the completion queue. */
+  private Future<SourceResponse> completed(
+      Callable<SourceResponse> callable, BlockingQueue<Future<SourceResponse>> completionQueue) {
+    FutureTask<SourceResponse> future = new FutureTask<>(callable);
+    future.run();
+    completionQueue.add(future);
+    return future;
+  }
+
+  /**
+   * Queries in the cache and index modes go through the Solr cache and are never answered from the
+   * result cache.
+   */
+  @Nullable
+  private FederatedResultCache.Key getResultCacheKey(Source source, QueryRequest request) {
+    Serializable mode = request.getPropertyValue(QUERY_MODE);
+    if (CACHE_QUERY_MODE.equals(mode) || INDEX_QUERY_MODE.equals(mode)) {
+      return null;
+    }
+    return resultCache.key(source.getId(), request);
+  }
+
+  /**
+   * Replaces an expired result cache entry in the background. The refresh goes through the bulkhead
+   * of the source like any other query and is skipped when the source is saturated, in which case
+   * the next query served from the entry tries again.
+   */
+  private void refresh(
+      Source source,
+      QueryRequest request,
+      FederatedResultCache.Key cacheKey,
+      FederatedResultCache.Entry cached) {
+    AdaptiveConcurrencyLimit bulkhead = bulkheads.tryAcquire(source.getId());
+    if (bulkhead == null) {
+      resultCache.refreshFailed(cached);
+      return;
+    }
+
+    CallableSourceResponse refresh =
+        new CallableSourceResponse(source, request, bulkhead, cacheKey);
+    try {
+      queryExecutorService.submit(
+          () -> {
+            try {
+              refresh.call();
+            } catch (Exception e) {
+              LOGGER.debug("Unable to refresh cached results of source {}", source.getId(), e);
+              resultCache.refreshFailed(cached);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      bulkhead.release(0, true);
+      resultCache.refreshFailed(cached);
+    }
+  }
+
+  private QueryResponse rejectedResponse(
+      List<Source> sources, QueryRequest queryRequest, Exception reason) {
+    QueryResponseImpl response = new QueryResponseImpl(queryRequest, null);
+    Set<ProcessingDetails> processingDetails = response.getProcessingDetails();
+    for (Source source : sources) {
+      if (source != null) {
+        processingDetails.add(new ProcessingDetailsImpl(source.getId(), reason));
+      }
+    }
+    response.setHits(0);
+    response.closeResultQueue();
+    return response;
+  }
+
   private Query getModifiedQuery(
       Query originalQuery, int numberOfSources, int offset, int pageSize) {
 
@@ -442,9 +652,52 @@ public void setCacheRemoteIngests(boolean cacheRemoteIngests) {
     this.cacheRemoteIngests = cacheRemoteIngests;
   }
 
+  public void setMaxConcurrentQueries(int maxConcurrentQueries) {
+    bulkheads.setMaxConcurrentQueries(maxConcurrentQueries);
+  }
+
+  public void setMaxQueuedQueries(int maxQueuedQueries) {
+    bulkheads.setMaxQueuedQueries(maxQueuedQueries);
+  }
+
+  public void setMinSourceConcurrency(int minSourceConcurrency) {
+    bulkheads.setMinSourceConcurrency(minSourceConcurrency);
+  }
+
+  public void setMaxSourceConcurrency(int maxSourceConcurrency) {
+    bulkheads.setMaxSourceConcurrency(maxSourceConcurrency);
+  }
+
+  public void setInitialSourceConcurrency(int initialSourceConcurrency) {
+    bulkheads.setInitialSourceConcurrency(initialSourceConcurrency);
+  }
+
+  public void setResultCacheEnabled(boolean resultCacheEnabled) {
+    resultCache.setEnabled(resultCacheEnabled);
+  }
+
+  public void setResultCacheTimeToLiveSeconds(long resultCacheTimeToLiveSeconds) {
+    resultCache.setTimeToLiveSeconds(resultCacheTimeToLiveSeconds);
+  }
+
+  public void setResultCacheSourceTimeToLiveSeconds(
+      List<String> resultCacheSourceTimeToLiveSeconds) {
+    resultCache.setSourceTimeToLiveSeconds(resultCacheSourceTimeToLiveSeconds);
+  }
+
+  public void setResultCacheStaleSeconds(long resultCacheStaleSeconds) {
+    resultCache.setStaleSeconds(resultCacheStaleSeconds);
+  }
+
+  public void setResultCacheMaxEntries(int resultCacheMaxEntries) {
+    resultCache.setMaxEntries(resultCacheMaxEntries);
+  }
+
   public void shutdown() {
     cacheCommitPhaser.shutdown();
     cacheBulkProcessor.shutdown();
+    bulkheads.unregisterMBean();
+    resultCache.unregisterMBean();
   }
 
   static class OffsetResultHandler implements Runnable {
@@ -496,15 +749,45 @@ private class CallableSourceResponse implements Callable<SourceResponse> {
 
     private final Source source;
 
-    public CallableSourceResponse(Source source, QueryRequest request) {
+    private final AdaptiveConcurrencyLimit bulkhead;
+
+    private final FederatedResultCache.Key cacheKey;
+
+    public CallableSourceResponse(
+        Source source,
+        QueryRequest request,
+        AdaptiveConcurrencyLimit bulkhead,
+        @Nullable FederatedResultCache.Key cacheKey) {
       this.source = source;
       this.request = request;
+      this.bulkhead = bulkhead;
+      this.cacheKey = cacheKey;
     }
 
     @Override
     public SourceResponse call() throws Exception {
-      QueryRequest queryRequest = getQueryRequest();
-      return getSourceResponse(queryRequest);
+      long start = System.nanoTime();
+      boolean dropped = true;
+      try {
+        if (CancellationTokenImpl.of(request).isCancelled()) {
+          throw new CancellationException(
+              String.format("Query to source %s was cancelled before it started.", source.getId()));
+        }
+        QueryRequest queryRequest = getQueryRequest();
+        SourceResponse sourceResponse = getSourceResponse(queryRequest);
+        dropped = isTimedOut(start);
+        if (cacheKey != null && sourceResponse != null) {
+          resultCache.put(cacheKey, sourceResponse);
+        }
+        return sourceResponse;
+      } finally {
+        bulkhead.release(System.nanoTime() - start, dropped);
+      }
+    }
+
+    private boolean isTimedOut(long start) {
+      long timeout = request.getQuery().getTimeoutMillis();
+      return timeout > 0 && System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(timeout);
     }
 
     @SuppressWarnings("squid:S1181" /*Catching throwable intentionally*/)
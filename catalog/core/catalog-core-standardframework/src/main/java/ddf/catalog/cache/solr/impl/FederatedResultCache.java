@@ -0,0 +1,460 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.solr.impl;
+
+import static ddf.catalog.Constants.ADDITIONAL_SORT_BYS;
+
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.operation.Query;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.impl.QueryResponseImpl;
+import ddf.security.SecurityConstants;
+import ddf.security.SubjectUtils;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.shiro.subject.Subject;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the response of each source to a federated query so that a query repeated within the time
+ * to live of a source is answered without going back to it.
+ *
+ * <p>Entries are keyed by the source, a normalized form of the filter, the sort and the page of the
+ * query, and by the security attributes of the subject running it, so that users with different
+ * attributes never share an entry. Once an entry expires it is still served for a while, during
+ * which a single background refresh replaces it.
+ */
+public class FederatedResultCache implements FederatedResultCacheMBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FederatedResultCache.class);
+
+  static final long DEFAULT_TIME_TO_LIVE_SECONDS = 60;
+
+  static final long DEFAULT_STALE_SECONDS = 300;
+
+  static final int DEFAULT_MAX_ENTRIES = 1000;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong staleHits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong refreshFailures = new AtomicLong();
+
+  private final AtomicLong totalHitAgeMillis = new AtomicLong();
+
+  private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private volatile boolean enabled = false;
+
+  private volatile long defaultTimeToLiveMillis =
+      TimeUnit.SECONDS.toMillis(DEFAULT_TIME_TO_LIVE_SECONDS);
+
+  private volatile Map<String, Long> sourceTimeToLiveMillis = new HashMap<>();
+
+  private volatile long staleMillis = TimeUnit.SECONDS.toMillis(DEFAULT_STALE_SECONDS);
+
+  private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+  private Clock clock = Clock.systemUTC();
+
+  private ObjectName objectName;
+
+  /**
+   * Builds the cache key of a source query.
+   *
+   * @return the key, or {@code null} if the cache is disabled or the source is not cached
+   */
+  @Nullable
+  Key key(String sourceId, QueryRequest request) {
+    if (!enabled || getTimeToLiveMillis(sourceId) <= 0) {
+      return null;
+    }
+
+    Query query = request.getQuery();
+    String filter = normalize(query);
+    if (filter == null) {
+      return null;
+    }
+    return new Key(
+        sourceId,
+        filter,
+        sortKey(query, request.getPropertyValue(ADDITIONAL_SORT_BYS)),
+        query.getStartIndex(),
+        query.getPageSize(),
+        query.requestsTotalResultsCount(),
+        securityPartition(request.getPropertyValue(SecurityConstants.SECURITY_SUBJECT)));
+  }
+
+  /**
+   * Looks up a cached response. Expired entries are only returned while they are within the stale
+   * period, and are removed after it.
+   *
+   * @return the entry, or {@code null} on a miss
+   */
+  @Nullable
+  Entry get(Key key) {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+      if (entry != null && entry.getAgeMillis() > entry.timeToLiveMillis + staleMillis) {
+        entries.remove(key);
+        entry = null;
+      }
+    }
+
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    if (entry.isStale()) {
+      staleHits.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    totalHitAgeMillis.addAndGet(entry.getAgeMillis());
+    return entry;
+  }
+
+  /** Caches a copy of the response of a source, replacing any previous entry for the key. */
+  void put(Key key, SourceResponse response) {
+    Entry entry = new Entry(copy(response), getTimeToLiveMillis(key.sourceId));
+    synchronized (entries) {
+      entries.put(key, entry);
+      while (entries.size() > maxEntries) {
+        Key eldest = entries.keySet().iterator().next();
+        entries.remove(eldest);
+      }
+    }
+  }
+
+  void refreshFailed(Entry entry) {
+    refreshFailures.incrementAndGet();
+    entry.refreshing.set(false);
+  }
+
+  private long getTimeToLiveMillis(String sourceId) {
+    return sourceTimeToLiveMillis.getOrDefault(sourceId, defaultTimeToLiveMillis);
+  }
+
+  /**
+   * Turns the filter into a string in which the operands of {@code And} and {@code Or} are sorted,
+   * so that queries which only differ in the order of their criteria share an entry.
+   *
+   * @return the string, or {@code null} if the filter holds something that cannot be encoded
+   *     reliably, in which case the query is not cached
+   */
+  @Nullable
+  static String normalize(Filter filter) {
+    try {
+      return FilterKeyVisitor.encode(filter);
+    } catch (UnsupportedOperationException e) {
+      LOGGER.trace("Not caching the query, {}", e.getMessage());
+      return null;
+    }
+  }
+
+  private static String sortKey(Query query, Serializable additionalSortBys) {
+    List<SortBy> sortBys = new ArrayList<>();
+    sortBys.add(query.getSortBy());
+    if (additionalSortBys instanceof SortBy[]) {
+      sortBys.addAll(Arrays.asList((SortBy[]) additionalSortBys));
+    }
+    return sortBys
+        .stream()
+        .map(
+            sortBy ->
+                sortBy == null || sortBy.getPropertyName() == null
+                    ? ""
+                    : sortBy.getPropertyName().getPropertyName() + " " + sortBy.getSortOrder())
+        .collect(Collectors.joining(","));
+  }
+
+  private static String securityPartition(Serializable subject) {
+    if (!(subject instanceof Subject)) {
+      return "";
+    }
+    return new TreeMap<>(SubjectUtils.getSubjectAttributes((Subject) subject)).toString();
+  }
+
+  /**
+   * Copies the results so neither the cached entry nor the responses served from it are affected by
+   * plugins that modify the metacards they are given.
+   */
+  static QueryResponseImpl copy(SourceResponse response) {
+    List<Result> results =
+        response
+            .getResults()
+            .stream()
+            .map(
+                result -> {
+                  ResultImpl copy =
+                      new ResultImpl(
+                          new MetacardImpl(
+                              result.getMetacard(), result.getMetacard().getMetacardType()));
+                  copy.setRelevanceScore(result.getRelevanceScore());
+                  copy.setDistanceInMeters(result.getDistanceInMeters());
+                  return copy;
+                })
+            .collect(Collectors.toList());
+
+    Map<String, Serializable> properties =
+        response.getProperties() == null
+            ? new HashMap<>()
+            : new HashMap<>(response.getProperties());
+    return new QueryResponseImpl(
+        response.getRequest(), results, true, response.getHits(), properties);
+  }
+
+  void setClock(Clock clock) {
+    this.clock = clock;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled) {
+      clear();
+    }
+  }
+
+  public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+    this.defaultTimeToLiveMillis = TimeUnit.SECONDS.toMillis(Math.max(0, timeToLiveSeconds));
+  }
+
+  /**
+   * Sets the time to live of individual sources, each given as {@code sourceId=seconds}. A time to
+   * live of 0 disables caching for the source.
+   */
+  public void setSourceTimeToLiveSeconds(List<String> sourceTimeToLiveSeconds) {
+    Map<String, Long> timeToLive = new HashMap<>();
+    if (sourceTimeToLiveSeconds != null) {
+      for (String entry : sourceTimeToLiveSeconds) {
+        String sourceId = StringUtils.substringBeforeLast(entry, "=").trim();
+        String seconds = StringUtils.substringAfterLast(entry, "=").trim();
+        try {
+          timeToLive.put(sourceId, TimeUnit.SECONDS.toMillis(Long.parseLong(seconds)));
+        } catch (NumberFormatException e) {
+          LOGGER.debug("Ignoring invalid source time to live [{}].", entry);
+        }
+      }
+    }
+    this.sourceTimeToLiveMillis = timeToLive;
+  }
+
+  public void setStaleSeconds(long staleSeconds) {
+    this.staleMillis = TimeUnit.SECONDS.toMillis(Math.max(0, staleSeconds));
+  }
+
+  public void setMaxEntries(int maxEntries) {
+    this.maxEntries = Math.max(0, maxEntries);
+  }
+
+  @Override
+  public long getHits() {
+    return hits.get();
+  }
+
+  @Override
+  public long getStaleHits() {
+    return staleHits.get();
+  }
+
+  @Override
+  public long getMisses() {
+    return misses.get();
+  }
+
+  @Override
+  public long getRefreshFailures() {
+    return refreshFailures.get();
+  }
+
+  @Override
+  public long getAverageHitAgeMillis() {
+    long served = hits.get() + staleHits.get();
+    return served == 0 ? 0 : totalHitAgeMillis.get() / served;
+  }
+
+  @Override
+  public int getSize() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  @Override
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  void registerMBean() {
+    MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    try {
+      objectName = new ObjectName(OBJECT_NAME);
+      try {
+        mbeanServer.registerMBean(
+            new StandardMBean(this, FederatedResultCacheMBean.class), objectName);
+      } catch (InstanceAlreadyExistsException e) {
+        LOGGER.debug("Re-registering federated result cache MBean");
+        mbeanServer.unregisterMBean(objectName);
+        mbeanServer.registerMBean(
+            new StandardMBean(this, FederatedResultCacheMBean.class), objectName);
+      }
+    } catch (JMException e) {
+      LOGGER.debug("Could not register federated result cache MBean.", e);
+    }
+  }
+
+  void unregisterMBean() {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      if (mbeanServer.isRegistered(objectName)) {
+        mbeanServer.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      LOGGER.debug("Could not unregister federated result cache MBean.", e);
+    }
+  }
+
+  static final class Key {
+
+    private final String sourceId;
+
+    private final String filter;
+
+    private final String sort;
+
+    private final int startIndex;
+
+    private final int pageSize;
+
+    private final boolean totalResultsCount;
+
+    private final String securityPartition;
+
+    private final int hashCode;
+
+    Key(
+        String sourceId,
+        String filter,
+        String sort,
+        int startIndex,
+        int pageSize,
+        boolean totalResultsCount,
+        String securityPartition) {
+      this.sourceId = sourceId;
+      this.filter = filter;
+      this.sort = sort;
+      this.startIndex = startIndex;
+      this.pageSize = pageSize;
+      this.totalResultsCount = totalResultsCount;
+      this.securityPartition = securityPartition;
+      this.hashCode =
+          Objects.hash(
+              sourceId, filter, sort, startIndex, pageSize, totalResultsCount, securityPartition);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return startIndex == key.startIndex
+          && pageSize == key.pageSize
+          && totalResultsCount == key.totalResultsCount
+          && Objects.equals(sourceId, key.sourceId)
+          && Objects.equals(filter, key.filter)
+          && Objects.equals(sort, key.sort)
+          && Objects.equals(securityPartition, key.securityPartition);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  final class Entry {
+
+    private final SourceResponse response;
+
+    private final long timeToLiveMillis;
+
+    private final long created = clock.millis();
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private Entry(SourceResponse response, long timeToLiveMillis) {
+      this.response = response;
+      this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    /** @return a copy of the cached response, answering the given request */
+    SourceResponse getResponse(QueryRequest request) {
+      QueryResponseImpl copy = copy(response);
+      return new QueryResponseImpl(
+          request, copy.getResults(), true, copy.getHits(), copy.getProperties());
+    }
+
+    long getAgeMillis() {
+      return clock.millis() - created;
+    }
+
+    boolean isStale() {
+      return getAgeMillis() > timeToLiveMillis;
+    }
+
+    /** @return {@code true} if the caller should refresh this entry */
+    boolean startRefresh() {
+      return isStale() && refreshing.compareAndSet(false, true);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.solr.impl;
+
+/** Exposes the effectiveness of the federated query result cache. */
+public interface FederatedResultCacheMBean {
+
+  String OBJECT_NAME =
+      "ddf.catalog.cache.solr.impl.CachingFederationStrategy:service=federated-result-cache";
+
+  /** @return the number of source queries answered from the cache while the entry was fresh */
+  long getHits();
+
+  /** @return the number of source queries answered from an expired entry while it was refreshed */
+  long getStaleHits();
+
+  /** @return the number of cacheable source queries that had to go to the source */
+  long getMisses();
+
+  /** @return the number of background refreshes of expired entries that failed */
+  long getRefreshFailures();
+
+  /** @return the average age, in milliseconds, of the entries served from the cache */
+  long getAverageHitAgeMillis();
+
+  /** @return the number of entries currently cached */
+  int getSize();
+
+  /** Removes every cached entry. */
+  void clear();
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.solr.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounds the work the {@link CachingFederationStrategy} hands to its executor.
+ *
+ * <p>Federated queries are admitted through a global limit. Queries that cannot run right away wait
+ * in a bounded queue, and are rejected up front when the queue is full or when the expected wait,
+ * estimated from how long admitted queries have recently been taking, would use up their timeout.
+ * Once admitted, each source is queried through its own {@link AdaptiveConcurrencyLimit} so a slow
+ * source only ever ties up as many threads as its limit allows.
+ */
+public class FederationBulkheads implements FederationBulkheadsMBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FederationBulkheads.class);
+
+  static final int DEFAULT_MAX_CONCURRENT_QUERIES = 128;
+
+  static final int DEFAULT_MAX_QUEUED_QUERIES = 256;
+
+  static final int DEFAULT_MIN_SOURCE_CONCURRENCY = 2;
+
+  static final int DEFAULT_MAX_SOURCE_CONCURRENCY = 64;
+
+  static final int DEFAULT_INITIAL_SOURCE_CONCURRENCY = 16;
+
+  private static final double DURATION_SMOOTHING = 0.1;
+
+  private final Map<String, AdaptiveConcurrencyLimit> sourceLimits = new ConcurrentHashMap<>();
+
+  private final AtomicInteger queuedQueries = new AtomicInteger();
+
+  private final AtomicLong rejectedQueries = new AtomicLong();
+
+  private final AtomicLong saturatedSourceQueries = new AtomicLong();
+
+  private volatile int maxConcurrentQueries = DEFAULT_MAX_CONCURRENT_QUERIES;
+
+  private volatile Semaphore admission = new Semaphore(DEFAULT_MAX_CONCURRENT_QUERIES);
+
+  private volatile int maxQueuedQueries = DEFAULT_MAX_QUEUED_QUERIES;
+
+  private volatile int minSourceConcurrency = DEFAULT_MIN_SOURCE_CONCURRENCY;
+
+  private volatile int maxSourceConcurrency = DEFAULT_MAX_SOURCE_CONCURRENCY;
+
+  private volatile int initialSourceConcurrency = DEFAULT_INITIAL_SOURCE_CONCURRENCY;
+
+  private volatile double averageQueryMillis;
+
+  private ObjectName objectName;
+
+  /**
+   * Admits a federated query, waiting for a slot if necessary.
+   *
+   * @param timeoutMillis the timeout of the query, or less than 1 if it has none
+   * @return the admission, which must be closed once the query completes, or {@code null} if the
+   *     query was rejected
+   * @throws InterruptedException if interrupted while waiting to be admitted
+   */
+  @Nullable
+  Admission admit(long timeoutMillis) throws InterruptedException {
+    Semaphore permits = admission;
+    if (permits.tryAcquire()) {
+      return new Admission(permits, 0);
+    }
+
+    if (queuedQueries.incrementAndGet() > maxQueuedQueries || exceedsDeadline(timeoutMillis)) {
+      queuedQueries.decrementAndGet();
+      rejectedQueries.incrementAndGet();
+      return null;
+    }
+
+    long start = System.currentTimeMillis();
+    try {
+      boolean acquired;
+      if (timeoutMillis < 1) {
+        permits.acquire();
+        acquired = true;
+      } else {
+        acquired = permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+      }
+
+      if (!acquired) {
+        rejectedQueries.incrementAndGet();
+        return null;
+      }
+      return new Admission(permits, System.currentTimeMillis() - start);
+    } finally {
+      queuedQueries.decrementAndGet();
+    }
+  }
+
+  private boolean exceedsDeadline(long timeoutMillis) {
+    if (timeoutMillis < 1) {
+      return false;
+    }
+    double expectedWait = queuedQueries.get() * averageQueryMillis / maxConcurrentQueries;
+    if (expectedWait >= timeoutMillis) {
+      LOGGER.debug(
+          "Rejecting query expected to wait {} ms for admission with a timeout of {} ms.",
+          expectedWait,
+          timeoutMillis);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Reserves a slot on the bulkhead of a source.
+   *
+   * @return the bulkhead to release once the source query completes, or {@code null} if the source
+   *     is saturated
+   */
+  @Nullable
+  AdaptiveConcurrencyLimit tryAcquire(String sourceId) {
+    AdaptiveConcurrencyLimit limit =
+        sourceLimits.computeIfAbsent(
+            String.valueOf(sourceId),
+            id ->
+                new AdaptiveConcurrencyLimit(
+                    initialSourceConcurrency, minSourceConcurrency, maxSourceConcurrency));
+    if (limit.tryAcquire()) {
+      return limit;
+    }
+    saturatedSourceQueries.incrementAndGet();
+    return null;
+  }
+
+  public void setMaxConcurrentQueries(int maxConcurrentQueries) {
+    if (maxConcurrentQueries < 1) {
+      LOGGER.debug(
+          "Invalid maximum concurrent queries {}. Keeping current value.", maxConcurrentQueries);
+      return;
+    }
+    this.maxConcurrentQueries = maxConcurrentQueries;
+    // Queries admitted through the previous semaphore release their permits back to it
+    this.admission = new Semaphore(maxConcurrentQueries);
+  }
+
+  public void setMaxQueuedQueries(int maxQueuedQueries) {
+    this.maxQueuedQueries = Math.max(0, maxQueuedQueries);
+  }
+
+  public void setMinSourceConcurrency(int minSourceConcurrency) {
+    this.minSourceConcurrency = Math.max(1, minSourceConcurrency);
+    sourceLimits.clear();
+  }
+
+  public void setMaxSourceConcurrency(int maxSourceConcurrency) {
+    this.maxSourceConcurrency = Math.max(1, maxSourceConcurrency);
+    sourceLimits.clear();
+  }
+
+  public void setInitialSourceConcurrency(int initialSourceConcurrency) {
+    this.initialSourceConcurrency = Math.max(1, initialSourceConcurrency);
+    sourceLimits.clear();
+  }
+
+  @Override
+  public int getActiveQueries() {
+    return maxConcurrentQueries - admission.availablePermits();
+  }
+
+  @Override
+  public int getQueuedQueries() {
+    return queuedQueries.get();
+  }
+
+  @Override
+  public long getRejectedQueries() {
+    return rejectedQueries.get();
+  }
+
+  @Override
+  public long getSaturatedSourceQueries() {
+    return saturatedSourceQueries.get();
+  }
+
+  @Override
+  public Map<String, Integer> getSourceLimits() {
+    Map<String, Integer> limits = new TreeMap<>();
+    sourceLimits.forEach((id, limit) -> limits.put(id, limit.getLimit()));
+    return limits;
+  }
+
+  @Override
+  public Map<String, Integer> getSourceInFlight() {
+    Map<String, Integer> inFlight = new TreeMap<>();
+    sourceLimits.forEach((id, limit) -> inFlight.put(id, limit.getInFlight()));
+    return inFlight;
+  }
+
+  void registerMBean() {
+    MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    try {
+      objectName = new ObjectName(OBJECT_NAME);
+      try {
+        mbeanServer.registerMBean(
+            new StandardMBean(this, FederationBulkheadsMBean.class), objectName);
+      } catch (InstanceAlreadyExistsException e) {
+        LOGGER.debug("Re-registering federation bulkheads MBean");
+        mbeanServer.unregisterMBean(objectName);
+        mbeanServer.registerMBean(
+            new StandardMBean(this, FederationBulkheadsMBean.class), objectName);
+      }
+    } catch (JMException e) {
+      LOGGER.debug("Could not register federation bulkheads MBean.", e);
+    }
+  }
+
+  void unregisterMBean() {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      if (mbeanServer.isRegistered(objectName)) {
+        mbeanServer.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      LOGGER.debug("Could not unregister federation bulkheads MBean.", e);
+    }
+  }
+
+  /** A slot in the global admission limit held for the duration of one federated query. */
+  class Admission implements AutoCloseable {
+
+    private final Semaphore permits;
+
+    private final long waitedMillis;
+
+    private final long admitted = System.currentTimeMillis();
+
+    private boolean closed;
+
+    private Admission(Semaphore permits, long waitedMillis) {
+      this.permits = permits;
+      this.waitedMillis = waitedMillis;
+    }
+
+    /** @return how long the query waited in the admission queue */
+    long getWaitedMillis() {
+      return waitedMillis;
+    }
+
+    @Override
+    public synchronized void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      permits.release();
+      long duration = System.currentTimeMillis() - admitted;
+      averageQueryMillis += (duration - averageQueryMillis) * DURATION_SMOOTHING;
+    }
+  }
+}
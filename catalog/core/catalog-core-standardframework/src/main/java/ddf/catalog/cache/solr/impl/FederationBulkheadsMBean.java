@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.solr.impl;
+
+import java.util.Map;
+
+/** Exposes the admission control and per-source concurrency limits of federated queries. */
+public interface FederationBulkheadsMBean {
+
+  String OBJECT_NAME =
+      "ddf.catalog.cache.solr.impl.CachingFederationStrategy:service=federation-bulkheads";
+
+  /** @return the number of federated queries currently running */
+  int getActiveQueries();
+
+  /** @return the number of federated queries waiting to be admitted */
+  int getQueuedQueries();
+
+  /** @return the number of federated queries rejected since startup */
+  long getRejectedQueries();
+
+  /** @return the number of source queries rejected because the source was saturated */
+  long getSaturatedSourceQueries();
+
+  /** @return the current concurrency limit of each source */
+  Map<String, Integer> getSourceLimits();
+
+  /** @return the number of queries currently in flight against each source */
+  Map<String, Integer> getSourceInFlight();
+}
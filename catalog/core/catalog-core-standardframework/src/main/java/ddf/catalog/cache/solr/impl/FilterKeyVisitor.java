@@ -0,0 +1,461 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.solr.impl;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.BinaryLogicOperator;
+import org.opengis.filter.ExcludeFilter;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterVisitor;
+import org.opengis.filter.Id;
+import org.opengis.filter.IncludeFilter;
+import org.opengis.filter.Not;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.PropertyIsNil;
+import org.opengis.filter.PropertyIsNotEqualTo;
+import org.opengis.filter.PropertyIsNull;
+import org.opengis.filter.expression.Add;
+import org.opengis.filter.expression.Divide;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.ExpressionVisitor;
+import org.opengis.filter.expression.Function;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.Multiply;
+import org.opengis.filter.expression.NilExpression;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.expression.Subtract;
+import org.opengis.filter.spatial.BBOX;
+import org.opengis.filter.spatial.Beyond;
+import org.opengis.filter.spatial.BinarySpatialOperator;
+import org.opengis.filter.spatial.Contains;
+import org.opengis.filter.spatial.Crosses;
+import org.opengis.filter.spatial.DWithin;
+import org.opengis.filter.spatial.Disjoint;
+import org.opengis.filter.spatial.DistanceBufferOperator;
+import org.opengis.filter.spatial.Equals;
+import org.opengis.filter.spatial.Intersects;
+import org.opengis.filter.spatial.Overlaps;
+import org.opengis.filter.spatial.Touches;
+import org.opengis.filter.spatial.Within;
+import org.opengis.filter.temporal.After;
+import org.opengis.filter.temporal.AnyInteracts;
+import org.opengis.filter.temporal.Before;
+import org.opengis.filter.temporal.Begins;
+import org.opengis.filter.temporal.BegunBy;
+import org.opengis.filter.temporal.BinaryTemporalOperator;
+import org.opengis.filter.temporal.During;
+import org.opengis.filter.temporal.EndedBy;
+import org.opengis.filter.temporal.Ends;
+import org.opengis.filter.temporal.Meets;
+import org.opengis.filter.temporal.MetBy;
+import org.opengis.filter.temporal.OverlappedBy;
+import org.opengis.filter.temporal.TContains;
+import org.opengis.filter.temporal.TEquals;
+import org.opengis.filter.temporal.TOverlaps;
+import org.opengis.temporal.Instant;
+import org.opengis.temporal.Period;
+
+/**
+ * Turns a filter into a string that identifies it in the {@link FederatedResultCache}. Two filters
+ * get the same string only if they select the same metacards, and the operands of {@code And} and
+ * {@code Or} are sorted so that their order does not matter.
+ *
+ * <p>Literals are encoded from their value rather than from {@code toString()}, so only literals of
+ * the types known here are supported. Visiting a filter with anything else throws an {@link
+ * UnsupportedOperationException}, and such a filter is not cached.
+ */
+class FilterKeyVisitor implements FilterVisitor, ExpressionVisitor {
+
+  static final FilterKeyVisitor INSTANCE = new FilterKeyVisitor();
+
+  private static final List<String> GEOMETRY_PACKAGES =
+      Arrays.asList("com.vividsolutions.jts.geom.", "org.locationtech.jts.geom.");
+
+  /** @throws UnsupportedOperationException if the filter cannot be encoded */
+  static String encode(Filter filter) {
+    return (String) filter.accept(INSTANCE, null);
+  }
+
+  private String key(Expression expression) {
+    if (expression == null) {
+      return "null";
+    }
+    return (String) expression.accept(this, null);
+  }
+
+  private String logic(String name, BinaryLogicOperator filter) {
+    return filter
+        .getChildren()
+        .stream()
+        .map(FilterKeyVisitor::encode)
+        .sorted()
+        .collect(Collectors.joining(",", name + "(", ")"));
+  }
+
+  private String operator(String name, Object... operands) {
+    return Stream.of(operands)
+        .map(operand -> operand instanceof Expression ? key((Expression) operand) : quote(operand))
+        .collect(Collectors.joining(",", name + "(", ")"));
+  }
+
+  private String comparison(String name, BinaryComparisonOperator filter) {
+    return operator(
+        name, filter.getExpression1(), filter.getExpression2(), filter.isMatchingCase());
+  }
+
+  private String spatial(String name, BinarySpatialOperator filter) {
+    return operator(name, filter.getExpression1(), filter.getExpression2());
+  }
+
+  private String distance(String name, DistanceBufferOperator filter) {
+    return operator(
+        name,
+        filter.getExpression1(),
+        filter.getExpression2(),
+        filter.getDistance(),
+        filter.getDistanceUnits());
+  }
+
+  private String temporal(String name, BinaryTemporalOperator filter) {
+    return operator(name, filter.getExpression1(), filter.getExpression2());
+  }
+
+  private static String quote(Object value) {
+    return value == null ? "null" : "'" + value.toString().replace("'", "''") + "'";
+  }
+
+  private static String literal(Object value) {
+    if (value == null) {
+      return "null";
+    }
+    if (value instanceof CharSequence || value instanceof Character) {
+      return quote(value);
+    }
+    if (value instanceof Number || value instanceof Boolean) {
+      return value.getClass().getSimpleName() + "(" + value + ")";
+    }
+    if (value instanceof Date) {
+      return "Date(" + ((Date) value).getTime() + ")";
+    }
+    if (value instanceof Instant) {
+      Date date = ((Instant) value).getPosition().getDate();
+      return date == null ? unsupported(value) : literal(date);
+    }
+    if (value instanceof Period) {
+      Period period = (Period) value;
+      return "Period(" + literal(period.getBeginning()) + "," + literal(period.getEnding()) + ")";
+    }
+    if (isGeometry(value.getClass())) {
+      // JTS geometries print themselves as WKT at full precision
+      return "Geometry(" + value + ")";
+    }
+    return unsupported(value);
+  }
+
+  private static boolean isGeometry(Class<?> type) {
+    for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+      String name = current.getName();
+      if (GEOMETRY_PACKAGES.stream().anyMatch(name::startsWith) && name.endsWith(".Geometry")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String unsupported(Object value) {
+    throw new UnsupportedOperationException(
+        "Cannot build a cache key for " + value.getClass().getName());
+  }
+
+  @Override
+  public Object visitNullFilter(Object extraData) {
+    return "Null";
+  }
+
+  @Override
+  public Object visit(ExcludeFilter filter, Object extraData) {
+    return "Exclude";
+  }
+
+  @Override
+  public Object visit(IncludeFilter filter, Object extraData) {
+    return "Include";
+  }
+
+  @Override
+  public Object visit(And filter, Object extraData) {
+    return logic("And", filter);
+  }
+
+  @Override
+  public Object visit(Or filter, Object extraData) {
+    return logic("Or", filter);
+  }
+
+  @Override
+  public Object visit(Not filter, Object extraData) {
+    return "Not(" + encode(filter.getFilter()) + ")";
+  }
+
+  @Override
+  public Object visit(Id filter, Object extraData) {
+    return filter
+        .getIdentifiers()
+        .stream()
+        .map(identifier -> quote(identifier.getID()))
+        .sorted()
+        .collect(Collectors.joining(",", "Id(", ")"));
+  }
+
+  @Override
+  public Object visit(PropertyIsBetween filter, Object extraData) {
+    return operator(
+        "Between", filter.getExpression(), filter.getLowerBoundary(), filter.getUpperBoundary());
+  }
+
+  @Override
+  public Object visit(PropertyIsEqualTo filter, Object extraData) {
+    return comparison("EqualTo", filter);
+  }
+
+  @Override
+  public Object visit(PropertyIsNotEqualTo filter, Object extraData) {
+    return comparison("NotEqualTo", filter);
+  }
+
+  @Override
+  public Object visit(PropertyIsGreaterThan filter, Object extraData) {
+    return comparison("GreaterThan", filter);
+  }
+
+  @Override
+  public Object visit(PropertyIsGreaterThanOrEqualTo filter, Object extraData) {
+    return comparison("GreaterThanOrEqualTo", filter);
+  }
+
+  @Override
+  public Object visit(PropertyIsLessThan filter, Object extraData) {
+    return comparison("LessThan", filter);
+  }
+
+  @Override
+  public Object visit(PropertyIsLessThanOrEqualTo filter, Object extraData) {
+    return comparison("LessThanOrEqualTo", filter);
+  }
+
+  @Override
+  public Object visit(PropertyIsLike filter, Object extraData) {
+    return operator(
+        "Like",
+        filter.getExpression(),
+        filter.getLiteral(),
+        filter.isMatchingCase(),
+        filter.getWildCard(),
+        filter.getSingleChar(),
+        filter.getEscape());
+  }
+
+  @Override
+  public Object visit(PropertyIsNull filter, Object extraData) {
+    return operator("Null", filter.getExpression());
+  }
+
+  @Override
+  public Object visit(PropertyIsNil filter, Object extraData) {
+    return operator("Nil", filter.getExpression(), filter.getNilReason());
+  }
+
+  @Override
+  public Object visit(BBOX filter, Object extraData) {
+    return spatial("BBOX", filter);
+  }
+
+  @Override
+  public Object visit(Beyond filter, Object extraData) {
+    return distance("Beyond", filter);
+  }
+
+  @Override
+  public Object visit(Contains filter, Object extraData) {
+    return spatial("Contains", filter);
+  }
+
+  @Override
+  public Object visit(Crosses filter, Object extraData) {
+    return spatial("Crosses", filter);
+  }
+
+  @Override
+  public Object visit(Disjoint filter, Object extraData) {
+    return spatial("Disjoint", filter);
+  }
+
+  @Override
+  public Object visit(DWithin filter, Object extraData) {
+    return distance("DWithin", filter);
+  }
+
+  @Override
+  public Object visit(Equals filter, Object extraData) {
+    return spatial("Equals", filter);
+  }
+
+  @Override
+  public Object visit(Intersects filter, Object extraData) {
+    return spatial("Intersects", filter);
+  }
+
+  @Override
+  public Object visit(Overlaps filter, Object extraData) {
+    return spatial("Overlaps", filter);
+  }
+
+  @Override
+  public Object visit(Touches filter, Object extraData) {
+    return spatial("Touches", filter);
+  }
+
+  @Override
+  public Object visit(Within filter, Object extraData) {
+    return spatial("Within", filter);
+  }
+
+  @Override
+  public Object visit(After after, Object extraData) {
+    return temporal("After", after);
+  }
+
+  @Override
+  public Object visit(AnyInteracts anyInteracts, Object extraData) {
+    return temporal("AnyInteracts", anyInteracts);
+  }
+
+  @Override
+  public Object visit(Before before, Object extraData) {
+    return temporal("Before", before);
+  }
+
+  @Override
+  public Object visit(Begins begins, Object extraData) {
+    return temporal("Begins", begins);
+  }
+
+  @Override
+  public Object visit(BegunBy begunBy, Object extraData) {
+    return temporal("BegunBy", begunBy);
+  }
+
+  @Override
+  public Object visit(During during, Object extraData) {
+    return temporal("During", during);
+  }
+
+  @Override
+  public Object visit(EndedBy endedBy, Object extraData) {
+    return temporal("EndedBy", endedBy);
+  }
+
+  @Override
+  public Object visit(Ends ends, Object extraData) {
+    return temporal("Ends", ends);
+  }
+
+  @Override
+  public Object visit(Meets meets, Object extraData) {
+    return temporal("Meets", meets);
+  }
+
+  @Override
+  public Object visit(MetBy metBy, Object extraData) {
+    return temporal("MetBy", metBy);
+  }
+
+  @Override
+  public Object visit(OverlappedBy overlappedBy, Object extraData) {
+    return temporal("OverlappedBy", overlappedBy);
+  }
+
+  @Override
+  public Object visit(TContains contains, Object extraData) {
+    return temporal("TContains", contains);
+  }
+
+  @Override
+  public Object visit(TEquals equals, Object extraData) {
+    return temporal("TEquals", equals);
+  }
+
+  @Override
+  public Object visit(TOverlaps contains, Object extraData) {
+    return temporal("TOverlaps", contains);
+  }
+
+  @Override
+  public Object visit(NilExpression expression, Object extraData) {
+    return "NilExpression";
+  }
+
+  @Override
+  public Object visit(Add expression, Object extraData) {
+    return operator("Add", expression.getExpression1(), expression.getExpression2());
+  }
+
+  @Override
+  public Object visit(Divide expression, Object extraData) {
+    return operator("Divide", expression.getExpression1(), expression.getExpression2());
+  }
+
+  @Override
+  public Object visit(Multiply expression, Object extraData) {
+    return operator("Multiply", expression.getExpression1(), expression.getExpression2());
+  }
+
+  @Override
+  public Object visit(Subtract expression, Object extraData) {
+    return operator("Subtract", expression.getExpression1(), expression.getExpression2());
+  }
+
+  @Override
+  public Object visit(Function expression, Object extraData) {
+    List<Expression> parameters = expression.getParameters();
+    Object[] operands = parameters == null ? new Object[0] : parameters.toArray();
+    return operator("Function[" + expression.getName() + "]", operands)
+        + "|"
+        + key(expression.getFallbackValue());
+  }
+
+  @Override
+  public Object visit(Literal expression, Object extraData) {
+    return literal(expression.getValue());
+  }
+
+  @Override
+  public Object visit(PropertyName expression, Object extraData) {
+    return "Property(" + Objects.toString(expression.getPropertyName()) + ")";
+  }
+}
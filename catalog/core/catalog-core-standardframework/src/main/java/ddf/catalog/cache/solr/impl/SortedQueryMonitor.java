@@ -14,6 +14,7 @@
 package ddf.catalog.cache.solr.impl;
 
 import static ddf.catalog.Constants.ADDITIONAL_SORT_BYS;
+import static ddf.catalog.Constants.SOURCE_RESPONSE_LISTENER_KEY;
 
 import ddf.catalog.data.Attribute;
 import ddf.catalog.data.Metacard;
@@ -24,6 +25,8 @@
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryResponse;
 import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.SourceResponseListener;
+import ddf.catalog.operation.impl.CancellationTokenImpl;
 import ddf.catalog.operation.impl.ProcessingDetailsImpl;
 import ddf.catalog.operation.impl.QueryResponseImpl;
 import ddf.catalog.operation.impl.SourceResponseImpl;
@@ -76,6 +79,10 @@ class SortedQueryMonitor implements Runnable {
 
   private long deadline;
 
+  private SourceResponseListener sourceResponseListener;
+
+  private Comparator<Result> resultComparator;
+
   public SortedQueryMonitor(
       CachingFederationStrategy cachingFederationStrategy,
       CompletionService<SourceResponse> completionService,
@@ -91,6 +98,11 @@ public SortedQueryMonitor(
     this.futures = futures;
     this.postQuery = postQuery;
     deadline = System.currentTimeMillis() + query.getTimeoutMillis();
+
+    Serializable listener = request.getPropertyValue(SOURCE_RESPONSE_LISTENER_KEY);
+    if (listener instanceof SourceResponseListener) {
+      sourceResponseListener = (SourceResponseListener) listener;
+    }
   }
 
   @Override
@@ -142,6 +154,7 @@ public void run() {
       Comparator<Result> coreComparator = CachingFederationStrategy.DEFAULT_COMPARATOR;
       resultComparator.addComparator(coreComparator);
     }
+    this.resultComparator = resultComparator;
 
     List<Result> resultList = new ArrayList<>();
     long totalHits = 0;
@@ -181,6 +194,7 @@ public void run() {
               queryRequest, sourceId, new NullPointerException(), processingDetails);
         } else if (queryRequest != null) {
           sourceResponse = executePostFederationQueryPlugins(sourceResponse, queryRequest);
+          notifySourceResponse(sourceId, sourceResponse);
           resultList.addAll(sourceResponse.getResults());
           long hits = sourceResponse.getHits();
           totalHits += hits;
@@ -202,6 +216,12 @@ public void run() {
         Thread.currentThread().interrupt();
         break;
       } catch (ExecutionException e) {
+        if (e.getCause() instanceof SourceSaturatedException) {
+          LOGGER.debug("Source {} was saturated and not queried", sourceId);
+          executePostFederationQueryPluginsWithSourceError(
+              queryRequest, sourceId, (SourceSaturatedException) e.getCause(), processingDetails);
+          continue;
+        }
         LOGGER.info(
             "Couldn't get results from completed federated query for sourceId = {}", sourceId, e);
         executePostFederationQueryPluginsWithSourceError(
@@ -242,17 +262,22 @@ private static Comparable getAttributeValue(Result r, String attributeName) {
   }
 
   private void timeoutRemainingSources(Set<ProcessingDetails> processingDetails) {
+    cancelRemainingSources();
     for (QueryRequest expiredSource : futures.values()) {
       if (expiredSource != null) {
         String sourceId = getSourceIdFromRequest(expiredSource);
         LOGGER.info("Search timed out for {}", sourceId);
-        processingDetails.add(new ProcessingDetailsImpl(sourceId, new TimeoutException()));
+        ProcessingDetails processingDetail =
+            new ProcessingDetailsImpl(sourceId, new TimeoutException());
+        processingDetails.add(processingDetail);
+        notifySourceError(sourceId, expiredSource, processingDetail);
       }
     }
   }
 
   private void interruptRemainingSources(
       Set<ProcessingDetails> processingDetails, InterruptedException interruptedException) {
+    cancelRemainingSources();
     for (QueryRequest interruptedSource : futures.values()) {
       if (interruptedSource != null) {
         String sourceId = getSourceIdFromRequest(interruptedSource);
@@ -262,6 +287,17 @@ private void interruptRemainingSources(
     }
   }
 
+  /**
+   * Stops the sources that have not answered: their tokens are cancelled so they can abort their
+   * remote calls, and their tasks are interrupted so the threads are freed.
+   */
+  private void cancelRemainingSources() {
+    for (Map.Entry<Future<SourceResponse>, QueryRequest> remaining : futures.entrySet()) {
+      CancellationTokenImpl.of(remaining.getValue()).cancel();
+      remaining.getKey().cancel(true);
+    }
+  }
+
   private long getTimeRemaining(long deadline) {
     long timeLeft;
     if (System.currentTimeMillis() > deadline) {
@@ -297,6 +333,50 @@ private void executePostFederationQueryPluginsWithSourceError(
     sourceResponse.getProcessingErrors().add(processingDetail);
     processingDetails.add(processingDetail);
     executePostFederationQueryPlugins(sourceResponse, queryRequest);
+    notifySourceError(sourceId, queryRequest, processingDetail);
+  }
+
+  private void notifySourceError(
+      String sourceId, QueryRequest queryRequest, ProcessingDetails processingDetail) {
+    if (sourceResponseListener == null) {
+      return;
+    }
+    QueryResponseImpl partialResponse =
+        new QueryResponseImpl(queryRequest, new ArrayList<>(), true, 0, new HashMap<>());
+    partialResponse.getProcessingDetails().add(processingDetail);
+    notifyListener(sourceId, partialResponse);
+  }
+
+  /**
+   * Hands the response of a single source to the {@link SourceResponseListener} of the request, if
+   * any, with its results sorted the same way the merged results will be.
+   */
+  private void notifySourceResponse(String sourceId, SourceResponse sourceResponse) {
+    if (sourceResponseListener == null) {
+      return;
+    }
+
+    List<Result> sorted = new ArrayList<>(sourceResponse.getResults());
+    if (resultComparator != null) {
+      sorted = sortedResults(sorted, resultComparator);
+    }
+
+    notifyListener(
+        sourceId,
+        new QueryResponseImpl(
+            sourceResponse.getRequest(),
+            sorted,
+            true,
+            sourceResponse.getHits(),
+            sourceResponse.getProperties()));
+  }
+
+  private void notifyListener(String sourceId, QueryResponse partialResponse) {
+    try {
+      sourceResponseListener.onSourceResponse(sourceId, partialResponse);
+    } catch (RuntimeException e) {
+      LOGGER.debug("Source response listener failed for source {}", sourceId, e);
+    }
   }
 
   private SourceResponse executePostFederationQueryPlugins(
@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.solr.impl;
+
+/**
+ * Reported in the {@link ddf.catalog.operation.ProcessingDetails} of a federated query when a
+ * source was skipped because it already had as many queries in flight as its concurrency limit
+ * allows, or when the query itself could not be admitted.
+ */
+public class SourceSaturatedException extends Exception {
+
+  private static final long serialVersionUID = 1L;
+
+  public SourceSaturatedException(String message) {
+    super(message);
+  }
+}
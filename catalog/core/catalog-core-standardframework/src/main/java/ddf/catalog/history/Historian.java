@@ -15,27 +15,39 @@
 
 import static ddf.catalog.core.versioning.MetacardVersion.SKIP_VERSIONING;
 
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteSource;
+import com.google.common.util.concurrent.Striped;
 import ddf.catalog.content.StorageException;
 import ddf.catalog.content.StorageProvider;
 import ddf.catalog.content.data.ContentItem;
 import ddf.catalog.content.data.impl.ContentItemImpl;
 import ddf.catalog.content.operation.CreateStorageResponse;
+import ddf.catalog.content.operation.DeleteStorageResponse;
 import ddf.catalog.content.operation.ReadStorageRequest;
 import ddf.catalog.content.operation.ReadStorageResponse;
 import ddf.catalog.content.operation.UpdateStorageRequest;
 import ddf.catalog.content.operation.UpdateStorageResponse;
 import ddf.catalog.content.operation.impl.CreateStorageRequestImpl;
+import ddf.catalog.content.operation.impl.DeleteStorageRequestImpl;
 import ddf.catalog.content.operation.impl.ReadStorageRequestImpl;
+import ddf.catalog.core.versioning.MetacardVersion;
 import ddf.catalog.core.versioning.MetacardVersion.Action;
 import ddf.catalog.core.versioning.impl.DeletedMetacardImpl;
 import ddf.catalog.core.versioning.impl.MetacardVersionImpl;
+import ddf.catalog.data.Attribute;
 import ddf.catalog.data.AttributeDescriptor;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.MetacardType;
 import ddf.catalog.data.Result;
 import ddf.catalog.data.impl.AttributeImpl;
+import ddf.catalog.data.impl.MetacardImpl;
 import ddf.catalog.filter.FilterBuilder;
 import ddf.catalog.operation.CreateResponse;
 import ddf.catalog.operation.DeleteResponse;
@@ -56,6 +68,8 @@
 import ddf.security.common.audit.SecurityLogger;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
@@ -67,8 +81,12 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collector;
@@ -87,10 +105,27 @@
 /**
  * Class utilizing {@link StorageProvider} and {@link CatalogProvider} to version {@link Metacard}s
  * and associated {@link ContentItem}s.
+ *
+ * <p>Versioned content is stored content-addressed: the storage id of a versioned {@link
+ * ContentItem} is derived from the SHA-256 digest of its bytes, so content that has not changed
+ * between versions is stored once and referenced by every version metacard that shares it. The
+ * stored content is removed once the last metacard referencing it is deleted.
+ *
+ * <p>Deciding whether content is already stored and deciding whether it is still referenced are
+ * done under a lock per content id. A version metacard that references stored content may not be
+ * visible to queries until the catalog commits it, so content referenced within the last two
+ * minutes is not removed right away. It is checked again when later deletes are versioned.
  */
 public class Historian {
   private static final Logger LOGGER = LoggerFactory.getLogger(Historian.class);
 
+  private static final String METRICS_DOMAIN = "ddf.metrics.catalog.history";
+
+  /** Longer than the default soft commit interval of the Solr catalog provider. */
+  private static final long DEFAULT_REFERENCE_VISIBILITY_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+  private static final int CONTENT_LOCK_STRIPES = 64;
+
   private static final Collector<CharSequence, ?, String> TO_A_STRING =
       Collectors.joining(", ", "[", "]");
 
@@ -115,7 +150,30 @@ public class Historian {
 
   private SubjectIdentity subjectIdentity;
 
+  private final MetricRegistry metrics = new MetricRegistry();
+
+  private final JmxReporter reporter =
+      JmxReporter.forRegistry(metrics).inDomain(METRICS_DOMAIN).build();
+
+  private final Meter contentBytesStored = metrics.meter("ContentBytesStored");
+
+  private final Meter contentBytesReferenced = metrics.meter("ContentBytesReferenced");
+
+  private final Timer contentVersioningTimer = metrics.timer("ContentVersioning");
+
+  private final Striped<Lock> contentLocks = Striped.lock(CONTENT_LOCK_STRIPES);
+
+  /** Content id to the time it was last referenced by a new version metacard. */
+  private final Map<String, Long> recentReferences = new ConcurrentHashMap<>();
+
+  /** Unreferenced content that was referenced too recently to be removed yet. */
+  private final Set<URI> deferredContentUris = ConcurrentHashMap.newKeySet();
+
+  private long referenceVisibilityMillis = DEFAULT_REFERENCE_VISIBILITY_MILLIS;
+
   public void init() {
+    reporter.start();
+
     Bundle bundle = FrameworkUtil.getBundle(Historian.class);
     BundleContext context = bundle == null ? null : bundle.getBundleContext();
     if (bundle == null || context == null) {
@@ -136,6 +194,10 @@ public void init() {
     }
   }
 
+  public void destroy() {
+    reporter.stop();
+  }
+
   /**
    * Versions metacards being updated based off of the {@link Update#getOldMetacard} method on
    * {@link UpdateResponse}
@@ -267,16 +329,16 @@ public UpdateStorageResponse version(
             getAction,
             (Subject) updateResponse.getProperties().get(SecurityConstants.SECURITY_SUBJECT));
 
-    CreateStorageResponse createStorageResponse = versionContentItems(content, versionMetacards);
+    Map<String, String> contentUris = versionContentItems(content, versionMetacards);
 
-    if (createStorageResponse == null) {
+    if (contentUris == null) {
       String message = "Could not version content items for: " + getList(originalMetacards);
       SecurityLogger.audit(message);
       LOGGER.debug(message);
       return updateStorageResponse;
     }
 
-    setResourceUriForContent(/*mutable*/ versionMetacards, createStorageResponse);
+    setResourceUriForContent(/*mutable*/ versionMetacards, contentUris);
 
     CreateResponse createResponse = storeVersionMetacards(versionMetacards);
 
@@ -296,6 +358,10 @@ public UpdateStorageResponse version(
    */
   public DeleteResponse version(DeleteResponse deleteResponse)
       throws SourceUnavailableException, IngestException {
+    if (deleteResponse != null) {
+      deleteUnreferencedContent(deleteResponse.getDeletedMetacards());
+    }
+
     if (doSkip(deleteResponse)) {
       return deleteResponse;
     }
@@ -372,13 +438,11 @@ public DeleteResponse version(DeleteResponse deleteResponse)
       }
     }
 
-    CreateStorageResponse createStorageResponse = versionContentItems(contentItems, versionedMap);
-    if (createStorageResponse != null) {
-      setResourceUriForContent(/*Mutable*/ versionedMap, createStorageResponse);
+    Map<String, String> contentUris = versionContentItems(contentItems, versionedMap);
+    if (contentUris != null) {
+      setResourceUriForContent(/*Mutable*/ versionedMap, contentUris);
       if (LOGGER.isTraceEnabled()) {
-        LOGGER.trace(
-            "Successfully stored content under ids: {}",
-            createStorageResponse.getCreatedContentItems());
+        LOGGER.trace("Successfully versioned content under uris: {}", contentUris.values());
       }
     }
 
@@ -464,6 +528,10 @@ public void setSubjectIdentity(SubjectIdentity subjectIdentity) {
     this.subjectIdentity = subjectIdentity;
   }
 
+  void setReferenceVisibilityMillis(long referenceVisibilityMillis) {
+    this.referenceVisibilityMillis = referenceVisibilityMillis;
+  }
+
   public void setSkipFlag(@Nullable Operation op) {
     Optional.ofNullable(op)
         .map(Operation::getProperties)
@@ -528,16 +596,17 @@ private ReadStorageResponse getStorageItem(ReadStorageRequest r) {
     return null;
   }
 
+  /*Map<Version Metacard ID -> versioned content URI>*/
   @Nullable
-  private CreateStorageResponse versionContentItems(
+  private Map<String, String> versionContentItems(
       Map<String, List<ContentItem>> items, Map<String, Metacard> versionedMetacards)
       throws SourceUnavailableException, IngestException {
     List<ContentItem> contentItems =
         items
-            .entrySet()
+            .values()
             .stream()
-            .map(e -> getVersionedContentItems(e.getValue(), versionedMetacards))
             .flatMap(Collection::stream)
+            .filter(content -> versionedMetacards.containsKey(content.getId()))
             .collect(Collectors.toList());
 
     if (contentItems.isEmpty()) {
@@ -545,17 +614,62 @@ private CreateStorageResponse versionContentItems(
       return null;
     }
 
-    CreateStorageResponse createStorageResponse =
-        executeAsSystem(
-            () ->
-                storageProvider()
-                    .create(new CreateStorageRequestImpl(contentItems, new HashMap<>())));
-    tryCommitStorage(createStorageResponse);
-    if (LOGGER.isTraceEnabled()) {
-      LOGGER.trace(
-          "Successfully stored resources: {}", createStorageResponse.getCreatedContentItems());
+    try (Timer.Context time = contentVersioningTimer.time()) {
+      List<ContentItemImpl> versionedItems = new ArrayList<>();
+      for (ContentItem content : contentItems) {
+        versionedItems.add(createContentItem(content, versionedMetacards));
+      }
+
+      Iterable<Lock> locks =
+          lockContent(versionedItems.stream().map(ContentItem::getId).collect(Collectors.toSet()));
+      try {
+        return storeContentItems(versionedItems);
+      } finally {
+        unlockContent(locks);
+      }
     }
-    return createStorageResponse;
+  }
+
+  /** Must be called holding the locks for the content ids of the items. */
+  private Map<String, String> storeContentItems(List<ContentItemImpl> versionedItems)
+      throws IngestException {
+    Map<String, String> contentUris = new HashMap<>();
+    Map<String, ContentItemImpl> itemsToStore = new HashMap<>();
+    long bytesStored = 0;
+    long bytesReferenced = 0;
+    long now = System.currentTimeMillis();
+    recentReferences.values().removeIf(time -> time < now - referenceVisibilityMillis);
+    for (ContentItemImpl versionedItem : versionedItems) {
+      String uri = versionedItem.getUri();
+      recentReferences.put(versionedItem.getId(), now);
+      if (itemsToStore.containsKey(uri) || isStored(versionedItem)) {
+        LOGGER.trace(
+            "Content for {} is already stored under {}", versionedItem.getMetacard().getId(), uri);
+        bytesReferenced += getSize(versionedItem);
+      } else {
+        itemsToStore.put(uri, versionedItem);
+        bytesStored += getSize(versionedItem);
+      }
+      contentUris.put(versionedItem.getMetacard().getId(), uri);
+    }
+
+    if (!itemsToStore.isEmpty()) {
+      List<ContentItem> itemsToCreate = new ArrayList<>(itemsToStore.values());
+      CreateStorageResponse createStorageResponse =
+          executeAsSystem(
+              () ->
+                  storageProvider()
+                      .create(new CreateStorageRequestImpl(itemsToCreate, new HashMap<>())));
+      tryCommitStorage(createStorageResponse);
+      if (LOGGER.isTraceEnabled()) {
+        LOGGER.trace(
+            "Successfully stored resources: {}", createStorageResponse.getCreatedContentItems());
+      }
+      contentBytesStored.mark(bytesStored);
+    }
+    contentBytesReferenced.mark(bytesReferenced);
+
+    return contentUris;
   }
 
   private void tryCommitStorage(CreateStorageResponse createStorageResponse)
@@ -573,19 +687,170 @@ private void tryCommitStorage(CreateStorageResponse createStorageResponse)
     }
   }
 
-  private List<ContentItemImpl> getVersionedContentItems(
-      List<ContentItem> entry, Map<String, Metacard> versionedMetacards) {
-    return entry
-        .stream()
-        .map(content -> createContentItem(content, versionedMetacards))
-        .collect(Collectors.toList());
+  /**
+   * Derives the storage id of versioned content from the SHA-256 digest of its bytes. The digest is
+   * shaped into a version 4 UUID so that it is accepted as a content id by storage providers.
+   */
+  private String getContentId(ContentItem content) throws IngestException {
+    HashCode hash;
+    try {
+      hash = new WrappedByteSource(content).hash(Hashing.sha256());
+    } catch (IOException e) {
+      LOGGER.debug("Could not read content to version (id: {})", content.getId(), e);
+      throw new IngestException("Could not read content to version");
+    }
+
+    ByteBuffer bytes = ByteBuffer.wrap(hash.asBytes());
+    long mostSigBits = (bytes.getLong() & ~0xF000L) | 0x4000L;
+    long leastSigBits = (bytes.getLong() & ~(0xCL << 60)) | (0x8L << 60);
+    return new UUID(mostSigBits, leastSigBits).toString().replace("-", "");
+  }
+
+  /**
+   * Version metacards without versioned content keep the resource URI of the metacard they are a
+   * version of, and versions made before content was stored by digest point at content stored under
+   * their own id. Neither is shared content.
+   */
+  private static boolean hasVersionedContent(Metacard version) {
+    URI uri = version.getResourceURI();
+    if (uri == null || !ContentItem.CONTENT_SCHEME.equals(uri.getScheme())) {
+      return false;
+    }
+    String contentId = uri.getSchemeSpecificPart();
+    Attribute versionOfId = version.getAttribute(MetacardVersion.VERSION_OF_ID);
+    return !contentId.equals(version.getId())
+        && (versionOfId == null || !contentId.equals(versionOfId.getValue()));
+  }
+
+  private boolean isStored(ContentItem content) {
+    try {
+      ReadStorageResponse response =
+          storageProvider()
+              .read(
+                  new ReadStorageRequestImpl(
+                      URI.create(content.getUri()), content.getId(), new HashMap<>()));
+      return response != null
+          && response.getContentItem() != null
+          && content.getId().equals(response.getContentItem().getId());
+    } catch (StorageException e) {
+      LOGGER.trace("No content stored under {}", content.getUri());
+      return false;
+    }
+  }
+
+  /**
+   * Removes versioned content that is no longer referenced once the version metacards pointing at
+   * it have been deleted. Content stored under the id of the metacard itself is removed by the
+   * regular delete and is not considered here. Content that was referenced too recently for the
+   * reference to be visible is deferred, and checked again by the next call.
+   */
+  private void deleteUnreferencedContent(List<Metacard> deletedMetacards) throws IngestException {
+    Set<String> deletedIds =
+        deletedMetacards.stream().map(Metacard::getId).collect(Collectors.toSet());
+
+    Set<URI> contentUris =
+        deletedMetacards
+            .stream()
+            .filter(MetacardVersionImpl::isVersion)
+            .filter(Historian::hasVersionedContent)
+            .map(Metacard::getResourceURI)
+            .collect(Collectors.toSet());
+    contentUris.addAll(deferredContentUris);
+
+    if (contentUris.isEmpty()) {
+      return;
+    }
+
+    Iterable<Lock> locks =
+        lockContent(
+            contentUris.stream().map(URI::getSchemeSpecificPart).collect(Collectors.toSet()));
+    try {
+      deleteUnreferencedContent(contentUris, deletedIds);
+    } finally {
+      unlockContent(locks);
+    }
+  }
+
+  /** Must be called holding the locks for the content ids of the URIs. */
+  private void deleteUnreferencedContent(Set<URI> contentUris, Set<String> deletedIds)
+      throws IngestException {
+    long referencedSince = System.currentTimeMillis() - referenceVisibilityMillis;
+    List<Metacard> unreferenced = new ArrayList<>();
+    for (URI uri : contentUris) {
+      String contentId = uri.getSchemeSpecificPart();
+      Long referenced = recentReferences.get(contentId);
+      if (referenced != null && referenced >= referencedSince) {
+        LOGGER.trace("Deferring removal of recently referenced versioned content {}", uri);
+        deferredContentUris.add(uri);
+        continue;
+      }
+      deferredContentUris.remove(uri);
+
+      Map<String, Metacard> references;
+      try {
+        references =
+            query(
+                filterBuilder.attribute(Metacard.RESOURCE_URI).is().equalTo().text(uri.toString()));
+      } catch (UnsupportedQueryException e) {
+        LOGGER.debug("Could not count references to versioned content {}", uri, e);
+        continue;
+      }
+      references.keySet().removeAll(deletedIds);
+      if (references.isEmpty()) {
+        MetacardImpl content = new MetacardImpl();
+        content.setId(contentId);
+        unreferenced.add(content);
+      }
+    }
+
+    if (unreferenced.isEmpty()) {
+      return;
+    }
+
+    DeleteStorageResponse deleteStorageResponse =
+        executeAsSystem(
+            () ->
+                storageProvider()
+                    .delete(new DeleteStorageRequestImpl(unreferenced, new HashMap<>())));
+    try {
+      storageProvider().commit(deleteStorageResponse.getStorageRequest());
+    } catch (StorageException e) {
+      LOGGER.debug("Could not remove unreferenced versioned content", e);
+      throw new IngestException("Error removing versioned content");
+    }
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace(
+          "Removed unreferenced versioned content: {}",
+          unreferenced.stream().map(Metacard::getId).collect(TO_A_STRING));
+    }
+  }
+
+  /** Locks the content ids in a consistent order, so that callers can not deadlock. */
+  private Iterable<Lock> lockContent(Set<String> contentIds) {
+    Iterable<Lock> locks = contentLocks.bulkGet(contentIds);
+    locks.forEach(Lock::lock);
+    return locks;
+  }
+
+  private static void unlockContent(Iterable<Lock> locks) {
+    locks.forEach(Lock::unlock);
   }
 
   private ContentItemImpl createContentItem(
-      ContentItem content, Map<String, Metacard> versionedMetacards) {
-    long size = 0;
+      ContentItem content, Map<String, Metacard> versionedMetacards) throws IngestException {
+    return new ContentItemImpl(
+        getContentId(content),
+        content.getQualifier(),
+        new WrappedByteSource(content),
+        content.getMimeTypeRawData(),
+        content.getFilename(),
+        getSize(content),
+        versionedMetacards.get(content.getId()));
+  }
+
+  private static long getSize(ContentItem content) {
     try {
-      size = content.getSize();
+      return content.getSize();
     } catch (IOException e) {
       LOGGER.debug(
           "Could not get size of file. (file: {}) (id: {})",
@@ -593,14 +858,7 @@ private ContentItemImpl createContentItem(
           content.getId(),
           e);
     }
-    return new ContentItemImpl(
-        versionedMetacards.get(content.getId()).getId(),
-        content.getQualifier(),
-        new WrappedByteSource(content),
-        content.getMimeTypeRawData(),
-        content.getFilename(),
-        size,
-        versionedMetacards.get(content.getId()));
+    return 0;
   }
 
   /*Map<MetacardVersion.VERSION_OF_ID -> MetacardVersion>*/
@@ -665,25 +923,12 @@ private CreateResponse storeVersionMetacards(Map<String, Metacard> versionMetaca
   }
 
   private void setResourceUriForContent(
-      /*mutable*/ Map<String, Metacard> versionMetacards,
-      CreateStorageResponse createStorageResponse) {
-    for (ContentItem contentItem : createStorageResponse.getCreatedContentItems()) {
-      Metacard metacard =
-          versionMetacards
-              .values()
-              .stream()
-              .filter(m -> contentItem.getId().equals(m.getId()))
-              .findFirst()
-              .orElse(null);
-
-      if (metacard == null) {
-        LOGGER.debug(
-            "Could not find version metacard to set resource URI for (contentItem id: {})."
-                + " This means a contentItem has been created and it is not linked to any metacard",
-            contentItem);
-        continue;
+      /*mutable*/ Map<String, Metacard> versionMetacards, Map<String, String> contentUris) {
+    for (Metacard metacard : versionMetacards.values()) {
+      String uri = contentUris.get(metacard.getId());
+      if (uri != null) {
+        metacard.setAttribute(new AttributeImpl(Metacard.RESOURCE_URI, uri));
       }
-      metacard.setAttribute(new AttributeImpl(Metacard.RESOURCE_URI, contentItem.getUri()));
     }
   }
 
@@ -0,0 +1,300 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.sourcepoller;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.MoreExecutors;
+import ddf.catalog.source.SourceAvailabilityService;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the availability checks of every registered source. A single scheduler thread only decides
+ * when each check is due and hands it to a bounded pool, so a source that is slow to answer cannot
+ * hold up the checks of the others.
+ *
+ * <p>After a failed check the source is probed again after {@link #setFastProbeSeconds(long)}, and
+ * the delay doubles with every further failure up to the larger of its poll interval and {@link
+ * #setMaxBackoffMinutes(long)}. Every delay is spread by {@link #setJitterPercent(int)}.
+ */
+public class SourceAvailabilityServiceImpl implements SourceAvailabilityService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SourceAvailabilityServiceImpl.class);
+
+  private static final long MINIMUM_POLL_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+  private static final int MAXIMUM_BACKOFF_DOUBLINGS = 20;
+
+  private static final int MAXIMUM_QUEUED_CHECKS = 1024;
+
+  private final ScheduledExecutorService scheduler;
+
+  private final ExecutorService checkExecutor;
+
+  private final Set<SourceRegistration> registrations = ConcurrentHashMap.newKeySet();
+
+  private volatile long fastProbeMillis = TimeUnit.SECONDS.toMillis(5);
+
+  private volatile long maxBackoffMillis = TimeUnit.MINUTES.toMillis(10);
+
+  private volatile double jitter = 0.1;
+
+  private LongSupplier clock = System::currentTimeMillis;
+
+  /** @param maxConcurrentChecks the number of threads that run the checks */
+  public SourceAvailabilityServiceImpl(int maxConcurrentChecks) {
+    this(
+        Executors.newSingleThreadScheduledExecutor(
+            StandardThreadFactoryBuilder.newThreadFactory("sourceAvailabilitySchedulerThread")),
+        newCheckExecutor(maxConcurrentChecks));
+  }
+
+  /**
+   * @param scheduler schedules the checks. Its tasks never block.
+   * @param checkExecutor runs the checks. It should be bounded; checks it rejects are retried after
+   *     the fast probe delay.
+   */
+  @VisibleForTesting
+  SourceAvailabilityServiceImpl(ScheduledExecutorService scheduler, ExecutorService checkExecutor) {
+    this.scheduler = notNull(scheduler);
+    this.checkExecutor = notNull(checkExecutor);
+  }
+
+  private static ExecutorService newCheckExecutor(int maxConcurrentChecks) {
+    int threads = Math.max(1, maxConcurrentChecks);
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            1,
+            TimeUnit.MINUTES,
+            new LinkedBlockingQueue<>(MAXIMUM_QUEUED_CHECKS),
+            StandardThreadFactoryBuilder.newThreadFactory("sourceAvailabilityCheckThread"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  @Override
+  public Registration register(
+      String sourceId,
+      long pollIntervalMillis,
+      long initialDelayMillis,
+      BooleanSupplier availabilityCheck) {
+    SourceRegistration registration =
+        new SourceRegistration(sourceId, pollIntervalMillis, notNull(availabilityCheck));
+    registrations.add(registration);
+    registration.schedule(jittered(Math.max(0, initialDelayMillis)));
+    LOGGER.debug(
+        "Registered availability checks every {} ms for source {}", pollIntervalMillis, sourceId);
+    return registration;
+  }
+
+  public void destroy() {
+    registrations.forEach(SourceRegistration::close);
+    MoreExecutors.shutdownAndAwaitTermination(scheduler, 5, TimeUnit.SECONDS);
+    MoreExecutors.shutdownAndAwaitTermination(checkExecutor, 5, TimeUnit.SECONDS);
+  }
+
+  public void setFastProbeSeconds(long fastProbeSeconds) {
+    this.fastProbeMillis = TimeUnit.SECONDS.toMillis(Math.max(1, fastProbeSeconds));
+  }
+
+  public void setMaxBackoffMinutes(long maxBackoffMinutes) {
+    this.maxBackoffMillis = TimeUnit.MINUTES.toMillis(Math.max(1, maxBackoffMinutes));
+  }
+
+  public void setJitterPercent(int jitterPercent) {
+    this.jitter = Math.min(100, Math.max(0, jitterPercent)) / 100.0;
+  }
+
+  @VisibleForTesting
+  void setClock(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  int getRegistrationCount() {
+    return registrations.size();
+  }
+
+  private long jittered(long delayMillis) {
+    if (jitter <= 0 || delayMillis <= 0) {
+      return delayMillis;
+    }
+    double spread = delayMillis * jitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+    return Math.max(0, delayMillis + Math.round(spread));
+  }
+
+  private class SourceRegistration implements Registration {
+
+    private final String sourceId;
+
+    private final BooleanSupplier availabilityCheck;
+
+    private volatile long pollIntervalMillis;
+
+    @Nullable private ScheduledFuture<?> nextCheck;
+
+    private boolean checking;
+
+    private boolean closed;
+
+    @Nullable private Boolean lastAvailable;
+
+    private int failures;
+
+    private long lastSuccess;
+
+    private SourceRegistration(
+        String sourceId, long pollIntervalMillis, BooleanSupplier availabilityCheck) {
+      this.sourceId = sourceId;
+      this.pollIntervalMillis = Math.max(MINIMUM_POLL_INTERVAL_MILLIS, pollIntervalMillis);
+      this.availabilityCheck = availabilityCheck;
+    }
+
+    @Override
+    public synchronized void setPollInterval(long pollIntervalMillis) {
+      this.pollIntervalMillis = Math.max(MINIMUM_POLL_INTERVAL_MILLIS, pollIntervalMillis);
+      if (Boolean.TRUE.equals(lastAvailable)) {
+        schedule(jittered(this.pollIntervalMillis));
+      }
+    }
+
+    @Override
+    public synchronized void reportSuccess() {
+      lastSuccess = clock.getAsLong();
+      if (!Boolean.TRUE.equals(lastAvailable)) {
+        scheduleNoLaterThan(0);
+      }
+    }
+
+    @Override
+    public synchronized void reportFailure() {
+      if (Boolean.TRUE.equals(lastAvailable)) {
+        scheduleNoLaterThan(jittered(fastProbeMillis));
+      }
+    }
+
+    @Override
+    public synchronized void close() {
+      closed = true;
+      if (nextCheck != null) {
+        nextCheck.cancel(false);
+        nextCheck = null;
+      }
+      registrations.remove(this);
+    }
+
+    private synchronized void schedule(long delayMillis) {
+      if (closed) {
+        return;
+      }
+      if (nextCheck != null) {
+        nextCheck.cancel(false);
+      }
+      try {
+        nextCheck = scheduler.schedule(this::dispatch, delayMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        LOGGER.debug("Unable to schedule the availability check of source {}", sourceId, e);
+      }
+    }
+
+    private synchronized void scheduleNoLaterThan(long delayMillis) {
+      if (checking
+          || (nextCheck != null
+              && !nextCheck.isDone()
+              && nextCheck.getDelay(TimeUnit.MILLISECONDS) <= delayMillis)) {
+        return;
+      }
+      schedule(delayMillis);
+    }
+
+    /** Runs on the scheduler thread, so it only hands the check to the pool. */
+    private void dispatch() {
+      synchronized (this) {
+        if (closed || checking) {
+          return;
+        }
+        long sinceSuccess = clock.getAsLong() - lastSuccess;
+        if (Boolean.TRUE.equals(lastAvailable) && sinceSuccess < pollIntervalMillis) {
+          LOGGER.trace(
+              "Skipping the availability check of source {}, which answered a request {} ms ago",
+              sourceId,
+              sinceSuccess);
+          schedule(jittered(pollIntervalMillis - sinceSuccess));
+          return;
+        }
+        checking = true;
+      }
+
+      try {
+        checkExecutor.execute(this::check);
+      } catch (RejectedExecutionException e) {
+        LOGGER.debug(
+            "Too many availability checks are running. Retrying the check of source {} later.",
+            sourceId);
+        synchronized (this) {
+          checking = false;
+          schedule(jittered(fastProbeMillis));
+        }
+      }
+    }
+
+    private void check() {
+      boolean available;
+      try {
+        available = availabilityCheck.getAsBoolean();
+      } catch (RuntimeException e) {
+        LOGGER.debug("Unable to check the availability of source {}", sourceId, e);
+        available = false;
+      }
+
+      synchronized (this) {
+        checking = false;
+        lastAvailable = available;
+        if (available) {
+          failures = 0;
+          schedule(jittered(pollIntervalMillis));
+        } else {
+          failures++;
+          LOGGER.debug(
+              "Source {} is unavailable after {} consecutive check(s)", sourceId, failures);
+          schedule(jittered(getBackoffMillis()));
+        }
+      }
+    }
+
+    private long getBackoffMillis() {
+      int doublings = Math.min(failures - 1, MAXIMUM_BACKOFF_DOUBLINGS);
+      long backoff = fastProbeMillis << doublings;
+      return Math.min(backoff, Math.max(pollIntervalMillis, maxBackoffMillis));
+    }
+  }
+}
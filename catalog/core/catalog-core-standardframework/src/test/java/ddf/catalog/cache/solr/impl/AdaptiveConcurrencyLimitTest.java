@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.solr.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimitTest {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+  @Test
+  public void testRejectsOnceLimitIsReached() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10);
+
+    assertThat(limit.tryAcquire(), is(true));
+    assertThat(limit.tryAcquire(), is(true));
+    assertThat(limit.tryAcquire(), is(false));
+    assertThat(limit.getInFlight(), is(2));
+
+    limit.release(FAST, false);
+    assertThat(limit.getInFlight(), is(1));
+    assertThat(limit.tryAcquire(), is(true));
+  }
+
+  @Test
+  public void testGrowsWhileLatencyIsSteady() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 100);
+
+    for (int i = 0; i < 50; i++) {
+      saturateAndRelease(limit, FAST);
+    }
+
+    assertThat(limit.getLimit(), greaterThan(4));
+  }
+
+  @Test
+  public void testShrinksWhenLatencyIncreases() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 100);
+    for (int i = 0; i < 20; i++) {
+      saturateAndRelease(limit, FAST);
+    }
+    int steadyLimit = limit.getLimit();
+
+    for (int i = 0; i < 20; i++) {
+      saturateAndRelease(limit, SLOW);
+    }
+
+    assertThat(limit.getLimit(), lessThan(steadyLimit));
+  }
+
+  @Test
+  public void testBacksOffOnFailuresDownToMinimum() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 3, 100);
+
+    for (int i = 0; i < 100; i++) {
+      limit.tryAcquire();
+      limit.release(FAST, true);
+    }
+
+    assertThat(limit.getLimit(), is(3));
+  }
+
+  @Test
+  public void testDoesNotGrowWhenUnderused() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100);
+
+    for (int i = 0; i < 50; i++) {
+      limit.tryAcquire();
+      limit.release(FAST, false);
+    }
+
+    assertThat(limit.getLimit(), is(10));
+  }
+
+  private void saturateAndRelease(AdaptiveConcurrencyLimit limit, long rttNanos) {
+    int acquired = 0;
+    while (limit.tryAcquire()) {
+      acquired++;
+    }
+    for (int i = 0; i < acquired; i++) {
+      limit.release(rttNanos, false);
+    }
+  }
+}
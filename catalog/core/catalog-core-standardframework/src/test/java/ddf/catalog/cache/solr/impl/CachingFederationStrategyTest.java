@@ -19,12 +19,14 @@
 import static ddf.catalog.cache.solr.impl.CachingFederationStrategy.QUERY_MODE;
 import static ddf.catalog.cache.solr.impl.CachingFederationStrategy.UPDATE_QUERY_MODE;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -41,6 +43,7 @@
 import ddf.catalog.operation.CreateResponse;
 import ddf.catalog.operation.DeleteRequest;
 import ddf.catalog.operation.DeleteResponse;
+import ddf.catalog.operation.ProcessingDetails;
 import ddf.catalog.operation.Query;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryResponse;
@@ -206,6 +209,79 @@ public void testFederateGetResults() throws Exception {
     assertThat(federateResponse.getResults().size(), is(sourceList.size()));
   }
 
+  @Test
+  public void testFederateSaturatedSource() throws Exception {
+    FederationBulkheads bulkheads = new FederationBulkheads();
+    bulkheads.setMinSourceConcurrency(1);
+    bulkheads.setInitialSourceConcurrency(1);
+    bulkheads.setMaxSourceConcurrency(1);
+    federateStrategy.setBulkheads(bulkheads);
+
+    Source saturatedSource = getMockSource();
+    Source availableSource = getMockSource();
+    assertThat(bulkheads.tryAcquire(saturatedSource.getId()) != null, is(true));
+
+    QueryRequest fedQueryRequest = new QueryRequestImpl(mockQuery, false, null, properties);
+    QueryResponse federateResponse =
+        federateStrategy.federate(
+            ImmutableList.of(saturatedSource, availableSource), fedQueryRequest);
+
+    assertThat(federateResponse.getResults().size(), is(1));
+    assertThat(federateResponse.getProcessingDetails().size(), is(1));
+    ProcessingDetails details = federateResponse.getProcessingDetails().iterator().next();
+    assertThat(details.getSourceId(), is(saturatedSource.getId()));
+    assertThat(details.getException(), instanceOf(SourceSaturatedException.class));
+    verify(saturatedSource, never()).query(any(QueryRequest.class));
+    assertThat(bulkheads.getSaturatedSourceQueries(), is(1L));
+    assertThat(bulkheads.getSourceInFlight().get(availableSource.getId()), is(0));
+  }
+
+  @Test
+  public void testFederateRejectedWhenAtCapacity() throws Exception {
+    FederationBulkheads bulkheads = new FederationBulkheads();
+    bulkheads.setMaxConcurrentQueries(1);
+    bulkheads.setMaxQueuedQueries(0);
+    federateStrategy.setBulkheads(bulkheads);
+    FederationBulkheads.Admission runningQuery = bulkheads.admit(LONG_TIMEOUT);
+
+    Source mockSource = getMockSource();
+    QueryRequest fedQueryRequest = new QueryRequestImpl(mockQuery, false, null, properties);
+    QueryResponse federateResponse =
+        federateStrategy.federate(ImmutableList.of(mockSource), fedQueryRequest);
+
+    assertThat(federateResponse.getResults().size(), is(0));
+    ProcessingDetails details = federateResponse.getProcessingDetails().iterator().next();
+    assertThat(details.getSourceId(), is(mockSource.getId()));
+    assertThat(details.getException(), instanceOf(SourceSaturatedException.class));
+    verify(mockSource, never()).query(any(QueryRequest.class));
+    assertThat(bulkheads.getRejectedQueries(), is(1L));
+
+    runningQuery.close();
+    federateStrategy.federate(ImmutableList.of(mockSource), fedQueryRequest).getResults();
+    verify(mockSource).query(any(QueryRequest.class));
+    assertThat(bulkheads.getActiveQueries(), is(0));
+  }
+
+  @Test
+  public void testFederateAnswersRepeatedQueryFromResultCache() throws Exception {
+    FederatedResultCache resultCache = new FederatedResultCache();
+    resultCache.setEnabled(true);
+    federateStrategy.setResultCache(resultCache);
+
+    Source mockSource = getMockSource();
+    QueryRequest fedQueryRequest = new QueryRequestImpl(mockQuery, false, null, properties);
+
+    QueryResponse first = federateStrategy.federate(ImmutableList.of(mockSource), fedQueryRequest);
+    QueryResponse second = federateStrategy.federate(ImmutableList.of(mockSource), fedQueryRequest);
+
+    assertThat(first.getResults().size(), is(1));
+    assertThat(second.getResults().size(), is(1));
+    assertThat(second.getResults().get(0).getMetacard().getId(), is(metacard.getId()));
+    verify(mockSource, times(1)).query(any(QueryRequest.class));
+    assertThat(resultCache.getMisses(), is(1L));
+    assertThat(resultCache.getHits(), is(1L));
+  }
+
   @Test
   public void testFederateGetEmptyResults() throws Exception {
     QueryRequest fedQueryRequest = new QueryRequestImpl(mockQuery, false, null, properties);
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.cache.solr.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.filter.proxy.builder.GeotoolsFilterBuilder;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+import ddf.catalog.operation.impl.SourceResponseImpl;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.geotools.filter.FilterFactoryImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.filter.Filter;
+
+public class FederatedResultCacheTest {
+
+  private static final String SOURCE_ID = "source";
+
+  private final FilterBuilder filterBuilder = new GeotoolsFilterBuilder();
+
+  private final Clock clock = mock(Clock.class);
+
+  private FederatedResultCache cache;
+
+  @Before
+  public void setUp() {
+    when(clock.millis()).thenReturn(0L);
+    cache = new FederatedResultCache();
+    cache.setClock(clock);
+    cache.setEnabled(true);
+    cache.setTimeToLiveSeconds(60);
+    cache.setStaleSeconds(300);
+  }
+
+  @Test
+  public void testDisabledCacheHasNoKeys() {
+    cache.setEnabled(false);
+
+    assertThat(cache.key(SOURCE_ID, request(title("a"))), nullValue());
+  }
+
+  @Test
+  public void testKeyIgnoresOrderOfCriteria() {
+    Filter first = filterBuilder.allOf(title("a"), title("b"));
+    Filter second = filterBuilder.allOf(title("b"), title("a"));
+
+    assertThat(cache.key(SOURCE_ID, request(first)), is(cache.key(SOURCE_ID, request(second))));
+    assertThat(
+        cache.key(SOURCE_ID, request(first)),
+        not(cache.key(SOURCE_ID, request(filterBuilder.anyOf(title("a"), title("b"))))));
+    assertThat(cache.key(SOURCE_ID, request(first)), not(cache.key("other", request(second))));
+  }
+
+  @Test
+  public void testKeyIncludesPage() {
+    QueryRequest firstPage = new QueryRequestImpl(new QueryImpl(title("a"), 1, 10, null, false, 0));
+    QueryRequest secondPage =
+        new QueryRequestImpl(new QueryImpl(title("a"), 11, 10, null, false, 0));
+
+    assertThat(cache.key(SOURCE_ID, firstPage), not(cache.key(SOURCE_ID, secondPage)));
+  }
+
+  @Test
+  public void testHitServesCopy() {
+    QueryRequest request = request(title("a"));
+    FederatedResultCache.Key key = cache.key(SOURCE_ID, request);
+    assertThat(cache.get(key), nullValue());
+
+    SourceResponse response = response(request);
+    cache.put(key, response);
+    FederatedResultCache.Entry entry = cache.get(key);
+
+    assertThat(entry, notNullValue());
+    List<Result> results = entry.getResponse(request).getResults();
+    assertThat(results.size(), is(1));
+    assertThat(results.get(0).getMetacard().getId(), is("id"));
+    assertThat(
+        results.get(0).getMetacard(),
+        not(sameInstance(response.getResults().get(0).getMetacard())));
+    assertThat(entry.isStale(), is(false));
+    assertThat(entry.startRefresh(), is(false));
+    assertThat(cache.getHits(), is(1L));
+    assertThat(cache.getMisses(), is(1L));
+  }
+
+  @Test
+  public void testStaleEntryIsRefreshedOnce() {
+    QueryRequest request = request(title("a"));
+    FederatedResultCache.Key key = cache.key(SOURCE_ID, request);
+    cache.put(key, response(request));
+
+    when(clock.millis()).thenReturn(61_000L);
+    FederatedResultCache.Entry entry = cache.get(key);
+
+    assertThat(entry.isStale(), is(true));
+    assertThat(entry.startRefresh(), is(true));
+    assertThat(cache.get(key).startRefresh(), is(false));
+    assertThat(cache.getStaleHits(), is(2L));
+
+    cache.refreshFailed(entry);
+    assertThat(cache.get(key).startRefresh(), is(true));
+    assertThat(cache.getRefreshFailures(), is(1L));
+
+    when(clock.millis()).thenReturn(361_000L);
+    assertThat(cache.get(key), nullValue());
+    assertThat(cache.getSize(), is(0));
+  }
+
+  @Test
+  public void testSourceTimeToLive() {
+    cache.setSourceTimeToLiveSeconds(Collections.singletonList("local = 0"));
+
+    assertThat(cache.key("local", request(title("a"))), nullValue());
+    assertThat(cache.key(SOURCE_ID, request(title("a"))), notNullValue());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntriesAreEvicted() {
+    cache.setMaxEntries(2);
+    FederatedResultCache.Key a = cache.key(SOURCE_ID, request(title("a")));
+    FederatedResultCache.Key b = cache.key(SOURCE_ID, request(title("b")));
+    FederatedResultCache.Key c = cache.key(SOURCE_ID, request(title("c")));
+
+    cache.put(a, response(request(title("a"))));
+    cache.put(b, response(request(title("b"))));
+    cache.get(a);
+    cache.put(c, response(request(title("c"))));
+
+    assertThat(cache.getSize(), is(2));
+    assertThat(cache.get(a), notNullValue());
+    assertThat(cache.get(b), nullValue());
+    assertThat(cache.get(c), notNullValue());
+  }
+
+  @Test
+  public void testFiltersThatCannotBeEncodedBypassTheCache() {
+    FilterFactoryImpl filterFactory = new FilterFactoryImpl();
+    Filter filter =
+        filterFactory.equals(filterFactory.property("title"), filterFactory.literal(new Object()));
+
+    assertThat(cache.key(SOURCE_ID, request(filter)), nullValue());
+  }
+
+  @Test
+  public void testKeysDistinguishDatesToTheMillisecond() {
+    Filter before = filterBuilder.attribute("created").is().after().date(new Date(1000L));
+    Filter after = filterBuilder.attribute("created").is().after().date(new Date(1001L));
+
+    assertThat(cache.key(SOURCE_ID, request(before)), notNullValue());
+    assertThat(
+        cache.key(SOURCE_ID, request(before)),
+        is(
+            cache.key(
+                SOURCE_ID,
+                request(filterBuilder.attribute("created").is().after().date(new Date(1000L))))));
+    assertThat(cache.key(SOURCE_ID, request(before)), not(cache.key(SOURCE_ID, request(after))));
+  }
+
+  private Filter title(String value) {
+    return filterBuilder.attribute("title").is().like().text(value);
+  }
+
+  private QueryRequest request(Filter filter) {
+    return new QueryRequestImpl(new QueryImpl(filter));
+  }
+
+  private SourceResponse response(QueryRequest request) {
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setId("id");
+    return new SourceResponseImpl(request, Collections.singletonList(new ResultImpl(metacard)), 1L);
+  }
+}
@@ -13,6 +13,7 @@
  */
 package ddf.catalog.cache.solr.impl;
 
+import static ddf.catalog.Constants.SOURCE_RESPONSE_LISTENER_KEY;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.extractor.Extractors.byName;
 import static org.awaitility.Awaitility.with;
@@ -33,7 +34,9 @@
 import ddf.catalog.data.impl.ResultImpl;
 import ddf.catalog.operation.Query;
 import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.QueryResponse;
 import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.SourceResponseListener;
 import ddf.catalog.operation.impl.QueryResponseImpl;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -241,6 +244,47 @@ public void interruptThirdFuture() throws Exception {
             NullPointerException.class, InterruptedException.class, InterruptedException.class);
   }
 
+  @Test
+  public void sourceResponseListenerNotifiedForEachSource() throws Exception {
+    when(query.getTimeoutMillis()).thenReturn(5000L);
+    when(queryRequest.getQuery()).thenReturn(query);
+
+    Map<String, QueryResponse> partialResponses = new LinkedHashMap<>();
+    SourceResponseListener listener = partialResponses::put;
+    when(queryRequest.getPropertyValue(SOURCE_RESPONSE_LISTENER_KEY)).thenReturn(listener);
+
+    SortedQueryMonitor queryMonitor =
+        new SortedQueryMonitor(
+            cachingFederationStrategy,
+            completionService,
+            futures,
+            queryResponse,
+            queryRequest,
+            new ArrayList<>());
+
+    Iterator<Future<SourceResponse>> keysIter = futures.keySet().iterator();
+    List<Future<SourceResponse>> futureKeys =
+        Lists.newArrayList(keysIter.next(), keysIter.next(), null);
+    final Iterator<Future<SourceResponse>> futureIter = futureKeys.iterator();
+
+    when(completionService.poll(anyLong(), eq(TimeUnit.MILLISECONDS)))
+        .thenAnswer((invocationOnMock -> futureIter.next()));
+    queryMonitor.run();
+
+    assertThat(partialResponses.keySet())
+        .containsExactly("Source-0", "Source-1", "Source-2", "Source-3");
+    assertThat(partialResponses.get("Source-0").getProcessingDetails())
+        .extracting(byName("exception"))
+        .extracting(byName("class"))
+        .containsExactly(NullPointerException.class);
+    assertThat(partialResponses.get("Source-1").getResults().size()).isEqualTo(3);
+    assertThat(partialResponses.get("Source-1").getHits()).isEqualTo(3);
+    assertThat(partialResponses.get("Source-3").getProcessingDetails())
+        .extracting(byName("exception"))
+        .extracting(byName("class"))
+        .containsExactly(TimeoutException.class);
+  }
+
   @Test
   public void testSortAscendingNullFirst() throws Exception {
     testSorting(new String[] {null, "a"}, new String[] {null, "a"}, SortOrder.ASCENDING);
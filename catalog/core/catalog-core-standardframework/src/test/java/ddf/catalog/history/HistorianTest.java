@@ -16,6 +16,8 @@
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Matchers.any;
@@ -64,10 +66,12 @@
 import ddf.catalog.source.UnsupportedQueryException;
 import ddf.security.Subject;
 import ddf.security.SubjectIdentity;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.security.PrivilegedAction;
 import java.util.Arrays;
 import java.util.Collections;
@@ -76,6 +80,7 @@
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 import org.apache.shiro.subject.ExecutionException;
 import org.codice.ddf.platform.util.uuidgenerator.UuidGenerator;
 import org.codice.ddf.security.common.Security;
@@ -95,6 +100,8 @@ public class HistorianTest {
 
   private static final String UPDATE_DESCRIPTION = "This is an updated description.";
 
+  private static final byte[] CONTENT = "content".getBytes(StandardCharsets.UTF_8);
+
   private CatalogProvider catalogProvider;
 
   private InMemoryStorageProvider storageProvider;
@@ -193,7 +200,7 @@ public void testUpdateStorageResponseHistorianDisabled()
   @Test
   public void testUpdateStorageResponseSetSkipFlag()
       throws SourceUnavailableException, IngestException, StorageException,
-          UnsupportedQueryException {
+          UnsupportedQueryException, IOException {
     Map<String, Serializable> storageRequestProperties = new HashMap<>();
     Map<String, Serializable> storageResponseProperties = new HashMap<>();
 
@@ -242,7 +249,7 @@ public void testUpdateStorageResponseSkipProperty()
   @Test
   public void testUpdateStorageResponse()
       throws UnsupportedQueryException, SourceUnavailableException, IngestException,
-          URISyntaxException, StorageException {
+          URISyntaxException, StorageException, IOException {
     // The metacard and updated metacard
     List<Metacard> metacards = getMetacardUpdatePair();
 
@@ -321,7 +328,7 @@ public void testDeleteResponseHistorianDisabled()
 
   @Test
   public void testDeleteResponseSetSkipFlag()
-      throws SourceUnavailableException, IngestException, StorageException {
+      throws SourceUnavailableException, IngestException, StorageException, IOException {
     Metacard metacard = getMetacardUpdatePair().get(0);
     storeMetacard(metacard);
 
@@ -353,7 +360,7 @@ public void testDeleteResponseSkipProperty() throws SourceUnavailableException,
 
   @Test
   public void testDeleteResponse()
-      throws SourceUnavailableException, IngestException, StorageException {
+      throws SourceUnavailableException, IngestException, StorageException, IOException {
     Metacard metacard = getMetacardUpdatePair().get(0);
     storeMetacard(metacard);
 
@@ -437,7 +444,7 @@ public void testReadStorageException()
   @Test(expected = IngestException.class)
   public void testTryCommitStorageException()
       throws StorageException, UnsupportedQueryException, SourceUnavailableException,
-          IngestException, URISyntaxException {
+          IngestException, URISyntaxException, IOException {
     List<Metacard> metacards = getMetacardUpdatePair();
 
     // Mock out a bad storage provider
@@ -448,6 +455,7 @@ public void testTryCommitStorageException()
     when(item.getId()).thenReturn(METACARD_ID);
     when(item.getUri()).thenReturn(RESOURCE_URI);
     when(item.getMetacard()).thenReturn(metacards.get(0));
+    when(item.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(CONTENT));
 
     ReadStorageResponse readStorageResponse = mock(ReadStorageResponse.class);
     when(readStorageResponse.getContentItem()).thenReturn(item);
@@ -477,7 +485,7 @@ public void testTryCommitStorageException()
   @Test(expected = IngestException.class)
   public void testRollbackFailed()
       throws StorageException, UnsupportedQueryException, SourceUnavailableException,
-          IngestException {
+          IngestException, IOException {
     List<Metacard> metacards = getMetacardUpdatePair();
 
     // Mock out a bad storage provider
@@ -489,6 +497,7 @@ public void testRollbackFailed()
     when(item.getId()).thenReturn(METACARD_ID);
     when(item.getUri()).thenReturn(RESOURCE_URI);
     when(item.getMetacard()).thenReturn(metacards.get(0));
+    when(item.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(CONTENT));
 
     ReadStorageResponse readStorageResponse = mock(ReadStorageResponse.class);
     when(readStorageResponse.getContentItem()).thenReturn(item);
@@ -547,6 +556,109 @@ public void testBadContentItemSize()
     assertThat(update, equalTo(metacards.get(1)));
   }
 
+  @Test
+  public void testUnchangedContentIsStoredOnce() throws Exception {
+    List<Metacard> metacards = getMetacardUpdatePair();
+    storeMetacard(metacards.get(0));
+
+    // Version the same content twice
+    for (int i = 0; i < 2; i++) {
+      UpdateStorageRequest storageRequest = mock(UpdateStorageRequest.class);
+      UpdateStorageResponse storageResponse = mock(UpdateStorageResponse.class);
+      UpdateResponse updateResponse = mock(UpdateResponse.class);
+      Update update = mock(Update.class);
+      when(update.getOldMetacard()).thenReturn(metacards.get(0));
+      when(updateResponse.getUpdatedMetacards()).thenReturn(ImmutableList.of(update));
+      updateMetacard(storageRequest, storageResponse, metacards.get(1));
+
+      historian.version(storageRequest, storageResponse, updateResponse);
+    }
+
+    ArgumentCaptor<CreateRequest> createRequests = ArgumentCaptor.forClass(CreateRequest.class);
+    verify(catalogProvider, times(2)).create(createRequests.capture());
+    List<URI> versionedUris =
+        createRequests
+            .getAllValues()
+            .stream()
+            .map(request -> request.getMetacards().get(0).getResourceURI())
+            .collect(Collectors.toList());
+
+    // The original content plus a single versioned copy
+    assertThat(storageProvider.storageMap.size(), equalTo(2));
+    assertThat(storageProvider.storageMap, hasKey(versionedUris.get(0).toString()));
+    assertThat(versionedUris.get(1), equalTo(versionedUris.get(0)));
+  }
+
+  @Test
+  public void testUnreferencedVersionContentIsDeleted() throws Exception {
+    Metacard version = storeVersionContent();
+    mockReferences();
+
+    historian.version(
+        new DeleteResponseImpl(
+            new DeleteRequestImpl(VERSIONED_METACARD_ID),
+            new HashMap<>(),
+            Collections.singletonList(version)));
+
+    assertThat(storageProvider.storageMap.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testReferencedVersionContentIsKept() throws Exception {
+    Metacard version = storeVersionContent();
+    Metacard otherVersion = new MetacardImpl();
+    otherVersion.setAttribute(new AttributeImpl(Metacard.ID, "OTHER_VERSION_ID"));
+    mockReferences(version, otherVersion);
+
+    historian.version(
+        new DeleteResponseImpl(
+            new DeleteRequestImpl(VERSIONED_METACARD_ID),
+            new HashMap<>(),
+            Collections.singletonList(version)));
+
+    assertThat(storageProvider.storageMap, hasKey(version.getResourceURI().toString()));
+  }
+
+  @Test
+  public void testRecentlyReferencedContentIsKeptUntilReferenceIsVisible() throws Exception {
+    List<Metacard> metacards = getMetacardUpdatePair();
+    storeMetacard(metacards.get(0));
+
+    UpdateStorageRequest storageRequest = mock(UpdateStorageRequest.class);
+    UpdateStorageResponse storageResponse = mock(UpdateStorageResponse.class);
+    UpdateResponse updateResponse = mock(UpdateResponse.class);
+    Update update = mock(Update.class);
+    when(update.getOldMetacard()).thenReturn(metacards.get(0));
+    when(updateResponse.getUpdatedMetacards()).thenReturn(ImmutableList.of(update));
+    updateMetacard(storageRequest, storageResponse, metacards.get(1));
+    historian.version(storageRequest, storageResponse, updateResponse);
+
+    ArgumentCaptor<CreateRequest> createRequest = ArgumentCaptor.forClass(CreateRequest.class);
+    verify(catalogProvider).create(createRequest.capture());
+    URI contentUri = createRequest.getValue().getMetacards().get(0).getResourceURI();
+
+    // An older version referencing the same content is deleted before the new version is visible
+    MetacardImpl olderVersion = new MetacardImpl(MetacardVersionImpl.getMetacardVersionType());
+    olderVersion.setId(VERSIONED_METACARD_ID);
+    olderVersion.setAttribute(new AttributeImpl(MetacardVersion.VERSION_OF_ID, METACARD_ID));
+    olderVersion.setAttribute(new AttributeImpl(Metacard.RESOURCE_URI, contentUri.toString()));
+    mockReferences();
+    DeleteResponse deleteResponse =
+        new DeleteResponseImpl(
+            new DeleteRequestImpl(VERSIONED_METACARD_ID),
+            new HashMap<>(),
+            Collections.singletonList(olderVersion));
+
+    historian.version(deleteResponse);
+    assertThat(storageProvider.storageMap, hasKey(contentUri.toString()));
+
+    // Once the reference should be visible the deferred content is checked again
+    historian.setReferenceVisibilityMillis(1);
+    Thread.sleep(10);
+    historian.version(deleteResponse);
+    assertThat(storageProvider.storageMap, not(hasKey(contentUri.toString())));
+  }
+
   private UpdateResponse createUpdateResponse(Map<String, Serializable> responseProperties) {
     Map<String, Serializable> requestProperties = new HashMap<>();
     if (responseProperties == null) {
@@ -606,11 +718,48 @@ private void mockQuery(Metacard metacard) throws UnsupportedQueryException {
     when(catalogProvider.query(any())).thenReturn(sourceResponse);
   }
 
-  private void storeMetacard(Metacard metacard) {
+  private Metacard storeVersionContent() {
+    String contentId = UUID.randomUUID().toString().replace("-", "");
+
+    MetacardImpl version = new MetacardImpl(MetacardVersionImpl.getMetacardVersionType());
+    version.setId(VERSIONED_METACARD_ID);
+    version.setAttribute(new AttributeImpl(MetacardVersion.VERSION_OF_ID, METACARD_ID));
+    version.setAttribute(
+        new AttributeImpl(Metacard.RESOURCE_URI, ContentItem.CONTENT_SCHEME + ":" + contentId));
+
+    MetacardImpl stored = new MetacardImpl();
+    stored.setId(contentId);
+
+    ContentItem item = mock(ContentItem.class);
+    when(item.getId()).thenReturn(contentId);
+    when(item.getUri()).thenReturn(version.getResourceURI().toString());
+    when(item.getMetacard()).thenReturn(stored);
+    storageProvider.storageMap.put(item.getUri(), item);
+
+    return version;
+  }
+
+  private void mockReferences(Metacard... metacards) throws UnsupportedQueryException {
+    SourceResponse sourceResponse = mock(SourceResponse.class);
+    List<Result> results =
+        Arrays.stream(metacards)
+            .map(
+                metacard -> {
+                  Result result = mock(Result.class);
+                  when(result.getMetacard()).thenReturn(metacard);
+                  return result;
+                })
+            .collect(Collectors.toList());
+    when(sourceResponse.getResults()).thenReturn(results);
+    when(catalogProvider.query(any())).thenReturn(sourceResponse);
+  }
+
+  private void storeMetacard(Metacard metacard) throws IOException {
     ContentItem item = mock(ContentItem.class);
     when(item.getId()).thenReturn(METACARD_ID);
     when(item.getUri()).thenReturn(RESOURCE_URI);
     when(item.getMetacard()).thenReturn(metacard);
+    when(item.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(CONTENT));
     storageProvider.storageMap.put(item.getUri(), item);
   }
 
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.sourcepoller;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import ddf.catalog.source.SourceAvailabilityService.Registration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SourceAvailabilityServiceImplTest {
+
+  private static final long POLL_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
+  private static final long FAST_PROBE = TimeUnit.SECONDS.toMillis(5);
+
+  private final List<Runnable> scheduledTasks = new ArrayList<>();
+
+  private final List<Long> scheduledDelays = new ArrayList<>();
+
+  private final List<ScheduledFuture<?>> scheduledFutures = new ArrayList<>();
+
+  private final AtomicInteger checks = new AtomicInteger();
+
+  private ScheduledExecutorService scheduler;
+
+  private SourceAvailabilityServiceImpl service;
+
+  private long now = 1_000_000;
+
+  private boolean available;
+
+  @Before
+  public void setUp() {
+    scheduler = mock(ScheduledExecutorService.class);
+    when(scheduler.schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS)))
+        .thenAnswer(
+            invocation -> {
+              long delay = invocation.getArgumentAt(1, Long.class);
+              ScheduledFuture<?> future = mock(ScheduledFuture.class);
+              when(future.getDelay(TimeUnit.MILLISECONDS)).thenReturn(delay);
+              scheduledTasks.add(invocation.getArgumentAt(0, Runnable.class));
+              scheduledDelays.add(delay);
+              scheduledFutures.add(future);
+              return future;
+            });
+
+    service = newService(MoreExecutors.newDirectExecutorService());
+  }
+
+  private SourceAvailabilityServiceImpl newService(ExecutorService checkExecutor) {
+    SourceAvailabilityServiceImpl availabilityService =
+        new SourceAvailabilityServiceImpl(scheduler, checkExecutor);
+    availabilityService.setJitterPercent(0);
+    availabilityService.setFastProbeSeconds(5);
+    availabilityService.setMaxBackoffMinutes(1);
+    availabilityService.setClock(() -> now);
+    return availabilityService;
+  }
+
+  private Registration register() {
+    return service.register(
+        "source",
+        POLL_INTERVAL,
+        0,
+        () -> {
+          checks.incrementAndGet();
+          return available;
+        });
+  }
+
+  private void runLastScheduledTask() {
+    scheduledTasks.get(scheduledTasks.size() - 1).run();
+  }
+
+  private long lastDelay() {
+    return scheduledDelays.get(scheduledDelays.size() - 1);
+  }
+
+  @Test
+  public void testAvailableSourceIsCheckedAtPollInterval() {
+    available = true;
+    register();
+    assertThat(lastDelay(), is(0L));
+
+    runLastScheduledTask();
+
+    assertThat(checks.get(), is(1));
+    assertThat(lastDelay(), is(POLL_INTERVAL));
+  }
+
+  @Test
+  public void testUnavailableSourceBacksOffExponentially() {
+    available = false;
+    register();
+
+    runLastScheduledTask();
+    assertThat(lastDelay(), is(FAST_PROBE));
+    runLastScheduledTask();
+    assertThat(lastDelay(), is(2 * FAST_PROBE));
+    runLastScheduledTask();
+    assertThat(lastDelay(), is(4 * FAST_PROBE));
+    for (int i = 0; i < 10; i++) {
+      runLastScheduledTask();
+    }
+    // capped at the larger of the poll interval and the maximum backoff
+    assertThat(lastDelay(), is(POLL_INTERVAL));
+
+    available = true;
+    runLastScheduledTask();
+    assertThat(lastDelay(), is(POLL_INTERVAL));
+  }
+
+  @Test
+  public void testSuccessfulRequestsSkipChecks() {
+    available = true;
+    Registration registration = register();
+    runLastScheduledTask();
+
+    now += TimeUnit.MINUTES.toMillis(4);
+    registration.reportSuccess();
+    now += TimeUnit.MINUTES.toMillis(1);
+    runLastScheduledTask();
+
+    assertThat(checks.get(), is(1));
+    assertThat(lastDelay(), is(TimeUnit.MINUTES.toMillis(4)));
+
+    now += TimeUnit.MINUTES.toMillis(4);
+    runLastScheduledTask();
+    assertThat(checks.get(), is(2));
+  }
+
+  @Test
+  public void testSuccessfulRequestProbesUnavailableSource() {
+    available = false;
+    Registration registration = register();
+    runLastScheduledTask();
+    runLastScheduledTask();
+    assertThat(lastDelay(), is(2 * FAST_PROBE));
+
+    registration.reportSuccess();
+
+    assertThat(lastDelay(), is(0L));
+  }
+
+  @Test
+  public void testFailedRequestProbesAvailableSourceSoon() {
+    available = true;
+    Registration registration = register();
+    runLastScheduledTask();
+    assertThat(lastDelay(), is(POLL_INTERVAL));
+
+    registration.reportFailure();
+
+    assertThat(lastDelay(), is(FAST_PROBE));
+    verify(scheduledFutures.get(1)).cancel(false);
+  }
+
+  @Test
+  public void testRejectedCheckIsRetried() {
+    ExecutorService checkExecutor = mock(ExecutorService.class);
+    doThrow(new RejectedExecutionException()).when(checkExecutor).execute(any(Runnable.class));
+    service = newService(checkExecutor);
+    available = true;
+    register();
+
+    runLastScheduledTask();
+
+    assertThat(checks.get(), is(0));
+    assertThat(lastDelay(), is(FAST_PROBE));
+  }
+
+  @Test
+  public void testClosedRegistrationIsNotChecked() {
+    available = true;
+    Registration registration = register();
+    assertThat(service.getRegistrationCount(), is(1));
+
+    registration.close();
+    runLastScheduledTask();
+
+    assertThat(checks.get(), is(0));
+    assertThat(service.getRegistrationCount(), is(0));
+    verify(scheduledFutures.get(0)).cancel(false);
+  }
+
+  @Test
+  public void testFailingCheckCountsAsUnavailable() {
+    service.register(
+        "source",
+        POLL_INTERVAL,
+        0,
+        () -> {
+          throw new IllegalStateException("boom");
+        });
+
+    runLastScheduledTask();
+
+    assertThat(lastDelay(), is(FAST_PROBE));
+  }
+}
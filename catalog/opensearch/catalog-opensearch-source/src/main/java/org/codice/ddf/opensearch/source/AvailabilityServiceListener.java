@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.opensearch.source;
+
+import ddf.catalog.source.SourceAvailabilityService;
+
+/**
+ * Reference listener for the {@link SourceAvailabilityService}. The {@link OpenSearchSource}s
+ * register with the service when it comes, including after a restart, and schedule their own checks
+ * when it goes away.
+ */
+public class AvailabilityServiceListener {
+
+  public void bind(SourceAvailabilityService availabilityService) {
+    if (availabilityService != null) {
+      OpenSearchSource.availabilityServiceChanged(availabilityService);
+    }
+  }
+
+  public void unbind(SourceAvailabilityService availabilityService) {
+    OpenSearchSource.availabilityServiceChanged(null);
+  }
+}
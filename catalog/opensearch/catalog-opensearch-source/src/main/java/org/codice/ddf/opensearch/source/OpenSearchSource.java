@@ -31,16 +31,19 @@
 import ddf.catalog.data.types.Core;
 import ddf.catalog.filter.FilterAdapter;
 import ddf.catalog.impl.filter.TemporalFilter;
+import ddf.catalog.operation.CancellationToken;
 import ddf.catalog.operation.Query;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.ResourceResponse;
 import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.impl.CancellationTokenImpl;
 import ddf.catalog.operation.impl.SourceResponseImpl;
 import ddf.catalog.resource.ResourceNotFoundException;
 import ddf.catalog.resource.ResourceNotSupportedException;
 import ddf.catalog.resource.ResourceReader;
 import ddf.catalog.service.ConfiguredService;
 import ddf.catalog.source.FederatedSource;
+import ddf.catalog.source.SourceAvailabilityService;
 import ddf.catalog.source.SourceMonitor;
 import ddf.catalog.source.UnsupportedQueryException;
 import ddf.catalog.transform.CatalogTransformerException;
@@ -67,6 +70,7 @@
 import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -82,7 +86,10 @@
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.cxf.jaxrs.client.ClientConfiguration;
 import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
 import org.codehaus.stax2.XMLInputFactory2;
 import org.codice.ddf.configuration.PropertyResolver;
 import org.codice.ddf.cxf.client.ClientFactoryFactory;
@@ -133,6 +140,9 @@ public class OpenSearchSource implements FederatedSource, ConfiguredService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(OpenSearchSource.class);
 
+  /** The sources whose checks follow the availability service as it comes and goes. */
+  private static final Set<OpenSearchSource> LIVE_SOURCES = ConcurrentHashMap.newKeySet();
+
   protected final EncryptionService encryptionService;
 
   private final ClientFactoryFactory clientFactoryFactory;
@@ -189,6 +199,10 @@ public class OpenSearchSource implements FederatedSource, ConfiguredService {
 
   private ScheduledExecutorService scheduler;
 
+  private SourceAvailabilityService availabilityService;
+
+  private volatile SourceAvailabilityService.Registration availabilityRegistration;
+
   protected Integer pollInterval = 5;
 
   /**
@@ -236,6 +250,7 @@ public OpenSearchSource(
   public void init() {
     configureXmlInputFactory();
     updateFactory();
+    LIVE_SOURCES.add(this);
   }
 
   private void updateFactory() {
@@ -249,9 +264,38 @@ private void updateScheduler() {
 
     isAvailable = false;
 
-    if (scheduler != null) {
-      LOGGER.debug("Cancelling availability poll task on Source {}", getId());
-      scheduler.shutdownNow();
+    startAvailabilityChecks(availabilityService);
+  }
+
+  /**
+   * Restarts the availability checks of every source, after the availability service was registered
+   * or went away.
+   *
+   * @param availabilityService the new service, or {@code null} if the service went away
+   */
+  static void availabilityServiceChanged(@Nullable SourceAvailabilityService availabilityService) {
+    LIVE_SOURCES.forEach(source -> source.startAvailabilityChecks(availabilityService));
+  }
+
+  private synchronized void startAvailabilityChecks(
+      @Nullable SourceAvailabilityService availabilityService) {
+    stopAvailabilityChecks();
+
+    if (availabilityService != null) {
+      try {
+        availabilityRegistration =
+            availabilityService.register(
+                getId(),
+                TimeUnit.MINUTES.toMillis(pollInterval),
+                TimeUnit.SECONDS.toMillis(1),
+                () -> isAvailable = availabilityCheck());
+        return;
+      } catch (RuntimeException e) {
+        LOGGER.debug(
+            "The source availability service is not available, source {} will schedule its own checks.",
+            getId(),
+            e);
+      }
     }
 
     scheduler =
@@ -259,35 +303,41 @@ private void updateScheduler() {
             StandardThreadFactoryBuilder.newThreadFactory("openSearchSourceThread"));
 
     scheduler.scheduleWithFixedDelay(
-        new Runnable() {
-          private boolean availabilityCheck() {
-            LOGGER.debug("Checking availability for source {} ", getId());
-            try {
-              final WebClient client = factory.getWebClient();
-              final Response response = client.head();
-              return response != null
-                  && !(response.getStatus() >= 404 || response.getStatus() == 402);
-            } catch (Exception e) {
-              LOGGER.debug("Web Client was unable to connect to endpoint.", e);
-              return false;
-            }
-          }
-
-          @Override
-          public void run() {
-            isAvailable = availabilityCheck();
-          }
-        },
+        () -> isAvailable = availabilityCheck(),
         1,
         pollInterval.longValue() * 60L,
         TimeUnit.SECONDS);
   }
 
-  public void destroy(int code) {
+  private boolean availabilityCheck() {
+    LOGGER.debug("Checking availability for source {} ", getId());
+    try {
+      final WebClient client = factory.getWebClient();
+      final Response response = client.head();
+      return response != null && !(response.getStatus() >= 404 || response.getStatus() == 402);
+    } catch (Exception e) {
+      LOGGER.debug("Web Client was unable to connect to endpoint.", e);
+      return false;
+    }
+  }
+
+  private synchronized void stopAvailabilityChecks() {
     if (scheduler != null) {
       LOGGER.debug("Cancelling availability poll task on Source {}", getId());
       scheduler.shutdownNow();
+      scheduler = null;
     }
+
+    SourceAvailabilityService.Registration registration = availabilityRegistration;
+    availabilityRegistration = null;
+    if (registration != null) {
+      registration.close();
+    }
+  }
+
+  public void destroy(int code) {
+    LIVE_SOURCES.remove(this);
+    stopAvailabilityChecks();
   }
 
   protected SecureCxfClientFactory<OpenSearch> createClientFactory(
@@ -401,16 +451,27 @@ public SourceResponse query(QueryRequest queryRequest) throws UnsupportedQueryEx
       if (restWebClient == null) {
         throw new UnsupportedQueryException("Unable to create restWebClient");
       }
-      response =
-          doOpenSearchQuery(
-              queryRequest, subject, spatialSearch, temporalSearch, searchPhraseMap, restWebClient);
+      try (CancellationToken.Registration registration =
+          bindToCancellation(restWebClient, queryRequest)) {
+        response =
+            doOpenSearchQuery(
+                queryRequest,
+                subject,
+                spatialSearch,
+                temporalSearch,
+                searchPhraseMap,
+                restWebClient);
+      }
     } else if (StringUtils.isNotEmpty(idSearch)) {
       final WebClient restWebClient = newRestClient(query, idSearch, false, subject);
       if (restWebClient == null) {
         throw new UnsupportedQueryException("Unable to create restWebClient");
       }
 
-      response = doQueryById(queryRequest, restWebClient);
+      try (CancellationToken.Registration registration =
+          bindToCancellation(restWebClient, queryRequest)) {
+        response = doQueryById(queryRequest, restWebClient);
+      }
     } else {
       LOGGER.debug(
           "The OpenSearch Source only supports id searches or searches with certain keyword, \"{}\" temporal, or \"{}\" spatial criteria, but the query was {}. See the documentation for more details about supported searches.",
@@ -423,6 +484,11 @@ public SourceResponse query(QueryRequest queryRequest) throws UnsupportedQueryEx
 
     setSourceId(response);
 
+    SourceAvailabilityService.Registration registration = availabilityRegistration;
+    if (registration != null) {
+      registration.reportSuccess();
+    }
+
     LOGGER.trace(methodName);
 
     return response;
@@ -504,6 +570,38 @@ private void setSourceId(SourceResponse sourceResponse) {
     }
   }
 
+  /**
+   * Ties the client to the {@link CancellationToken} of the request: the receive timeout is capped
+   * at the time left before the deadline, and the client is closed if the query is cancelled while
+   * it is running.
+   *
+   * @return the registration of the cancellation callback, to be closed when the query is done
+   * @throws UnsupportedQueryException if the query has already been cancelled or timed out
+   */
+  private CancellationToken.Registration bindToCancellation(
+      WebClient client, QueryRequest queryRequest) throws UnsupportedQueryException {
+    CancellationToken token = CancellationTokenImpl.of(queryRequest);
+    if (token.isCancelled()) {
+      throw new UnsupportedQueryException(
+          "The query to source " + getId() + " was cancelled before it was sent.");
+    }
+
+    long remainingMillis = token.getRemainingMillis();
+    if (remainingMillis != Long.MAX_VALUE) {
+      ClientConfiguration clientConfiguration = WebClient.getConfig(client);
+      HTTPConduit httpConduit =
+          clientConfiguration == null ? null : clientConfiguration.getHttpConduit();
+      HTTPClientPolicy clientPolicy = httpConduit == null ? null : httpConduit.getClient();
+      if (clientPolicy != null
+          && (clientPolicy.getReceiveTimeout() <= 0
+              || clientPolicy.getReceiveTimeout() > remainingMillis)) {
+        clientPolicy.setReceiveTimeout(Math.max(1, remainingMillis));
+      }
+    }
+
+    return token.onCancel(client::close);
+  }
+
   /**
    * Performs a GET request on the client and returns the entity as an InputStream.
    *
@@ -511,7 +609,16 @@ private void setSourceId(SourceResponse sourceResponse) {
    * @return The entity of the response as an InputStream.
    */
   private InputStream performRequest(WebClient client) throws UnsupportedQueryException {
-    Response clientResponse = client.get();
+    Response clientResponse;
+    try {
+      clientResponse = client.get();
+    } catch (RuntimeException e) {
+      SourceAvailabilityService.Registration registration = availabilityRegistration;
+      if (registration != null) {
+        registration.reportFailure();
+      }
+      throw e;
+    }
 
     Object entityObj = clientResponse.getEntity();
     if (entityObj == null) {
@@ -867,6 +974,14 @@ public void setPollInterval(Integer interval) {
     updateScheduler();
   }
 
+  /**
+   * Sets the shared service that checks the availability of this source. Without it the source
+   * checks its own availability on a scheduler of its own.
+   */
+  public void setAvailabilityService(SourceAvailabilityService availabilityService) {
+    this.availabilityService = availabilityService;
+  }
+
   @Override
   public ResourceResponse retrieveResource(URI uri, Map<String, Serializable> requestProperties)
       throws ResourceNotFoundException, ResourceNotSupportedException, IOException {
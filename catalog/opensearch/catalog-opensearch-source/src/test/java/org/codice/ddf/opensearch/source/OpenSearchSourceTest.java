@@ -19,6 +19,7 @@
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.collection.IsMapContaining.hasEntry;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyInt;
@@ -28,9 +29,11 @@
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import ddf.catalog.Constants;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.Result;
 import ddf.catalog.data.impl.MetacardImpl;
@@ -41,6 +44,7 @@
 import ddf.catalog.filter.proxy.builder.GeotoolsFilterBuilder;
 import ddf.catalog.operation.ResourceResponse;
 import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.impl.CancellationTokenImpl;
 import ddf.catalog.operation.impl.QueryImpl;
 import ddf.catalog.operation.impl.QueryRequestImpl;
 import ddf.catalog.operation.impl.ResourceResponseImpl;
@@ -617,6 +621,23 @@ public void testQueryBadResponse() throws UnsupportedQueryException {
     source.query(new QueryRequestImpl(new QueryImpl(filter)));
   }
 
+  @Test
+  public void testQueryCancelledBeforeRequest() {
+    Filter filter =
+        FILTER_BUILDER.attribute(NOT_ID_ATTRIBUTE_NAME).like().text(SAMPLE_SEARCH_PHRASE);
+    CancellationTokenImpl token = new CancellationTokenImpl();
+    token.cancel();
+    Map<String, Serializable> properties = new HashMap<>();
+    properties.put(Constants.QUERY_CANCELLATION_TOKEN_KEY, token);
+
+    try {
+      source.query(new QueryRequestImpl(new QueryImpl(filter), properties));
+      fail("Expected the cancelled query to be rejected.");
+    } catch (UnsupportedQueryException e) {
+      verify(webClient, never()).get();
+    }
+  }
+
   @Test
   public void testQueryResponseWithForeignMarkup() throws UnsupportedQueryException {
     source.setMarkUpSet(Collections.singletonList(RESOURCE_TAG));
@@ -0,0 +1,423 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.federation.layered.replication;
+
+import ddf.catalog.federation.layered.replication.ReplicationRecord.Operation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only, on-disk log of the {@link ReplicationRecord}s that still have to be sent to the
+ * parent.
+ *
+ * <p>Records are appended to segment files named after the sequence of their first record and are
+ * forced to disk before {@link #append} returns. A single consumer {@link #read}s them in order and
+ * {@link #acknowledge}s every record once it has been sent. The highest sequence below which every
+ * record has been acknowledged is written to a checkpoint file, and segments that only hold
+ * acknowledged records are deleted. After a restart, reading resumes after the checkpoint, so
+ * records are delivered at least once.
+ */
+public class ReplicationOutbox implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationOutbox.class);
+
+  static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private static final String CHECKPOINT_FILE = "checkpoint";
+
+  /** Each record starts with the length and the CRC32 of its body. */
+  private static final int HEADER_SIZE = 8;
+
+  private final Path directory;
+
+  private final long segmentSize;
+
+  private final NavigableMap<Long, Path> segments = new TreeMap<>();
+
+  /** Records that have been read but not acknowledged, with the time they were created. */
+  private final NavigableMap<Long, Long> outstanding = new TreeMap<>();
+
+  private FileChannel writer;
+
+  private long nextSequence;
+
+  private FileChannel reader;
+
+  private long readerSegment;
+
+  private long nextReadSequence;
+
+  private long checkpoint;
+
+  private long persistedCheckpoint;
+
+  private boolean closed;
+
+  /**
+   * Opens the outbox in the given directory, recovering the records that were not acknowledged
+   * before the last shutdown.
+   *
+   * @param directory the directory holding the segments and the checkpoint
+   * @param segmentSize the size in bytes after which a new segment is started
+   * @throws IOException if the outbox cannot be opened
+   */
+  public ReplicationOutbox(Path directory, long segmentSize) throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+
+    Files.createDirectories(directory);
+    checkpoint = readCheckpoint();
+    persistedCheckpoint = checkpoint;
+
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        try {
+          segments.put(
+              Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+        } catch (NumberFormatException e) {
+          LOGGER.debug("Ignoring unexpected file {} in the replication outbox.", file);
+        }
+      }
+    }
+
+    if (segments.isEmpty()) {
+      nextSequence = checkpoint + 1;
+      openWriter(nextSequence);
+    } else {
+      recoverLastSegment();
+    }
+
+    nextReadSequence = checkpoint + 1;
+    if (nextReadSequence < nextSequence) {
+      openReader(segments.floorKey(nextReadSequence));
+      skipAcknowledged();
+    } else {
+      openReader(segments.lastKey());
+      reader.position(reader.size());
+    }
+    deleteAcknowledgedSegments();
+
+    LOGGER.debug(
+        "Opened replication outbox {} with {} records pending.", directory, getPendingCount());
+  }
+
+  /**
+   * Appends records to the outbox. The records are on disk when this method returns.
+   *
+   * @param records the records to append
+   * @throws IOException if the records could not be written, in which case none of them are
+   *     appended
+   */
+  public synchronized void append(Collection<ReplicationRecord> records) throws IOException {
+    if (closed) {
+      throw new IOException("The replication outbox is closed.");
+    }
+    if (records.isEmpty()) {
+      return;
+    }
+
+    final long start = writer.size();
+    long sequence = nextSequence;
+    try {
+      for (ReplicationRecord record : records) {
+        ByteBuffer buffer = encode(record.withSequence(sequence++));
+        while (buffer.hasRemaining()) {
+          writer.write(buffer);
+        }
+      }
+      writer.force(false);
+    } catch (IOException e) {
+      writer.truncate(start);
+      throw e;
+    }
+
+    nextSequence = sequence;
+    if (writer.size() >= segmentSize) {
+      writer.close();
+      openWriter(nextSequence);
+    }
+    notifyAll();
+  }
+
+  /**
+   * Reads the next records, waiting for new records if all of them have already been read.
+   *
+   * @param max the maximum number of records to read
+   * @param timeout how long to wait for a record
+   * @param unit the unit of the timeout
+   * @return the records in order, or an empty list if none were appended before the timeout
+   * @throws IOException if the records could not be read
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public synchronized List<ReplicationRecord> read(int max, long timeout, TimeUnit unit)
+      throws IOException, InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!closed && nextReadSequence >= nextSequence) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return Collections.emptyList();
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+
+    List<ReplicationRecord> records = new ArrayList<>();
+    while (!closed && records.size() < max && nextReadSequence < nextSequence) {
+      if (reader.position() >= reader.size()) {
+        reader.close();
+        openReader(segments.higherKey(readerSegment));
+        continue;
+      }
+      ReplicationRecord record = readRecord(reader);
+      if (record == null) {
+        throw new IOException("Corrupt record in replication outbox segment " + readerSegment);
+      }
+      outstanding.put(record.getSequence(), record.getTimestamp());
+      nextReadSequence = record.getSequence() + 1;
+      records.add(record);
+    }
+    return records;
+  }
+
+  /**
+   * Marks a record that was {@link #read} as sent.
+   *
+   * @param sequence the sequence of the record
+   */
+  public synchronized void acknowledge(long sequence) {
+    outstanding.remove(sequence);
+    checkpoint = outstanding.isEmpty() ? nextReadSequence - 1 : outstanding.firstKey() - 1;
+  }
+
+  /**
+   * Writes the checkpoint to disk and deletes the segments that only hold acknowledged records.
+   *
+   * @throws IOException if the checkpoint could not be written
+   */
+  public synchronized void checkpoint() throws IOException {
+    if (checkpoint == persistedCheckpoint) {
+      return;
+    }
+
+    Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+    Files.write(temporary, Long.toString(checkpoint).getBytes(StandardCharsets.UTF_8));
+    Files.move(
+        temporary,
+        directory.resolve(CHECKPOINT_FILE),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    persistedCheckpoint = checkpoint;
+    deleteAcknowledgedSegments();
+  }
+
+  /** Returns the number of records that have been appended but not acknowledged. */
+  public synchronized long getPendingCount() {
+    return nextSequence - 1 - checkpoint;
+  }
+
+  /**
+   * Returns the creation time of the oldest record that has been read but not acknowledged, or -1
+   * if there is none.
+   */
+  public synchronized long getOldestOutstandingTimestamp() {
+    return outstanding.isEmpty() ? -1 : outstanding.firstEntry().getValue();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    notifyAll();
+    try {
+      checkpoint();
+    } finally {
+      writer.close();
+      reader.close();
+    }
+  }
+
+  private long readCheckpoint() throws IOException {
+    Path file = directory.resolve(CHECKPOINT_FILE);
+    if (!Files.exists(file)) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid replication outbox checkpoint " + file, e);
+    }
+  }
+
+  /*
+   * Finds the next sequence from the last segment and cuts off a record that was only partially
+   * written when the system stopped.
+   */
+  private void recoverLastSegment() throws IOException {
+    Map.Entry<Long, Path> last = segments.lastEntry();
+    writer = FileChannel.open(last.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    nextSequence = last.getKey();
+
+    long position = 0;
+    ReplicationRecord record;
+    while ((record = readRecord(writer)) != null) {
+      nextSequence = record.getSequence() + 1;
+      position = writer.position();
+    }
+
+    if (position < writer.size()) {
+      LOGGER.info(
+          "Discarding {} bytes of an incomplete record at the end of {}.",
+          writer.size() - position,
+          last.getValue());
+      writer.truncate(position);
+    }
+    writer.position(position);
+
+    nextSequence = Math.max(nextSequence, checkpoint + 1);
+  }
+
+  private void openWriter(long firstSequence) throws IOException {
+    Path file = segmentPath(firstSequence);
+    writer =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    writer.position(writer.size());
+    segments.put(firstSequence, file);
+  }
+
+  private void openReader(long firstSequence) throws IOException {
+    reader = FileChannel.open(segments.get(firstSequence), StandardOpenOption.READ);
+    readerSegment = firstSequence;
+  }
+
+  private void skipAcknowledged() throws IOException {
+    long position = reader.position();
+    ReplicationRecord record;
+    while ((record = readRecord(reader)) != null && record.getSequence() < nextReadSequence) {
+      position = reader.position();
+    }
+    reader.position(position);
+  }
+
+  private void deleteAcknowledgedSegments() throws IOException {
+    Long segment = segments.firstKey();
+    Long next = segments.higherKey(segment);
+    while (next != null && next - 1 <= persistedCheckpoint && segment < readerSegment) {
+      Files.deleteIfExists(segments.remove(segment));
+      LOGGER.debug("Deleted replication outbox segment {}.", segment);
+      segment = next;
+      next = segments.higherKey(segment);
+    }
+  }
+
+  private Path segmentPath(long firstSequence) {
+    return directory.resolve(String.format("%020d%s", firstSequence, SEGMENT_SUFFIX));
+  }
+
+  private static ByteBuffer encode(ReplicationRecord record) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + record.getPayload().length);
+    bytes.write(new byte[HEADER_SIZE]);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeLong(record.getSequence());
+      out.writeLong(record.getTimestamp());
+      out.writeByte(record.getOperation().ordinal());
+      out.writeUTF(record.getId());
+      out.writeUTF(record.getMimeType());
+      out.writeInt(record.getPayload().length);
+      out.write(record.getPayload());
+    }
+
+    ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), HEADER_SIZE, buffer.capacity() - HEADER_SIZE);
+    buffer.putInt(0, buffer.capacity() - HEADER_SIZE);
+    buffer.putInt(4, (int) crc.getValue());
+    return buffer;
+  }
+
+  /*
+   * Reads the record at the current position of the channel. Returns null, leaving the position
+   * unspecified, if there is no complete and intact record there.
+   */
+  private static ReplicationRecord readRecord(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    if (!readFully(channel, header)) {
+      return null;
+    }
+    int length = header.getInt(0);
+    if (length <= 0 || length > channel.size() - channel.position()) {
+      return null;
+    }
+
+    ByteBuffer body = ByteBuffer.allocate(length);
+    if (!readFully(channel, body)) {
+      return null;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(body.array(), 0, length);
+    if ((int) crc.getValue() != header.getInt(4)) {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()))) {
+      long sequence = in.readLong();
+      long timestamp = in.readLong();
+      Operation operation = Operation.values()[in.readByte()];
+      String id = in.readUTF();
+      String mimeType = in.readUTF();
+      byte[] payload = new byte[in.readInt()];
+      in.readFully(payload);
+      return new ReplicationRecord(sequence, timestamp, operation, id, mimeType, payload);
+    } catch (EOFException | ArrayIndexOutOfBoundsException e) {
+      return null;
+    }
+  }
+
+  private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.federation.layered.replication;
+
+/** A create, update or delete waiting in the {@link ReplicationOutbox} to be sent to the parent. */
+public class ReplicationRecord {
+
+  /** The operation to replay on the parent. */
+  public enum Operation {
+    CREATE,
+    UPDATE,
+    DELETE
+  }
+
+  private static final byte[] NO_PAYLOAD = new byte[0];
+
+  private final long sequence;
+
+  private final long timestamp;
+
+  private final Operation operation;
+
+  private final String id;
+
+  private final String mimeType;
+
+  private final byte[] payload;
+
+  /**
+   * Creates a record to append to the outbox.
+   *
+   * @param operation the operation to replay on the parent
+   * @param id the id of the metacard
+   * @param mimeType the mime type of the payload, may be null
+   * @param payload the transformed metacard, may be null for deletes
+   */
+  public ReplicationRecord(Operation operation, String id, String mimeType, byte[] payload) {
+    this(-1, System.currentTimeMillis(), operation, id, mimeType, payload);
+  }
+
+  ReplicationRecord(
+      long sequence,
+      long timestamp,
+      Operation operation,
+      String id,
+      String mimeType,
+      byte[] payload) {
+    this.sequence = sequence;
+    this.timestamp = timestamp;
+    this.operation = operation;
+    this.id = id;
+    this.mimeType = mimeType == null ? "" : mimeType;
+    this.payload = payload == null ? NO_PAYLOAD : payload;
+  }
+
+  ReplicationRecord withSequence(long sequence) {
+    return new ReplicationRecord(sequence, timestamp, operation, id, mimeType, payload);
+  }
+
+  /** Returns the position of the record in the outbox, or -1 if it has not been appended yet. */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /** Returns the time the record was created, in milliseconds since the epoch. */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public Operation getOperation() {
+    return operation;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  /** Returns the mime type of the payload, or an empty string if there is none. */
+  public String getMimeType() {
+    return mimeType;
+  }
+
+  public byte[] getPayload() {
+    return payload;
+  }
+
+  @Override
+  public String toString() {
+    return operation + " " + id + " (" + sequence + ")";
+  }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.federation.layered.replication;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import ddf.catalog.federation.layered.replication.ReplicationRecord.Operation;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the records of a {@link ReplicationOutbox} to the parent from a pool of sender threads.
+ *
+ * <p>A dispatcher thread reads the outbox and hands every record to one of the sender lanes, chosen
+ * by the metacard id, so the operations on a metacard are always sent in order. Each lane takes the
+ * records waiting for it in batches, sends them one after the other and acknowledges the batch in
+ * the outbox. Failed sends are retried with an exponential backoff; records the parent rejects
+ * outright are dropped.
+ */
+public class ReplicationSender implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationSender.class);
+
+  private static final long READ_TIMEOUT_SECONDS = 1;
+
+  /** Sends a record to the parent. */
+  @FunctionalInterface
+  public interface Transport {
+
+    /**
+     * Sends a record to the parent.
+     *
+     * @param record the record to send
+     * @return the HTTP status returned by the parent
+     * @throws RuntimeException if the parent could not be reached
+     */
+    int send(ReplicationRecord record);
+  }
+
+  private final ReplicationOutbox outbox;
+
+  private final Transport transport;
+
+  private final int batchSize;
+
+  private final long initialBackoffMillis;
+
+  private final long maxBackoffMillis;
+
+  private final List<BlockingQueue<ReplicationRecord>> lanes = new ArrayList<>();
+
+  private final ExecutorService executor;
+
+  private final Meter sent;
+
+  private final Meter rejected;
+
+  private final Meter retries;
+
+  private volatile boolean running;
+
+  /**
+   * Creates a sender.
+   *
+   * @param outbox the outbox to send
+   * @param transport sends a record to the parent
+   * @param laneCount the number of sender threads
+   * @param batchSize the maximum number of records a sender thread takes at a time
+   * @param initialBackoffMillis how long to wait before the first retry of a failed send
+   * @param maxBackoffMillis the maximum time to wait between retries
+   * @param metrics the registry the replication metrics are added to
+   */
+  public ReplicationSender(
+      ReplicationOutbox outbox,
+      Transport transport,
+      int laneCount,
+      int batchSize,
+      long initialBackoffMillis,
+      long maxBackoffMillis,
+      MetricRegistry metrics) {
+    this.outbox = outbox;
+    this.transport = transport;
+    this.batchSize = Math.max(1, batchSize);
+    this.initialBackoffMillis = Math.max(1, initialBackoffMillis);
+    this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+
+    for (int i = 0; i < Math.max(1, laneCount); i++) {
+      lanes.add(new ArrayBlockingQueue<>(this.batchSize * 2));
+    }
+    executor =
+        Executors.newFixedThreadPool(
+            lanes.size() + 1,
+            StandardThreadFactoryBuilder.newThreadFactory("replicationSenderThread"));
+
+    sent = metrics.meter(MetricRegistry.name("Replication", "Sent"));
+    rejected = metrics.meter(MetricRegistry.name("Replication", "Rejected"));
+    retries = metrics.meter(MetricRegistry.name("Replication", "Retries"));
+    metrics.register(
+        MetricRegistry.name("Replication", "Pending"), (Gauge<Long>) outbox::getPendingCount);
+    metrics.register(MetricRegistry.name("Replication", "LagMillis"), (Gauge<Long>) this::getLag);
+  }
+
+  /** Starts sending the records in the outbox. */
+  public void start() {
+    running = true;
+    executor.execute(this::dispatch);
+    for (BlockingQueue<ReplicationRecord> lane : lanes) {
+      executor.execute(() -> sendLane(lane));
+    }
+  }
+
+  /**
+   * Returns how long the oldest record that has been read from the outbox has been waiting to be
+   * sent, in milliseconds.
+   */
+  public long getLag() {
+    long oldest = outbox.getOldestOutstandingTimestamp();
+    return oldest < 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+  }
+
+  /**
+   * Stops sending. Records that have not been acknowledged stay in the outbox and are sent again
+   * after the next start.
+   */
+  @Override
+  public void close() {
+    running = false;
+    executor.shutdownNow();
+    try {
+      if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+        LOGGER.debug("Replication sender threads did not stop in time.");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void dispatch() {
+    long backoff = initialBackoffMillis;
+    while (running) {
+      try {
+        for (ReplicationRecord record :
+            outbox.read(batchSize, READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+          lanes.get(laneOf(record)).put(record);
+        }
+        backoff = initialBackoffMillis;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (IOException e) {
+        LOGGER.warn("Unable to read the replication outbox, retrying in {} ms.", backoff, e);
+        if (!sleep(backoff)) {
+          return;
+        }
+        backoff = Math.min(backoff * 2, maxBackoffMillis);
+      }
+    }
+  }
+
+  private int laneOf(ReplicationRecord record) {
+    return record.getId() == null ? 0 : Math.floorMod(record.getId().hashCode(), lanes.size());
+  }
+
+  private void sendLane(BlockingQueue<ReplicationRecord> lane) {
+    List<ReplicationRecord> batch = new ArrayList<>(batchSize);
+    while (running) {
+      try {
+        ReplicationRecord first = lane.poll(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        lane.drainTo(batch, batchSize - 1);
+
+        for (ReplicationRecord record : batch) {
+          deliver(record);
+          outbox.acknowledge(record.getSequence());
+        }
+        outbox.checkpoint();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (IOException e) {
+        LOGGER.debug("Unable to write the replication outbox checkpoint.", e);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void deliver(ReplicationRecord record) throws InterruptedException {
+    long backoff = initialBackoffMillis;
+    while (true) {
+      try {
+        int status = transport.send(record);
+        if (isSuccess(record, status)) {
+          sent.mark();
+          return;
+        }
+        if (!isRetryable(status)) {
+          rejected.mark();
+          LOGGER.info(
+              "The parent rejected {} with status {}. It will not be replicated.", record, status);
+          return;
+        }
+        LOGGER.debug(
+            "The parent returned status {} for {}, retrying in {} ms.", status, record, backoff);
+      } catch (RuntimeException e) {
+        LOGGER.debug("Unable to send {} to the parent, retrying in {} ms.", record, backoff, e);
+      }
+
+      retries.mark();
+      if (!sleep(backoff)) {
+        throw new InterruptedException();
+      }
+      backoff = Math.min(backoff * 2, maxBackoffMillis);
+    }
+  }
+
+  private static boolean isSuccess(ReplicationRecord record, int status) {
+    return (status >= 200 && status < 300)
+        || (record.getOperation() == Operation.DELETE && status == 404);
+  }
+
+  private static boolean isRetryable(int status) {
+    return status == 408 || status == 429 || status >= 500 || status < 200;
+  }
+
+  private boolean sleep(long millis) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+      return running;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -13,8 +13,11 @@
  */
 package ddf.catalog.federation.layered.replication;
 
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
 import ddf.catalog.data.BinaryContent;
 import ddf.catalog.data.Metacard;
+import ddf.catalog.federation.layered.replication.ReplicationRecord.Operation;
 import ddf.catalog.operation.CreateResponse;
 import ddf.catalog.operation.DeleteResponse;
 import ddf.catalog.operation.Update;
@@ -26,49 +29,114 @@
 import ddf.catalog.transform.MetacardTransformer;
 import ddf.catalog.util.impl.Requests;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.cxf.jaxrs.client.WebClient;
+import org.codice.ddf.configuration.AbsolutePathResolver;
 import org.codice.ddf.configuration.PropertyResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Replicates local creates, updates and deletes to a parent DDF through its REST endpoint.
+ *
+ * <p>The plugin only transforms the metacards and appends them to a {@link ReplicationOutbox} on
+ * disk, so ingest does not wait for the parent. A {@link ReplicationSender} sends the outbox to the
+ * parent in the background and keeps retrying while the parent is unavailable.
+ */
 public class RestReplicatorPlugin implements PostIngestPlugin {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RestReplicatorPlugin.class);
 
   private static final String RESPONSE = "RESPONSE: [{}]";
 
+  private static final String DEFAULT_OUTBOX_DIRECTORY = "data/replication";
+
+  private final MetricRegistry metrics = new MetricRegistry();
+
+  private final JmxReporter reporter =
+      JmxReporter.forRegistry(metrics).inDomain("ddf.metrics.catalog.replication").build();
+
   /** A configurable property of parent's location. */
   private PropertyResolver parentAddress = null;
 
   private MetacardTransformer transformer = null;
 
-  private WebClient client;
+  private volatile WebClient client;
+
+  private String outboxDirectory = DEFAULT_OUTBOX_DIRECTORY;
+
+  private int senderThreads = 4;
+
+  private int batchSize = 50;
+
+  private long initialRetryIntervalMillis = TimeUnit.SECONDS.toMillis(1);
+
+  private long maxRetryIntervalMillis = TimeUnit.MINUTES.toMillis(5);
+
+  private ReplicationOutbox outbox;
+
+  private ReplicationSender sender;
 
   public RestReplicatorPlugin(String endpointAddress) {
     setParentAddress(endpointAddress);
   }
 
+  /**
+   * Opens the outbox and starts sending it to the parent.
+   *
+   * @throws IOException if the outbox cannot be opened
+   */
+  public void init() throws IOException {
+    outbox =
+        new ReplicationOutbox(
+            Paths.get(new AbsolutePathResolver(outboxDirectory).getPath()),
+            ReplicationOutbox.DEFAULT_SEGMENT_SIZE);
+    sender =
+        new ReplicationSender(
+            outbox,
+            this::send,
+            senderThreads,
+            batchSize,
+            initialRetryIntervalMillis,
+            maxRetryIntervalMillis,
+            metrics);
+    sender.start();
+    reporter.start();
+  }
+
+  /** Stops sending and closes the outbox. Unsent records are sent after the next start. */
+  public void destroy() {
+    reporter.stop();
+    if (sender != null) {
+      sender.close();
+    }
+    if (outbox != null) {
+      try {
+        outbox.close();
+      } catch (IOException e) {
+        LOGGER.debug("Unable to close the replication outbox.", e);
+      }
+    }
+  }
+
   @Override
   public CreateResponse process(CreateResponse input) throws PluginExecutionException {
 
     if (Requests.isLocal(input.getRequest()) && client != null && transformer != null) {
 
+      List<ReplicationRecord> records = new ArrayList<>();
       for (Metacard m : input.getCreatedMetacards()) {
-
-        String data = transform(m, client);
-
-        Response r = client.post(data);
-        if (LOGGER.isDebugEnabled()) {
-          LOGGER.debug("Posted the following GeoJSON: {}\n", data);
-          LOGGER.debug(RESPONSE, ToStringBuilder.reflectionToString(r));
-        }
+        records.add(transform(Operation.CREATE, m.getId(), m));
       }
+      enqueue(records);
     }
 
     return input;
@@ -79,10 +147,6 @@ public UpdateResponse process(UpdateResponse input) throws PluginExecutionExcept
 
     if (Requests.isLocal(input.getRequest()) && client != null && transformer != null) {
 
-      WebClient updateClient = WebClient.fromClient(client);
-
-      updateClient.type(MediaType.APPLICATION_JSON);
-
       List<Update> updates = input.getUpdatedMetacards();
 
       if (updates == null) {
@@ -96,6 +160,7 @@ public UpdateResponse process(UpdateResponse input) throws PluginExecutionExcept
                 "Cannot replicate records that are not updated by " + Metacard.ID));
       }
 
+      List<ReplicationRecord> records = new ArrayList<>();
       for (int i = 0; i < updates.size(); i++) {
 
         Update update = updates.get(i);
@@ -105,18 +170,14 @@ public UpdateResponse process(UpdateResponse input) throws PluginExecutionExcept
             && request.getUpdates().get(i) != null
             && request.getUpdates().get(i).getKey() != null) {
 
-          updateClient.path(request.getUpdates().get(i).getKey());
-
-          Metacard newMetacard = update.getNewMetacard();
-
-          String newData = transform(newMetacard, updateClient);
-
-          Response r = updateClient.put(newData);
-          if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug(RESPONSE, ToStringBuilder.reflectionToString(r));
-          }
+          records.add(
+              transform(
+                  Operation.UPDATE,
+                  request.getUpdates().get(i).getKey().toString(),
+                  update.getNewMetacard()));
         }
       }
+      enqueue(records);
     }
 
     return input;
@@ -127,28 +188,17 @@ public DeleteResponse process(DeleteResponse input) throws PluginExecutionExcept
 
     if (input != null && Requests.isLocal(input.getRequest()) && client != null) {
 
-      WebClient updateClient = WebClient.fromClient(client);
-
-      updateClient.type(MediaType.APPLICATION_JSON);
-
       if (input.getDeletedMetacards() == null || input.getDeletedMetacards().isEmpty()) {
         return input;
       }
 
-      for (int i = 0; i < input.getDeletedMetacards().size(); i++) {
-
-        Metacard metacard = input.getDeletedMetacards().get(i);
-
+      List<ReplicationRecord> records = new ArrayList<>();
+      for (Metacard metacard : input.getDeletedMetacards()) {
         if (metacard != null && metacard.getId() != null) {
-
-          updateClient.path(metacard.getId());
-
-          Response r = updateClient.delete();
-          if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug(RESPONSE, ToStringBuilder.reflectionToString(r));
-          }
+          records.add(new ReplicationRecord(Operation.DELETE, metacard.getId(), null, null));
         }
       }
+      enqueue(records);
     }
 
     return input;
@@ -189,13 +239,64 @@ public void setTransformer(MetacardTransformer transformer) {
     LOGGER.debug("Changed transformer to [{}]", this.transformer);
   }
 
-  private String transform(Metacard m, WebClient client) throws PluginExecutionException {
+  /**
+   * Sets the directory of the outbox. Relative paths are resolved against {@code ddf.home}. Takes
+   * effect when the plugin is started.
+   */
+  public void setOutboxDirectory(String outboxDirectory) {
+    this.outboxDirectory = outboxDirectory;
+  }
+
+  /** Sets the number of threads sending to the parent. Takes effect when the plugin is started. */
+  public void setSenderThreads(int senderThreads) {
+    this.senderThreads = senderThreads;
+  }
+
+  /**
+   * Sets the maximum number of records a sender thread takes from the outbox at a time. Takes
+   * effect when the plugin is started.
+   */
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Sets the wait before the first retry of a failed send, doubling up to the maximum retry
+   * interval. Takes effect when the plugin is started.
+   */
+  public void setInitialRetryIntervalMillis(long initialRetryIntervalMillis) {
+    this.initialRetryIntervalMillis = initialRetryIntervalMillis;
+  }
+
+  /**
+   * Sets the maximum wait between retries of a failed send. Takes effect when the plugin is
+   * started.
+   */
+  public void setMaxRetryIntervalMillis(long maxRetryIntervalMillis) {
+    this.maxRetryIntervalMillis = maxRetryIntervalMillis;
+  }
+
+  private void enqueue(List<ReplicationRecord> records) throws PluginExecutionException {
+    if (outbox == null) {
+      throw new PluginExecutionException("The replication outbox is not open.");
+    }
+
+    try {
+      outbox.append(records);
+    } catch (IOException e) {
+      LOGGER.debug("Could not append metacards to the replication outbox.", e);
+      throw new PluginExecutionException("Could not queue metacards for replication.");
+    }
+  }
+
+  private ReplicationRecord transform(Operation operation, String id, Metacard m)
+      throws PluginExecutionException {
 
     BinaryContent binaryContent;
     try {
       binaryContent = transformer.transform(m, new HashMap<>());
-      client.type(getValidMimeType(binaryContent.getMimeTypeValue()));
-      return new String(binaryContent.getByteArray(), StandardCharsets.UTF_8);
+      return new ReplicationRecord(
+          operation, id, binaryContent.getMimeTypeValue(), binaryContent.getByteArray());
     } catch (IOException e) {
       LOGGER.debug("Could not understand metacard.", e);
       throw new PluginExecutionException("Could not send metacard.");
@@ -205,8 +306,40 @@ private String transform(Metacard m, WebClient client) throws PluginExecutionExc
     }
   }
 
+  private int send(ReplicationRecord record) {
+    WebClient parent = client;
+    if (parent == null) {
+      return Status.SERVICE_UNAVAILABLE.getStatusCode();
+    }
+
+    WebClient request = WebClient.fromClient(parent);
+    Response r;
+    switch (record.getOperation()) {
+      case CREATE:
+        r = request.type(getValidMimeType(record.getMimeType())).post(record.getPayload());
+        break;
+      case UPDATE:
+        r =
+            request
+                .path(record.getId())
+                .type(getValidMimeType(record.getMimeType()))
+                .put(record.getPayload());
+        break;
+      default:
+        r = request.path(record.getId()).type(MediaType.APPLICATION_JSON).delete();
+        break;
+    }
+
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug(RESPONSE, ToStringBuilder.reflectionToString(r));
+    }
+    int status = r.getStatus();
+    r.close();
+    return status;
+  }
+
   private String getValidMimeType(String mimeTypeValue) {
-    if (mimeTypeValue == null) {
+    if (mimeTypeValue == null || mimeTypeValue.isEmpty()) {
       return MediaType.APPLICATION_OCTET_STREAM;
     }
     return mimeTypeValue;
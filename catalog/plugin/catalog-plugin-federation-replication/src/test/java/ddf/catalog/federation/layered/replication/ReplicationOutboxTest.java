@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.federation.layered.replication;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import ddf.catalog.federation.layered.replication.ReplicationRecord.Operation;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReplicationOutboxTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = temporaryFolder.newFolder("replication").toPath();
+  }
+
+  @Test
+  public void testReadInOrder() throws Exception {
+    try (ReplicationOutbox outbox = new ReplicationOutbox(directory, 1024)) {
+      append(outbox, "a", "b", "c");
+
+      List<ReplicationRecord> records = outbox.read(10, 1, TimeUnit.SECONDS);
+
+      assertThat(ids(records), contains("a", "b", "c"));
+      assertThat(records.get(2).getSequence(), is(2L));
+      assertThat(new String(records.get(0).getPayload(), StandardCharsets.UTF_8), is("a"));
+      assertThat(records.get(0).getMimeType(), is("application/json"));
+    }
+  }
+
+  @Test
+  public void testReadTimesOut() throws Exception {
+    try (ReplicationOutbox outbox = new ReplicationOutbox(directory, 1024)) {
+      assertThat(outbox.read(10, 10, TimeUnit.MILLISECONDS), is(empty()));
+    }
+  }
+
+  @Test
+  public void testReadAcrossSegments() throws Exception {
+    try (ReplicationOutbox outbox = new ReplicationOutbox(directory, 1)) {
+      append(outbox, "a", "b", "c", "d", "e");
+
+      assertThat(segments().size(), is(6));
+      assertThat(ids(outbox.read(10, 1, TimeUnit.SECONDS)), contains("a", "b", "c", "d", "e"));
+    }
+  }
+
+  @Test
+  public void testUnacknowledgedRecordsAreReadAfterRestart() throws Exception {
+    try (ReplicationOutbox outbox = new ReplicationOutbox(directory, 100)) {
+      append(outbox, "a", "b", "c", "d");
+      outbox.read(10, 1, TimeUnit.SECONDS);
+      outbox.acknowledge(0);
+      outbox.acknowledge(2);
+      outbox.checkpoint();
+      assertThat(outbox.getPendingCount(), is(3L));
+    }
+
+    try (ReplicationOutbox outbox = new ReplicationOutbox(directory, 100)) {
+      assertThat(outbox.getPendingCount(), is(3L));
+      assertThat(ids(outbox.read(10, 1, TimeUnit.SECONDS)), contains("b", "c", "d"));
+
+      append(outbox, "e");
+      assertThat(outbox.read(10, 1, TimeUnit.SECONDS).get(0).getSequence(), is(4L));
+    }
+  }
+
+  @Test
+  public void testAcknowledgedSegmentsAreDeleted() throws Exception {
+    try (ReplicationOutbox outbox = new ReplicationOutbox(directory, 100)) {
+      append(outbox, "a", "b", "c");
+      for (ReplicationRecord record : outbox.read(10, 1, TimeUnit.SECONDS)) {
+        outbox.acknowledge(record.getSequence());
+      }
+      outbox.checkpoint();
+
+      assertThat(outbox.getPendingCount(), is(0L));
+      assertThat(segments().size(), is(1));
+    }
+  }
+
+  @Test
+  public void testIncompleteRecordIsDiscarded() throws Exception {
+    try (ReplicationOutbox outbox = new ReplicationOutbox(directory, 1024)) {
+      append(outbox, "a", "b");
+    }
+    Files.write(segments().get(0), new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    try (ReplicationOutbox outbox = new ReplicationOutbox(directory, 1024)) {
+      append(outbox, "c");
+
+      assertThat(ids(outbox.read(10, 1, TimeUnit.SECONDS)), contains("a", "b", "c"));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testAppendAfterClose() throws Exception {
+    ReplicationOutbox outbox = new ReplicationOutbox(directory, 1024);
+    outbox.close();
+
+    append(outbox, "a");
+  }
+
+  private static void append(ReplicationOutbox outbox, String... ids) throws IOException {
+    for (String id : ids) {
+      outbox.append(
+          Collections.singletonList(
+              new ReplicationRecord(
+                  Operation.CREATE, id, "application/json", id.getBytes(StandardCharsets.UTF_8))));
+    }
+  }
+
+  private static List<String> ids(List<ReplicationRecord> records) {
+    List<String> ids = new ArrayList<>();
+    for (ReplicationRecord record : records) {
+      ids.add(record.getId());
+    }
+    return ids;
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(file -> file.toString().endsWith(".log"))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+}
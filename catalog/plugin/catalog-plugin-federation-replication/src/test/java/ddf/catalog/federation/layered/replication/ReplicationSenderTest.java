@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.federation.layered.replication;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import com.codahale.metrics.MetricRegistry;
+import ddf.catalog.federation.layered.replication.ReplicationRecord.Operation;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReplicationSenderTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final MetricRegistry metrics = new MetricRegistry();
+
+  private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+  private ReplicationOutbox outbox;
+
+  private ReplicationSender sender;
+
+  @Before
+  public void setUp() throws IOException {
+    outbox = new ReplicationOutbox(temporaryFolder.newFolder("replication").toPath(), 1024);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (sender != null) {
+      sender.close();
+    }
+    outbox.close();
+  }
+
+  @Test
+  public void testOperationsOnAMetacardAreSentInOrder() throws Exception {
+    start(
+        record -> {
+          sent.add(record.getOperation() + " " + record.getId());
+          return 200;
+        });
+
+    outbox.append(
+        Arrays.asList(
+            record(Operation.CREATE, "a"),
+            record(Operation.CREATE, "b"),
+            record(Operation.UPDATE, "a"),
+            record(Operation.DELETE, "a")));
+
+    waitForPendingCount(0);
+    assertThat(sentFor("a"), contains("CREATE a", "UPDATE a", "DELETE a"));
+    assertThat(metrics.meter("Replication.Sent").getCount(), is(4L));
+  }
+
+  @Test
+  public void testFailedSendIsRetried() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    start(
+        record -> {
+          if (attempts.incrementAndGet() < 3) {
+            throw new IllegalStateException("connection refused");
+          }
+          sent.add(record.getId());
+          return 201;
+        });
+
+    outbox.append(Collections.singletonList(record(Operation.CREATE, "a")));
+
+    waitForPendingCount(0);
+    assertThat(sent, contains("a"));
+    assertThat(metrics.meter("Replication.Retries").getCount(), is(2L));
+  }
+
+  @Test
+  public void testUnavailableParentIsRetried() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    start(record -> attempts.incrementAndGet() < 2 ? 503 : 200);
+
+    outbox.append(Collections.singletonList(record(Operation.UPDATE, "a")));
+
+    waitForPendingCount(0);
+    assertThat(attempts.get(), is(2));
+  }
+
+  @Test
+  public void testRejectedRecordIsDropped() throws Exception {
+    start(record -> 400);
+
+    outbox.append(Collections.singletonList(record(Operation.CREATE, "a")));
+
+    waitForPendingCount(0);
+    assertThat(metrics.meter("Replication.Rejected").getCount(), is(1L));
+  }
+
+  @Test
+  public void testDeleteOfMissingRecordSucceeds() throws Exception {
+    start(record -> 404);
+
+    outbox.append(Collections.singletonList(record(Operation.DELETE, "a")));
+
+    waitForPendingCount(0);
+    assertThat(metrics.meter("Replication.Sent").getCount(), is(1L));
+  }
+
+  private void start(ReplicationSender.Transport transport) {
+    sender = new ReplicationSender(outbox, transport, 2, 10, 1, 10, metrics);
+    sender.start();
+  }
+
+  private List<String> sentFor(String id) {
+    List<String> operations = new ArrayList<>();
+    synchronized (sent) {
+      for (String operation : sent) {
+        if (operation.endsWith(" " + id)) {
+          operations.add(operation);
+        }
+      }
+    }
+    return operations;
+  }
+
+  private void waitForPendingCount(long count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (outbox.getPendingCount() != count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(outbox.getPendingCount(), is(count));
+  }
+
+  private static ReplicationRecord record(Operation operation, String id) {
+    return new ReplicationRecord(operation, id, "application/json", new byte[] {1});
+  }
+}
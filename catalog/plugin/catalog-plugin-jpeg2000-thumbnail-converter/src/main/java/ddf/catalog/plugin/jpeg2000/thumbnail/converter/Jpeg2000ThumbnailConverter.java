@@ -28,6 +28,7 @@
 import java.io.IOException;
 import javax.imageio.ImageIO;
 import javax.imageio.spi.IIORegistry;
+import org.codice.ddf.platform.util.SubsampledImageReader;
 
 /**
  * check for Jpeg 2000 thumbnails in the result set, and convert them to standard Jpeg so the
@@ -43,6 +44,9 @@ public class Jpeg2000ThumbnailConverter implements PostQueryPlugin {
 
   public static final short START_OF_CODESTREAM_MARKER = (short) 0xff4f;
 
+  /** Thumbnails are converted at up to this width and height, whatever their original size. */
+  private static final int MAX_THUMBNAIL_SIZE = 512;
+
   public Jpeg2000ThumbnailConverter() {
     IIORegistry.getDefaultInstance().registerServiceProvider(new J2KImageReaderSpi());
   }
@@ -78,7 +82,8 @@ public QueryResponse process(QueryResponse input)
 
         // convert j2k thumbnail to jpeg thumbnail
         original.reset();
-        BufferedImage thumbnail = ImageIO.read(original);
+        BufferedImage thumbnail =
+            SubsampledImageReader.getInstance().read(original, MAX_THUMBNAIL_SIZE);
         if (thumbnail == null) {
           continue;
         }
@@ -86,6 +91,9 @@ public QueryResponse process(QueryResponse input)
         metacard.setAttribute(new AttributeImpl(Metacard.THUMBNAIL, converted.toByteArray()));
       } catch (IOException e) {
         throw new PluginExecutionException(e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new PluginExecutionException(e);
       }
     }
     return input;
@@ -13,7 +13,9 @@
  */
 package org.codice.ddf.resourcemanagement.query.plugin;
 
+import ddf.catalog.operation.CancellationToken;
 import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.impl.CancellationTokenImpl;
 import ddf.catalog.source.Source;
 import ddf.security.SecurityConstants;
 import ddf.security.Subject;
@@ -45,6 +47,8 @@ public class ActiveSearch {
 
   private String clientInfo = "";
 
+  private CancellationToken cancellationToken = CancellationTokenImpl.of(null);
+
   public static final int USER_PAD_LENGTH = 20;
 
   public static final int SOURCE_PAD_LENGTH = 40;
@@ -130,6 +134,17 @@ public String getClientInfo() {
     return clientInfo;
   }
 
+  /**
+   * Returns the {@link CancellationToken} of the query request for this {@link ActiveSearch}.
+   *
+   * @return {@link CancellationToken} that cancels the source query when cancelled. Never {@code
+   *     null}; searches that were not created from a request carrying a token get one that is never
+   *     cancelled.
+   */
+  public CancellationToken getCancellationToken() {
+    return cancellationToken;
+  }
+
   /**
    * Constructor for an {@link ActiveSearch}.
    *
@@ -196,6 +211,7 @@ public ActiveSearch(Source source, QueryRequest request) {
     if (request == null) {
       LOGGER.debug("QueryRequest in ActiveSearch Constructor was null.");
     } else {
+      cancellationToken = CancellationTokenImpl.of(request);
       clientInfo =
           SubjectUtils.getName(
               (Subject) request.getPropertyValue(SecurityConstants.SECURITY_SUBJECT),
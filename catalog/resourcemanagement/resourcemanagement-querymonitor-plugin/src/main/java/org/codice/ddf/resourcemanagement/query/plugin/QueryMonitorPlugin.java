@@ -49,7 +49,8 @@ public interface QueryMonitorPlugin extends PreFederatedQueryPlugin, PostFederat
   void setRemoveSearchAfterComplete(boolean b);
 
   /**
-   * Removes an ActiveSearch from the {@link ActiveSearch} {@link Map} using it's UUID as a key
+   * Removes an ActiveSearch from the {@link ActiveSearch} {@link Map} using it's UUID as a key and
+   * cancels the source query it represents.
    *
    * @param id java.util.UUID that corresponds to the ActiveSearch to be removed from the {@link
    *     Map}
@@ -69,7 +69,13 @@ public boolean removeActiveSearch(UUID uniqueID) {
       LOGGER.debug("Can't remove active search with null ID.");
       return false;
     }
-    return (activeSearches.remove(uniqueID) != null);
+    ActiveSearch activeSearch = activeSearches.remove(uniqueID);
+    if (activeSearch == null) {
+      return false;
+    }
+    // stop the source query instead of only hiding it from the monitor
+    activeSearch.getCancellationToken().cancel();
+    return true;
   }
 
   /**
@@ -124,7 +130,8 @@ public QueryResponse process(QueryResponse input)
           "Cannot remove ActiveSearch from the ActiveSearch Map. QueryResponse received in QueryMonitorPluginImpl was null.");
       return null;
     }
-    if (!removeActiveSearch((UUID) input.getRequest().getPropertyValue(SEARCH_ID))) {
+    UUID uniqueID = (UUID) input.getRequest().getPropertyValue(SEARCH_ID);
+    if (uniqueID == null || activeSearches.remove(uniqueID) == null) {
       QueryResponseImpl queryResponse =
           new QueryResponseImpl(input.getRequest(), new ArrayList<>(), 0);
       queryResponse.closeResultQueue();
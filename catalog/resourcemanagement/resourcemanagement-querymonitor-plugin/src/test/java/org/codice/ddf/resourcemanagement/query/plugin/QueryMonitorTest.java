@@ -23,8 +23,11 @@
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import ddf.catalog.Constants;
+import ddf.catalog.operation.CancellationToken;
 import ddf.catalog.operation.Query;
 import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.impl.CancellationTokenImpl;
 import ddf.catalog.plugin.PluginExecutionException;
 import ddf.catalog.plugin.StopProcessingException;
 import ddf.catalog.source.CatalogProvider;
@@ -161,4 +164,22 @@ public void testQueryMonitorAddActiveSearchNullParameters() {
     Map<UUID, ActiveSearch> activeSearchTable = qmpi.getActiveSearches();
     assertThat(activeSearchTable, hasValue(as));
   }
+
+  @Test
+  public void testQueryMonitorRemoveActiveSearchCancelsQuery()
+      throws StopProcessingException, PluginExecutionException {
+    QueryRequest mockQR = mock(QueryRequest.class);
+    Query mockQuery = mock(Query.class);
+    CancellationToken token = new CancellationTokenImpl();
+    propertyMap = new ConcurrentHashMap<>();
+    when(mockQR.getProperties()).thenReturn(propertyMap);
+    when(mockQR.getPropertyValue(Constants.QUERY_CANCELLATION_TOKEN_KEY)).thenReturn(token);
+    when(mockQR.getQuery()).thenReturn(mockQuery);
+    when(mockQuery.accept(any(), any())).thenReturn(new StringBuilder());
+    qmpi.process(null, mockQR);
+    UUID u = qmpi.getActiveSearches().keySet().iterator().next();
+    assertThat(token.isCancelled(), is(false));
+    assertThat(qmpi.removeActiveSearch(u), is(true));
+    assertThat(token.isCancelled(), is(true));
+  }
 }
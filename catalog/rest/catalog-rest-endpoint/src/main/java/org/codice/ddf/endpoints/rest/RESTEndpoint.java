@@ -24,6 +24,7 @@
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.Encoded;
 import javax.ws.rs.GET;
 import javax.ws.rs.HEAD;
@@ -39,6 +40,7 @@
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import org.apache.commons.codec.CharEncoding;
@@ -61,6 +63,10 @@ public class RESTEndpoint implements RESTService {
 
   private static final String BYTES = "bytes";
 
+  private static final String BULK_RESULT_MIME_TYPE = "application/x-ndjson";
+
+  private static final String DEFAULT_BULK_BATCH_SIZE = "100";
+
   private CatalogService catalogService;
 
   public RESTEndpoint(CatalogService catalogService) {
@@ -360,6 +366,48 @@ public Response addDocument(
     }
   }
 
+  /**
+   * REST Post. Creates a metadata entry in the catalog for every line of the message, submitting
+   * them to the catalog in batches. The result of every record is streamed back as a line of JSON.
+   *
+   * @param message
+   * @return
+   */
+  @POST
+  @Path(BULK_PATH)
+  @Consumes({"text/*", "application/*"})
+  public Response addDocuments(
+      @QueryParam("transform") String transformerParam,
+      @QueryParam("batchSize") @DefaultValue(DEFAULT_BULK_BATCH_SIZE) int batchSize,
+      InputStream message) {
+    return addDocuments(null, transformerParam, batchSize, message);
+  }
+
+  /**
+   * REST Post. Creates a metadata entry in the catalog for every part of the multipart body,
+   * submitting them to the catalog in batches. The result of every record is streamed back as a
+   * line of JSON.
+   *
+   * @param message
+   * @return
+   */
+  @POST
+  @Path(BULK_PATH)
+  @Consumes("multipart/*")
+  public Response addDocuments(
+      MultipartBody multipartBody,
+      @QueryParam("transform") String transformerParam,
+      @QueryParam("batchSize") @DefaultValue(DEFAULT_BULK_BATCH_SIZE) int batchSize,
+      InputStream message) {
+    try {
+      StreamingOutput results =
+          catalogService.addDocuments(multipartBody, transformerParam, batchSize, message);
+      return Response.ok(results, BULK_RESULT_MIME_TYPE).build();
+    } catch (CatalogServiceException e) {
+      return createBadRequestResponse(e.getMessage());
+    }
+  }
+
   /**
    * REST Delete. Deletes a record from the catalog.
    *
@@ -34,6 +34,7 @@ public interface RESTService {
 
   String CONTEXT_ROOT = "catalog";
   String SOURCES_PATH = "/sources";
+  String BULK_PATH = "/bulk";
 
   /**
    * REST Get. Retrieves the metadata entry specified by the id. Transformer argument is optional,
@@ -146,6 +147,33 @@ Response addDocument(
       @QueryParam("transform") String transformerParam,
       InputStream message);
 
+  /**
+   * REST Post. Creates a metadata entry in the catalog for every line of the message.
+   *
+   * @param message
+   * @return
+   */
+  @POST
+  @Path(BULK_PATH)
+  Response addDocuments(
+      @QueryParam("transform") String transformerParam,
+      @QueryParam("batchSize") int batchSize,
+      InputStream message);
+
+  /**
+   * REST Post. Creates a metadata entry in the catalog for every part of the multipart body.
+   *
+   * @param message
+   * @return
+   */
+  @POST
+  @Path(BULK_PATH)
+  Response addDocuments(
+      MultipartBody multipartBody,
+      @QueryParam("transform") String transformerParam,
+      @QueryParam("batchSize") int batchSize,
+      InputStream message);
+
   /**
    * REST Delete. Deletes a record from the catalog.
    *
@@ -0,0 +1,363 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.rest.impl;
+
+import com.google.common.io.ByteSource;
+import ddf.catalog.CatalogFramework;
+import ddf.catalog.Constants;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.impl.AttributeImpl;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.impl.CreateRequestImpl;
+import ddf.catalog.source.IngestException;
+import ddf.catalog.source.SourceUnavailableException;
+import ddf.catalog.transform.CatalogTransformerException;
+import ddf.catalog.transform.InputTransformer;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.activation.MimeType;
+import javax.activation.MimeTypeParseException;
+import javax.annotation.Nullable;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import net.minidev.json.JSONObject;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.cxf.jaxrs.ext.multipart.Attachment;
+import org.codice.ddf.platform.util.TemporaryFileBackedOutputStream;
+import org.codice.ddf.platform.util.uuidgenerator.UuidGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates a metacard for every record read from a bulk ingest request and streams the outcome of
+ * each record back as one line of JSON.
+ *
+ * <p>Records are transformed one at a time as they are read and are sent to the {@link
+ * CatalogFramework} in batches. The next record is not read until the current batch has been
+ * created, so a client that sends faster than the catalog can ingest is slowed down by the request
+ * itself. The results of a batch are flushed to the client as soon as it completes.
+ *
+ * <p>If a batch fails, its records are created one at a time so that the failure is only reported
+ * for the records that caused it.
+ */
+class BulkIngestOutput implements StreamingOutput {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BulkIngestOutput.class);
+
+  private static final Logger INGEST_LOGGER = LoggerFactory.getLogger(Constants.INGEST_LOGGER_NAME);
+
+  static final String RESULT_MIME_TYPE = "application/x-ndjson";
+
+  private final CatalogFramework catalogFramework;
+
+  private final UuidGenerator uuidGenerator;
+
+  private final Function<MimeType, List<InputTransformer>> transformerResolver;
+
+  private final Map<String, List<InputTransformer>> transformers = new HashMap<>();
+
+  private final int batchSize;
+
+  private final RecordReader recordReader;
+
+  BulkIngestOutput(
+      CatalogFramework catalogFramework,
+      UuidGenerator uuidGenerator,
+      Function<MimeType, List<InputTransformer>> transformerResolver,
+      int batchSize,
+      RecordReader recordReader) {
+    this.catalogFramework = catalogFramework;
+    this.uuidGenerator = uuidGenerator;
+    this.transformerResolver = transformerResolver;
+    this.batchSize = batchSize;
+    this.recordReader = recordReader;
+  }
+
+  @Override
+  public void write(OutputStream output) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    List<PendingRecord> batch = new ArrayList<>(batchSize);
+
+    try (RecordReader records = recordReader) {
+      Record record;
+      while ((record = records.next()) != null) {
+        try (Record current = record) {
+          Metacard metacard = transform(current);
+          if (metacard.getId() == null) {
+            metacard.setAttribute(new AttributeImpl(Metacard.ID, uuidGenerator.generateUuid()));
+          }
+          batch.add(new PendingRecord(current.getIndex(), metacard));
+        } catch (CatalogTransformerException e) {
+          LOGGER.debug("Unable to transform record {}.", record.getIndex(), e);
+          writeFailure(writer, record.getIndex(), e.getMessage());
+        }
+
+        if (batch.size() >= batchSize) {
+          create(batch, writer);
+          batch.clear();
+          writer.flush();
+        }
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      create(batch, writer);
+    }
+    writer.flush();
+  }
+
+  private Metacard transform(Record record) throws IOException, CatalogTransformerException {
+    List<InputTransformer> candidates =
+        transformers.computeIfAbsent(
+            record.getMimeType().getBaseType(),
+            type -> transformerResolver.apply(record.getMimeType()));
+
+    for (InputTransformer transformer : candidates) {
+      try (InputStream inputStream = record.getContent().openStream()) {
+        Metacard metacard = transformer.transform(inputStream);
+        if (metacard != null) {
+          return metacard;
+        }
+      } catch (CatalogTransformerException e) {
+        LOGGER.debug("Transformer [{}] could not create metacard.", transformer, e);
+      }
+    }
+
+    throw new CatalogTransformerException(
+        String.format("Could not create metacard with mimeType %s", record.getMimeType()));
+  }
+
+  private void create(List<PendingRecord> batch, Writer writer) throws IOException {
+    List<Metacard> metacards =
+        batch.stream().map(PendingRecord::getMetacard).collect(Collectors.toList());
+    try {
+      CreateResponse createResponse = catalogFramework.create(new CreateRequestImpl(metacards));
+      Set<String> createdIds =
+          createResponse
+              .getCreatedMetacards()
+              .stream()
+              .map(Metacard::getId)
+              .collect(Collectors.toSet());
+
+      for (PendingRecord record : batch) {
+        String id = record.getMetacard().getId();
+        if (createdIds.contains(id)) {
+          INGEST_LOGGER.info("Entry successfully saved, id: {}", id);
+          writeCreated(writer, record.getIndex(), id);
+        } else {
+          writeFailure(writer, record.getIndex(), "The entry was not created.");
+        }
+      }
+    } catch (SourceUnavailableException e) {
+      LOGGER.info("Cannot create catalog entries because source is unavailable: ", e);
+      for (PendingRecord record : batch) {
+        writeFailure(writer, record.getIndex(), "Source is unavailable.");
+      }
+    } catch (IngestException | RuntimeException e) {
+      if (batch.size() == 1) {
+        LOGGER.debug("Error while storing entry {} in catalog.", batch.get(0).getIndex(), e);
+        writeFailure(writer, batch.get(0).getIndex(), e.getMessage());
+        return;
+      }
+
+      LOGGER.debug(
+          "Error while storing a batch of {} entries, storing them one at a time.",
+          batch.size(),
+          e);
+      for (PendingRecord record : batch) {
+        create(Collections.singletonList(record), writer);
+      }
+    }
+  }
+
+  private void writeCreated(Writer writer, int index, String id) throws IOException {
+    JSONObject result = new JSONObject();
+    result.put("record", index);
+    result.put("status", "created");
+    result.put("id", id);
+    writeResult(writer, result);
+  }
+
+  private void writeFailure(Writer writer, int index, @Nullable String message) throws IOException {
+    JSONObject result = new JSONObject();
+    result.put("record", index);
+    result.put("status", "failed");
+    result.put("message", message);
+    writeResult(writer, result);
+  }
+
+  private void writeResult(Writer writer, JSONObject result) throws IOException {
+    writer.write(result.toJSONString());
+    writer.write('\n');
+  }
+
+  /**
+   * @param message a stream with one record per line, blank lines are skipped
+   * @param mimeType the mime type of every record
+   */
+  static RecordReader lines(InputStream message, MimeType mimeType) {
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(message, StandardCharsets.UTF_8));
+    return new RecordReader() {
+      private int lineNumber = 0;
+
+      @Override
+      public Record next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          lineNumber++;
+          if (StringUtils.isNotBlank(line)) {
+            return new Record(
+                lineNumber, mimeType, ByteSource.wrap(line.getBytes(StandardCharsets.UTF_8)), null);
+          }
+        }
+        return null;
+      }
+
+      @Override
+      public void close() throws IOException {
+        reader.close();
+      }
+    };
+  }
+
+  /** @param attachments the parts of a multipart request, one record per part */
+  static RecordReader attachments(List<Attachment> attachments) {
+    Iterator<Attachment> iterator = attachments.iterator();
+    return new RecordReader() {
+      private int partNumber = 0;
+
+      @Override
+      public Record next() throws IOException {
+        if (!iterator.hasNext()) {
+          return null;
+        }
+        Attachment attachment = iterator.next();
+        partNumber++;
+
+        TemporaryFileBackedOutputStream content = new TemporaryFileBackedOutputStream();
+        try (InputStream inputStream = attachment.getDataHandler().getInputStream()) {
+          IOUtils.copy(inputStream, content);
+        } catch (IOException e) {
+          content.close();
+          throw e;
+        }
+        return new Record(partNumber, getMimeType(attachment), content.asByteSource(), content);
+      }
+
+      @Override
+      public void close() {
+        // the attachments are closed along with the request
+      }
+    };
+  }
+
+  private static MimeType getMimeType(Attachment attachment) {
+    try {
+      return new MimeType(attachment.getContentType().toString());
+    } catch (MimeTypeParseException e) {
+      LOGGER.debug("Unable to parse the mime type of part {}.", attachment.getContentId(), e);
+      try {
+        return new MimeType(MediaType.APPLICATION_OCTET_STREAM);
+      } catch (MimeTypeParseException unreachable) {
+        throw new IllegalStateException(unreachable);
+      }
+    }
+  }
+
+  /** Reads the records of a bulk ingest request one at a time. */
+  interface RecordReader extends Closeable {
+
+    /** @return the next record, or {@code null} once every record has been read */
+    @Nullable
+    Record next() throws IOException;
+  }
+
+  /** A single record of a bulk ingest request. */
+  static class Record implements Closeable {
+
+    private final int index;
+
+    private final MimeType mimeType;
+
+    private final ByteSource content;
+
+    private final Closeable resources;
+
+    Record(int index, MimeType mimeType, ByteSource content, @Nullable Closeable resources) {
+      this.index = index;
+      this.mimeType = mimeType;
+      this.content = content;
+      this.resources = resources;
+    }
+
+    /** @return the position of the record in the request, starting at 1 */
+    int getIndex() {
+      return index;
+    }
+
+    MimeType getMimeType() {
+      return mimeType;
+    }
+
+    ByteSource getContent() {
+      return content;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (resources != null) {
+        resources.close();
+      }
+    }
+  }
+
+  private static class PendingRecord {
+
+    private final int index;
+
+    private final Metacard metacard;
+
+    PendingRecord(int index, Metacard metacard) {
+      this.index = index;
+      this.metacard = metacard;
+    }
+
+    int getIndex() {
+      return index;
+    }
+
+    Metacard getMetacard() {
+      return metacard;
+    }
+  }
+}
@@ -92,6 +92,7 @@
 import javax.servlet.http.Part;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.StreamingOutput;
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 import net.minidev.json.JSONValue;
@@ -152,6 +153,8 @@ public class CatalogServiceImpl implements CatalogService {
 
   private static final int MAX_INPUT_SIZE = 65_536;
 
+  private static final int MAX_BULK_BATCH_SIZE = 1000;
+
   private UuidGenerator uuidGenerator;
 
   private static MimeType jsonMimeType;
@@ -795,6 +798,61 @@ private String addDocument(
     }
   }
 
+  @Override
+  public StreamingOutput addDocuments(
+      MultipartBody multipartBody, String transformerParam, int batchSize, InputStream message)
+      throws CatalogServiceException {
+    LOGGER.debug("POST bulk");
+
+    BulkIngestOutput.RecordReader recordReader;
+    if (multipartBody != null && CollectionUtils.isNotEmpty(multipartBody.getAllAttachments())) {
+      recordReader = BulkIngestOutput.attachments(multipartBody.getAllAttachments());
+    } else if (message != null) {
+      recordReader = BulkIngestOutput.lines(message, jsonMimeType);
+    } else {
+      String errorMessage = "No content found, cannot do CREATE.";
+      LOGGER.info(errorMessage);
+      throw new CatalogServiceException(errorMessage);
+    }
+
+    if (StringUtils.isNotEmpty(transformerParam)
+        && getInputTransformers(jsonMimeType, transformerParam).isEmpty()) {
+      IOUtils.closeQuietly(recordReader);
+      String errorMessage = "No input transformer found with id " + transformerParam;
+      LOGGER.info(errorMessage);
+      throw new CatalogServiceException(errorMessage);
+    }
+
+    return new BulkIngestOutput(
+        catalogFramework,
+        uuidGenerator,
+        mimeType -> getInputTransformers(mimeType, transformerParam),
+        Math.max(1, Math.min(batchSize, MAX_BULK_BATCH_SIZE)),
+        recordReader);
+  }
+
+  /**
+   * @return the transformer with the given id if there is one, otherwise the transformers that
+   *     accept the mime type
+   */
+  private List<InputTransformer> getInputTransformers(MimeType mimeType, String transformerId) {
+    if (StringUtils.isEmpty(transformerId)) {
+      return mimeTypeToTransformerMapper.findMatches(InputTransformer.class, mimeType);
+    }
+
+    BundleContext bundleContext = getBundleContext();
+    try {
+      return bundleContext
+          .getServiceReferences(InputTransformer.class, "(id=" + transformerId + ")")
+          .stream()
+          .map(bundleContext::getService)
+          .collect(Collectors.toList());
+    } catch (InvalidSyntaxException e) {
+      LOGGER.debug("Invalid transformer id {}", transformerId, e);
+      return Collections.emptyList();
+    }
+  }
+
   Pair<AttachmentInfo, Metacard> parseAttachments(
       List<Attachment> contentParts, String transformerParam) {
 
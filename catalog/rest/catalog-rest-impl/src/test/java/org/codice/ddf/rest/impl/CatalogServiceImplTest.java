@@ -67,6 +67,7 @@
 import ddf.mime.MimeTypeToTransformerMapper;
 import ddf.mime.tika.TikaMimeTypeResolver;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -85,6 +86,7 @@
 import javax.servlet.http.Part;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 import net.minidev.json.parser.JSONParser;
@@ -353,6 +355,77 @@ public void testAddDocumentWithMetadataMetacardId() throws Exception {
     verify(uuidGenerator, never()).generateUuid();
   }
 
+  @Test
+  public void testAddDocumentsStreamsResultPerRecord() throws Exception {
+    CatalogFramework framework = mock(CatalogFramework.class);
+    when(framework.create(isA(CreateRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              CreateRequest request = (CreateRequest) invocation.getArguments()[0];
+              for (Metacard metacard : request.getMetacards()) {
+                if ("bad".equals(metacard.getMetadata())) {
+                  throw new IngestException("bad record");
+                }
+              }
+              return new CreateResponseImpl(request, null, request.getMetacards());
+            });
+
+    UuidGenerator uuidGenerator = mock(UuidGenerator.class);
+    when(uuidGenerator.generateUuid()).thenAnswer(invocation -> UUID.randomUUID().toString());
+
+    CatalogServiceImpl catalogService =
+        new CatalogServiceImpl(framework, attachmentParser, attributeRegistry);
+    catalogService.setUuidGenerator(uuidGenerator);
+    addMatchingService(catalogService, Collections.singletonList(getMetadataTransformer()));
+
+    StreamingOutput output =
+        catalogService.addDocuments(
+            null, null, 2, new ByteArrayInputStream("one\n\ntwo\nbad\nthree\n".getBytes()));
+    ByteArrayOutputStream results = new ByteArrayOutputStream();
+    output.write(results);
+
+    JSONParser parser = new JSONParser(JSONParser.MODE_PERMISSIVE);
+    Map<Integer, String> statuses = new HashMap<>();
+    for (String line : results.toString("UTF-8").split("\n")) {
+      JSONObject result = (JSONObject) parser.parse(line);
+      statuses.put((Integer) result.get("record"), (String) result.get("status"));
+    }
+
+    assertThat(statuses.get(1), equalTo("created"));
+    assertThat(statuses.get(3), equalTo("created"));
+    assertThat(statuses.get(4), equalTo("failed"));
+    assertThat(statuses.get(5), equalTo("created"));
+    assertThat(statuses.size(), equalTo(4));
+    // two batches, then the failed batch one record at a time
+    verify(framework, times(4)).create(isA(CreateRequest.class));
+  }
+
+  @Test(expected = CatalogServiceException.class)
+  public void testAddDocumentsNullMessage() throws Exception {
+    CatalogServiceImpl catalogService =
+        new CatalogServiceImpl(mock(CatalogFramework.class), attachmentParser, attributeRegistry);
+
+    catalogService.addDocuments(null, null, 10, null);
+  }
+
+  private InputTransformer getMetadataTransformer() {
+    return new InputTransformer() {
+
+      @Override
+      public Metacard transform(InputStream input, String id) throws IOException {
+        MetacardImpl metacard = new MetacardImpl();
+        metacard.setId(id);
+        metacard.setMetadata(IOUtils.toString(input));
+        return metacard;
+      }
+
+      @Override
+      public Metacard transform(InputStream input) throws IOException {
+        return transform(input, null);
+      }
+    };
+  }
+
   @Test
   @SuppressWarnings({"unchecked"})
   public void testAddDocumentWithMetadataNoMcardId() throws Exception {
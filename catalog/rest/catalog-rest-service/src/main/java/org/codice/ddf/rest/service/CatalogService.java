@@ -24,6 +24,7 @@
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.Part;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.StreamingOutput;
 import org.apache.cxf.jaxrs.ext.multipart.MultipartBody;
 import org.codice.ddf.attachment.AttachmentInfo;
 
@@ -97,6 +98,16 @@ String addDocument(
       InputStream message)
       throws CatalogServiceException;
 
+  /**
+   * Creates a metadata entry in the catalog for every record in the request. A record is either a
+   * line of {@code message} or a part of {@code multipartBody}. Records are created in batches of
+   * up to {@code batchSize} and the returned output writes the result of each record as a line of
+   * JSON as soon as its batch has been created.
+   */
+  StreamingOutput addDocuments(
+      MultipartBody multipartBody, String transformerParam, int batchSize, InputStream message)
+      throws CatalogServiceException;
+
   Map.Entry<AttachmentInfo, Metacard> parseParts(
       Collection<Part> contentParts, String transformerParam);
 
@@ -29,6 +29,7 @@
 import java.net.URL;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -48,10 +49,13 @@
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamSource;
 import net.sf.saxon.Configuration;
 import net.sf.saxon.TransformerFactoryImpl;
+import net.sf.saxon.om.NodeInfo;
+import net.sf.saxon.trans.XPathException;
 import org.apache.commons.lang.StringUtils;
 import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
 import org.codice.ddf.platform.util.XMLUtils;
@@ -104,8 +108,6 @@
 
   private int priority = 10;
 
-  private SchematronReport schematronReport;
-
   private List<String> schematronFileNames;
 
   private boolean suppressWarnings = false;
@@ -306,16 +308,20 @@ private MetacardValidationReport generateReport(Metacard metacard)
             || (namespace != null && !namespace.equals(XML_UTILS.getRootNamespace(metadata))));
     if (canBeValidated) {
       try {
+        List<Templates> templates = new ArrayList<>(validators.size());
         for (Future<Templates> validator : validators) {
-          schematronReport = generateReport(metadata, validator.get(10, TimeUnit.MINUTES));
-          schematronReport
+          templates.add(validator.get(10, TimeUnit.MINUTES));
+        }
+
+        for (SvrlMessageCollector messages : generateReports(metadata, templates)) {
+          messages
               .getErrors()
               .forEach(
                   errorMsg ->
                       report.addMetacardViolation(
                           new ValidationViolationImpl(
                               attributes, sanitize(errorMsg), ValidationViolation.Severity.ERROR)));
-          schematronReport
+          messages
               .getWarnings()
               .forEach(
                   warningMsg ->
@@ -336,9 +342,48 @@ private MetacardValidationReport generateReport(Metacard metacard)
     return report;
   }
 
-  private SchematronReport generateReport(String metadata, Templates validator)
-      throws SchematronValidationException {
+  /**
+   * Parses the metadata once and runs every compiled schematron against the parsed document, each
+   * on its own thread.
+   *
+   * @return the messages of each schematron, in the same order as {@code templates}
+   */
+  private List<SvrlMessageCollector> generateReports(String metadata, List<Templates> templates)
+      throws SchematronValidationException, InterruptedException {
+    if (templates.isEmpty()) {
+      return Collections.emptyList();
+    }
+    NodeInfo document = parse(metadata);
+
+    List<Future<SvrlMessageCollector>> futures = new ArrayList<>(templates.size());
+    for (Templates template : templates.subList(1, templates.size())) {
+      futures.add(pool.submit(() -> generateReport(document, template)));
+    }
+
+    List<SvrlMessageCollector> reports = new ArrayList<>(templates.size());
+    try {
+      // the calling thread runs the first schematron instead of waiting for the others
+      reports.add(generateReport(document, templates.get(0)));
+      for (Future<SvrlMessageCollector> future : futures) {
+        reports.add(future.get());
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SchematronValidationException) {
+        throw (SchematronValidationException) e.getCause();
+      }
+      throw new SchematronValidationException("Unexpected error during validation.", e.getCause());
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+    return reports;
+  }
 
+  /**
+   * Builds the metadata into an immutable Saxon tree that all of the schematrons can read
+   * concurrently. The tree belongs to the same {@link Configuration} as the compiled schematrons so
+   * that they run against it without copying it.
+   */
+  private NodeInfo parse(String metadata) throws SchematronValidationException {
     XMLReader xmlReader = null;
     try {
       XMLReader xmlParser = XML_UTILS.getSecureXmlParser();
@@ -347,18 +392,27 @@ private SchematronReport generateReport(String metadata, Templates validator)
       throw new SchematronValidationException(e);
     }
 
-    SchematronReport report;
+    try {
+      return ((TransformerFactoryImpl) transformerFactory)
+          .getConfiguration()
+          .buildDocument(new SAXSource(xmlReader, new InputSource(new StringReader(metadata))));
+    } catch (XPathException e) {
+      throw new SchematronValidationException(
+          "Could not setup validator to perform validation.", e);
+    }
+  }
+
+  private SvrlMessageCollector generateReport(NodeInfo document, Templates validator)
+      throws SchematronValidationException {
+    SvrlMessageCollector messages = new SvrlMessageCollector();
     try {
       Transformer transformer = validator.newTransformer();
-      DOMResult schematronResult = new DOMResult();
-      transformer.transform(
-          new SAXSource(xmlReader, new InputSource(new StringReader(metadata))), schematronResult);
-      report = new SvrlReport(schematronResult);
+      transformer.transform(document, new SAXResult(messages));
     } catch (TransformerException e) {
       throw new SchematronValidationException(
           "Could not setup validator to perform validation.", e);
     }
-    return report;
+    return messages;
   }
 
   @Override
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.services.schematron;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Collects the error and warning messages of an SVRL report as it is written, so that the report
+ * never has to be built as a DOM. The messages are the same ones {@link SvrlReport} returns: the
+ * text of the first child of each {@code svrl:failed-assert} and {@code svrl:failed-report} whose
+ * {@code flag} attribute is {@code error} or {@code warning}, with the assertions ahead of the
+ * reports.
+ */
+class SvrlMessageCollector extends DefaultHandler {
+
+  private static final String SVRL_NAMESPACE = "http://purl.oclc.org/dsdl/svrl";
+
+  private static final String FAILED_ASSERT = "failed-assert";
+
+  private static final String FAILED_REPORT = "failed-report";
+
+  private static final String FLAG_ATTR = "flag";
+
+  private static final String ERROR_FLAG = "error";
+
+  private static final String WARNING_FLAG = "warning";
+
+  private final List<String> assertErrors = new ArrayList<>();
+
+  private final List<String> reportErrors = new ArrayList<>();
+
+  private final List<String> assertWarnings = new ArrayList<>();
+
+  private final List<String> reportWarnings = new ArrayList<>();
+
+  private int depth = 0;
+
+  /** Depth of the failed-assert or failed-report being read, or -1 when outside of one. */
+  private int failureDepth = -1;
+
+  private List<String> failureMessages;
+
+  /** Whether the first child of the current failure is an element rather than a text node. */
+  private boolean firstChildIsElement;
+
+  private boolean firstChildDone;
+
+  private StringBuilder message;
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes attributes) {
+    depth++;
+    if (failureDepth < 0) {
+      List<String> messages = getMessageList(uri, localName, qName, attributes);
+      if (messages != null) {
+        failureDepth = depth;
+        failureMessages = messages;
+        firstChildIsElement = false;
+        firstChildDone = false;
+        message = null;
+      }
+      return;
+    }
+
+    if (depth == failureDepth + 1) {
+      if (message == null) {
+        message = new StringBuilder();
+        firstChildIsElement = true;
+      } else if (!firstChildIsElement) {
+        // the first child was a text node and ends where this element starts
+        firstChildDone = true;
+      }
+    }
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName) {
+    if (failureDepth > 0) {
+      if (depth == failureDepth) {
+        if (message != null) {
+          failureMessages.add(message.toString());
+        }
+        failureDepth = -1;
+        failureMessages = null;
+        message = null;
+      } else if (depth == failureDepth + 1 && firstChildIsElement) {
+        firstChildDone = true;
+      }
+    }
+    depth--;
+  }
+
+  @Override
+  public void characters(char[] ch, int start, int length) {
+    if (failureDepth < 0 || firstChildDone || length == 0) {
+      return;
+    }
+    if (message == null) {
+      if (depth != failureDepth) {
+        return;
+      }
+      message = new StringBuilder();
+    }
+    message.append(ch, start, length);
+  }
+
+  private List<String> getMessageList(
+      String uri, String localName, String qName, Attributes attributes) {
+    boolean isAssert = isSvrlElement(uri, localName, qName, FAILED_ASSERT);
+    boolean isReport = !isAssert && isSvrlElement(uri, localName, qName, FAILED_REPORT);
+    if (!isAssert && !isReport) {
+      return null;
+    }
+
+    String flag = attributes.getValue(FLAG_ATTR);
+    if (ERROR_FLAG.equals(flag)) {
+      return isAssert ? assertErrors : reportErrors;
+    } else if (WARNING_FLAG.equals(flag)) {
+      return isAssert ? assertWarnings : reportWarnings;
+    }
+    return null;
+  }
+
+  private static boolean isSvrlElement(String uri, String localName, String qName, String name) {
+    if (SVRL_NAMESPACE.equals(uri)) {
+      return name.equals(localName);
+    }
+    return ("svrl:" + name).equals(qName);
+  }
+
+  /** @return the messages of the failures flagged as errors */
+  public List<String> getErrors() {
+    List<String> errors = new ArrayList<>(assertErrors);
+    errors.addAll(reportErrors);
+    return errors;
+  }
+
+  /** @return the messages of the failures flagged as warnings */
+  public List<String> getWarnings() {
+    List<String> warnings = new ArrayList<>(assertWarnings);
+    warnings.addAll(reportWarnings);
+    return warnings;
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.services.schematron;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.SAXParserFactory;
+import org.junit.Test;
+
+public class SvrlMessageCollectorTest {
+
+  private static final String SVRL_START =
+      "<svrl:schematron-output xmlns:svrl=\"http://purl.oclc.org/dsdl/svrl\">";
+
+  private static final String SVRL_END = "</svrl:schematron-output>";
+
+  @Test
+  public void testAssertionsPrecedeReports() throws Exception {
+    SvrlMessageCollector messages =
+        collect(
+            "<svrl:failed-report flag=\"error\"><svrl:text>report error</svrl:text></svrl:failed-report>"
+                + "<svrl:failed-assert flag=\"error\"><svrl:text>assert error</svrl:text></svrl:failed-assert>"
+                + "<svrl:failed-report flag=\"warning\"><svrl:text>report warning</svrl:text></svrl:failed-report>"
+                + "<svrl:failed-assert flag=\"warning\"><svrl:text>assert warning</svrl:text></svrl:failed-assert>");
+
+    assertThat(messages.getErrors(), contains("assert error", "report error"));
+    assertThat(messages.getWarnings(), contains("assert warning", "report warning"));
+  }
+
+  @Test
+  public void testOnlyFirstChildIsMessage() throws Exception {
+    SvrlMessageCollector messages =
+        collect(
+            "<svrl:failed-assert flag=\"error\"><svrl:text>first <b>nested</b> text</svrl:text>"
+                + "<svrl:diagnostic-reference>diagnostic</svrl:diagnostic-reference></svrl:failed-assert>"
+                + "<svrl:failed-assert flag=\"warning\">text node<svrl:text>element</svrl:text>"
+                + "trailing</svrl:failed-assert>");
+
+    assertThat(messages.getErrors(), contains("first nested text"));
+    assertThat(messages.getWarnings(), contains("text node"));
+  }
+
+  @Test
+  public void testUnflaggedFailuresAreIgnored() throws Exception {
+    SvrlMessageCollector messages =
+        collect(
+            "<svrl:failed-assert><svrl:text>no flag</svrl:text></svrl:failed-assert>"
+                + "<svrl:failed-assert flag=\"info\"><svrl:text>info</svrl:text></svrl:failed-assert>"
+                + "<svrl:fired-rule context=\"dog\"/>");
+
+    assertThat(messages.getErrors(), empty());
+    assertThat(messages.getWarnings(), empty());
+  }
+
+  private SvrlMessageCollector collect(String failures) throws Exception {
+    SAXParserFactory factory = SAXParserFactory.newInstance();
+    factory.setNamespaceAware(true);
+    SvrlMessageCollector messages = new SvrlMessageCollector();
+    factory
+        .newSAXParser()
+        .parse(
+            new ByteArrayInputStream(
+                (SVRL_START + failures + SVRL_END).getBytes(StandardCharsets.UTF_8)),
+            messages);
+    return messages;
+  }
+}
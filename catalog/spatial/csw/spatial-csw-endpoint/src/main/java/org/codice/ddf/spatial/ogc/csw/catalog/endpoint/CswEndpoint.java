@@ -31,12 +31,10 @@
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryResponse;
 import ddf.catalog.operation.ResourceResponse;
-import ddf.catalog.operation.SourceResponse;
 import ddf.catalog.operation.UpdateRequest;
 import ddf.catalog.operation.UpdateResponse;
 import ddf.catalog.operation.impl.CreateRequestImpl;
 import ddf.catalog.operation.impl.DeleteRequestImpl;
-import ddf.catalog.operation.impl.QueryResponseImpl;
 import ddf.catalog.operation.impl.ResourceRequestById;
 import ddf.catalog.operation.impl.UpdateRequestImpl;
 import ddf.catalog.resource.Resource;
@@ -48,7 +46,6 @@
 import ddf.catalog.source.UnsupportedQueryException;
 import ddf.catalog.transform.QueryFilterTransformer;
 import ddf.catalog.util.impl.CatalogQueryException;
-import ddf.catalog.util.impl.QueryFunction;
 import ddf.catalog.util.impl.ResultIterable;
 import java.io.IOException;
 import java.io.Serializable;
@@ -69,7 +66,6 @@
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -222,6 +218,8 @@ public class CswEndpoint implements Csw {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(CswEndpoint.class);
 
+  private static final int GET_RECORDS_PAGE_SIZE = 1000;
+
   private static final String DEFAULT_OUTPUT_FORMAT = MediaType.APPLICATION_XML;
 
   private static final String OCTET_STREAM_OUTPUT_SCHEMA =
@@ -961,31 +959,15 @@ private CswRecordCollection queryCsw(GetRecordsType request) throws CswException
         queryRequest = queryFactory.updateQueryRequestTags(queryRequest, request.getOutputSchema());
 
         LOGGER.debug("Attempting to execute paged query: {}", queryRequest);
-        AtomicLong hitCount = new AtomicLong(0);
-
-        QueryFunction qf =
-            qr -> {
-              SourceResponse sr = framework.query(qr);
-              hitCount.compareAndSet(0, sr.getHits());
-              return sr;
-            };
-
-        ResultIterable results =
-            ResultIterable.resultIterable(qf, queryRequest, request.getMaxRecords().intValue());
-        List<Result> resultList = results.stream().collect(Collectors.toList());
-
-        // The hitCount Atomic is used here instead of just defaulting
-        // to the size of the resultList because the size of the resultList
-        // can be limited to request.getMaxRecords().intValue() which would
-        // lead to an incorrect response for hits.
-        // hitCount is set within the QueryFunction and will correspond to
-        // all responses.
-        long totalHits = hitCount.get();
-        totalHits = totalHits != 0 ? totalHits : resultList.size();
-
-        QueryResponse queryResponse = new QueryResponseImpl(queryRequest, resultList, totalHits);
-
-        response.setSourceResponse(queryResponse);
+
+        // The results are queried a page at a time as the response is written so that large
+        // maxRecords values do not require the whole response to be held in memory.
+        response.setSourceResponse(
+            PagedSourceResponse.query(
+                framework::query,
+                queryRequest,
+                request.getMaxRecords().intValue(),
+                GET_RECORDS_PAGE_SIZE));
       } catch (UnsupportedQueryException | CatalogQueryException e) {
         LOGGER.debug("Unable to query", e);
         throw new CswException(e);
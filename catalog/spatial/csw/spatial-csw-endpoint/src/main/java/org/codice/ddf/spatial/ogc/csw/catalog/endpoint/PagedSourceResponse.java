@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.ogc.csw.catalog.endpoint;
+
+import ddf.catalog.data.Result;
+import ddf.catalog.operation.Query;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+import ddf.catalog.operation.impl.SourceResponseImpl;
+import ddf.catalog.util.impl.QueryFunction;
+import ddf.catalog.util.impl.ResultIterable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link SourceResponse} whose results are queried from the catalog a page at a time while they
+ * are iterated, so a GetRecords response can be written without holding all of its records in
+ * memory. The first page is queried when the response is created so that query errors are still
+ * reported by the endpoint.
+ *
+ * <p>The results can be iterated once. Calling {@link List#size()} or {@link List#get(int)} before
+ * that collects the remaining results into memory, for consumers that need random access.
+ */
+class PagedSourceResponse extends SourceResponseImpl {
+
+  private final AtomicLong hitCount;
+
+  private final PagedResultList results;
+
+  private PagedSourceResponse(QueryRequest request, PagedResultList results, AtomicLong hitCount) {
+    super(request, results);
+    this.results = results;
+    this.hitCount = hitCount;
+  }
+
+  /**
+   * @param queryFunction the function used to query each page
+   * @param queryRequest the request
+   * @param maxResults the maximum number of results
+   * @param pageSize the maximum number of results to query at a time
+   */
+  static PagedSourceResponse query(
+      QueryFunction queryFunction, QueryRequest queryRequest, int maxResults, int pageSize) {
+    Query query = queryRequest.getQuery();
+
+    QueryRequest pagedRequest =
+        new QueryRequestImpl(
+            new QueryImpl(
+                query,
+                query.getStartIndex(),
+                Math.min(maxResults, pageSize),
+                query.getSortBy(),
+                query.requestsTotalResultsCount(),
+                query.getTimeoutMillis()),
+            queryRequest.isEnterprise(),
+            queryRequest.getSourceIds(),
+            queryRequest.getProperties());
+
+    // The hit count of the first page is used instead of the number of results because the
+    // results are limited to the maximum number of records requested.
+    AtomicLong hitCount = new AtomicLong(0);
+    QueryFunction countingQueryFunction =
+        request -> {
+          SourceResponse response = queryFunction.query(request);
+          hitCount.compareAndSet(0, response.getHits());
+          return response;
+        };
+
+    Iterator<Result> iterator =
+        ResultIterable.resultIterable(countingQueryFunction, pagedRequest, maxResults).iterator();
+    iterator.hasNext();
+
+    return new PagedSourceResponse(queryRequest, new PagedResultList(iterator), hitCount);
+  }
+
+  @Override
+  public long getHits() {
+    long hits = hitCount.get();
+    return hits != 0 ? hits : results.getCount();
+  }
+
+  private static class PagedResultList extends AbstractList<Result> {
+
+    private final Iterator<Result> pages;
+
+    private List<Result> collected;
+
+    private boolean iterated;
+
+    private long count;
+
+    PagedResultList(Iterator<Result> pages) {
+      this.pages = pages;
+    }
+
+    long getCount() {
+      return collected != null ? collected.size() : count;
+    }
+
+    @Override
+    public Iterator<Result> iterator() {
+      if (collected != null) {
+        return collected.iterator();
+      }
+      checkNotIterated();
+      iterated = true;
+
+      return new Iterator<Result>() {
+        @Override
+        public boolean hasNext() {
+          return pages.hasNext();
+        }
+
+        @Override
+        public Result next() {
+          Result result = pages.next();
+          count++;
+          return result;
+        }
+      };
+    }
+
+    @Override
+    public Result get(int index) {
+      return collect().get(index);
+    }
+
+    @Override
+    public int size() {
+      return collect().size();
+    }
+
+    private List<Result> collect() {
+      if (collected == null) {
+        checkNotIterated();
+        collected = new ArrayList<>();
+        pages.forEachRemaining(collected::add);
+      }
+      return collected;
+    }
+
+    private void checkNotIterated() {
+      if (iterated) {
+        throw new IllegalStateException("The paged results have already been iterated.");
+      }
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.ogc.csw.catalog.endpoint;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.Mockito.mock;
+
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.operation.Query;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+import ddf.catalog.operation.impl.SourceResponseImpl;
+import ddf.catalog.source.UnsupportedQueryException;
+import ddf.catalog.util.impl.QueryFunction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.filter.Filter;
+
+public class PagedSourceResponseTest {
+
+  private static final int CATALOG_SIZE = 25;
+
+  private List<Integer> pageSizes;
+
+  private QueryFunction queryFunction;
+
+  @Before
+  public void setUp() {
+    pageSizes = new ArrayList<>();
+    queryFunction =
+        request -> {
+          Query query = request.getQuery();
+          pageSizes.add(query.getPageSize());
+          int start = query.getStartIndex();
+          int end = Math.min(CATALOG_SIZE, start + query.getPageSize() - 1);
+          List<Result> results =
+              IntStream.rangeClosed(start, end)
+                  .mapToObj(PagedSourceResponseTest::result)
+                  .collect(Collectors.toList());
+          SourceResponseImpl response = new SourceResponseImpl(request, results);
+          response.setHits(CATALOG_SIZE);
+          return response;
+        };
+  }
+
+  @Test
+  public void testResultsArePagedWhileIterated() {
+    PagedSourceResponse response = PagedSourceResponse.query(queryFunction, request(1, 20), 20, 6);
+
+    assertThat(pageSizes.size(), is(1));
+
+    List<String> ids = new ArrayList<>();
+    response.getResults().forEach(result -> ids.add(result.getMetacard().getId()));
+
+    assertThat(ids, contains(ids(1, 20).toArray()));
+    assertThat(pageSizes, everyItem(lessThanOrEqualTo(6)));
+    assertThat(response.getHits(), is((long) CATALOG_SIZE));
+  }
+
+  @Test
+  public void testStartIndexIsKept() {
+    PagedSourceResponse response = PagedSourceResponse.query(queryFunction, request(21, 10), 10, 3);
+
+    List<String> ids = new ArrayList<>();
+    response.getResults().forEach(result -> ids.add(result.getMetacard().getId()));
+
+    assertThat(ids, contains(ids(21, 25).toArray()));
+  }
+
+  @Test
+  public void testSizeCollectsResults() {
+    PagedSourceResponse response = PagedSourceResponse.query(queryFunction, request(1, 10), 10, 4);
+
+    assertThat(response.getResults().size(), is(10));
+    assertThat(response.getResults().get(9).getMetacard().getId(), is("id_10"));
+    assertThat(response.getResults().iterator().next().getMetacard().getId(), is("id_1"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testResultsCanOnlyBeStreamedOnce() {
+    PagedSourceResponse response = PagedSourceResponse.query(queryFunction, request(1, 10), 10, 4);
+
+    response.getResults().iterator();
+    response.getResults().iterator();
+  }
+
+  @Test(expected = UnsupportedQueryException.class)
+  public void testFirstPageErrorIsThrown() throws Exception {
+    QueryFunction failingQueryFunction =
+        request -> {
+          throw new UnsupportedQueryException("unsupported");
+        };
+
+    try {
+      PagedSourceResponse.query(failingQueryFunction, request(1, 10), 10, 4);
+    } catch (RuntimeException e) {
+      throw (Exception) e.getCause();
+    }
+  }
+
+  private static QueryRequest request(int startIndex, int pageSize) {
+    return new QueryRequestImpl(
+        new QueryImpl(mock(Filter.class), startIndex, pageSize, null, true, 0));
+  }
+
+  private static List<String> ids(int first, int last) {
+    return IntStream.rangeClosed(first, last).mapToObj(i -> "id_" + i).collect(Collectors.toList());
+  }
+
+  private static Result result(int index) {
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setId("id_" + index);
+    return new ResultImpl(metacard);
+  }
+}
@@ -28,10 +28,12 @@
 import ddf.catalog.data.types.Core;
 import ddf.catalog.filter.FilterAdapter;
 import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.operation.CancellationToken;
 import ddf.catalog.operation.Query;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.ResourceResponse;
 import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.impl.CancellationTokenImpl;
 import ddf.catalog.operation.impl.QueryImpl;
 import ddf.catalog.operation.impl.QueryRequestImpl;
 import ddf.catalog.operation.impl.ResourceResponseImpl;
@@ -44,6 +46,7 @@
 import ddf.catalog.service.ConfiguredService;
 import ddf.catalog.source.ConnectedSource;
 import ddf.catalog.source.FederatedSource;
+import ddf.catalog.source.SourceAvailabilityService;
 import ddf.catalog.source.SourceMonitor;
 import ddf.catalog.source.UnsupportedQueryException;
 import ddf.catalog.transform.CatalogTransformerException;
@@ -114,6 +117,10 @@
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.cxf.common.util.CollectionUtils;
+import org.apache.cxf.jaxrs.client.Client;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
 import org.codice.ddf.configuration.SystemBaseUrl;
 import org.codice.ddf.cxf.client.ClientFactoryFactory;
 import org.codice.ddf.cxf.client.SecureCxfClientFactory;
@@ -240,6 +247,7 @@ public abstract class AbstractCswSource extends MaskableImpl
   private String cswVersion;
   private ScheduledExecutorService scheduler;
   private AvailabilityTask availabilityTask;
+  private SourceAvailabilityService availabilityService;
   private boolean isConstraintCql;
 
   /**
@@ -666,9 +674,13 @@ protected void setupAvailabilityPoll() {
       // This is necessary to allow the catalog framework to have the correct
       // availability when the source is bound
       availabilityTask.run();
+      if (availabilityService != null) {
+        availabilityTask.register(availabilityService);
+      }
       // Schedule the availability check every 1 second. The actually call to
       // the remote server will only occur if the pollInterval has
-      // elapsed.
+      // elapsed, and only while the availability service is not doing
+      // the checks.
       availabilityPollFuture =
           scheduler.scheduleWithFixedDelay(
               availabilityTask,
@@ -769,10 +781,16 @@ protected SourceResponse query(
         cswSourceConfiguration.getId(),
         cswSourceConfiguration.getCswUrl());
 
+    CancellationToken token = CancellationTokenImpl.of(queryRequest);
+    if (token.isCancelled()) {
+      throw new UnsupportedQueryException(
+          "The query to source " + getId() + " was cancelled before it was sent.");
+    }
+
     List<Result> results;
     Long totalHits;
 
-    try {
+    try (CancellationToken.Registration registration = bindToCancellation(csw, token)) {
 
       CswRecordCollection cswRecordCollection = csw.getRecords(getRecordsType);
 
@@ -796,6 +814,9 @@ protected SourceResponse query(
       String msg = handleWebApplicationException(wae);
       throw new UnsupportedQueryException(msg, wae);
     } catch (Exception ce) {
+      if (availabilityTask != null) {
+        availabilityTask.reportFailure();
+      }
       String msg = handleClientException(ce);
       throw new UnsupportedQueryException(msg, ce);
     }
@@ -810,6 +831,29 @@ protected SourceResponse query(
     return sourceResponse;
   }
 
+  /**
+   * Caps the receive timeout of the client at the time left before the deadline of the token, and
+   * closes the client if the token is cancelled while the query is running.
+   */
+  private CancellationToken.Registration bindToCancellation(Csw csw, CancellationToken token) {
+    if (!(csw instanceof Client)) {
+      return () -> {};
+    }
+
+    long remainingMillis = token.getRemainingMillis();
+    if (remainingMillis != Long.MAX_VALUE) {
+      HTTPConduit httpConduit = WebClient.getConfig(csw).getHttpConduit();
+      HTTPClientPolicy clientPolicy = httpConduit == null ? null : httpConduit.getClient();
+      if (clientPolicy != null
+          && (clientPolicy.getReceiveTimeout() <= 0
+              || clientPolicy.getReceiveTimeout() > remainingMillis)) {
+        clientPolicy.setReceiveTimeout(Math.max(1, remainingMillis));
+      }
+    }
+
+    return token.onCancel(((Client) csw)::close);
+  }
+
   @Override
   public String getDescription() {
     StringBuilder sb = new StringBuilder();
@@ -1770,6 +1814,14 @@ public void setAvailabilityTask(AvailabilityTask availabilityTask) {
     this.availabilityTask = availabilityTask;
   }
 
+  /**
+   * Sets the shared service that checks the availability of this source. Without it the source
+   * checks its own availability on a scheduler of its own.
+   */
+  public void setAvailabilityService(SourceAvailabilityService availabilityService) {
+    this.availabilityService = availabilityService;
+  }
+
   public void setSecurityManager(SecurityManager securityManager) {
     this.securityManager = securityManager;
   }
@@ -1897,7 +1949,12 @@ protected void addSourceMonitor(SourceMonitor sourceMonitor) {
       "squid:S1172" /* The code parameter is required in blueprint-cm-1.0.7. See https://issues.apache.org/jira/browse/ARIES-1436. */)
   public void destroy(int code) {
     LOGGER.debug("{}: Entering destroy()", cswSourceConfiguration.getId());
-    availabilityPollFuture.cancel(true);
+    if (availabilityPollFuture != null) {
+      availabilityPollFuture.cancel(true);
+    }
+    if (availabilityTask != null) {
+      availabilityTask.unregister();
+    }
     scheduler.shutdownNow();
     removeEventServiceSubscription();
   }
@@ -25,20 +25,24 @@
 import ddf.catalog.transformer.api.PrintWriterProvider;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.CharArrayWriter;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CancellationException;
-import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -61,6 +65,7 @@
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
+import org.codice.ddf.platform.util.TemporaryFileBackedOutputStream;
 import org.codice.ddf.spatial.ogc.csw.catalog.common.CswConstants;
 import org.codice.ddf.spatial.ogc.csw.catalog.common.CswRecordCollection;
 import org.codice.ddf.spatial.ogc.csw.catalog.common.converter.DefaultCswRecordMap;
@@ -100,6 +105,9 @@ public class CswQueryResponseTransformer implements QueryResponseTransformer {
 
   private static final String ELEMENT_SET_ATTRIBUTE = "elementSet";
 
+  /** Marks where the records are inserted into the response. */
+  private static final String RECORDS_PLACEHOLDER = "<!--" + UUID.randomUUID() + "-->";
+
   private static final String XML_DECL = "<?xml version=\'1.0\' encoding=\'UTF-8\'?>\n";
 
   public static final String RECORDS_RESPONSE_QNAME =
@@ -126,8 +134,6 @@ public class CswQueryResponseTransformer implements QueryResponseTransformer {
 
   private static final int BLOCKING_Q_INITIAL_SIZE = 1024;
 
-  private static final int ACCUM_INITIAL_SIZE = 4096;
-
   public CswQueryResponseTransformer(
       TransformerManager metacardTransformerManager, PrintWriterProvider writerProvider) {
     this.metacardTransformerManager = metacardTransformerManager;
@@ -142,28 +148,97 @@ public BinaryContent transform(SourceResponse sourceResponse, Map<String, Serial
 
     CswRecordCollection recordCollection = buildCollection(sourceResponse, arguments);
 
-    ByteArrayInputStream bais;
+    InputStream inputStream;
 
     if (ResultType.VALIDATE.equals(recordCollection.getResultType())) {
       ByteArrayOutputStream baos = writeAcknowledgement(recordCollection.getRequest());
-      bais = new ByteArrayInputStream(baos.toByteArray());
+      inputStream = new ByteArrayInputStream(baos.toByteArray());
+    } else if (ResultType.HITS.equals(recordCollection.getResultType())) {
+      recordCollection.setNumberOfRecordsMatched(sourceResponse.getHits());
+      String xmlString = convert(recordCollection, 0, null);
+      inputStream = new ByteArrayInputStream(xmlString.getBytes(StandardCharsets.UTF_8));
     } else {
       // "catches" recordCollection.getResultType() == null
-      List<Result> results = sourceResponse.getResults();
-      String xmlString = convert(recordCollection, results, arguments);
-      bais = new ByteArrayInputStream(xmlString.getBytes(StandardCharsets.UTF_8));
+      inputStream = writeRecords(recordCollection, sourceResponse, arguments);
     }
 
     BinaryContent transformedContent =
-        new BinaryContentImpl(bais, CswRecordConverter.XML_MIME_TYPE);
+        new BinaryContentImpl(inputStream, CswRecordConverter.XML_MIME_TYPE);
     return transformedContent;
   }
 
-  private String convert(
-      CswRecordCollection cswRecordCollection,
-      List<Result> results,
+  /**
+   * Writes the records to a temporary file backed stream as the results are iterated, then wraps
+   * them in the response. The records are written first because the response starts with the number
+   * of records returned, which is only known once every record has been transformed.
+   */
+  private InputStream writeRecords(
+      CswRecordCollection recordCollection,
+      SourceResponse sourceResponse,
       Map<String, Serializable> arguments)
       throws CatalogTransformerException {
+    TemporaryFileBackedOutputStream records = new TemporaryFileBackedOutputStream();
+
+    try {
+      arguments.put(CswConstants.OMIT_XML_DECLARATION, Boolean.TRUE);
+      AtomicLong numWritten = new AtomicLong(0);
+      long numResults =
+          multiThreadedMarshal(
+              sourceResponse.getResults(),
+              numWritten,
+              recordCollection.getOutputSchema(),
+              arguments,
+              records);
+
+      // The hits are read after the results have been iterated since paged responses only know
+      // them once the first page has been queried.
+      recordCollection.setNumberOfRecordsReturned(numResults);
+      recordCollection.setNumberOfRecordsMatched(sourceResponse.getHits());
+
+      String xmlString = convert(recordCollection, numWritten.get(), RECORDS_PLACEHOLDER);
+      int recordsIndex = xmlString.indexOf(RECORDS_PLACEHOLDER);
+      if (recordsIndex < 0) {
+        recordsIndex = xmlString.length();
+      }
+      String prefix = xmlString.substring(0, recordsIndex);
+      String suffix =
+          xmlString.substring(
+              Math.min(recordsIndex + RECORDS_PLACEHOLDER.length(), xmlString.length()));
+
+      InputStream response =
+          new SequenceInputStream(
+              Collections.enumeration(
+                  Arrays.asList(
+                      new ByteArrayInputStream(prefix.getBytes(StandardCharsets.UTF_8)),
+                      records.asByteSource().openStream(),
+                      new ByteArrayInputStream(suffix.getBytes(StandardCharsets.UTF_8)))));
+
+      return new FilterInputStream(response) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            records.close();
+          }
+        }
+      };
+    } catch (IOException e) {
+      IOUtils.closeQuietly(records);
+      throw new CatalogTransformerException("Unable to write the CSW records.", e);
+    } catch (CatalogTransformerException e) {
+      IOUtils.closeQuietly(records);
+      throw e;
+    } catch (RuntimeException e) {
+      // Paged results query the next page while they are iterated, so a failed query surfaces
+      // here. Nothing has been written to the response yet since the records are spooled.
+      IOUtils.closeQuietly(records);
+      throw new CatalogTransformerException("Unable to retrieve the CSW records.", e);
+    }
+  }
+
+  private String convert(
+      CswRecordCollection cswRecordCollection, long numReturned, String metacardsString) {
 
     PrintWriter writer = writerProvider.build(Metacard.class);
     writer.setRawValue(XML_DECL);
@@ -186,16 +261,6 @@ private String convert(
       nextRecord = 0;
     }
 
-    String metacardsString = null;
-    AtomicLong numReturned = new AtomicLong(cswRecordCollection.getNumberOfRecordsReturned());
-
-    if (!ResultType.HITS.equals(cswRecordCollection.getResultType())) {
-      arguments.put(CswConstants.OMIT_XML_DECLARATION, Boolean.TRUE);
-      metacardsString =
-          multiThreadedMarshal(
-              results, numReturned, cswRecordCollection.getOutputSchema(), arguments);
-    }
-
     if (!cswRecordCollection.isById()) {
       writer.addAttribute(VERSION_ATTRIBUTE, CswConstants.VERSION_2_0_2);
 
@@ -218,7 +283,7 @@ private String convert(
       if (ResultType.HITS.equals(cswRecordCollection.getResultType())) {
         writer.addAttribute(NUMBER_OF_RECORDS_RETURNED_ATTRIBUTE, Long.toString(0));
       } else {
-        writer.addAttribute(NUMBER_OF_RECORDS_RETURNED_ATTRIBUTE, numReturned.toString());
+        writer.addAttribute(NUMBER_OF_RECORDS_RETURNED_ATTRIBUTE, Long.toString(numReturned));
         writer.addAttribute(NEXT_RECORD_ATTRIBUTE, Long.toString(nextRecord));
       }
 
@@ -244,86 +309,90 @@ private String convert(
   }
 
   /**
-   * Multi-threaded marshal of metacard assumes that the query size is unbounded to guard against
-   * resource exhaustion with fixed thread-pool and fixed work-queue. CPU-bound for optimum
-   * utilization from availableProcessors()+1 thread pool.
+   * Multi-threaded marshal of metacards. The results are iterated once and at most {@link
+   * #pendingTransformLimit()} transforms are in flight at a time, so the number of results does not
+   * change the memory used. Each record is written to the output stream in result order as soon as
+   * it and the records before it have been transformed. CPU-bound for optimum utilization from
+   * availableProcessors() thread pool.
    *
-   * @param results - the list of results to marshal
+   * @param results - the results to marshal
+   * @param numWritten - incremented for every record written
    * @param recordSchema - the schema
    * @param arguments - additional args
-   * @return - the marshaled results
+   * @param outputStream - the stream the records are written to
+   * @return - the number of results iterated, including the ones that failed to transform
    * @throws CatalogTransformerException
    */
-  private String multiThreadedMarshal(
-      List<Result> results,
-      AtomicLong numResults,
+  private long multiThreadedMarshal(
+      Iterable<Result> results,
+      AtomicLong numWritten,
       String recordSchema,
-      final Map<String, Serializable> arguments)
+      final Map<String, Serializable> arguments,
+      OutputStream outputStream)
       throws CatalogTransformerException {
 
-    CompletionService<BinaryContent> completionService =
-        new ExecutorCompletionService<>(queryExecutor);
-
     final MetacardTransformer transformer =
         metacardTransformerManager.getTransformerBySchema(recordSchema);
     if (transformer == null) {
       throw new CatalogTransformerException("Cannot find transformer for schema: " + recordSchema);
     }
 
-    Map<Future<BinaryContent>, Result> futures = new HashMap<>(results.size());
-    for (Result result : results) {
-      final Metacard mc = result.getMetacard();
-
-      // the "current" thread will run submitted task when queueSize exceeded; effectively
-      // blocking enqueue of more tasks.
-      futures.put(
-          completionService.submit(
-              () -> {
-                BinaryContent content = transformer.transform(mc, arguments);
-                return content;
-              }),
-          result);
-    }
+    int limit = pendingTransformLimit();
+    Deque<Future<BinaryContent>> pending = new ArrayDeque<>(limit);
+    long numResults = 0;
+    try {
+      for (Result result : results) {
+        final Metacard mc = result.getMetacard();
 
-    InputStream[] contents = new InputStream[results.size()];
+        // the "current" thread will run submitted task when queueSize exceeded; effectively
+        // blocking enqueue of more tasks.
+        pending.add(queryExecutor.submit(() -> transformer.transform(mc, arguments)));
+        numResults++;
 
-    while (!futures.isEmpty()) {
-      try {
-        Future<BinaryContent> completedFuture = completionService.take();
-        int index = results.indexOf(futures.get(completedFuture));
-        try {
-          contents[index] = completedFuture.get().getInputStream();
-        } catch (ExecutionException | CancellationException e) {
-          LOGGER.debug("Error transforming Metacard", e);
-          numResults.decrementAndGet();
-        } catch (InterruptedException e) {
-          numResults.decrementAndGet();
-
-          Thread.currentThread().interrupt();
-          throw new CatalogTransformerException("Metacard transform interrupted", e);
-        } finally {
-          futures.remove(completedFuture);
+        if (pending.size() >= limit) {
+          writeRecord(pending.remove(), numWritten, outputStream);
         }
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-        throw new CatalogTransformerException("Metacard transform interrupted", e);
       }
-    }
 
-    CharArrayWriter accum = new CharArrayWriter(ACCUM_INITIAL_SIZE);
-    for (InputStream is : contents) {
-      try {
-        if (is != null) {
-          IOUtils.copy(is, accum);
-        }
-      } catch (IOException e) {
-        LOGGER.debug("Error copying Metacard Binary content", e);
+      while (!pending.isEmpty()) {
+        writeRecord(pending.remove(), numWritten, outputStream);
       }
+    } finally {
+      pending.forEach(future -> future.cancel(true));
     }
 
-    return accum.toString();
+    return numResults;
   } // end multiThreadedMarshal()
 
+  private int pendingTransformLimit() {
+    return queryExecutor.getMaximumPoolSize() * 2;
+  }
+
+  private void writeRecord(
+      Future<BinaryContent> future, AtomicLong numWritten, OutputStream outputStream)
+      throws CatalogTransformerException {
+    byte[] record;
+    try (InputStream inputStream = future.get().getInputStream()) {
+      record = IOUtils.toByteArray(inputStream);
+    } catch (ExecutionException | CancellationException e) {
+      LOGGER.debug("Error transforming Metacard", e);
+      return;
+    } catch (IOException e) {
+      LOGGER.debug("Error copying Metacard Binary content", e);
+      return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CatalogTransformerException("Metacard transform interrupted", e);
+    }
+
+    try {
+      outputStream.write(record);
+      numWritten.incrementAndGet();
+    } catch (IOException e) {
+      throw new CatalogTransformerException("Unable to write the transformed Metacard", e);
+    }
+  }
+
   private boolean isByIdQuery(Map<String, Serializable> arguments) {
     Serializable isByIdQuery = arguments.get(CswConstants.IS_BY_ID_QUERY);
     if (isByIdQuery instanceof Boolean) {
@@ -357,8 +426,6 @@ private CswRecordCollection buildCollection(
 
     CswRecordCollection recordCollection = new CswRecordCollection();
 
-    recordCollection.setNumberOfRecordsMatched(sourceResponse.getHits());
-    recordCollection.setNumberOfRecordsReturned(sourceResponse.getResults().size());
     recordCollection.setStartPosition(sourceResponse.getRequest().getQuery().getStartIndex());
 
     Object elementSetTypeArg = arguments.get(CswConstants.ELEMENT_SET_TYPE);
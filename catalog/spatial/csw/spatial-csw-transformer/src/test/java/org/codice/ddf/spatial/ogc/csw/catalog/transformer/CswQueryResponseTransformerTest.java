@@ -41,16 +41,20 @@
 import ddf.catalog.operation.impl.QueryImpl;
 import ddf.catalog.operation.impl.QueryRequestImpl;
 import ddf.catalog.operation.impl.SourceResponseImpl;
+import ddf.catalog.source.UnsupportedQueryException;
 import ddf.catalog.transform.CatalogTransformerException;
 import ddf.catalog.transform.MetacardTransformer;
 import ddf.catalog.transformer.api.PrintWriter;
 import ddf.catalog.transformer.api.PrintWriterProvider;
+import ddf.catalog.util.impl.CatalogQueryException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -395,6 +399,33 @@ public void testMarshalAcknowledgementWithFailedTransforms()
     assertThat(xml, containsString(CswQueryResponseTransformer.NEXT_RECORD_ATTRIBUTE + " 0"));
   }
 
+  @Test
+  public void whenLaterPageFailsThenThrowCatalogTransformerException()
+      throws CatalogTransformerException {
+    when(mockPrintWriterProvider.build((Class<Metacard>) notNull())).thenReturn(mockPrintWriter);
+    when(mockSourceResponse.getResults()).thenReturn(mockResults);
+    Iterator<Result> failingIterator = mock(Iterator.class);
+    when(failingIterator.hasNext()).thenReturn(true);
+    when(failingIterator.next())
+        .thenThrow(new CatalogQueryException(new UnsupportedQueryException("page failed")));
+    when(mockResults.iterator()).thenReturn(failingIterator);
+    when(mockSourceResponse.getRequest()).thenReturn(mockQueryRequest);
+    when(mockQueryRequest.getQuery()).thenReturn(mockQuery);
+    when(mockArguments.get(CswConstants.RESULT_TYPE_PARAMETER)).thenReturn(ResultType.RESULTS);
+    when(mockTransformerManager.getTransformerBySchema(anyString()))
+        .thenReturn(mockMetacardTransformer);
+
+    thrown.expect(CatalogTransformerException.class);
+    thrown.expectCause(instanceOf(CatalogQueryException.class));
+
+    transformer.init();
+    try {
+      transformer.transform(mockSourceResponse, mockArguments);
+    } finally {
+      transformer.destroy();
+    }
+  }
+
   @Test
   public void verifyResultOrderIsMaintained() throws CatalogTransformerException, IOException {
     // when
@@ -421,7 +452,7 @@ public void verifyResultOrderIsMaintained() throws CatalogTransformerException,
 
     // given
     transformer.init();
-    transformer.transform(mockSourceResponse, mockArguments);
+    BinaryContent content = transformer.transform(mockSourceResponse, mockArguments);
     transformer.destroy();
 
     // then
@@ -432,9 +463,8 @@ public void verifyResultOrderIsMaintained() throws CatalogTransformerException,
     ArgumentCaptor<Metacard> mcCaptor = ArgumentCaptor.forClass(Metacard.class);
     verify(mockMetacardTransformer, times(10)).transform(mcCaptor.capture(), mapCaptor.capture());
 
-    ArgumentCaptor<String> strCaptor = ArgumentCaptor.forClass(String.class);
-    verify(mockPrintWriter, times(2)).setRawValue(strCaptor.capture());
-    String order = strCaptor.getAllValues().get(1);
+    verify(mockPrintWriter, times(2)).setRawValue(anyString());
+    String order = new String(content.getByteArray(), StandardCharsets.UTF_8);
     String[] ids = order.split(",");
     for (int i = 1; i < ids.length; i++) {
       assertThat(ids[i - 1], is(String.valueOf("id_" + i)));
@@ -0,0 +1,724 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.geocoding.query;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * An immutable in-memory index of gazetteer places that answers name suggestions, name lookups,
+ * lookups by id and radius searches without querying the catalog.
+ *
+ * <ul>
+ *   <li>Names are normalized (lower case, no diacritics, punctuation collapsed to single spaces)
+ *       and a key is kept for every word start, so that "bos" finds "South Boston" the same way the
+ *       Solr infix suggester does. The keys are sorted, so the keys that start with a prefix form
+ *       one contiguous range found by binary search.
+ *   <li>A segment tree over the sorted keys gives the best ranked key of any range in O(log n),
+ *       which lets suggestions pull the top k places of a range without visiting the rest of it.
+ *       Places are ranked by gazetteer sort value, which encodes the feature class, and then by
+ *       population.
+ *   <li>A KD-tree over the latitude and longitude of the places located by a point answers radius
+ *       searches.
+ *   <li>An array of place positions sorted by id answers lookups by id.
+ * </ul>
+ *
+ * <p>The index is rebuilt rather than modified when places change, so it can be read from any
+ * number of threads without locking.
+ */
+final class GazetteerIndex {
+
+  private static final double EARTH_RADIUS_KM = 6371.0088;
+
+  private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+  private static final Comparator<GazetteerPlace> QUERY_ORDER =
+      Comparator.comparing(
+              GazetteerPlace::getFeatureCode, Comparator.nullsLast(Comparator.naturalOrder()))
+          .thenComparing(Comparator.comparingLong(GazetteerPlace::getPopulationOrZero).reversed());
+
+  private static final GazetteerIndex EMPTY = build(Collections.emptyList());
+
+  private final GazetteerPlace[] places;
+
+  private final String[] normalizedNames;
+
+  /**
+   * Rank of each place for suggestions, lower is better: by gazetteer sort value, then population,
+   * both descending.
+   */
+  private final int[] suggestionRanks;
+
+  private final int[] keyPlaces;
+
+  private final int[] keyOffsets;
+
+  /** Segment tree holding, for each node, the key with the best suggestion rank below it. */
+  private final int[] bestKeys;
+
+  private final int[] placesById;
+
+  /** Places located by a point, ordered as an implicit KD-tree alternating latitude, longitude. */
+  private final int[] kdTree;
+
+  private GazetteerIndex(
+      GazetteerPlace[] places,
+      String[] normalizedNames,
+      int[] suggestionRanks,
+      int[] keyPlaces,
+      int[] keyOffsets,
+      int[] bestKeys,
+      int[] placesById,
+      int[] kdTree) {
+    this.places = places;
+    this.normalizedNames = normalizedNames;
+    this.suggestionRanks = suggestionRanks;
+    this.keyPlaces = keyPlaces;
+    this.keyOffsets = keyOffsets;
+    this.bestKeys = bestKeys;
+    this.placesById = placesById;
+    this.kdTree = kdTree;
+  }
+
+  static GazetteerIndex empty() {
+    return EMPTY;
+  }
+
+  /** Builds an index over the places. Places must have distinct ids. */
+  static GazetteerIndex build(Collection<GazetteerPlace> placeCollection) {
+    GazetteerPlace[] places = placeCollection.toArray(new GazetteerPlace[0]);
+    int size = places.length;
+
+    String[] normalizedNames = new String[size];
+    int keyCount = 0;
+    for (int i = 0; i < size; i++) {
+      normalizedNames[i] = places[i].getName() != null ? normalize(places[i].getName()) : "";
+      keyCount += countWords(normalizedNames[i]);
+    }
+
+    long[] gazetteerSorts = new long[size];
+    long[] populations = new long[size];
+    for (int i = 0; i < size; i++) {
+      gazetteerSorts[i] = gazetteerSortOrZero(places[i]);
+      populations[i] = places[i].getPopulationOrZero();
+    }
+    int[] suggestionRanks = new int[size];
+    int[] bySuggestionOrder =
+        sort(
+            size,
+            (a, b) -> {
+              int compare = Long.compare(gazetteerSorts[b], gazetteerSorts[a]);
+              if (compare == 0) {
+                compare = Long.compare(populations[b], populations[a]);
+              }
+              return compare != 0 ? compare : normalizedNames[a].compareTo(normalizedNames[b]);
+            });
+    for (int rank = 0; rank < size; rank++) {
+      suggestionRanks[bySuggestionOrder[rank]] = rank;
+    }
+
+    int[] unsortedKeyPlaces = new int[keyCount];
+    int[] unsortedKeyOffsets = new int[keyCount];
+    long[] keyHeads = new long[keyCount];
+    int key = 0;
+    for (int i = 0; i < size; i++) {
+      String name = normalizedNames[i];
+      for (int offset = 0; offset < name.length(); offset++) {
+        if (offset == 0 || name.charAt(offset - 1) == ' ') {
+          unsortedKeyPlaces[key] = i;
+          unsortedKeyOffsets[key] = offset;
+          keyHeads[key] = head(name, offset);
+          key++;
+        }
+      }
+    }
+    // Most keys differ in their first four characters, so those are compared as one number and
+    // the rest of the name is only looked at when both keys are longer and tied.
+    int[] keyOrder =
+        sort(
+            keyCount,
+            (a, b) -> {
+              int compare = Long.compareUnsigned(keyHeads[a], keyHeads[b]);
+              if (compare != 0 || (keyHeads[a] & 0xFFFF) == 0) {
+                return compare;
+              }
+              return compareSuffixes(
+                  normalizedNames[unsortedKeyPlaces[a]],
+                  unsortedKeyOffsets[a],
+                  normalizedNames[unsortedKeyPlaces[b]],
+                  unsortedKeyOffsets[b]);
+            });
+    int[] keyPlaces = new int[keyCount];
+    int[] keyOffsets = new int[keyCount];
+    for (int k = 0; k < keyCount; k++) {
+      keyPlaces[k] = unsortedKeyPlaces[keyOrder[k]];
+      keyOffsets[k] = unsortedKeyOffsets[keyOrder[k]];
+    }
+
+    int[] bestKeys = new int[2 * keyCount];
+    for (int k = 0; k < keyCount; k++) {
+      bestKeys[keyCount + k] = k;
+    }
+    for (int node = keyCount - 1; node > 0; node--) {
+      bestKeys[node] =
+          better(bestKeys[2 * node], bestKeys[2 * node + 1], keyPlaces, suggestionRanks);
+    }
+
+    long[] idHeads = new long[size];
+    for (int i = 0; i < size; i++) {
+      idHeads[i] = head(places[i].getId(), 0);
+    }
+    int[] placesById =
+        sort(
+            size,
+            (a, b) -> {
+              int compare = Long.compareUnsigned(idHeads[a], idHeads[b]);
+              if (compare != 0 || (idHeads[a] & 0xFFFF) == 0) {
+                return compare;
+              }
+              return places[a].getId().compareTo(places[b].getId());
+            });
+
+    int pointCount = 0;
+    for (GazetteerPlace place : places) {
+      if (place.isPoint()) {
+        pointCount++;
+      }
+    }
+    int[] kdTree = new int[pointCount];
+    int point = 0;
+    for (int i = 0; i < size; i++) {
+      if (places[i].isPoint()) {
+        kdTree[point++] = i;
+      }
+    }
+    buildKdTree(places, kdTree, 0, pointCount, 0);
+
+    return new GazetteerIndex(
+        places,
+        normalizedNames,
+        suggestionRanks,
+        keyPlaces,
+        keyOffsets,
+        bestKeys,
+        placesById,
+        kdTree);
+  }
+
+  int size() {
+    return places.length;
+  }
+
+  /** Returns every place in the index. */
+  List<GazetteerPlace> getPlaces() {
+    return Collections.unmodifiableList(Arrays.asList(places));
+  }
+
+  GazetteerPlace get(String id) {
+    int low = 0;
+    int high = placesById.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int compare = places[placesById[middle]].getId().compareTo(id);
+      if (compare < 0) {
+        low = middle + 1;
+      } else if (compare > 0) {
+        high = middle - 1;
+      } else {
+        return places[placesById[middle]];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the best ranked places with a word that starts with {@code prefix}, best first.
+   *
+   * @param prefix the text typed so far
+   * @param maxResults the maximum number of places to return
+   */
+  List<GazetteerPlace> suggest(String prefix, int maxResults) {
+    String normalizedPrefix = normalize(prefix);
+    if (normalizedPrefix.isEmpty() || maxResults <= 0) {
+      return Collections.emptyList();
+    }
+
+    int low = lowerBound(normalizedPrefix);
+    int high = upperBound(normalizedPrefix);
+
+    List<GazetteerPlace> suggestions = new ArrayList<>(Math.min(maxResults, high - low));
+    Set<Integer> seen = new HashSet<>();
+    PriorityQueue<int[]> ranges =
+        new PriorityQueue<>(Comparator.comparingInt(range -> suggestionRanks[keyPlaces[range[2]]]));
+    if (low < high) {
+      ranges.add(new int[] {low, high, bestKey(low, high)});
+    }
+
+    while (!ranges.isEmpty() && suggestions.size() < maxResults) {
+      int[] range = ranges.poll();
+      int best = range[2];
+      if (seen.add(keyPlaces[best])) {
+        suggestions.add(places[keyPlaces[best]]);
+      }
+      if (range[0] < best) {
+        ranges.add(new int[] {range[0], best, bestKey(range[0], best)});
+      }
+      if (best + 1 < range[1]) {
+        ranges.add(new int[] {best + 1, range[1], bestKey(best + 1, range[1])});
+      }
+    }
+
+    return suggestions;
+  }
+
+  /**
+   * Returns the places with a run of whole words equal to {@code text}, ordered by feature code and
+   * then by descending population.
+   *
+   * @param text the name, or part of the name, to look for
+   * @param maxResults the maximum number of places to return
+   */
+  List<GazetteerPlace> find(String text, int maxResults) {
+    String normalizedText = normalize(text);
+    if (normalizedText.isEmpty() || maxResults <= 0) {
+      return Collections.emptyList();
+    }
+
+    // A space sorts before every letter and digit, so the keys that are equal to the text or
+    // continue with another word come first among the keys that start with it.
+    int low = lowerBound(normalizedText);
+    int high = upperBound(normalizedText + ' ');
+
+    Set<Integer> seen = new HashSet<>();
+    PriorityQueue<GazetteerPlace> worstFirst =
+        new PriorityQueue<>(maxResults + 1, QUERY_ORDER.reversed());
+    for (int key = low; key < high; key++) {
+      if (seen.add(keyPlaces[key])) {
+        worstFirst.add(places[keyPlaces[key]]);
+        if (worstFirst.size() > maxResults) {
+          worstFirst.poll();
+        }
+      }
+    }
+
+    List<GazetteerPlace> found = new ArrayList<>(worstFirst);
+    found.sort(QUERY_ORDER);
+    return found;
+  }
+
+  /**
+   * Returns the places located by a point within {@code radiusKm} of the given location, nearest
+   * first.
+   *
+   * @param latitude latitude of the center in degrees
+   * @param longitude longitude of the center in degrees
+   * @param radiusKm the search radius in kilometers
+   * @param maxResults the maximum number of places to return
+   * @param filter only places accepted by the filter are returned
+   */
+  List<GazetteerPlace> nearest(
+      double latitude,
+      double longitude,
+      double radiusKm,
+      int maxResults,
+      Predicate<GazetteerPlace> filter) {
+    if (maxResults <= 0 || kdTree.length == 0) {
+      return Collections.emptyList();
+    }
+
+    double latitudeDelta = radiusKm / KM_PER_DEGREE;
+    double minLatitude = Math.max(-90, latitude - latitudeDelta);
+    double maxLatitude = Math.min(90, latitude + latitudeDelta);
+
+    double cosine =
+        Math.min(Math.cos(Math.toRadians(minLatitude)), Math.cos(Math.toRadians(maxLatitude)));
+    double longitudeDelta =
+        cosine > 0 ? radiusKm / (KM_PER_DEGREE * cosine) : Double.POSITIVE_INFINITY;
+
+    List<GazetteerPlace> candidates = new ArrayList<>();
+    if (longitudeDelta >= 180) {
+      searchKdTree(0, kdTree.length, 0, minLatitude, maxLatitude, -180, 180, candidates);
+    } else {
+      double minLongitude = longitude - longitudeDelta;
+      double maxLongitude = longitude + longitudeDelta;
+      searchKdTree(
+          0,
+          kdTree.length,
+          0,
+          minLatitude,
+          maxLatitude,
+          Math.max(-180, minLongitude),
+          Math.min(180, maxLongitude),
+          candidates);
+      if (minLongitude < -180) {
+        searchKdTree(
+            0, kdTree.length, 0, minLatitude, maxLatitude, minLongitude + 360, 180, candidates);
+      }
+      if (maxLongitude > 180) {
+        searchKdTree(
+            0, kdTree.length, 0, minLatitude, maxLatitude, -180, maxLongitude - 360, candidates);
+      }
+    }
+
+    List<GazetteerPlace> inRadius = new ArrayList<>();
+    double[] distances = new double[candidates.size()];
+    for (GazetteerPlace place : candidates) {
+      if (filter.test(place)) {
+        double distance =
+            distanceKm(latitude, longitude, place.getLatitude(), place.getLongitude());
+        if (distance <= radiusKm) {
+          distances[inRadius.size()] = distance;
+          inRadius.add(place);
+        }
+      }
+    }
+
+    int[] byDistance = sort(inRadius.size(), (a, b) -> Double.compare(distances[a], distances[b]));
+    List<GazetteerPlace> nearest = new ArrayList<>(Math.min(maxResults, byDistance.length));
+    for (int i = 0; i < byDistance.length && i < maxResults; i++) {
+      nearest.add(inRadius.get(byDistance[i]));
+    }
+    return nearest;
+  }
+
+  /**
+   * Returns an estimate of the heap used by the index, counting the places, their strings and the
+   * index arrays. Strings are counted as UTF-16, so the estimate is on the high side on JVMs with
+   * compact strings.
+   */
+  long estimateMemoryBytes() {
+    long bytes = 0;
+    Set<String> countedInterned = new HashSet<>();
+    for (int i = 0; i < places.length; i++) {
+      GazetteerPlace place = places[i];
+      bytes += 64;
+      bytes += stringBytes(place.getId());
+      bytes += stringBytes(place.getName());
+      bytes += stringBytes(normalizedNames[i]);
+      bytes += place.getPopulation() != null ? 16 : 0;
+      bytes += place.getGazetteerSort() != null ? 16 : 0;
+      if (place.getCountryCode() != null && countedInterned.add(place.getCountryCode())) {
+        bytes += stringBytes(place.getCountryCode());
+      }
+      if (place.getFeatureCode() != null && countedInterned.add(place.getFeatureCode())) {
+        bytes += stringBytes(place.getFeatureCode());
+      }
+    }
+    bytes += 4L * places.length * 2;
+    bytes += 4L * suggestionRanks.length;
+    bytes += 4L * (keyPlaces.length + keyOffsets.length + bestKeys.length);
+    bytes += 4L * (placesById.length + kdTree.length);
+    return bytes;
+  }
+
+  private static long stringBytes(String string) {
+    return string != null ? 40 + 2L * string.length() : 0;
+  }
+
+  /**
+   * Lower cases the text, strips diacritics and replaces every run of characters that are not
+   * letters or digits with a single space.
+   */
+  static String normalize(String text) {
+    String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+    StringBuilder normalized = new StringBuilder(decomposed.length());
+    boolean pendingSpace = false;
+    for (int i = 0; i < decomposed.length(); i++) {
+      char c = decomposed.charAt(i);
+      if (Character.getType(c) == Character.NON_SPACING_MARK) {
+        continue;
+      }
+      if (Character.isLetterOrDigit(c)) {
+        if (pendingSpace && normalized.length() > 0) {
+          normalized.append(' ');
+        }
+        pendingSpace = false;
+        normalized.append(Character.toLowerCase(c));
+      } else {
+        pendingSpace = true;
+      }
+    }
+    return normalized.toString();
+  }
+
+  private static int countWords(String normalizedName) {
+    if (normalizedName.isEmpty()) {
+      return 0;
+    }
+    int words = 1;
+    for (int i = 0; i < normalizedName.length(); i++) {
+      if (normalizedName.charAt(i) == ' ') {
+        words++;
+      }
+    }
+    return words;
+  }
+
+  /**
+   * Packs the first four characters of the name from the offset into a long that orders the same
+   * way as the characters, shorter names first.
+   */
+  private static long head(String name, int offset) {
+    long head = 0;
+    for (int i = 0; i < 4; i++) {
+      head <<= 16;
+      if (offset + i < name.length()) {
+        head |= name.charAt(offset + i);
+      }
+    }
+    return head;
+  }
+
+  private static int compareSuffixes(String a, int offsetA, String b, int offsetB) {
+    int lengthA = a.length() - offsetA;
+    int lengthB = b.length() - offsetB;
+    int length = Math.min(lengthA, lengthB);
+    for (int i = 0; i < length; i++) {
+      char charA = a.charAt(offsetA + i);
+      char charB = b.charAt(offsetB + i);
+      if (charA != charB) {
+        return charA - charB;
+      }
+    }
+    return lengthA - lengthB;
+  }
+
+  /** Compares the start of a key with the prefix; 0 means the key starts with the prefix. */
+  private int compareKeyToPrefix(int key, String prefix) {
+    String name = normalizedNames[keyPlaces[key]];
+    int offset = keyOffsets[key];
+    int length = Math.min(name.length() - offset, prefix.length());
+    for (int i = 0; i < length; i++) {
+      char keyChar = name.charAt(offset + i);
+      char prefixChar = prefix.charAt(i);
+      if (keyChar != prefixChar) {
+        return keyChar - prefixChar;
+      }
+    }
+    return name.length() - offset >= prefix.length() ? 0 : -1;
+  }
+
+  private int lowerBound(String prefix) {
+    int low = 0;
+    int high = keyPlaces.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (compareKeyToPrefix(middle, prefix) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private int upperBound(String prefix) {
+    int low = 0;
+    int high = keyPlaces.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (compareKeyToPrefix(middle, prefix) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /** Returns the key with the best suggestion rank in [low, high). */
+  private int bestKey(int low, int high) {
+    int keyCount = keyPlaces.length;
+    int best = -1;
+    for (low += keyCount, high += keyCount; low < high; low >>>= 1, high >>>= 1) {
+      if ((low & 1) == 1) {
+        best = best < 0 ? bestKeys[low] : better(best, bestKeys[low], keyPlaces, suggestionRanks);
+        low++;
+      }
+      if ((high & 1) == 1) {
+        high--;
+        best = best < 0 ? bestKeys[high] : better(best, bestKeys[high], keyPlaces, suggestionRanks);
+      }
+    }
+    return best;
+  }
+
+  private static int better(int keyA, int keyB, int[] keyPlaces, int[] suggestionRanks) {
+    return suggestionRanks[keyPlaces[keyA]] <= suggestionRanks[keyPlaces[keyB]] ? keyA : keyB;
+  }
+
+  private static void buildKdTree(
+      GazetteerPlace[] places, int[] tree, int from, int to, int depth) {
+    if (to - from <= 1) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    select(places, tree, from, to - 1, middle, depth % 2 == 0);
+    buildKdTree(places, tree, from, middle, depth + 1);
+    buildKdTree(places, tree, middle + 1, to, depth + 1);
+  }
+
+  /** Moves the k-th smallest coordinate of tree[left..right] to position k (quickselect). */
+  private static void select(
+      GazetteerPlace[] places, int[] tree, int left, int right, int k, boolean byLatitude) {
+    while (left < right) {
+      double pivot = coordinate(places[tree[(left + right) >>> 1]], byLatitude);
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (coordinate(places[tree[i]], byLatitude) < pivot) {
+          i++;
+        }
+        while (coordinate(places[tree[j]], byLatitude) > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          int swap = tree[i];
+          tree[i] = tree[j];
+          tree[j] = swap;
+          i++;
+          j--;
+        }
+      }
+      if (k <= j) {
+        right = j;
+      } else if (k >= i) {
+        left = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private static double coordinate(GazetteerPlace place, boolean byLatitude) {
+    return byLatitude ? place.getLatitude() : place.getLongitude();
+  }
+
+  private void searchKdTree(
+      int from,
+      int to,
+      int depth,
+      double minLatitude,
+      double maxLatitude,
+      double minLongitude,
+      double maxLongitude,
+      List<GazetteerPlace> found) {
+    if (from >= to) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    GazetteerPlace place = places[kdTree[middle]];
+    double latitude = place.getLatitude();
+    double longitude = place.getLongitude();
+    if (latitude >= minLatitude
+        && latitude <= maxLatitude
+        && longitude >= minLongitude
+        && longitude <= maxLongitude) {
+      found.add(place);
+    }
+
+    boolean byLatitude = depth % 2 == 0;
+    double value = byLatitude ? latitude : longitude;
+    double min = byLatitude ? minLatitude : minLongitude;
+    double max = byLatitude ? maxLatitude : maxLongitude;
+    if (min <= value) {
+      searchKdTree(
+          from, middle, depth + 1, minLatitude, maxLatitude, minLongitude, maxLongitude, found);
+    }
+    if (max >= value) {
+      searchKdTree(
+          middle + 1, to, depth + 1, minLatitude, maxLatitude, minLongitude, maxLongitude, found);
+    }
+  }
+
+  static double distanceKm(
+      double latitudeA, double longitudeA, double latitudeB, double longitudeB) {
+    double latitudeDelta = Math.toRadians(latitudeB - latitudeA);
+    double longitudeDelta = Math.toRadians(longitudeB - longitudeA);
+    double a =
+        Math.sin(latitudeDelta / 2) * Math.sin(latitudeDelta / 2)
+            + Math.cos(Math.toRadians(latitudeA))
+                * Math.cos(Math.toRadians(latitudeB))
+                * Math.sin(longitudeDelta / 2)
+                * Math.sin(longitudeDelta / 2);
+    return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  private static long gazetteerSortOrZero(GazetteerPlace place) {
+    Integer gazetteerSort = place.getGazetteerSort();
+    return gazetteerSort != null ? gazetteerSort : 0;
+  }
+
+  /** Compares two positions in the arrays being indexed. */
+  @FunctionalInterface
+  private interface PositionComparator {
+    int compare(int a, int b);
+  }
+
+  /**
+   * Returns the positions 0 to size - 1 sorted with the comparator. A merge sort over an int array
+   * is used to avoid boxing millions of positions while the index is built.
+   */
+  private static int[] sort(int size, PositionComparator comparator) {
+    int[] positions = new int[size];
+    for (int i = 0; i < size; i++) {
+      positions[i] = i;
+    }
+    mergeSort(positions, new int[size], 0, size, comparator);
+    return positions;
+  }
+
+  private static void mergeSort(
+      int[] positions, int[] buffer, int from, int to, PositionComparator comparator) {
+    if (to - from <= 16) {
+      for (int i = from + 1; i < to; i++) {
+        int position = positions[i];
+        int j = i - 1;
+        while (j >= from && comparator.compare(positions[j], position) > 0) {
+          positions[j + 1] = positions[j];
+          j--;
+        }
+        positions[j + 1] = position;
+      }
+      return;
+    }
+
+    int middle = (from + to) >>> 1;
+    mergeSort(positions, buffer, from, middle, comparator);
+    mergeSort(positions, buffer, middle, to, comparator);
+    if (comparator.compare(positions[middle - 1], positions[middle]) <= 0) {
+      return;
+    }
+
+    System.arraycopy(positions, from, buffer, from, to - from);
+    int left = from;
+    int right = middle;
+    for (int out = from; out < to; out++) {
+      if (right >= to || (left < middle && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+        positions[out] = buffer[left++];
+      } else {
+        positions[out] = buffer[right++];
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.geocoding.query;
+
+/**
+ * The parts of a gazetteer metacard that {@link GazetteerIndex} needs to answer queries without
+ * going back to the catalog. Latitude and longitude are {@link Double#NaN} when the metacard has no
+ * usable location.
+ */
+final class GazetteerPlace {
+
+  private final String id;
+
+  private final String name;
+
+  private final String countryCode;
+
+  private final String featureCode;
+
+  private final Long population;
+
+  private final Integer gazetteerSort;
+
+  private final double latitude;
+
+  private final double longitude;
+
+  private final boolean point;
+
+  GazetteerPlace(
+      String id,
+      String name,
+      String countryCode,
+      String featureCode,
+      Long population,
+      Integer gazetteerSort,
+      double latitude,
+      double longitude,
+      boolean point) {
+    this.id = id;
+    this.name = name;
+    this.countryCode = countryCode != null ? countryCode.intern() : null;
+    this.featureCode = featureCode != null ? featureCode.intern() : null;
+    this.population = population;
+    this.gazetteerSort = gazetteerSort;
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.point = point;
+  }
+
+  String getId() {
+    return id;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  String getCountryCode() {
+    return countryCode;
+  }
+
+  String getFeatureCode() {
+    return featureCode;
+  }
+
+  Long getPopulation() {
+    return population;
+  }
+
+  long getPopulationOrZero() {
+    return population != null ? population : 0L;
+  }
+
+  Integer getGazetteerSort() {
+    return gazetteerSort;
+  }
+
+  boolean hasLocation() {
+    return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+  }
+
+  double getLatitude() {
+    return latitude;
+  }
+
+  double getLongitude() {
+    return longitude;
+  }
+
+  /** Returns true if the location of the metacard is a single point. */
+  boolean isPoint() {
+    return point && hasLocation();
+  }
+}
@@ -91,6 +91,8 @@ public class GazetteerQueryCatalog implements GeoEntryQueryable {
 
   private static final long TIMEOUT = 10000L;
 
+  private static final char[] WILDCARDS = {'*', '?'};
+
   private CatalogFramework catalogFramework;
 
   private FilterBuilder filterBuilder;
@@ -99,9 +101,23 @@ public class GazetteerQueryCatalog implements GeoEntryQueryable {
 
   private List<Filter> featureCodeFilters;
 
+  private final InMemoryGazetteer inMemoryGazetteer;
+
   public GazetteerQueryCatalog(CatalogFramework catalogFramework, FilterBuilder filterBuilder) {
+    this(catalogFramework, filterBuilder, null);
+  }
+
+  /**
+   * @param inMemoryGazetteer when not null, lookups are answered from its index once it has been
+   *     loaded instead of querying the catalog
+   */
+  public GazetteerQueryCatalog(
+      CatalogFramework catalogFramework,
+      FilterBuilder filterBuilder,
+      InMemoryGazetteer inMemoryGazetteer) {
     this.catalogFramework = catalogFramework;
     this.filterBuilder = filterBuilder;
+    this.inMemoryGazetteer = inMemoryGazetteer;
     this.featureCodeFilters = new ArrayList<>();
 
     for (String cityFeatureCode : GeoCodingConstants.CITY_FEATURE_CODES) {
@@ -120,6 +136,15 @@ public GazetteerQueryCatalog(CatalogFramework catalogFramework, FilterBuilder fi
 
   @Override
   public List<GeoEntry> query(String queryString, int maxResults) throws GeoEntryQueryException {
+    GazetteerIndex index = getIndex();
+    if (index != null && !StringUtils.containsAny(queryString, WILDCARDS)) {
+      return index
+          .find(queryString, maxResults)
+          .stream()
+          .map(this::transformPlaceToGeoEntry)
+          .collect(Collectors.toList());
+    }
+
     Filter textFilter = filterBuilder.attribute(Core.TITLE).is().like().text(queryString);
     Filter queryFilter = filterBuilder.allOf(tagFilter, textFilter);
     Map<String, Serializable> properties = new HashMap<>();
@@ -155,6 +180,12 @@ public GeoEntry queryById(String id) throws GeoEntryQueryException {
       throw new IllegalArgumentException("id cannot be blank or null");
     }
 
+    GazetteerIndex index = getIndex();
+    if (index != null) {
+      GazetteerPlace place = index.get(id);
+      return place != null ? transformPlaceToGeoEntry(place) : null;
+    }
+
     Filter idFilter = filterBuilder.attribute(Core.ID).is().text(id);
     Filter queryFilter = filterBuilder.allOf(tagFilter, idFilter);
 
@@ -176,6 +207,15 @@ public GeoEntry queryById(String id) throws GeoEntryQueryException {
   @Override
   public List<Suggestion> getSuggestedNames(String queryString, int maxResults)
       throws GeoEntryQueryException {
+    GazetteerIndex index = getIndex();
+    if (index != null) {
+      return index
+          .suggest(queryString, maxResults)
+          .stream()
+          .map(place -> new SuggestionImpl(place.getId(), place.getName()))
+          .collect(Collectors.toList());
+    }
+
     Map<String, Serializable> suggestProps = new HashMap<>();
     suggestProps.put(SUGGESTION_QUERY_KEY, queryString);
     suggestProps.put(SUGGESTION_CONTEXT_KEY, GAZETTEER_METACARD_TAG);
@@ -206,6 +246,34 @@ public List<Suggestion> getSuggestedNames(String queryString, int maxResults)
     return Collections.emptyList();
   }
 
+  private GazetteerIndex getIndex() {
+    return inMemoryGazetteer != null ? inMemoryGazetteer.getIndex() : null;
+  }
+
+  private GeoEntry transformPlaceToGeoEntry(GazetteerPlace place) {
+    GeoEntry.Builder geoEntryBuilder = new GeoEntry.Builder();
+    if (StringUtils.isNotBlank(place.getFeatureCode())) {
+      geoEntryBuilder.featureCode(place.getFeatureCode());
+    }
+    if (StringUtils.isNotBlank(place.getCountryCode())) {
+      geoEntryBuilder.countryCode(place.getCountryCode());
+    }
+    if (StringUtils.isNotBlank(place.getName())) {
+      geoEntryBuilder.name(place.getName());
+    }
+    if (place.getPopulation() != null) {
+      geoEntryBuilder.population(place.getPopulation());
+    }
+    if (place.getGazetteerSort() != null) {
+      geoEntryBuilder.gazetteerSort(place.getGazetteerSort());
+    }
+    if (place.hasLocation()) {
+      geoEntryBuilder.latitude(place.getLatitude());
+      geoEntryBuilder.longitude(place.getLongitude());
+    }
+    return geoEntryBuilder.build();
+  }
+
   private GeoEntry transformMetacardToGeoEntry(Metacard metacard) {
     GeoEntry.Builder geoEntryBuilder = new GeoEntry.Builder();
     String featureCode =
@@ -269,6 +337,32 @@ private String getStringAttributeFromMetacard(Metacard metacard, String attribut
   @Override
   public List<NearbyLocation> getNearestCities(String location, int radiusInKm, int maxResults)
       throws ParseException, GeoEntryQueryException {
+    GazetteerIndex index = getIndex();
+    if (index != null) {
+      Optional<Point> center = readPoint(location);
+      if (center.isPresent()) {
+        PointImpl centerPoint =
+            new PointImpl(center.get().getY(), center.get().getX(), SPATIAL_CONTEXT);
+        return index
+            .nearest(
+                center.get().getY(),
+                center.get().getX(),
+                radiusInKm,
+                maxResults,
+                place ->
+                    StringUtils.isNotEmpty(place.getName())
+                        && GeoCodingConstants.CITY_FEATURE_CODES.contains(place.getFeatureCode()))
+            .stream()
+            .map(
+                place ->
+                    new NearbyLocationImpl(
+                        centerPoint,
+                        new PointImpl(place.getLatitude(), place.getLongitude(), SPATIAL_CONTEXT),
+                        place.getName()))
+            .collect(Collectors.toList());
+      }
+    }
+
     Filter featureCodeFilter = filterBuilder.anyOf(featureCodeFilters);
     int radiusInMeters = radiusInKm * KM_TO_M;
 
@@ -337,6 +431,27 @@ public Optional<String> getCountryCode(String wktLocation, int radius)
       return Optional.empty();
     }
 
+    // Country shapes are polygons and are not in the index, so fall back to the catalog when no
+    // place is close enough.
+    GazetteerIndex index = getIndex();
+    Optional<Point> center = readPoint(wkt);
+    if (index != null && center.isPresent()) {
+      Optional<String> countryCode =
+          index
+              .nearest(
+                  center.get().getY(),
+                  center.get().getX(),
+                  radius,
+                  1,
+                  place -> place.getCountryCode() != null)
+              .stream()
+              .map(GazetteerPlace::getCountryCode)
+              .findFirst();
+      if (countryCode.isPresent()) {
+        return countryCode;
+      }
+    }
+
     int radiusInMeters = KM_TO_M * radius;
     Filter filter = filterBuilder.attribute(Core.LOCATION).withinBuffer().wkt(wkt, radiusInMeters);
     Filter queryFilter = filterBuilder.allOf(tagFilter, filter);
@@ -358,4 +473,14 @@ public Optional<String> getCountryCode(String wktLocation, int radius)
     }
     return Optional.empty();
   }
+
+  /** Returns the location if it is a point, as only points are answered from the index. */
+  private Optional<Point> readPoint(String location) {
+    try {
+      Geometry geometry = WKT_READER_THREAD_LOCAL.get().read(location);
+      return geometry instanceof Point ? Optional.of((Point) geometry) : Optional.empty();
+    } catch (com.vividsolutions.jts.io.ParseException e) {
+      return Optional.empty();
+    }
+  }
 }
@@ -0,0 +1,429 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.geocoding.query;
+
+import static org.codice.ddf.spatial.geocoding.GeoCodingConstants.GAZETTEER_METACARD_TAG;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKTReader;
+import ddf.catalog.CatalogFramework;
+import ddf.catalog.data.Attribute;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.data.types.Core;
+import ddf.catalog.data.types.Location;
+import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.filter.impl.SortByImpl;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.DeleteResponse;
+import ddf.catalog.operation.Update;
+import ddf.catalog.operation.UpdateResponse;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
+import ddf.catalog.plugin.PostIngestPlugin;
+import ddf.catalog.util.impl.ResultIterable;
+import ddf.security.service.SecurityServiceException;
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
+import org.codice.ddf.security.common.Security;
+import org.codice.ddf.spatial.geocoding.GeoEntryAttributes;
+import org.opengis.filter.sort.SortOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a {@link GazetteerIndex} of every gazetteer metacard in the catalog. The index is loaded
+ * from the catalog when it is enabled and, as a {@link PostIngestPlugin}, it records the gazetteer
+ * metacards that are created, updated and deleted afterwards. Since the index is immutable,
+ * recorded changes are applied by rebuilding it once ingest has been quiet for a few seconds, so a
+ * bulk GeoNames import only causes one rebuild.
+ *
+ * <p>The index is disabled by default. Each place takes about 400 bytes of heap, so the full
+ * GeoNames allCountries set of about 12 million places needs around 5 GB, and twice that while a
+ * rebuild holds both indexes. Gazetteers with more than the configured maximum number of places are
+ * not held in memory.
+ *
+ * <p>The index is loaded as the system subject and is shared by every caller, so it bypasses the
+ * access filtering of the catalog. It should only be enabled when gazetteer metacards are not
+ * access controlled.
+ *
+ * <p>While the index is disabled, not loaded yet or too large {@link #getIndex()} returns null and
+ * callers are expected to query the catalog instead.
+ */
+public class InMemoryGazetteer implements PostIngestPlugin {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryGazetteer.class);
+
+  private static final int PAGE_SIZE = 1000;
+
+  private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(90);
+
+  private static final long REBUILD_DELAY_SECONDS = 10;
+
+  private static final int DEFAULT_MAX_PLACES = 1_000_000;
+
+  private static final ThreadLocal<WKTReader> WKT_READER_THREAD_LOCAL =
+      ThreadLocal.withInitial(WKTReader::new);
+
+  private final CatalogFramework catalogFramework;
+
+  private final FilterBuilder filterBuilder;
+
+  private final ScheduledExecutorService executor;
+
+  private final Security security;
+
+  /** Changes not yet in the index, keyed by metacard id. An empty value is a removal. */
+  private final Map<String, Optional<GazetteerPlace>> pendingChanges = new ConcurrentHashMap<>();
+
+  private volatile GazetteerIndex index;
+
+  private ScheduledFuture<?> rebuild;
+
+  private boolean enabled = false;
+
+  private volatile int maxPlaces = DEFAULT_MAX_PLACES;
+
+  private boolean started = false;
+
+  /**
+   * Set once the gazetteer has more than the maximum number of places, to stop recording changes.
+   */
+  private volatile boolean tooLarge = false;
+
+  public InMemoryGazetteer(CatalogFramework catalogFramework, FilterBuilder filterBuilder) {
+    this(
+        catalogFramework,
+        filterBuilder,
+        Executors.newSingleThreadScheduledExecutor(
+            StandardThreadFactoryBuilder.newThreadFactory("gazetteerIndexThread")),
+        Security.getInstance());
+  }
+
+  InMemoryGazetteer(
+      CatalogFramework catalogFramework,
+      FilterBuilder filterBuilder,
+      ScheduledExecutorService executor,
+      Security security) {
+    this.catalogFramework = catalogFramework;
+    this.filterBuilder = filterBuilder;
+    this.executor = executor;
+    this.security = security;
+  }
+
+  public synchronized void init() {
+    started = true;
+    if (enabled) {
+      scheduleLoad();
+    }
+  }
+
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Enables or disables the index. Enabling it loads the index from the catalog, disabling it drops
+   * the index so gazetteer lookups query the catalog.
+   */
+  public synchronized void setEnabled(boolean enabled) {
+    if (this.enabled == enabled) {
+      return;
+    }
+    this.enabled = enabled;
+    tooLarge = false;
+    if (enabled) {
+      if (started) {
+        scheduleLoad();
+      }
+    } else {
+      if (rebuild != null) {
+        rebuild.cancel(false);
+      }
+      pendingChanges.clear();
+      index = null;
+    }
+  }
+
+  /** Sets the largest number of places held in memory. Larger gazetteers query the catalog. */
+  public void setMaxPlaces(int maxPlaces) {
+    this.maxPlaces = maxPlaces;
+  }
+
+  private void scheduleLoad() {
+    try {
+      executor.submit(
+          () ->
+              security.runAsAdmin(
+                  () -> {
+                    try {
+                      security.runWithSubjectOrElevate(this::load);
+                    } catch (SecurityServiceException | InvocationTargetException e) {
+                      LOGGER.debug("Unable to load the in-memory gazetteer index.", e);
+                    }
+                    return null;
+                  }));
+    } catch (RejectedExecutionException e) {
+      LOGGER.debug("Unable to schedule loading the in-memory gazetteer index.", e);
+    }
+  }
+
+  /** Returns the current index, or null if it has not been loaded yet. */
+  GazetteerIndex getIndex() {
+    return index;
+  }
+
+  Object load() {
+    LOGGER.debug("Loading the in-memory gazetteer index.");
+    long start = System.currentTimeMillis();
+
+    Map<String, GazetteerPlace> places = new HashMap<>();
+    try {
+      QueryImpl query =
+          new QueryImpl(
+              filterBuilder.attribute(Core.METACARD_TAGS).is().like().text(GAZETTEER_METACARD_TAG),
+              1,
+              PAGE_SIZE,
+              new SortByImpl(Core.ID, SortOrder.ASCENDING),
+              false,
+              TIMEOUT);
+      for (Result result :
+          ResultIterable.resultIterable(catalogFramework, new QueryRequestImpl(query))) {
+        toPlace(result.getMetacard()).ifPresent(place -> places.put(place.getId(), place));
+        if (places.size() > maxPlaces) {
+          LOGGER.info(
+              "The gazetteer has more than {} places, gazetteer lookups will query the catalog.",
+              maxPlaces);
+          dropIndex();
+          return null;
+        }
+      }
+    } catch (RuntimeException e) {
+      LOGGER.info(
+          "Unable to load the in-memory gazetteer index, gazetteer lookups will query the catalog.",
+          e);
+      return null;
+    }
+
+    GazetteerIndex loaded = rebuild(places.values());
+    if (loaded == null) {
+      return null;
+    }
+    LOGGER.info(
+        "Loaded {} gazetteer places into memory in {} ms, using about {} MB.",
+        loaded.size(),
+        System.currentTimeMillis() - start,
+        loaded.estimateMemoryBytes() / (1024 * 1024));
+    return null;
+  }
+
+  /**
+   * Applies the pending changes to the places and swaps in the resulting index. Returns null and
+   * drops the index if it was disabled or has grown too large.
+   */
+  private synchronized GazetteerIndex rebuild(Collection<GazetteerPlace> currentPlaces) {
+    if (!enabled) {
+      return null;
+    }
+
+    Map<String, Optional<GazetteerPlace>> changes = new HashMap<>(pendingChanges);
+
+    Map<String, GazetteerPlace> places = new HashMap<>(currentPlaces.size() * 4 / 3 + 1);
+    currentPlaces.forEach(place -> places.put(place.getId(), place));
+    changes.forEach(
+        (id, change) -> {
+          if (change.isPresent()) {
+            places.put(id, change.get());
+          } else {
+            places.remove(id);
+          }
+        });
+
+    changes.forEach(pendingChanges::remove);
+    if (places.size() > maxPlaces) {
+      LOGGER.info(
+          "The gazetteer has grown to more than {} places, gazetteer lookups will query the catalog.",
+          maxPlaces);
+      dropIndex();
+      return null;
+    }
+
+    GazetteerIndex rebuilt = GazetteerIndex.build(places.values());
+    index = rebuilt;
+    return rebuilt;
+  }
+
+  private synchronized void dropIndex() {
+    tooLarge = true;
+    pendingChanges.clear();
+    index = null;
+  }
+
+  private void rebuild() {
+    GazetteerIndex current = index;
+    if (current == null) {
+      // The changes will be picked up by the initial load.
+      return;
+    }
+
+    long start = System.currentTimeMillis();
+    GazetteerIndex rebuilt = rebuild(current.getPlaces());
+    if (rebuilt == null) {
+      return;
+    }
+    LOGGER.debug(
+        "Rebuilt the in-memory gazetteer index with {} places in {} ms, using about {} MB.",
+        rebuilt.size(),
+        System.currentTimeMillis() - start,
+        rebuilt.estimateMemoryBytes() / (1024 * 1024));
+  }
+
+  private synchronized void scheduleRebuild() {
+    if (rebuild != null) {
+      rebuild.cancel(false);
+    }
+
+    try {
+      rebuild = executor.schedule(this::rebuild, REBUILD_DELAY_SECONDS, TimeUnit.SECONDS);
+    } catch (RejectedExecutionException e) {
+      LOGGER.debug("Unable to schedule a rebuild of the in-memory gazetteer index.", e);
+    }
+  }
+
+  @Override
+  public CreateResponse process(CreateResponse input) {
+    if (isEnabled() && recordChanges(input.getCreatedMetacards(), false)) {
+      scheduleRebuild();
+    }
+    return input;
+  }
+
+  @Override
+  public UpdateResponse process(UpdateResponse input) {
+    if (!isEnabled()) {
+      return input;
+    }
+
+    boolean changed = false;
+    for (Update update : input.getUpdatedMetacards()) {
+      Metacard newMetacard = update.getNewMetacard();
+      Metacard oldMetacard = update.getOldMetacard();
+      if (isGazetteerMetacard(newMetacard)) {
+        pendingChanges.put(newMetacard.getId(), toPlace(newMetacard));
+        changed = true;
+      } else if (isGazetteerMetacard(oldMetacard)) {
+        pendingChanges.put(oldMetacard.getId(), Optional.empty());
+        changed = true;
+      }
+    }
+
+    if (changed) {
+      scheduleRebuild();
+    }
+    return input;
+  }
+
+  @Override
+  public DeleteResponse process(DeleteResponse input) {
+    if (isEnabled() && recordChanges(input.getDeletedMetacards(), true)) {
+      scheduleRebuild();
+    }
+    return input;
+  }
+
+  private synchronized boolean isEnabled() {
+    return enabled && !tooLarge;
+  }
+
+  private boolean recordChanges(List<Metacard> metacards, boolean deleted) {
+    boolean changed = false;
+    for (Metacard metacard : metacards) {
+      if (isGazetteerMetacard(metacard)) {
+        pendingChanges.put(metacard.getId(), deleted ? Optional.empty() : toPlace(metacard));
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private static boolean isGazetteerMetacard(Metacard metacard) {
+    return metacard != null
+        && metacard.getId() != null
+        && metacard.getTags().contains(GAZETTEER_METACARD_TAG);
+  }
+
+  static Optional<GazetteerPlace> toPlace(Metacard metacard) {
+    if (metacard == null || metacard.getId() == null) {
+      return Optional.empty();
+    }
+
+    double latitude = Double.NaN;
+    double longitude = Double.NaN;
+    boolean point = false;
+    String location = getString(metacard, Core.LOCATION);
+    if (location != null && !location.isEmpty()) {
+      try {
+        Geometry geometry = WKT_READER_THREAD_LOCAL.get().read(location);
+        Coordinate coordinate = geometry.getCoordinate();
+        if (coordinate != null) {
+          latitude = coordinate.y;
+          longitude = coordinate.x;
+          point = geometry instanceof Point;
+        }
+      } catch (ParseException e) {
+        LOGGER.debug("Gazetteer metacard {} has an invalid location.", metacard.getId());
+      }
+    }
+
+    Serializable population = getValue(metacard, GeoEntryAttributes.POPULATION_ATTRIBUTE_NAME);
+    Serializable gazetteerSort = getValue(metacard, GeoEntryAttributes.GAZETTEER_SORT_VALUE);
+
+    return Optional.of(
+        new GazetteerPlace(
+            metacard.getId(),
+            getString(metacard, Core.TITLE),
+            getString(metacard, Location.COUNTRY_CODE),
+            getString(metacard, GeoEntryAttributes.FEATURE_CODE_ATTRIBUTE_NAME),
+            population instanceof Long ? (Long) population : null,
+            gazetteerSort instanceof Integer ? (Integer) gazetteerSort : null,
+            latitude,
+            longitude,
+            point));
+  }
+
+  private static Serializable getValue(Metacard metacard, String attributeName) {
+    Attribute attribute = metacard.getAttribute(attributeName);
+    return attribute != null ? attribute.getValue() : null;
+  }
+
+  private static String getString(Metacard metacard, String attributeName) {
+    Serializable value = getValue(metacard, attributeName);
+    return value instanceof String ? (String) value : null;
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.geocoding.query;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GazetteerIndexTest {
+
+  private GazetteerIndex index;
+
+  @Before
+  public void setUp() {
+    index =
+        GazetteerIndex.build(
+            Arrays.asList(
+                place("boston", "Boston", "USA", "PPLA", 617594L, 42.35843, -71.05977),
+                place("new-boston", "New Boston", "USA", "PPL", 5000L, 42.97, -71.69),
+                place("bostonia", "Bostonia", "USA", "PPL", 15000L, 32.80, -116.94),
+                place("sao-paulo", "São Paulo", "BRA", "PPLA", 12033000L, -23.5475, -46.63611),
+                place("suva", "Suva", "FJI", "PPLC", 77366L, -18.14161, 178.44149),
+                place("taveuni", "Taveuni", "FJI", "PPL", 9000L, -16.85, -179.95),
+                new GazetteerPlace(
+                    "united-states", "United States", "USA", "PCLI", null, 10, 39.76, -98.5, false),
+                new GazetteerPlace(
+                    "nowhere", "Nowhere", null, "PPL", null, null, Double.NaN, Double.NaN, false)));
+  }
+
+  @Test
+  public void testNormalize() {
+    assertThat(GazetteerIndex.normalize("  São-Paulo, BR "), is("sao paulo br"));
+  }
+
+  @Test
+  public void testGet() {
+    assertThat(index.get("suva").getName(), is("Suva"));
+    assertThat(index.get("missing"), is(nullValue()));
+  }
+
+  @Test
+  public void testSuggestOrdersByGazetteerSortThenPopulation() {
+    assertThat(ids(index.suggest("bo", 10)), contains("boston", "bostonia", "new-boston"));
+    assertThat(ids(index.suggest("un", 10)), contains("united-states"));
+  }
+
+  @Test
+  public void testSuggestMatchesAnyWordAndIgnoresAccents() {
+    assertThat(ids(index.suggest("PAU", 10)), contains("sao-paulo"));
+    assertThat(ids(index.suggest("sao p", 10)), contains("sao-paulo"));
+  }
+
+  @Test
+  public void testSuggestLimitsResults() {
+    assertThat(ids(index.suggest("bo", 1)), contains("boston"));
+    assertThat(index.suggest("bo", 0), is(empty()));
+    assertThat(index.suggest("zz", 10), is(empty()));
+  }
+
+  @Test
+  public void testFindMatchesWholeWords() {
+    assertThat(ids(index.find("boston", 10)), contains("new-boston", "boston"));
+    assertThat(ids(index.find("bost", 10)), is(empty()));
+  }
+
+  @Test
+  public void testNearest() {
+    List<GazetteerPlace> places = index.nearest(42.353, -71.071, 150, 10, place -> true);
+
+    assertThat(ids(places), contains("boston", "new-boston"));
+  }
+
+  @Test
+  public void testNearestAcrossTheDateline() {
+    List<GazetteerPlace> places = index.nearest(-17.0, 179.9, 100, 10, place -> true);
+
+    assertThat(ids(places), contains("taveuni"));
+  }
+
+  @Test
+  public void testNearestIgnoresPlacesThatAreNotPoints() {
+    assertThat(index.nearest(39.76, -98.5, 10, 10, place -> true), is(empty()));
+  }
+
+  @Test
+  public void testNearestAppliesFilter() {
+    List<GazetteerPlace> places =
+        index.nearest(42.353, -71.071, 150, 10, place -> "PPL".equals(place.getFeatureCode()));
+
+    assertThat(ids(places), contains("new-boston"));
+  }
+
+  private static GazetteerPlace place(
+      String id,
+      String name,
+      String countryCode,
+      String featureCode,
+      long population,
+      double latitude,
+      double longitude) {
+    return new GazetteerPlace(
+        id, name, countryCode, featureCode, population, null, latitude, longitude, true);
+  }
+
+  private static List<String> ids(List<GazetteerPlace> places) {
+    return places.stream().map(GazetteerPlace::getId).collect(Collectors.toList());
+  }
+}
@@ -20,6 +20,8 @@
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import ddf.catalog.CatalogFramework;
@@ -318,6 +320,56 @@ public void testGetCountryCodeSourceUnavailableException() throws Exception {
     queryCatalog.getCountryCode(NEAR_BOSTON_WKT, RADIUS_IN_KM);
   }
 
+  @Test
+  public void testQueryFromInMemoryIndex() throws Exception {
+    queryCatalog = queryCatalogWithInMemoryIndex();
+
+    List<GeoEntry> geoEntryList = queryCatalog.query(BOSTON, 1);
+    assertThat(geoEntryList.size(), is(1));
+    GeoEntry geoEntry = geoEntryList.get(0);
+    assertThat(geoEntry.getCountryCode(), is(USA_COUNTRY_CODE));
+    assertThat(geoEntry.getName(), is(BOSTON));
+    assertThat(geoEntry.getFeatureCode(), is("PPL"));
+    assertThat(geoEntry.getLatitude(), is(42.35771940022451));
+    assertThat(geoEntry.getLongitude(), is(-71.0595703125));
+    assertThat(geoEntry.getPopulation(), is(123456789L));
+    verify(catalogFramework, never()).query(any(QueryRequest.class));
+  }
+
+  @Test
+  public void testGetNearestCitiesFromInMemoryIndex() throws Exception {
+    queryCatalog = queryCatalogWithInMemoryIndex();
+
+    List<NearbyLocation> nearbyLocations =
+        queryCatalog.getNearestCities(NEAR_BOSTON_WKT, RADIUS_IN_KM, MAX_RESULTS);
+    assertThat(nearbyLocations.size(), is(1));
+    NearbyLocation nearbyLocation = nearbyLocations.get(0);
+    assertThat(nearbyLocation.getCardinalDirection(), is("S"));
+    assertThat(nearbyLocation.getDistance(), is(closeTo(1.3, .01)));
+    assertThat(nearbyLocation.getName(), is(BOSTON));
+    verify(catalogFramework, never()).query(any(QueryRequest.class));
+  }
+
+  @Test
+  public void testGetCountryCodeFromInMemoryIndex() throws Exception {
+    queryCatalog = queryCatalogWithInMemoryIndex();
+
+    Optional<String> countryCode = queryCatalog.getCountryCode(NEAR_BOSTON_WKT, RADIUS_IN_KM);
+    assertThat(countryCode.get(), is(USA_COUNTRY_CODE));
+    verify(catalogFramework, never()).query(any(QueryRequest.class));
+  }
+
+  private GazetteerQueryCatalog queryCatalogWithInMemoryIndex() {
+    Metacard metacard = generateGeoNamesMetacard();
+    metacard.setAttribute(new AttributeImpl(Core.ID, "boston"));
+    InMemoryGazetteer inMemoryGazetteer = mock(InMemoryGazetteer.class);
+    when(inMemoryGazetteer.getIndex())
+        .thenReturn(
+            GazetteerIndex.build(
+                Collections.singletonList(InMemoryGazetteer.toPlace(metacard).get())));
+    return new GazetteerQueryCatalog(catalogFramework, FILTER_BUILDER, inMemoryGazetteer);
+  }
+
   private Metacard generateEmptyMetacard() {
     return new MetacardImpl(GEO_ENTRY_METACARD_TYPE);
   }
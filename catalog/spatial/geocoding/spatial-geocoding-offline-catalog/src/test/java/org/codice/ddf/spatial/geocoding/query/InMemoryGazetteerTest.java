@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.geocoding.query;
+
+import static org.codice.ddf.spatial.geocoding.GeoCodingConstants.GAZETTEER_METACARD_TAG;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import ddf.catalog.CatalogFramework;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.AttributeImpl;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.data.types.Core;
+import ddf.catalog.filter.proxy.builder.GeotoolsFilterBuilder;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.impl.CreateResponseImpl;
+import ddf.catalog.operation.impl.QueryResponseImpl;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import org.codice.ddf.security.common.Security;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InMemoryGazetteerTest {
+
+  private CatalogFramework catalogFramework;
+
+  private ScheduledExecutorService executor;
+
+  private InMemoryGazetteer inMemoryGazetteer;
+
+  @Before
+  public void setUp() throws Exception {
+    catalogFramework = mock(CatalogFramework.class);
+    List<Result> results =
+        Arrays.asList(
+            new ResultImpl(gazetteerMetacard("boston")),
+            new ResultImpl(gazetteerMetacard("phoenix")));
+    when(catalogFramework.query(any(QueryRequest.class)))
+        .thenReturn(new QueryResponseImpl(mock(QueryRequest.class), results, 2));
+    executor = mock(ScheduledExecutorService.class);
+    inMemoryGazetteer =
+        new InMemoryGazetteer(
+            catalogFramework, new GeotoolsFilterBuilder(), executor, mock(Security.class));
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    inMemoryGazetteer.init();
+
+    verifyZeroInteractions(executor);
+    assertThat(inMemoryGazetteer.getIndex(), is(nullValue()));
+  }
+
+  @Test
+  public void testLoad() {
+    inMemoryGazetteer.setEnabled(true);
+    inMemoryGazetteer.load();
+
+    assertThat(inMemoryGazetteer.getIndex(), is(notNullValue()));
+    assertThat(inMemoryGazetteer.getIndex().size(), is(2));
+  }
+
+  @Test
+  public void testLoadAboveMaxPlaces() {
+    inMemoryGazetteer.setEnabled(true);
+    inMemoryGazetteer.setMaxPlaces(1);
+    inMemoryGazetteer.load();
+
+    assertThat(inMemoryGazetteer.getIndex(), is(nullValue()));
+  }
+
+  @Test
+  public void testDisabledDoesNotRecordChanges() {
+    CreateResponse createResponse =
+        new CreateResponseImpl(null, null, Collections.singletonList(gazetteerMetacard("boston")));
+    inMemoryGazetteer.process(createResponse);
+
+    verifyZeroInteractions(executor);
+  }
+
+  @Test
+  public void testDisablingDropsIndex() {
+    inMemoryGazetteer.setEnabled(true);
+    inMemoryGazetteer.load();
+    inMemoryGazetteer.setEnabled(false);
+
+    assertThat(inMemoryGazetteer.getIndex(), is(nullValue()));
+  }
+
+  private Metacard gazetteerMetacard(String id) {
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setId(id);
+    metacard.setTitle(id);
+    metacard.setAttribute(new AttributeImpl(Core.LOCATION, "POINT (-71.06 42.36)"));
+    metacard.setAttribute(
+        new AttributeImpl(Core.METACARD_TAGS, Collections.singletonList(GAZETTEER_METACARD_TAG)));
+    return metacard;
+  }
+}
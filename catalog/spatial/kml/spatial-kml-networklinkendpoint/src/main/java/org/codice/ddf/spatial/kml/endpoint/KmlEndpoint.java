@@ -17,29 +17,53 @@
 import com.github.jknack.handlebars.Template;
 import com.github.jknack.handlebars.io.ClassPathTemplateLoader;
 import ddf.catalog.CatalogFramework;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.data.types.Core;
+import ddf.catalog.federation.FederationException;
+import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.filter.impl.SortByImpl;
+import ddf.catalog.operation.QueryResponse;
 import ddf.catalog.operation.SourceInfoResponse;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
 import ddf.catalog.operation.impl.SourceInfoRequestEnterprise;
 import ddf.catalog.source.SourceDescriptor;
 import ddf.catalog.source.SourceUnavailableException;
+import ddf.catalog.source.UnsupportedQueryException;
+import ddf.catalog.transform.CatalogTransformerException;
+import ddf.catalog.transform.MetacardTransformer;
+import ddf.security.SubjectUtils;
+import de.micromata.opengis.kml.v_2_2_0.Document;
 import de.micromata.opengis.kml.v_2_2_0.Folder;
 import de.micromata.opengis.kml.v_2_2_0.Kml;
 import de.micromata.opengis.kml.v_2_2_0.KmlFactory;
 import de.micromata.opengis.kml.v_2_2_0.Link;
 import de.micromata.opengis.kml.v_2_2_0.NetworkLink;
+import de.micromata.opengis.kml.v_2_2_0.Placemark;
 import de.micromata.opengis.kml.v_2_2_0.RefreshMode;
+import de.micromata.opengis.kml.v_2_2_0.Region;
 import de.micromata.opengis.kml.v_2_2_0.ViewRefreshMode;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response.Status;
@@ -48,9 +72,15 @@
 import javax.ws.rs.core.UriInfo;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.UnavailableSecurityManagerException;
 import org.codice.ddf.branding.BrandingRegistry;
 import org.codice.ddf.configuration.SystemBaseUrl;
 import org.codice.ddf.configuration.SystemInfo;
+import org.codice.ddf.spatial.kml.endpoint.KmlTileCache.TileFeature;
+import org.codice.ddf.spatial.kml.endpoint.KmlTileCache.TileResult;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +88,12 @@
  * Endpoint used to create KML {@link NetworkLink}s. The KML Network Link will link Google Earth to
  * the Catalog through the OpenSearch Endpoint.
  *
+ * <p>When tiled network links are enabled each source is served as a quadtree of tiles instead.
+ * Every tile is a {@link Region} based {@link NetworkLink}, so Google Earth only loads the tiles
+ * that are in view at a useful level of detail. Tiles with more results than the configured maximum
+ * are drawn as clusters and split into four child tiles. Results are rendered by the KML {@link
+ * MetacardTransformer} and kept in a {@link KmlTileCache}.
+ *
  * @author Keith C Wire
  */
 @Path("/")
@@ -97,6 +133,21 @@ public class KmlEndpoint {
 
   private static final String COUNT_PARAM = "count=";
 
+  private static final String TILES_URL_PATH = "tiles";
+
+  private static final String QUERY_TEXT_PARAM = "q";
+
+  private static final String COUNT_QUERY_PARAM = "count";
+
+  /** Number of pixels a tile has to cover on screen before Google Earth loads it. */
+  private static final double MIN_LOD_PIXELS = 256;
+
+  /** Clusters are hidden once their tile is large enough for the child tiles to load. */
+  private static final double CLUSTER_MAX_LOD_PIXELS = 2 * MIN_LOD_PIXELS;
+
+  /** Number of cells along each side of a tile that results are clustered into. */
+  private static final int CLUSTER_GRID_SIZE = 4;
+
   private static final Logger LOGGER = LoggerFactory.getLogger(KmlEndpoint.class);
 
   private CatalogFramework framework;
@@ -123,6 +174,16 @@ public class KmlEndpoint {
 
   private ClassPathTemplateLoader templateLoader;
 
+  private FilterBuilder filterBuilder;
+
+  private final KmlTileCache tileCache = new KmlTileCache();
+
+  private Boolean tiledNetworkLinks = false;
+
+  private Integer maxTileLevel = 18;
+
+  private List<MetacardTransformer> kmlTransformers = Collections.emptyList();
+
   public KmlEndpoint(BrandingRegistry brandingPlugin, CatalogFramework catalogFramework) {
     Optional<BrandingRegistry> brandingRegistry = Optional.ofNullable(brandingPlugin);
     LOGGER.trace("ENTERING: KML Endpoint Constructor");
@@ -197,6 +258,65 @@ public void setMaxResults(Integer maxResults) {
     this.maxResults = maxResults;
   }
 
+  public void setFilterBuilder(FilterBuilder filterBuilder) {
+    this.filterBuilder = filterBuilder;
+  }
+
+  /**
+   * Sets if the ddf.catalog.source.Source {@link NetworkLink}s should be served as tiles instead of
+   * as a single view based {@link NetworkLink}.
+   *
+   * @param tiledNetworkLinks - true to enable
+   */
+  public void setTiledNetworkLinks(Boolean tiledNetworkLinks) {
+    this.tiledNetworkLinks = tiledNetworkLinks;
+  }
+
+  /**
+   * Sets the KML {@link MetacardTransformer}s used to render the results listed in a tile.
+   *
+   * @param kmlTransformers - the transformers registered with the id kml
+   */
+  public void setKmlTransformers(List<MetacardTransformer> kmlTransformers) {
+    this.kmlTransformers = kmlTransformers;
+  }
+
+  /**
+   * Sets the deepest tile level. Tiles at this level list their results even if there are more than
+   * the maximum number of results.
+   *
+   * @param maxTileLevel - the deepest tile level, between 1 and {@value QuadKey#MAX_LEVEL}
+   */
+  public void setMaxTileLevel(Integer maxTileLevel) {
+    this.maxTileLevel = Math.max(1, Math.min(maxTileLevel, QuadKey.MAX_LEVEL));
+  }
+
+  /**
+   * Sets how long tile results are cached.
+   *
+   * @param timeToLiveSeconds - the time to live in seconds, 0 disables the cache
+   */
+  public void setTileCacheTimeToLiveSeconds(Integer timeToLiveSeconds) {
+    tileCache.setTimeToLiveSeconds(timeToLiveSeconds);
+  }
+
+  /**
+   * Sets the maximum number of tiles that are cached.
+   *
+   * @param maxEntries - the maximum number of tiles, 0 disables the cache
+   */
+  public void setTileCacheMaxEntries(Integer maxEntries) {
+    tileCache.setMaxEntries(maxEntries);
+  }
+
+  /**
+   * Returns the cache of tile results, which is registered as a {@link
+   * ddf.catalog.plugin.PostIngestPlugin} so ingests invalidate the tiles they affect.
+   */
+  public KmlTileCache getTileCache() {
+    return tileCache;
+  }
+
   public String getWebSite() {
     return this.webSite;
   }
@@ -313,6 +433,14 @@ public Kml getAvailableSources(@Context UriInfo uriInfo) {
       Folder folder = kml.createAndSetFolder();
       folder.setOpen(true);
       for (SourceDescriptor descriptor : response.getSourceInfo()) {
+        if (tiledNetworkLinks) {
+          URI tileUri = buildTileUri(uriInfo, descriptor.getSourceId(), QuadKey.root(), null, null);
+          folder
+              .getFeature()
+              .add(generateTiledNetworkLink(tileUri.toURL(), descriptor.getSourceId()));
+          continue;
+        }
+
         UriBuilder builder = UriBuilder.fromUri(uriInfo.getBaseUri());
         builder =
             generateEndpointUrl(
@@ -371,6 +499,339 @@ private NetworkLink generateViewBasedNetworkLink(URL networkLinkUrl, String sour
     return networkLink;
   }
 
+  /*
+   * Generates xml for the Network Link to the root tile of a source
+   *
+   * @param networkLinkUrl - url to set as the Link href.
+   *
+   * @return Networklink
+   */
+  private NetworkLink generateTiledNetworkLink(URL networkLinkUrl, String sourceId) {
+    NetworkLink networkLink = KmlFactory.createNetworkLink();
+    networkLink.setName(sourceId);
+    networkLink.setOpen(false);
+    networkLink.setVisibility(this.visibleByDefault);
+
+    Link link = networkLink.createAndSetLink();
+    LOGGER.debug("Tiled Network Link href: {}", networkLinkUrl);
+    link.setHref(networkLinkUrl.toString());
+    link.setHttpQuery(COUNT_PARAM + maxResults);
+
+    return networkLink;
+  }
+
+  /**
+   * Returns the root tile of a source, which links to the four tiles of the first level.
+   *
+   * @param uriInfo - injected resource providing the URI.
+   * @param sourceId - the id of the source to query
+   * @param queryText - optional text the results have to contain
+   * @param count - the maximum number of results listed in a tile
+   * @return - {@link Kml} containing a document of {@link NetworkLink}s.
+   */
+  @GET
+  @Path(FORWARD_SLASH + TILES_URL_PATH + "/{sourceId}")
+  @Produces(KML_MIME_TYPE)
+  public Kml getRootTile(
+      @Context UriInfo uriInfo,
+      @PathParam("sourceId") String sourceId,
+      @QueryParam(QUERY_TEXT_PARAM) String queryText,
+      @QueryParam(COUNT_QUERY_PARAM) Integer count) {
+    try {
+      Kml kml = KmlFactory.createKml();
+      Document document = kml.createAndSetDocument();
+      document.setName(sourceId);
+      addTileNetworkLinks(
+          document, uriInfo, sourceId, QuadKey.root(), queryText, getPageSize(count));
+      return kml;
+    } catch (UnknownHostException | UriBuilderException e) {
+      throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Returns a tile of a source. A tile with no more results than {@code count} lists them as {@link
+   * Placemark}s. A denser tile is drawn as clusters and links to its four child tiles.
+   *
+   * @param uriInfo - injected resource providing the URI.
+   * @param sourceId - the id of the source to query
+   * @param quadKey - the quadkey of the tile
+   * @param queryText - optional text the results have to contain
+   * @param count - the maximum number of results listed in a tile
+   * @return - {@link Kml} containing a document of {@link Placemark}s and {@link NetworkLink}s.
+   */
+  @GET
+  @Path(FORWARD_SLASH + TILES_URL_PATH + "/{sourceId}/{quadKey:[0-3]+}")
+  @Produces(KML_MIME_TYPE)
+  public Kml getTile(
+      @Context UriInfo uriInfo,
+      @PathParam("sourceId") String sourceId,
+      @PathParam("quadKey") String quadKey,
+      @QueryParam(QUERY_TEXT_PARAM) String queryText,
+      @QueryParam(COUNT_QUERY_PARAM) Integer count) {
+    final QuadKey tile;
+    try {
+      tile = QuadKey.parse(quadKey);
+    } catch (IllegalArgumentException e) {
+      throw new WebApplicationException(e, Status.BAD_REQUEST);
+    }
+
+    final int pageSize = getPageSize(count);
+    try {
+      TileResult result = getTileResult(sourceId, tile, queryText, pageSize);
+
+      Kml kml = KmlFactory.createKml();
+      Document document = kml.createAndSetDocument();
+      document.setName(tile.getKey());
+      if (result.getHits() <= pageSize || tile.getLevel() >= maxTileLevel) {
+        addPlacemarks(document, tile, result);
+      } else {
+        addClusters(document, tile, result);
+        addTileNetworkLinks(document, uriInfo, sourceId, tile, queryText, pageSize);
+      }
+      return kml;
+    } catch (UnsupportedQueryException
+        | SourceUnavailableException
+        | FederationException
+        | UnknownHostException
+        | UriBuilderException e) {
+      throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  private int getPageSize(Integer count) {
+    return count != null && count > 0 ? count : maxResults;
+  }
+
+  private TileResult getTileResult(String sourceId, QuadKey tile, String queryText, int pageSize)
+      throws UnsupportedQueryException, SourceUnavailableException, FederationException {
+    KmlTileCache.Key key =
+        new KmlTileCache.Key(
+            sourceId,
+            tile.getKey(),
+            StringUtils.defaultString(queryText),
+            pageSize,
+            getSecurityAttributes());
+
+    TileResult result = tileCache.get(key);
+    if (result == null) {
+      long generation = tileCache.getGeneration();
+      result = queryTile(sourceId, tile.getBounds(), queryText, pageSize);
+      tileCache.put(key, tile.getBounds(), result, generation);
+    } else {
+      LOGGER.trace("Serving KML tile {} of source {} from the cache.", tile, sourceId);
+    }
+    return result;
+  }
+
+  private TileResult queryTile(String sourceId, TileBounds bounds, String queryText, int pageSize)
+      throws UnsupportedQueryException, SourceUnavailableException, FederationException {
+    Filter filter = filterBuilder.attribute(Core.LOCATION).intersecting().wkt(bounds.toWkt());
+    if (StringUtils.isNotBlank(queryText)) {
+      filter =
+          filterBuilder.allOf(
+              filter, filterBuilder.attribute(Metacard.ANY_TEXT).is().like().text(queryText));
+    }
+
+    QueryImpl query =
+        new QueryImpl(
+            filter, 1, pageSize, new SortByImpl(Core.MODIFIED, SortOrder.DESCENDING), true, 0);
+    QueryResponse response =
+        framework.query(new QueryRequestImpl(query, Collections.singletonList(sourceId)));
+
+    List<TileFeature> features = new ArrayList<>(response.getResults().size());
+    for (Result result : response.getResults()) {
+      Metacard metacard = result.getMetacard();
+      TileBounds location = TileBounds.fromWkt(metacard.getLocation());
+      if (location != null) {
+        features.add(
+            new TileFeature(
+                metacard.getId(),
+                StringUtils.defaultIfBlank(metacard.getTitle(), metacard.getId()),
+                location.getCenterLongitude(),
+                location.getCenterLatitude(),
+                transformToPlacemark(metacard)));
+      }
+    }
+
+    // Sources that do not report the number of hits are assumed to have more when the page is full
+    long hits = response.getHits();
+    if (hits < response.getResults().size()) {
+      hits = response.getResults().size() < pageSize ? response.getResults().size() : pageSize + 1L;
+    }
+    return new TileResult(hits, features);
+  }
+
+  /*
+   * Renders the metacard the same way the view based network links do, so tile placemarks keep the
+   * description, style and links of the KML transformer. Returns null if no transformer is available
+   * or the transformation fails.
+   */
+  private Placemark transformToPlacemark(Metacard metacard) {
+    for (MetacardTransformer transformer : kmlTransformers) {
+      try (InputStream kmlStream =
+          transformer.transform(metacard, Collections.emptyMap()).getInputStream()) {
+        Kml kml = Kml.unmarshal(kmlStream);
+        if (kml != null && kml.getFeature() instanceof Placemark) {
+          return (Placemark) kml.getFeature();
+        }
+      } catch (CatalogTransformerException | IOException | RuntimeException e) {
+        LOGGER.debug("Unable to transform metacard {} to a KML placemark.", metacard.getId(), e);
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Tiles are shared between subjects with the same attributes, since those see the same results.
+   */
+  private static String getSecurityAttributes() {
+    try {
+      return new TreeMap<>(SubjectUtils.getSubjectAttributes(SecurityUtils.getSubject()))
+          .toString();
+    } catch (UnavailableSecurityManagerException e) {
+      LOGGER.debug("Unable to get the subject, caching KML tiles without subject attributes.", e);
+      return "";
+    }
+  }
+
+  /*
+   * Adds the results centered in the tile, so results overlapping several tiles are drawn once.
+   */
+  private void addPlacemarks(Document document, QuadKey tile, TileResult result) {
+    TileBounds bounds = tile.getBounds();
+    for (TileFeature feature : result.getFeatures()) {
+      if (!bounds.contains(feature.getLongitude(), feature.getLatitude())) {
+        continue;
+      }
+      if (feature.getPlacemark() != null) {
+        document.addToFeature(feature.getPlacemark());
+      } else {
+        Placemark placemark = document.createAndAddPlacemark();
+        placemark.setId(feature.getId());
+        placemark.setName(feature.getTitle());
+        placemark
+            .createAndSetPoint()
+            .addToCoordinates(feature.getLongitude(), feature.getLatitude());
+      }
+    }
+  }
+
+  /*
+   * Groups the returned results into a grid over the tile and scales the size of every cell by the
+   * total number of hits in the tile.
+   */
+  private void addClusters(Document document, QuadKey tile, TileResult result) {
+    TileBounds bounds = tile.getBounds();
+    int cells = CLUSTER_GRID_SIZE * CLUSTER_GRID_SIZE;
+    int[] counts = new int[cells];
+    double[] longitudes = new double[cells];
+    double[] latitudes = new double[cells];
+    int sampled = 0;
+
+    for (TileFeature feature : result.getFeatures()) {
+      if (!bounds.contains(feature.getLongitude(), feature.getLatitude())) {
+        continue;
+      }
+      int column = gridIndex(feature.getLongitude(), bounds.getWest(), bounds.getEast());
+      int row = gridIndex(feature.getLatitude(), bounds.getSouth(), bounds.getNorth());
+      int cell = row * CLUSTER_GRID_SIZE + column;
+      counts[cell]++;
+      longitudes[cell] += feature.getLongitude();
+      latitudes[cell] += feature.getLatitude();
+      sampled++;
+    }
+
+    if (sampled == 0) {
+      return;
+    }
+
+    Folder clusters = document.createAndAddFolder();
+    clusters.setName("Clusters");
+    clusters.setRegion(createRegion(bounds, 0, CLUSTER_MAX_LOD_PIXELS));
+    for (int cell = 0; cell < cells; cell++) {
+      if (counts[cell] == 0) {
+        continue;
+      }
+      long estimate = Math.max(1, Math.round((double) counts[cell] * result.getHits() / sampled));
+      Placemark placemark = clusters.createAndAddPlacemark();
+      placemark.setName(String.valueOf(estimate));
+      placemark.setDescription("About " + estimate + " results");
+      placemark
+          .createAndSetPoint()
+          .addToCoordinates(longitudes[cell] / counts[cell], latitudes[cell] / counts[cell]);
+    }
+  }
+
+  private static int gridIndex(double value, double min, double max) {
+    int index = (int) ((value - min) / (max - min) * CLUSTER_GRID_SIZE);
+    return Math.max(0, Math.min(index, CLUSTER_GRID_SIZE - 1));
+  }
+
+  private void addTileNetworkLinks(
+      Document document,
+      UriInfo uriInfo,
+      String sourceId,
+      QuadKey tile,
+      String queryText,
+      int pageSize)
+      throws UnknownHostException {
+    for (QuadKey child : tile.getChildren()) {
+      NetworkLink networkLink = document.createAndAddNetworkLink();
+      networkLink.setName(child.getKey());
+      networkLink.setRegion(createRegion(child.getBounds(), MIN_LOD_PIXELS, -1));
+
+      Link link = networkLink.createAndSetLink();
+      link.setHref(buildTileUri(uriInfo, sourceId, child, queryText, pageSize).toString());
+      link.setViewRefreshMode(ViewRefreshMode.ON_REGION);
+    }
+  }
+
+  private static Region createRegion(TileBounds bounds, double minLodPixels, double maxLodPixels) {
+    Region region = KmlFactory.createRegion();
+    region
+        .createAndSetLatLonAltBox()
+        .withNorth(bounds.getNorth())
+        .withSouth(bounds.getSouth())
+        .withEast(bounds.getEast())
+        .withWest(bounds.getWest());
+    region.createAndSetLod().withMinLodPixels(minLodPixels).withMaxLodPixels(maxLodPixels);
+    return region;
+  }
+
+  /*
+   * Source ids and query text are passed as template values so they are encoded.
+   */
+  private URI buildTileUri(
+      UriInfo uriInfo, String sourceId, QuadKey tile, String queryText, Integer count)
+      throws UnknownHostException {
+    UriBuilder builder =
+        generateEndpointUrl(
+            SystemBaseUrl.EXTERNAL.getRootContext()
+                + FORWARD_SLASH
+                + CATALOG_URL_PATH
+                + FORWARD_SLASH
+                + KML_TRANSFORM_PARAM
+                + FORWARD_SLASH
+                + TILES_URL_PATH
+                + "/{sourceId}",
+            UriBuilder.fromUri(uriInfo.getBaseUri()));
+    Map<String, Object> values = new HashMap<>();
+    values.put("sourceId", sourceId);
+
+    if (tile.getLevel() > 0) {
+      builder.path(tile.getKey());
+    }
+    if (StringUtils.isNotBlank(queryText)) {
+      builder.queryParam(QUERY_TEXT_PARAM, "{queryText}");
+      values.put("queryText", queryText);
+    }
+    if (count != null) {
+      builder.queryParam(COUNT_QUERY_PARAM, count);
+    }
+    return builder.buildFromMap(values);
+  }
+
   /*
    * Creates the URL based on the configured host, port, and services context root path.
    */
@@ -0,0 +1,348 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.kml.endpoint;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.DeleteResponse;
+import ddf.catalog.operation.Update;
+import ddf.catalog.operation.UpdateResponse;
+import ddf.catalog.plugin.PostIngestPlugin;
+import de.micromata.opengis.kml.v_2_2_0.Placemark;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the query results behind the tiles served by the {@link KmlEndpoint}. Entries are keyed by
+ * source, tile, query text, page size and the security attributes of the requesting subject, so
+ * analysts looking at the same area share results only when they are allowed to see the same
+ * results.
+ *
+ * <p>Entries expire after a time to live and are evicted least recently used first. As a {@link
+ * PostIngestPlugin}, the cache also drops the tiles affected by every create, update and delete:
+ * the tiles that overlap the location of a changed metacard and the tiles that contain it.
+ */
+public class KmlTileCache implements PostIngestPlugin {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(KmlTileCache.class);
+
+  private static final int DEFAULT_MAX_ENTRIES = 5000;
+
+  private static final long DEFAULT_TIME_TO_LIVE_SECONDS = 60;
+
+  private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+  private volatile long timeToLiveMillis = TimeUnit.SECONDS.toMillis(DEFAULT_TIME_TO_LIVE_SECONDS);
+
+  private LongSupplier clock = System::currentTimeMillis;
+
+  private long generation;
+
+  /**
+   * Sets the maximum number of tiles kept in the cache.
+   *
+   * @param maxEntries the maximum number of tiles, 0 or less disables the cache
+   */
+  public void setMaxEntries(int maxEntries) {
+    this.maxEntries = maxEntries;
+    synchronized (entries) {
+      evictEldestEntries();
+    }
+  }
+
+  /**
+   * Sets how long a tile is served from the cache.
+   *
+   * @param timeToLiveSeconds the time to live in seconds, 0 or less disables the cache
+   */
+  public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+    this.timeToLiveMillis = TimeUnit.SECONDS.toMillis(timeToLiveSeconds);
+    if (timeToLiveSeconds <= 0) {
+      clear();
+    }
+  }
+
+  void setClock(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  boolean isEnabled() {
+    return maxEntries > 0 && timeToLiveMillis > 0;
+  }
+
+  TileResult get(Key key) {
+    if (!isEnabled()) {
+      return null;
+    }
+
+    synchronized (entries) {
+      final Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.expiresAt <= clock.getAsLong()) {
+        entries.remove(key);
+        return null;
+      }
+      return entry.result;
+    }
+  }
+
+  /**
+   * Returns a value that changes every time tiles are invalidated. It is read before querying a
+   * tile and handed back to {@link #put} so a result that raced with an ingest is not cached.
+   */
+  long getGeneration() {
+    synchronized (entries) {
+      return generation;
+    }
+  }
+
+  void put(Key key, TileBounds bounds, TileResult result, long queriedGeneration) {
+    if (!isEnabled()) {
+      return;
+    }
+
+    synchronized (entries) {
+      if (queriedGeneration != generation) {
+        return;
+      }
+      entries.put(key, new Entry(bounds, result, clock.getAsLong() + timeToLiveMillis));
+      evictEldestEntries();
+    }
+  }
+
+  void clear() {
+    synchronized (entries) {
+      generation++;
+      entries.clear();
+    }
+  }
+
+  int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private void evictEldestEntries() {
+    final Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+    while (entries.size() > Math.max(maxEntries, 0) && iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  @Override
+  public CreateResponse process(CreateResponse input) {
+    invalidate(input.getCreatedMetacards());
+    return input;
+  }
+
+  @Override
+  public UpdateResponse process(UpdateResponse input) {
+    final List<Metacard> metacards = new ArrayList<>();
+    for (Update update : input.getUpdatedMetacards()) {
+      metacards.add(update.getOldMetacard());
+      metacards.add(update.getNewMetacard());
+    }
+    invalidate(metacards);
+    return input;
+  }
+
+  @Override
+  public DeleteResponse process(DeleteResponse input) {
+    invalidate(input.getDeletedMetacards());
+    return input;
+  }
+
+  /** Removes the tiles that overlap the locations of the given metacards or that contain them. */
+  void invalidate(Collection<Metacard> metacards) {
+    if (metacards == null || metacards.isEmpty()) {
+      return;
+    }
+
+    final Set<String> ids = new HashSet<>();
+    final List<TileBounds> locations = new ArrayList<>();
+    for (Metacard metacard : metacards) {
+      if (metacard == null) {
+        continue;
+      }
+      ids.add(metacard.getId());
+      final TileBounds location = TileBounds.fromWkt(metacard.getLocation());
+      if (location != null) {
+        locations.add(location);
+      }
+    }
+
+    synchronized (entries) {
+      generation++;
+      final int before = entries.size();
+      entries.values().removeIf(entry -> entry.isAffectedBy(ids, locations));
+      LOGGER.trace("Invalidated {} KML tiles.", before - entries.size());
+    }
+  }
+
+  /** Identifies a cached tile. */
+  static final class Key {
+
+    private final String sourceId;
+
+    private final String quadKey;
+
+    private final String queryText;
+
+    private final int count;
+
+    private final String securityAttributes;
+
+    Key(String sourceId, String quadKey, String queryText, int count, String securityAttributes) {
+      this.sourceId = sourceId;
+      this.quadKey = quadKey;
+      this.queryText = queryText;
+      this.count = count;
+      this.securityAttributes = securityAttributes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final Key key = (Key) o;
+      return count == key.count
+          && Objects.equals(sourceId, key.sourceId)
+          && Objects.equals(quadKey, key.quadKey)
+          && Objects.equals(queryText, key.queryText)
+          && Objects.equals(securityAttributes, key.securityAttributes);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(sourceId, quadKey, queryText, count, securityAttributes);
+    }
+  }
+
+  /** The total number of hits in a tile and the features returned for it. */
+  static final class TileResult {
+
+    private final long hits;
+
+    private final List<TileFeature> features;
+
+    TileResult(long hits, List<TileFeature> features) {
+      this.hits = hits;
+      this.features = Collections.unmodifiableList(new ArrayList<>(features));
+    }
+
+    long getHits() {
+      return hits;
+    }
+
+    List<TileFeature> getFeatures() {
+      return features;
+    }
+  }
+
+  /**
+   * The parts of a metacard needed to draw it on a tile, along with its rendered {@link Placemark}
+   * if it could be transformed.
+   */
+  static final class TileFeature {
+
+    private final String id;
+
+    private final String title;
+
+    private final double longitude;
+
+    private final double latitude;
+
+    private final Placemark placemark;
+
+    TileFeature(String id, String title, double longitude, double latitude, Placemark placemark) {
+      this.id = id;
+      this.title = title;
+      this.longitude = longitude;
+      this.latitude = latitude;
+      this.placemark = placemark;
+    }
+
+    String getId() {
+      return id;
+    }
+
+    String getTitle() {
+      return title;
+    }
+
+    double getLongitude() {
+      return longitude;
+    }
+
+    double getLatitude() {
+      return latitude;
+    }
+
+    Placemark getPlacemark() {
+      return placemark;
+    }
+  }
+
+  private static final class Entry {
+
+    private final TileBounds bounds;
+
+    private final TileResult result;
+
+    private final long expiresAt;
+
+    private Entry(TileBounds bounds, TileResult result, long expiresAt) {
+      this.bounds = bounds;
+      this.result = result;
+      this.expiresAt = expiresAt;
+    }
+
+    private boolean isAffectedBy(Set<String> ids, List<TileBounds> locations) {
+      for (TileBounds location : locations) {
+        if (bounds.intersects(location)) {
+          return true;
+        }
+      }
+      for (TileFeature feature : result.getFeatures()) {
+        if (ids.contains(feature.getId())) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
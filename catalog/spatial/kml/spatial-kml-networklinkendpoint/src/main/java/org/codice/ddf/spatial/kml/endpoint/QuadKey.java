@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.kml.endpoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A tile in the Web Mercator quadtree, identified by its quadkey. Each character of a quadkey picks
+ * one of the four children of the previous tile, so a quadkey of length {@code n} is a tile at
+ * level {@code n} and the empty quadkey is the whole world.
+ */
+final class QuadKey {
+
+  static final int MAX_LEVEL = 23;
+
+  private static final double MAX_LATITUDE = 85.05112878;
+
+  private final String key;
+
+  private final int x;
+
+  private final int y;
+
+  private QuadKey(String key, int x, int y) {
+    this.key = key;
+    this.x = x;
+    this.y = y;
+  }
+
+  /**
+   * Parses a quadkey.
+   *
+   * @param key the quadkey, made of the digits 0 to 3
+   * @return the tile
+   * @throws IllegalArgumentException if {@code key} is not a valid quadkey
+   */
+  static QuadKey parse(String key) {
+    if (key == null || key.length() > MAX_LEVEL) {
+      throw new IllegalArgumentException("Invalid quadkey: " + key);
+    }
+
+    int x = 0;
+    int y = 0;
+    for (int i = 0; i < key.length(); i++) {
+      final char digit = key.charAt(i);
+      if (digit < '0' || digit > '3') {
+        throw new IllegalArgumentException("Invalid quadkey: " + key);
+      }
+      x = (x << 1) | ((digit - '0') & 1);
+      y = (y << 1) | ((digit - '0') >> 1);
+    }
+    return new QuadKey(key, x, y);
+  }
+
+  static QuadKey root() {
+    return new QuadKey("", 0, 0);
+  }
+
+  String getKey() {
+    return key;
+  }
+
+  int getLevel() {
+    return key.length();
+  }
+
+  List<QuadKey> getChildren() {
+    final List<QuadKey> children = new ArrayList<>(4);
+    for (int i = 0; i < 4; i++) {
+      children.add(new QuadKey(key + i, (x << 1) | (i & 1), (y << 1) | (i >> 1)));
+    }
+    return children;
+  }
+
+  TileBounds getBounds() {
+    final double tiles = 1L << getLevel();
+    final double west = x / tiles * 360.0 - 180.0;
+    final double east = (x + 1) / tiles * 360.0 - 180.0;
+    final double north = y == 0 ? MAX_LATITUDE : latitude(y / tiles);
+    final double south = y + 1 == tiles ? -MAX_LATITUDE : latitude((y + 1) / tiles);
+    return new TileBounds(west, south, east, north);
+  }
+
+  private static double latitude(double mercatorY) {
+    return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * mercatorY))));
+  }
+
+  @Override
+  public String toString() {
+    return key;
+  }
+}
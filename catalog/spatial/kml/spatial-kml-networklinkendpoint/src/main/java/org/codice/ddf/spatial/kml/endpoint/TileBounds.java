@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.kml.endpoint;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** A longitude/latitude bounding box. */
+final class TileBounds {
+
+  private static final Pattern NUMBER =
+      Pattern.compile("[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?");
+
+  private static final Pattern COORDINATE_SEPARATOR = Pattern.compile("[(),]");
+
+  private final double west;
+
+  private final double south;
+
+  private final double east;
+
+  private final double north;
+
+  TileBounds(double west, double south, double east, double north) {
+    this.west = west;
+    this.south = south;
+    this.east = east;
+    this.north = north;
+  }
+
+  /**
+   * Returns the bounds of the coordinates in the given WKT. Only the first two ordinates of each
+   * coordinate are used, so WKT with Z or M values is handled as well.
+   *
+   * @param wkt the WKT
+   * @return the bounds, or null if the WKT has no coordinates
+   */
+  static TileBounds fromWkt(String wkt) {
+    if (wkt == null) {
+      return null;
+    }
+
+    double west = Double.POSITIVE_INFINITY;
+    double south = Double.POSITIVE_INFINITY;
+    double east = Double.NEGATIVE_INFINITY;
+    double north = Double.NEGATIVE_INFINITY;
+    boolean found = false;
+
+    for (String coordinate : COORDINATE_SEPARATOR.split(wkt)) {
+      final Matcher matcher = NUMBER.matcher(coordinate);
+      if (!matcher.find()) {
+        continue;
+      }
+      final double lon = Double.parseDouble(matcher.group());
+      if (!matcher.find()) {
+        continue;
+      }
+      final double lat = Double.parseDouble(matcher.group());
+
+      west = Math.min(west, lon);
+      east = Math.max(east, lon);
+      south = Math.min(south, lat);
+      north = Math.max(north, lat);
+      found = true;
+    }
+
+    return found ? new TileBounds(west, south, east, north) : null;
+  }
+
+  double getWest() {
+    return west;
+  }
+
+  double getSouth() {
+    return south;
+  }
+
+  double getEast() {
+    return east;
+  }
+
+  double getNorth() {
+    return north;
+  }
+
+  double getCenterLongitude() {
+    return (west + east) / 2;
+  }
+
+  double getCenterLatitude() {
+    return (south + north) / 2;
+  }
+
+  boolean intersects(TileBounds other) {
+    return west <= other.east && other.west <= east && south <= other.north && other.south <= north;
+  }
+
+  /** Returns true if the point lies inside these bounds, including the west and south edges. */
+  boolean contains(double lon, double lat) {
+    return lon >= west && lon < east && lat >= south && lat < north;
+  }
+
+  String toWkt() {
+    return String.format(
+        "POLYGON ((%1$s %2$s, %3$s %2$s, %3$s %4$s, %1$s %4$s, %1$s %2$s))",
+        west, south, east, north);
+  }
+}
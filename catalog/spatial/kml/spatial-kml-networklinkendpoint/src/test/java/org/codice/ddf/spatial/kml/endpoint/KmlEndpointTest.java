@@ -15,31 +15,53 @@
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import ddf.catalog.CatalogFramework;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.data.impl.BinaryContentImpl;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.SourceInfoRequest;
 import ddf.catalog.operation.SourceInfoResponse;
+import ddf.catalog.operation.impl.QueryResponseImpl;
 import ddf.catalog.source.SourceDescriptor;
 import ddf.catalog.source.SourceUnavailableException;
 import ddf.catalog.source.impl.SourceDescriptorImpl;
+import ddf.catalog.transform.CatalogTransformerException;
+import ddf.catalog.transform.MetacardTransformer;
+import de.micromata.opengis.kml.v_2_2_0.Document;
+import de.micromata.opengis.kml.v_2_2_0.Feature;
 import de.micromata.opengis.kml.v_2_2_0.Folder;
 import de.micromata.opengis.kml.v_2_2_0.Kml;
 import de.micromata.opengis.kml.v_2_2_0.Link;
 import de.micromata.opengis.kml.v_2_2_0.NetworkLink;
+import de.micromata.opengis.kml.v_2_2_0.Placemark;
+import de.micromata.opengis.kml.v_2_2_0.ViewRefreshMode;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MultivaluedMap;
@@ -208,6 +230,156 @@ public void testGetAvailableSourcesWithCount()
     assertThat(nl2.getLink().getHttpQuery(), is("count=250"));
   }
 
+  @Test
+  public void testGetAvailableSourcesTiled() {
+    KmlEndpoint kmlEndpoint = new KmlEndpoint(mockBranding, mockFramework);
+    kmlEndpoint.setTiledNetworkLinks(true);
+    Kml response = kmlEndpoint.getAvailableSources(mockUriInfo);
+    Folder folder = (Folder) response.getFeature();
+    NetworkLink networkLink = (NetworkLink) folder.getFeature().get(0);
+    URI uri = UriBuilder.fromUri(networkLink.getLink().getHref()).build();
+    assertThat(uri.getPath(), is("/services/catalog/kml/tiles/" + networkLink.getName()));
+  }
+
+  @Test
+  public void testGetAvailableSourcesViewBased() {
+    KmlEndpoint kmlEndpoint = new KmlEndpoint(mockBranding, mockFramework);
+    kmlEndpoint.setTiledNetworkLinks(false);
+    Kml response = kmlEndpoint.getAvailableSources(mockUriInfo);
+    Folder folder = (Folder) response.getFeature();
+    NetworkLink networkLink = (NetworkLink) folder.getFeature().get(0);
+    URI uri = UriBuilder.fromUri(networkLink.getLink().getHref()).build();
+    assertThat(uri.getPath(), is("/services/catalog/query"));
+    assertThat(networkLink.getLink().getViewRefreshMode(), is(ViewRefreshMode.ON_STOP));
+  }
+
+  @Test
+  public void testGetRootTile() {
+    KmlEndpoint kmlEndpoint = new KmlEndpoint(mockBranding, mockFramework);
+    Kml response = kmlEndpoint.getRootTile(mockUriInfo, LOCAL_SITE_NAME, "foo bar", 10);
+    Document document = (Document) response.getFeature();
+    assertThat(document.getFeature().size(), is(4));
+    NetworkLink networkLink = (NetworkLink) document.getFeature().get(3);
+    assertThat(networkLink.getRegion().getLod().getMinLodPixels(), is(256.0));
+    assertThat(networkLink.getLink().getViewRefreshMode(), is(ViewRefreshMode.ON_REGION));
+    URI uri = UriBuilder.fromUri(networkLink.getLink().getHref()).build();
+    assertThat(uri.getPath(), is("/services/catalog/kml/tiles/" + LOCAL_SITE_NAME + "/3"));
+    assertThat(uri.getQuery(), containsString("q=foo bar"));
+    assertThat(uri.getQuery(), containsString("count=10"));
+  }
+
+  @Test
+  public void testGetTileListsPlacemarks() throws Exception {
+    CatalogFramework framework = mockQueryFramework(2, point(10, 10), point(-10, 10));
+    KmlEndpoint kmlEndpoint = new KmlEndpoint(mockBranding, framework);
+    kmlEndpoint.setFilterBuilder(mock(FilterBuilder.class, RETURNS_DEEP_STUBS));
+
+    Kml response = kmlEndpoint.getTile(mockUriInfo, LOCAL_SITE_NAME, "1", null, 10);
+    kmlEndpoint.getTile(mockUriInfo, LOCAL_SITE_NAME, "1", null, 10);
+
+    Document document = (Document) response.getFeature();
+    assertThat(document.getFeature().size(), is(1));
+    assertThat(document.getFeature().get(0), instanceOf(Placemark.class));
+    assertThat(document.getFeature().get(0).getId(), is("10.0,10.0"));
+    verify(framework, times(1)).query(any(QueryRequest.class));
+  }
+
+  @Test
+  public void testGetTileRendersPlacemarksWithTransformer() throws Exception {
+    CatalogFramework framework = mockQueryFramework(1, point(10, 10));
+    MetacardTransformer transformer = mock(MetacardTransformer.class);
+    when(transformer.transform(any(Metacard.class), any(Map.class)))
+        .thenReturn(
+            new BinaryContentImpl(
+                IOUtils.toInputStream(
+                    "<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Placemark id=\"Placemark-10.0,10.0\">"
+                        + "<description>A description</description><styleUrl>#style</styleUrl>"
+                        + "<Point><coordinates>10.0,10.0</coordinates></Point></Placemark></kml>",
+                    StandardCharsets.UTF_8)));
+    KmlEndpoint kmlEndpoint = new KmlEndpoint(mockBranding, framework);
+    kmlEndpoint.setFilterBuilder(mock(FilterBuilder.class, RETURNS_DEEP_STUBS));
+    kmlEndpoint.setKmlTransformers(Collections.singletonList(transformer));
+
+    Kml response = kmlEndpoint.getTile(mockUriInfo, LOCAL_SITE_NAME, "1", null, 10);
+
+    Document document = (Document) response.getFeature();
+    assertThat(document.getFeature().size(), is(1));
+    Placemark placemark = (Placemark) document.getFeature().get(0);
+    assertThat(placemark.getId(), is("Placemark-10.0,10.0"));
+    assertThat(placemark.getDescription(), is("A description"));
+    assertThat(placemark.getStyleUrl(), is("#style"));
+  }
+
+  @Test
+  public void testGetTileFallsBackWhenTransformerFails() throws Exception {
+    CatalogFramework framework = mockQueryFramework(1, point(10, 10));
+    MetacardTransformer transformer = mock(MetacardTransformer.class);
+    when(transformer.transform(any(Metacard.class), any(Map.class)))
+        .thenThrow(new CatalogTransformerException("failed"));
+    KmlEndpoint kmlEndpoint = new KmlEndpoint(mockBranding, framework);
+    kmlEndpoint.setFilterBuilder(mock(FilterBuilder.class, RETURNS_DEEP_STUBS));
+    kmlEndpoint.setKmlTransformers(Collections.singletonList(transformer));
+
+    Kml response = kmlEndpoint.getTile(mockUriInfo, LOCAL_SITE_NAME, "1", null, 10);
+
+    Document document = (Document) response.getFeature();
+    assertThat(document.getFeature().size(), is(1));
+    assertThat(document.getFeature().get(0).getId(), is("10.0,10.0"));
+  }
+
+  @Test
+  public void testGetDenseTileIsClustered() throws Exception {
+    CatalogFramework framework = mockQueryFramework(1000, point(10, 10), point(100, 50));
+    KmlEndpoint kmlEndpoint = new KmlEndpoint(mockBranding, framework);
+    kmlEndpoint.setFilterBuilder(mock(FilterBuilder.class, RETURNS_DEEP_STUBS));
+
+    Kml response = kmlEndpoint.getTile(mockUriInfo, LOCAL_SITE_NAME, "1", null, 2);
+
+    Document document = (Document) response.getFeature();
+    assertThat(document.getFeature().size(), is(5));
+    Folder clusters = (Folder) document.getFeature().get(0);
+    assertThat(clusters.getRegion().getLod().getMaxLodPixels(), is(512.0));
+    assertThat(clusters.getFeature().size(), is(2));
+    for (Feature cluster : clusters.getFeature()) {
+      assertThat(cluster.getName(), is("500"));
+    }
+    NetworkLink networkLink = (NetworkLink) document.getFeature().get(1);
+    URI uri = UriBuilder.fromUri(networkLink.getLink().getHref()).build();
+    assertThat(uri.getPath(), is("/services/catalog/kml/tiles/" + LOCAL_SITE_NAME + "/10"));
+    assertThat(uri.getQuery(), is("count=2"));
+  }
+
+  @Test
+  public void testGetDenseTileAtMaxLevelListsPlacemarks() throws Exception {
+    CatalogFramework framework = mockQueryFramework(1000, point(10, 10), point(100, 50));
+    KmlEndpoint kmlEndpoint = new KmlEndpoint(mockBranding, framework);
+    kmlEndpoint.setFilterBuilder(mock(FilterBuilder.class, RETURNS_DEEP_STUBS));
+    kmlEndpoint.setMaxTileLevel(1);
+
+    Kml response = kmlEndpoint.getTile(mockUriInfo, LOCAL_SITE_NAME, "1", null, 2);
+
+    Document document = (Document) response.getFeature();
+    assertThat(document.getFeature().size(), is(2));
+    assertThat(document.getFeature().get(1), instanceOf(Placemark.class));
+  }
+
+  private static CatalogFramework mockQueryFramework(long hits, Result... results)
+      throws Exception {
+    CatalogFramework framework = mock(CatalogFramework.class);
+    List<Result> resultList = new ArrayList<>();
+    Collections.addAll(resultList, results);
+    when(framework.query(any(QueryRequest.class)))
+        .thenReturn(new QueryResponseImpl(null, resultList, hits));
+    return framework;
+  }
+
+  private static Result point(double lon, double lat) {
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setId(lon + "," + lat);
+    metacard.setLocation("POINT (" + lon + " " + lat + ")");
+    return new ResultImpl(metacard);
+  }
+
   /** Tests setting the icon directory location */
   @Test
   public void testGetIconLocation() {
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.kml.endpoint;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.DeleteResponse;
+import ddf.catalog.operation.Update;
+import ddf.catalog.operation.UpdateResponse;
+import ddf.catalog.operation.impl.UpdateImpl;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codice.ddf.spatial.kml.endpoint.KmlTileCache.Key;
+import org.codice.ddf.spatial.kml.endpoint.KmlTileCache.TileFeature;
+import org.codice.ddf.spatial.kml.endpoint.KmlTileCache.TileResult;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KmlTileCacheTest {
+
+  private static final QuadKey EAST_TILE = QuadKey.parse("1");
+
+  private static final QuadKey WEST_TILE = QuadKey.parse("0");
+
+  private final AtomicLong now = new AtomicLong();
+
+  private KmlTileCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new KmlTileCache();
+    cache.setClock(now::get);
+  }
+
+  @Test
+  public void testGet() {
+    Key key = put(EAST_TILE, "id1", 10, 10);
+
+    assertThat(cache.get(key), notNullValue());
+    assertThat(cache.get(key).getHits(), is(1L));
+    assertThat(cache.get(key(EAST_TILE, "other")), nullValue());
+  }
+
+  @Test
+  public void testExpiredEntry() {
+    cache.setTimeToLiveSeconds(60);
+    Key key = put(EAST_TILE, "id1", 10, 10);
+
+    now.set(60_000);
+
+    assertThat(cache.get(key), nullValue());
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntryIsEvicted() {
+    cache.setMaxEntries(2);
+    Key first = put(EAST_TILE, "id1", 10, 10);
+    Key second = put(WEST_TILE, "id2", -10, 10);
+    cache.get(first);
+
+    Key third = put(QuadKey.parse("2"), "id3", -10, -10);
+
+    assertThat(cache.get(first), notNullValue());
+    assertThat(cache.get(second), nullValue());
+    assertThat(cache.get(third), notNullValue());
+  }
+
+  @Test
+  public void testDisabled() {
+    cache.setTimeToLiveSeconds(0);
+    Key key = put(EAST_TILE, "id1", 10, 10);
+
+    assertThat(cache.get(key), nullValue());
+  }
+
+  @Test
+  public void testResultQueriedBeforeInvalidationIsNotCached() {
+    long generation = cache.getGeneration();
+    cache.invalidate(Collections.singletonList(metacard("id1", "POINT (10 10)")));
+
+    cache.put(
+        key(EAST_TILE, ""),
+        EAST_TILE.getBounds(),
+        new TileResult(0, Collections.emptyList()),
+        generation);
+
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test
+  public void testCreateInvalidatesIntersectingTiles() {
+    Key east = put(EAST_TILE, "id1", 10, 10);
+    Key west = put(WEST_TILE, "id2", -10, 10);
+    CreateResponse response = mock(CreateResponse.class);
+    when(response.getCreatedMetacards())
+        .thenReturn(Collections.singletonList(metacard("id3", "POINT (20 20)")));
+
+    cache.process(response);
+
+    assertThat(cache.get(east), nullValue());
+    assertThat(cache.get(west), notNullValue());
+  }
+
+  @Test
+  public void testUpdateInvalidatesOldAndNewLocations() {
+    Key east = put(EAST_TILE, "id1", 10, 10);
+    Key west = put(WEST_TILE, "id2", -10, 10);
+    Key south = put(QuadKey.parse("2"), "id3", -10, -10);
+    Update update =
+        new UpdateImpl(metacard("id1", "POINT (-20 20)"), metacard("id1", "POINT (10 10)"));
+    UpdateResponse response = mock(UpdateResponse.class);
+    when(response.getUpdatedMetacards()).thenReturn(Collections.singletonList(update));
+
+    cache.process(response);
+
+    assertThat(cache.get(east), nullValue());
+    assertThat(cache.get(west), nullValue());
+    assertThat(cache.get(south), notNullValue());
+  }
+
+  @Test
+  public void testDeleteWithoutLocationInvalidatesTilesContainingMetacard() {
+    Key east = put(EAST_TILE, "id1", 10, 10);
+    Key west = put(WEST_TILE, "id2", -10, 10);
+    DeleteResponse response = mock(DeleteResponse.class);
+    when(response.getDeletedMetacards())
+        .thenReturn(Collections.singletonList(metacard("id1", null)));
+
+    cache.process(response);
+
+    assertThat(cache.get(east), nullValue());
+    assertThat(cache.get(west), notNullValue());
+  }
+
+  private Key put(QuadKey tile, String id, double lon, double lat) {
+    Key key = key(tile, "");
+    cache.put(
+        key,
+        tile.getBounds(),
+        new TileResult(1, Collections.singletonList(new TileFeature(id, id, lon, lat, null))),
+        cache.getGeneration());
+    return key;
+  }
+
+  private static Key key(QuadKey tile, String queryText) {
+    return new Key("source", tile.getKey(), queryText, 100, "");
+  }
+
+  private static Metacard metacard(String id, String location) {
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setId(id);
+    metacard.setLocation(location);
+    return metacard;
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.kml.endpoint;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.List;
+import org.junit.Test;
+
+public class QuadKeyTest {
+
+  private static final double DELTA = 0.000001;
+
+  @Test
+  public void testRootBounds() {
+    TileBounds bounds = QuadKey.root().getBounds();
+
+    assertThat(bounds.getWest(), is(-180.0));
+    assertThat(bounds.getEast(), is(180.0));
+    assertThat(bounds.getNorth(), closeTo(85.05112878, DELTA));
+    assertThat(bounds.getSouth(), closeTo(-85.05112878, DELTA));
+  }
+
+  @Test
+  public void testBounds() {
+    TileBounds bounds = QuadKey.parse("12").getBounds();
+
+    assertThat(bounds.getWest(), is(0.0));
+    assertThat(bounds.getEast(), is(90.0));
+    assertThat(bounds.getSouth(), is(0.0));
+    assertThat(bounds.getNorth(), closeTo(66.51326044, DELTA));
+  }
+
+  @Test
+  public void testChildren() {
+    List<QuadKey> children = QuadKey.parse("3").getChildren();
+
+    assertThat(children.size(), is(4));
+    assertThat(children.get(2).getKey(), is("32"));
+    assertThat(children.get(2).getLevel(), is(2));
+    assertThat(children.get(2).getBounds().getWest(), is(0.0));
+    assertThat(children.get(2).getBounds().getSouth(), closeTo(-85.05112878, DELTA));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseInvalidDigit() {
+    QuadKey.parse("014");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseTooDeep() {
+    QuadKey.parse("000000000000000000000000");
+  }
+
+  @Test
+  public void testBoundsFromWkt() {
+    TileBounds bounds = TileBounds.fromWkt("POLYGON ((1 2, 3 -4, -5 6 7, 1 2))");
+
+    assertThat(bounds.getWest(), is(-5.0));
+    assertThat(bounds.getEast(), is(3.0));
+    assertThat(bounds.getSouth(), is(-4.0));
+    assertThat(bounds.getNorth(), is(6.0));
+    assertThat(bounds.intersects(QuadKey.parse("2").getBounds()), is(true));
+    assertThat(bounds.contains(3, 6), is(false));
+  }
+
+  @Test
+  public void testBoundsFromEmptyWkt() {
+    assertThat(TileBounds.fromWkt("POINT EMPTY"), nullValue());
+  }
+}
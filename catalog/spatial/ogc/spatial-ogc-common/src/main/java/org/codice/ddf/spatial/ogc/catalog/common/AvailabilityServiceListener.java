@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.spatial.ogc.catalog.common;
+
+import ddf.catalog.source.SourceAvailabilityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reference listener for the {@link SourceAvailabilityService} that keeps the {@link
+ * AvailabilityTask}s of a bundle registered with the service while it is available, including when
+ * it is only registered after the sources or is restarted.
+ */
+public class AvailabilityServiceListener {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AvailabilityServiceListener.class);
+
+  public void bind(SourceAvailabilityService availabilityService) {
+    if (availabilityService != null) {
+      LOGGER.debug("Registering the availability tasks with the source availability service");
+      AvailabilityTask.registerAll(availabilityService);
+    }
+  }
+
+  public void unbind(SourceAvailabilityService availabilityService) {
+    LOGGER.debug("Source availability service is gone, sources will check their own availability");
+    AvailabilityTask.closeAll();
+  }
+}
@@ -13,6 +13,9 @@
  */
 package org.codice.ddf.spatial.ogc.catalog.common;
 
+import ddf.catalog.source.SourceAvailabilityService;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,7 +23,8 @@
 /**
  * Runnable task to cache and update the availability based on the {@link AvailabilityCommand}.
  * NOTE: It is ideal to run this on a short interval (1 second) to maintain an accurate status of
- * the availability.
+ * the availability. While the task is {@link #register(SourceAvailabilityService) registered} with
+ * the shared availability service, the service checks the source and running the task does nothing.
  *
  * @author kcwire
  */
@@ -32,7 +36,10 @@ public class AvailabilityTask implements Runnable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AvailabilityTask.class);
 
-  private boolean isAvailable = false;
+  /** The tasks that use the availability service whenever it is available. */
+  private static final Set<AvailabilityTask> REGISTERED_TASKS = ConcurrentHashMap.newKeySet();
+
+  private volatile boolean isAvailable = false;
 
   private AtomicLong lastAvailableTimestamp = new AtomicLong(0);
 
@@ -42,6 +49,8 @@ public class AvailabilityTask implements Runnable {
 
   private String sourceId;
 
+  private volatile SourceAvailabilityService.Registration registration;
+
   /**
    * Default Constructor
    *
@@ -61,10 +70,81 @@ public AvailabilityTask(long interval, AvailabilityCommand command, String id) {
    */
   @Override
   public void run() {
-    if ((System.currentTimeMillis() - lastAvailableTimestamp.get()) >= interval) {
-      isAvailable = availabilityCommand.isAvailable();
-      LOGGER.debug("Source: {} -> isAvailable = {} ", sourceId, isAvailable);
-      updateLastAvailableTimestamp(System.currentTimeMillis());
+    if (registration == null
+        && (System.currentTimeMillis() - lastAvailableTimestamp.get()) >= interval) {
+      check();
+    }
+  }
+
+  private boolean check() {
+    isAvailable = availabilityCommand.isAvailable();
+    LOGGER.debug("Source: {} -> isAvailable = {} ", sourceId, isAvailable);
+    lastAvailableTimestamp.set(System.currentTimeMillis());
+    return isAvailable;
+  }
+
+  /**
+   * Hands the periodic checks over to the shared {@link SourceAvailabilityService}. The first check
+   * through the service runs one interval from now, so the task should have been {@link #run()}
+   * right before.
+   *
+   * <p>The task should still be scheduled as described above. It checks the source itself whenever
+   * the service is not available, and is registered again by the {@link
+   * AvailabilityServiceListener} when the service comes back.
+   *
+   * @param availabilityService the service to register with
+   * @return {@code false} if the service is not available
+   */
+  public boolean register(SourceAvailabilityService availabilityService) {
+    REGISTERED_TASKS.add(this);
+    closeRegistration();
+    try {
+      registration = availabilityService.register(sourceId, interval, interval, this::check);
+      return true;
+    } catch (RuntimeException e) {
+      LOGGER.debug(
+          "The source availability service is not available, source {} will schedule its own checks.",
+          sourceId,
+          e);
+      return false;
+    }
+  }
+
+  /** Stops the checks started by {@link #register(SourceAvailabilityService)}, if any. */
+  public void unregister() {
+    REGISTERED_TASKS.remove(this);
+    closeRegistration();
+  }
+
+  private void closeRegistration() {
+    SourceAvailabilityService.Registration current = registration;
+    registration = null;
+    if (current != null) {
+      current.close();
+    }
+  }
+
+  /** Registers every registered task again with a new instance of the service. */
+  static void registerAll(SourceAvailabilityService availabilityService) {
+    REGISTERED_TASKS.forEach(task -> task.register(availabilityService));
+  }
+
+  /**
+   * Drops the registrations with a service that went away, so that the tasks check their sources
+   * themselves until it comes back.
+   */
+  static void closeAll() {
+    REGISTERED_TASKS.forEach(AvailabilityTask::closeRegistration);
+  }
+
+  /**
+   * Reports that a request to the source could not reach it, so that a registered task checks the
+   * source again soon.
+   */
+  public void reportFailure() {
+    SourceAvailabilityService.Registration current = registration;
+    if (current != null) {
+      current.reportFailure();
     }
   }
 
@@ -81,6 +161,10 @@ public boolean isAvailable() {
   public void updateLastAvailableTimestamp(long timestamp) {
     LOGGER.debug("Updating Availability poll interval timestamp for {}", sourceId);
     lastAvailableTimestamp.compareAndSet(lastAvailableTimestamp.get(), timestamp);
+    SourceAvailabilityService.Registration current = registration;
+    if (current != null && timestamp > 0) {
+      current.reportSuccess();
+    }
   }
 
   /**
@@ -90,5 +174,9 @@ public void updateLastAvailableTimestamp(long timestamp) {
    */
   public void setInterval(long interval) {
     this.interval = interval;
+    SourceAvailabilityService.Registration current = registration;
+    if (current != null) {
+      current.setPollInterval(interval);
+    }
   }
 }
@@ -13,12 +13,20 @@
  */
 package org.codice.ddf.spatial.ogc.catalog.common;
 
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.internal.verification.VerificationModeFactory.atMost;
 
+import ddf.catalog.source.SourceAvailabilityService;
+import java.util.function.BooleanSupplier;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -33,6 +41,11 @@ public void setUp() {
     when(mockCommand.isAvailable()).thenReturn(true);
   }
 
+  @After
+  public void tearDown() {
+    task.unregister();
+  }
+
   @Test
   public void testRunFirstTime() {
     task.run();
@@ -52,4 +65,70 @@ public void testRunIntervalElapsed() {
     task.run();
     verify(mockCommand, atMost(1)).isAvailable();
   }
+
+  @Test
+  public void testRegisteredTaskReportsRequestOutcomes() {
+    SourceAvailabilityService service = mock(SourceAvailabilityService.class);
+    SourceAvailabilityService.Registration registration =
+        mock(SourceAvailabilityService.Registration.class);
+    when(service.register(anyString(), eq(1000L), eq(1000L), any(BooleanSupplier.class)))
+        .thenReturn(registration);
+
+    assertThat(task.register(service), is(true));
+    task.updateLastAvailableTimestamp(System.currentTimeMillis());
+    task.reportFailure();
+    task.setInterval(2000);
+    task.unregister();
+
+    verify(registration).reportSuccess();
+    verify(registration).reportFailure();
+    verify(registration).setPollInterval(2000);
+    verify(registration).close();
+  }
+
+  @Test
+  public void testRegisterWithUnavailableService() {
+    SourceAvailabilityService service = mock(SourceAvailabilityService.class);
+    when(service.register(anyString(), eq(1000L), eq(1000L), any(BooleanSupplier.class)))
+        .thenThrow(new IllegalStateException("service unavailable"));
+
+    assertThat(task.register(service), is(false));
+    task.reportFailure();
+    task.unregister();
+  }
+
+  @Test
+  public void testRegisteredTaskDoesNotCheckItself() {
+    SourceAvailabilityService service = mock(SourceAvailabilityService.class);
+    when(service.register(anyString(), eq(1000L), eq(1000L), any(BooleanSupplier.class)))
+        .thenReturn(mock(SourceAvailabilityService.Registration.class));
+
+    task.register(service);
+    task.run();
+
+    verify(mockCommand, never()).isAvailable();
+  }
+
+  @Test
+  public void testTaskFollowsTheAvailabilityService() {
+    SourceAvailabilityService unavailable = mock(SourceAvailabilityService.class);
+    when(unavailable.register(anyString(), eq(1000L), eq(1000L), any(BooleanSupplier.class)))
+        .thenThrow(new IllegalStateException("service unavailable"));
+    SourceAvailabilityService service = mock(SourceAvailabilityService.class);
+    SourceAvailabilityService.Registration registration =
+        mock(SourceAvailabilityService.Registration.class);
+    when(service.register(anyString(), eq(1000L), eq(1000L), any(BooleanSupplier.class)))
+        .thenReturn(registration);
+    AvailabilityServiceListener listener = new AvailabilityServiceListener();
+
+    assertThat(task.register(unavailable), is(false));
+    listener.bind(service);
+    task.run();
+    verify(mockCommand, never()).isAvailable();
+
+    listener.unbind(service);
+    verify(registration).close();
+    task.run();
+    verify(mockCommand).isAvailable();
+  }
 }
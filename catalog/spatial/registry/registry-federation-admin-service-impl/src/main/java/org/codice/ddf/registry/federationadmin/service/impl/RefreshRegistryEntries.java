@@ -21,15 +21,20 @@
 import ddf.catalog.operation.SourceResponse;
 import ddf.catalog.operation.impl.QueryImpl;
 import ddf.catalog.operation.impl.QueryRequestImpl;
+import ddf.catalog.source.UnsupportedQueryException;
 import ddf.security.SecurityConstants;
 import java.io.Serializable;
 import java.security.PrivilegedActionException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
@@ -80,6 +85,11 @@ public class RefreshRegistryEntries {
 
   private int refreshIntervalSeconds = 30;
 
+  private long fullSyncIntervalSeconds = 600;
+
+  /** Maps the registry-id of each store to what was retrieved from it by previous refreshes */
+  private final Map<String, StoreState> storeStates = new ConcurrentHashMap<>();
+
   private Future scheduledTask;
 
   private Security security;
@@ -116,6 +126,13 @@ public void init() {
    * be accessed through a camel route and should avoid elevating privileges for any other service
    * or being exposed to any other endpoint.
    *
+   * <p>Each store is queried in parallel and only for the entries modified since the last entry
+   * seen from that store. Every {@link #setFullSyncIntervalSeconds(long) full sync interval} the
+   * number of entries in a store is compared with the number of entries seen from it. Only when
+   * they differ, meaning entries were removed from the remote registry, is the store queried for
+   * all of its entries. A store whose query or local writes fail keeps its previous state and does
+   * not affect the other stores.
+   *
    * @throws FederationAdminException
    */
   public void refreshRegistryEntries() throws FederationAdminException, InterruptedException {
@@ -124,61 +141,72 @@ public void refreshRegistryEntries() throws FederationAdminException, Interrupte
       return;
     }
 
-    RemoteRegistryResults remoteResults = getRemoteRegistryMetacardsMap();
-    Map<String, Metacard> remoteRegistryMetacardsMap = remoteResults.getRemoteRegistryMetacards();
+    List<RemoteResult> remoteResults = getRemoteRegistryResults();
     Map<String, Metacard> registryMetacardsMap = getRegistryMetacardsMap();
 
-    if (LOGGER.isDebugEnabled() && !remoteResults.getFailureList().isEmpty()) {
-      LOGGER.debug(
-          "Failed to query the following registry stores: {}",
-          String.join(",", remoteResults.getFailureList()));
+    // Maps registry-id to a list of local metacards that came from that registry
+    Map<String, List<Metacard>> localRegistryToMetacardMap =
+        getMetacardRegistryIdMap(registryMetacardsMap.values());
+    Set<String> processedRemoteIds = new HashSet<>();
+
+    for (RemoteResult remoteResult : remoteResults) {
+      String regId = remoteResult.getRegistryId();
+      try {
+        applyRemoteResult(
+            remoteResult, registryMetacardsMap, localRegistryToMetacardMap, processedRemoteIds);
+        storeStates.put(
+            regId,
+            new StoreState(
+                remoteResult.getHighWaterMark(),
+                remoteResult.getLastFullSync(),
+                remoteResult.getRetrievedIds()));
+      } catch (FederationAdminException e) {
+        LOGGER.warn(
+            "Unable to apply registry entries from {}. All of its entries will be retrieved on the next refresh.",
+            regId,
+            e);
+        storeStates.remove(regId);
+      }
     }
+  }
+
+  private void applyRemoteResult(
+      RemoteResult remoteResult,
+      Map<String, Metacard> registryMetacardsMap,
+      Map<String, List<Metacard>> localRegistryToMetacardMap,
+      Set<String> processedRemoteIds)
+      throws FederationAdminException {
+    String regId = remoteResult.getRegistryId();
+    Map<String, Metacard> remoteRegistryMetacardsMap = remoteResult.getRemoteRegistryMetacards();
 
     List<Metacard> remoteMetacardsToUpdate = new ArrayList<>();
     List<Metacard> remoteMetacardsToCreate = new ArrayList<>();
     List<Metacard> remoteMetacardsToDelete = new ArrayList<>();
 
-    // Maps registry-id to a list of metacards that came from that registry
-    Map<String, List<Metacard>> remoteRegistryToMetacardMap =
-        getMetacardRegistryIdMap(remoteRegistryMetacardsMap.values());
-    Map<String, List<Metacard>> localRegistryToMetacardMap =
-        getMetacardRegistryIdMap(registryMetacardsMap.values());
-
-    // Loop through all the registry-ids of the stores queried and find any local internal
-    // representation metacards that need to be deleted
-    for (String regId : remoteResults.getRegistryStoresQueried()) {
+    // Entries can only be found to be missing when all of the store's entries were retrieved. If we
+    // don't have any metacards from the store locally there is nothing to delete.
+    if (remoteResult.isFullSync() && localRegistryToMetacardMap.containsKey(regId)) {
       LOGGER.trace("Checking for registry entries from {} that need to be removed", regId);
-      // If we failed to query a store or we don't have any metacards from the store locally
-      // skip to the next store since we can't determine if we need to delete anything
-      if (!localRegistryToMetacardMap.containsKey(regId)
-          || remoteResults.getFailureList().contains(regId)) {
-        LOGGER.trace(
-            "No local registry entries for {} or there was a failure querying the remote registry",
-            regId);
-        continue;
-      }
-
-      if (remoteRegistryToMetacardMap.containsKey(regId)) {
-        // delete all metacards that are found locally that came from the given
-        // registry that no longer exist on the remote registry
-        remoteMetacardsToDelete.addAll(
-            localRegistryToMetacardMap
-                .get(regId)
-                .stream()
-                .filter(e -> shouldDelete(e, remoteRegistryToMetacardMap.get(regId)))
-                .collect(Collectors.toList()));
-      } else {
-        // remote registry is returning no results so delete all local metacards from that registry
-        LOGGER.trace(
-            "Remote registry {} returned 0 registry entries. Scheduling all local entries from this registry for removal.",
-            regId);
-        remoteMetacardsToDelete.addAll(localRegistryToMetacardMap.get(regId));
-      }
+      // delete all metacards that are found locally that came from the given
+      // registry that no longer exist on the remote registry
+      remoteMetacardsToDelete.addAll(
+          localRegistryToMetacardMap
+              .get(regId)
+              .stream()
+              .filter(e -> shouldDelete(e, remoteRegistryMetacardsMap.keySet()))
+              .collect(Collectors.toList()));
     }
 
     // Loop through all the remote entries returned and determine if they need to be
     // created or updated locally
     for (Map.Entry<String, Metacard> remoteEntry : remoteRegistryMetacardsMap.entrySet()) {
+      if (!processedRemoteIds.add(remoteEntry.getKey())) {
+        LOGGER.trace(
+            "Skipping {}:{} because it was already returned by another registry.",
+            remoteEntry.getValue().getTitle(),
+            remoteEntry.getKey());
+        continue;
+      }
       if (registryMetacardsMap.containsKey(remoteEntry.getKey())) {
         Metacard existingMetacard = registryMetacardsMap.get(remoteEntry.getKey());
         // If it isn't a local node and it is newer that our current internal representation update
@@ -208,33 +236,35 @@ public void refreshRegistryEntries() throws FederationAdminException, Interrupte
 
     if (CollectionUtils.isNotEmpty(remoteMetacardsToUpdate)) {
       LOGGER.debug(
-          "Registry subscriptions found {} registry entries that need to be updated",
-          remoteMetacardsToUpdate.size());
+          "Registry subscriptions found {} registry entries from {} that need to be updated",
+          remoteMetacardsToUpdate.size(),
+          regId);
       logRegistryMetacards("Registry metacards to be updated", remoteMetacardsToUpdate);
       writeRemoteUpdates(remoteMetacardsToUpdate);
     }
     if (CollectionUtils.isNotEmpty(remoteMetacardsToCreate)) {
       LOGGER.debug(
-          "Registry subscriptions found {} registry entries that need to be created",
-          remoteMetacardsToCreate.size());
+          "Registry subscriptions found {} registry entries from {} that need to be created",
+          remoteMetacardsToCreate.size(),
+          regId);
       logRegistryMetacards("Registry metacards to be created", remoteMetacardsToCreate);
       createRemoteEntries(remoteMetacardsToCreate);
     }
     if (enableDelete && !remoteMetacardsToDelete.isEmpty()) {
       LOGGER.debug(
-          "Registry subscriptions found {} registry entries that need to be deleted",
-          remoteMetacardsToDelete.size());
+          "Registry subscriptions found {} registry entries from {} that need to be deleted",
+          remoteMetacardsToDelete.size(),
+          regId);
       logRegistryMetacards("Registry metacards to be deleted", remoteMetacardsToDelete);
       deleteRemoteEntries(remoteMetacardsToDelete);
     }
   }
 
-  private boolean shouldDelete(Metacard local, List<Metacard> remoteMetacards) {
+  private boolean shouldDelete(Metacard local, Set<String> remoteMetacardIds) {
     String id =
         RegistryUtility.getStringAttribute(
             local, RegistryObjectMetacardType.REMOTE_METACARD_ID, "");
-    boolean delete =
-        !remoteMetacards.stream().filter(e -> e.getId().equals(id)).findFirst().isPresent();
+    boolean delete = !remoteMetacardIds.contains(id);
     if (delete) {
       LOGGER.trace(
           "{}: {} is no longer available from {}. Scheduling it for deletion",
@@ -285,17 +315,20 @@ private Map<String, Metacard> getRegistryMetacardsMap() throws FederationAdminEx
   }
 
   /** Directly queries the stores without going through the catalog framework */
-  private RemoteRegistryResults getRemoteRegistryMetacardsMap()
+  private List<RemoteResult> getRemoteRegistryResults()
       throws FederationAdminException, InterruptedException {
-    Map<String, Metacard> remoteRegistryMetacards = new HashMap<>();
     List<String> failedQueries = new ArrayList<>();
-    List<String> storesQueried = new ArrayList<>();
     List<String> localMetacardRegIds = getLocalRegistryIds();
 
     Map<String, Serializable> queryProps = new HashMap<>();
     queryProps.put(
         SecurityConstants.SECURITY_SUBJECT, security.runAsAdmin(() -> security.getSystemSubject()));
 
+    storeStates
+        .keySet()
+        .retainAll(
+            registryStores.stream().map(RegistryStore::getRegistryId).collect(Collectors.toSet()));
+
     LOGGER.debug("Querying {} remote registries", registryStores.size());
     // Create the remote query task to be run.
     List<Callable<RemoteResult>> tasks = new ArrayList<>();
@@ -305,39 +338,106 @@ private RemoteRegistryResults getRemoteRegistryMetacardsMap()
             "Skipping store {} because pull is disabled or it is unavailable", store.getId());
         continue;
       }
-      storesQueried.add(store.getRegistryId());
-      tasks.add(
-          () -> {
-            SourceResponse response =
-                store.query(new QueryRequestImpl(getBasicRegistryQuery(), queryProps));
-            Map<String, Metacard> results =
-                response
-                    .getResults()
-                    .stream()
-                    .map(Result::getMetacard)
-                    .filter(e -> !localMetacardRegIds.contains(RegistryUtility.getRegistryId(e)))
-                    .collect(Collectors.toMap(Metacard::getId, Function.identity()));
-            LOGGER.debug(
-                "Retrieved {} registry entries from {} with {} local entries filtered.",
-                response.getResults().size(),
-                store.getId(),
-                response.getResults().size() - results.size());
-            logRegistryMetacards("Filtered remote entries", results.values());
-            return new RemoteResult(store.getRegistryId(), results);
-          });
+      failedQueries.add(store.getRegistryId());
+      tasks.add(() -> queryRegistryStore(store, queryProps, localMetacardRegIds));
     }
 
-    failedQueries.addAll(storesQueried);
     List<RemoteResult> results = executeTasks(tasks);
-    results
-        .stream()
-        .forEach(
-            result -> {
-              failedQueries.remove(result.getRegistryId());
-              remoteRegistryMetacards.putAll(result.getRemoteRegistryMetacards());
-            });
-
-    return new RemoteRegistryResults(remoteRegistryMetacards, failedQueries, storesQueried);
+    results.forEach(result -> failedQueries.remove(result.getRegistryId()));
+
+    if (LOGGER.isDebugEnabled() && !failedQueries.isEmpty()) {
+      LOGGER.debug(
+          "Failed to query the following registry stores: {}", String.join(",", failedQueries));
+    }
+
+    return results;
+  }
+
+  private RemoteResult queryRegistryStore(
+      RegistryStore store, Map<String, Serializable> queryProps, List<String> localMetacardRegIds)
+      throws UnsupportedQueryException {
+    long queryTime = System.currentTimeMillis();
+    StoreState state = storeStates.get(store.getRegistryId());
+    boolean reconcile =
+        state == null
+            || queryTime - state.getLastFullSync()
+                >= TimeUnit.SECONDS.toMillis(fullSyncIntervalSeconds);
+    boolean fullSync =
+        reconcile && (state == null || !isEntryCountUnchanged(store, queryProps, state));
+    Date modifiedSince = fullSync ? null : state.getHighWaterMark();
+    Date highWaterMark = modifiedSince;
+
+    Map<String, Metacard> results = new HashMap<>();
+    Set<String> retrievedIds = fullSync ? new HashSet<>() : new HashSet<>(state.getRetrievedIds());
+    Set<String> pagedIds = new HashSet<>();
+    int retrieved = 0;
+    int startIndex = 1;
+    while (true) {
+      SourceResponse response =
+          store.query(
+              new QueryRequestImpl(
+                  getRegistryQuery(modifiedSince, startIndex, PAGE_SIZE), queryProps));
+      List<Result> page = response.getResults();
+      boolean newIds = false;
+      for (Result result : page) {
+        Metacard metacard = result.getMetacard();
+        newIds |= pagedIds.add(metacard.getId());
+        retrievedIds.add(metacard.getId());
+        Date modified = metacard.getModifiedDate();
+        if (modified != null && (highWaterMark == null || modified.after(highWaterMark))) {
+          highWaterMark = modified;
+        }
+        if (!localMetacardRegIds.contains(RegistryUtility.getRegistryId(metacard))) {
+          results.put(metacard.getId(), metacard);
+        }
+      }
+      retrieved += page.size();
+      startIndex += PAGE_SIZE;
+      if (page.size() < PAGE_SIZE || (response.getHits() >= 0 && retrieved >= response.getHits())) {
+        break;
+      }
+      if (!newIds) {
+        LOGGER.debug(
+            "Stopped paging {} at index {}, the page only held entries already retrieved",
+            store.getId(),
+            startIndex - PAGE_SIZE);
+        break;
+      }
+    }
+
+    LOGGER.debug(
+        "Retrieved {} {} registry entries from {} with {} local entries filtered.",
+        retrieved,
+        fullSync ? "total" : "modified",
+        store.getId(),
+        retrieved - results.size());
+    logRegistryMetacards("Filtered remote entries", results.values());
+    return new RemoteResult(
+        store.getRegistryId(),
+        results,
+        fullSync,
+        highWaterMark,
+        reconcile ? queryTime : state.getLastFullSync(),
+        retrievedIds);
+  }
+
+  /*
+   * Only asks the store for the number of its entries. Entries are never removed from the set of
+   * retrieved ids between full syncs, so if the numbers match no entry can have been removed.
+   */
+  private boolean isEntryCountUnchanged(
+      RegistryStore store, Map<String, Serializable> queryProps, StoreState state)
+      throws UnsupportedQueryException {
+    long hits =
+        store.query(new QueryRequestImpl(getRegistryQuery(null, 1, 1), queryProps)).getHits();
+    boolean unchanged = hits >= 0 && hits == state.getRetrievedIds().size();
+    LOGGER.debug(
+        "Registry {} has {} entries and {} were retrieved from it. {}",
+        store.getId(),
+        hits,
+        state.getRetrievedIds().size(),
+        unchanged ? "Skipping the full sync." : "Retrieving all entries.");
+    return unchanged;
   }
 
   private List<RemoteResult> executeTasks(List<Callable<RemoteResult>> tasks)
@@ -422,16 +522,32 @@ private void deleteRemoteEntries(List<Metacard> remoteMetacardsToDelete)
     }
   }
 
-  private Query getBasicRegistryQuery() {
+  /**
+   * @param modifiedSince if not null only entries modified at or after this date are requested
+   * @param startIndex the 1-based index of the first entry to return
+   * @param pageSize the maximum number of entries to return
+   */
+  private Query getRegistryQuery(Date modifiedSince, int startIndex, int pageSize) {
     List<Filter> filters = new ArrayList<>();
     filters.add(
         filterBuilder.attribute(Metacard.TAGS).is().equalTo().text(RegistryConstants.REGISTRY_TAG));
+    if (modifiedSince != null) {
+      // Entries sharing the high water mark may not all have been seen yet, so ask for them again.
+      // Entries that are not newer than the local copy are not updated.
+      filters.add(
+          filterBuilder
+              .attribute(Metacard.MODIFIED)
+              .is()
+              .after()
+              .date(new Date(modifiedSince.getTime() - 1)));
+    }
 
     PropertyName propertyName = new PropertyNameImpl(Metacard.MODIFIED);
     SortBy sortBy = new SortByImpl(propertyName, SortOrder.ASCENDING);
     QueryImpl query = new QueryImpl(filterBuilder.allOf(filters));
     query.setSortBy(sortBy);
-    query.setPageSize(PAGE_SIZE);
+    query.setPageSize(pageSize);
+    query.setStartIndex(startIndex);
 
     return query;
   }
@@ -471,6 +587,10 @@ public void setTaskWaitTimeSeconds(Integer taskWaitTimeSeconds) {
     this.taskWaitTimeSeconds = taskWaitTimeSeconds;
   }
 
+  public void setFullSyncIntervalSeconds(long fullSyncIntervalSeconds) {
+    this.fullSyncIntervalSeconds = fullSyncIntervalSeconds;
+  }
+
   public void destroy() {
     executor.shutdown();
     try {
@@ -508,9 +628,27 @@ static class RemoteResult {
 
     private Map<String, Metacard> remoteRegistryMetacards;
 
-    public RemoteResult(String registryId, Map<String, Metacard> remoteRegistryMetacards) {
+    private boolean fullSync;
+
+    private Date highWaterMark;
+
+    private long lastFullSync;
+
+    private Set<String> retrievedIds;
+
+    public RemoteResult(
+        String registryId,
+        Map<String, Metacard> remoteRegistryMetacards,
+        boolean fullSync,
+        Date highWaterMark,
+        long lastFullSync,
+        Set<String> retrievedIds) {
       this.registryId = registryId;
       this.remoteRegistryMetacards = remoteRegistryMetacards;
+      this.fullSync = fullSync;
+      this.highWaterMark = highWaterMark;
+      this.lastFullSync = lastFullSync;
+      this.retrievedIds = retrievedIds;
     }
 
     public String getRegistryId() {
@@ -521,38 +659,53 @@ public String getRegistryId() {
     public Map<String, Metacard> getRemoteRegistryMetacards() {
       return remoteRegistryMetacards;
     }
+
+    /** @return true if every entry of the remote registry was retrieved */
+    public boolean isFullSync() {
+      return fullSync;
+    }
+
+    /** @return the latest modified date of the entries retrieved so far, or null if none */
+    public Date getHighWaterMark() {
+      return highWaterMark;
+    }
+
+    /** @return the time in milliseconds of the last query that retrieved or counted every entry */
+    public long getLastFullSync() {
+      return lastFullSync;
+    }
+
+    /** @return the metacard-ids of every entry retrieved since the last full sync */
+    public Set<String> getRetrievedIds() {
+      return retrievedIds;
+    }
   }
 
-  /** Container for all remote registry query results. */
-  private static class RemoteRegistryResults {
+  /** What has been retrieved from a single remote registry by previous refreshes. */
+  private static class StoreState {
 
-    private Map<String, Metacard> remoteRegistryMetacards;
+    private final Date highWaterMark;
 
-    private List<String> registryStoresQueried;
+    private final long lastFullSync;
 
-    private List<String> failureList;
+    private final Set<String> retrievedIds;
 
-    public RemoteRegistryResults(
-        Map<String, Metacard> remoteRegistryMetacards,
-        List<String> failureList,
-        List<String> storesQueried) {
-      this.remoteRegistryMetacards = remoteRegistryMetacards;
-      this.failureList = failureList;
-      this.registryStoresQueried = storesQueried;
+    public StoreState(Date highWaterMark, long lastFullSync, Set<String> retrievedIds) {
+      this.highWaterMark = highWaterMark;
+      this.lastFullSync = lastFullSync;
+      this.retrievedIds = retrievedIds;
     }
 
-    /** @return a map of remote registry metacards mapped by there metacard-id */
-    public Map<String, Metacard> getRemoteRegistryMetacards() {
-      return new HashMap<>(remoteRegistryMetacards);
+    public Date getHighWaterMark() {
+      return highWaterMark;
     }
 
-    public List<String> getRegistryStoresQueried() {
-      return new ArrayList<>(registryStoresQueried);
+    public long getLastFullSync() {
+      return lastFullSync;
     }
 
-    /** @return a list of stores that were queried but the query failed */
-    public List<String> getFailureList() {
-      return new ArrayList<>(failureList);
+    public Set<String> getRetrievedIds() {
+      return retrievedIds;
     }
   }
 }
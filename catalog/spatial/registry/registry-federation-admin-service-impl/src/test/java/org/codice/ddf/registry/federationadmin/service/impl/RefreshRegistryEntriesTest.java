@@ -14,6 +14,9 @@
 package org.codice.ddf.registry.federationadmin.service.impl;
 
 import static junit.framework.TestCase.assertTrue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.doAnswer;
@@ -33,6 +36,7 @@
 import ddf.catalog.filter.proxy.builder.GeotoolsFilterBuilder;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.impl.QueryImpl;
 import ddf.catalog.operation.impl.SourceResponseImpl;
 import ddf.catalog.source.UnsupportedQueryException;
 import ddf.security.Subject;
@@ -49,12 +53,19 @@
 import org.codice.ddf.registry.api.internal.RegistryStore;
 import org.codice.ddf.registry.common.RegistryConstants;
 import org.codice.ddf.registry.common.metacard.RegistryObjectMetacardType;
+import org.codice.ddf.registry.federationadmin.service.internal.FederationAdminException;
 import org.codice.ddf.security.common.Security;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.opengis.filter.And;
+import org.opengis.filter.Filter;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.temporal.After;
+import org.opengis.temporal.Instant;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
 public class RefreshRegistryEntriesTest {
@@ -349,6 +360,120 @@ public void testAddUpdateAndDeleteAtOnce() throws Exception {
         .deleteRegistryEntriesByMetacardIds(Collections.singletonList("localDeleteId"));
   }
 
+  @Test
+  public void testIncrementalRefreshQueriesModifiedEntries() throws Exception {
+    Metacard remoteMetacard = getPopulatedTestRegistryMetacard();
+    when(federationAdminService.getInternalRegistryMetacards()).thenReturn(Collections.emptyList());
+    SourceResponse response =
+        new SourceResponseImpl(null, Collections.singletonList(new ResultImpl(remoteMetacard)));
+    when(registryStore.query(any(QueryRequest.class))).thenReturn(response);
+    refreshRegistryEntries.setRegistryStores(Collections.singletonList(registryStore));
+    when(registryStore.isPullAllowed()).thenReturn(true);
+    when(registryStore.isAvailable()).thenReturn(true);
+
+    refreshRegistryEntries.refreshRegistryEntries();
+    refreshRegistryEntries.refreshRegistryEntries();
+
+    ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+    verify(registryStore, times(2)).query(captor.capture());
+    List<Filter> fullQueryFilters = getQueryFilters(captor.getAllValues().get(0));
+    List<Filter> incrementalQueryFilters = getQueryFilters(captor.getAllValues().get(1));
+    assertThat(fullQueryFilters.size(), is(1));
+    assertThat(incrementalQueryFilters.size(), is(2));
+    assertThat(incrementalQueryFilters.get(1), instanceOf(After.class));
+    Instant modifiedSince =
+        (Instant) ((Literal) ((After) incrementalQueryFilters.get(1)).getExpression2()).getValue();
+    assertThat(
+        modifiedSince.getPosition().getDate().before(remoteMetacard.getModifiedDate()), is(true));
+  }
+
+  @Test
+  public void testPagingStopsWhenPagesRepeat() throws Exception {
+    when(federationAdminService.getInternalRegistryMetacards()).thenReturn(Collections.emptyList());
+    List<Result> page = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      page.add(new ResultImpl(getPopulatedTestRegistryMetacard("id" + i, "regId" + i, 0)));
+    }
+    when(registryStore.query(any(QueryRequest.class)))
+        .thenReturn(new SourceResponseImpl(null, page, -1L));
+    refreshRegistryEntries.setRegistryStores(Collections.singletonList(registryStore));
+    when(registryStore.isPullAllowed()).thenReturn(true);
+    when(registryStore.isAvailable()).thenReturn(true);
+
+    refreshRegistryEntries.refreshRegistryEntries();
+
+    verify(registryStore, times(2)).query(any(QueryRequest.class));
+  }
+
+  @Test
+  public void testIncrementalRefreshDoesNotDelete() throws Exception {
+    setupRemovedRemoteEntry();
+
+    refreshRegistryEntries.refreshRegistryEntries();
+    refreshRegistryEntries.refreshRegistryEntries();
+
+    verify(federationAdminService, never()).deleteRegistryEntriesByMetacardIds(any());
+  }
+
+  @Test
+  public void testFullRefreshAfterIntervalDeletes() throws Exception {
+    refreshRegistryEntries.setFullSyncIntervalSeconds(0);
+    setupRemovedRemoteEntry();
+
+    refreshRegistryEntries.refreshRegistryEntries();
+    refreshRegistryEntries.refreshRegistryEntries();
+
+    verify(federationAdminService)
+        .deleteRegistryEntriesByMetacardIds(Collections.singletonList("localDeleteId"));
+  }
+
+  @Test
+  public void testUnchangedEntryCountSkipsFullRefresh() throws Exception {
+    refreshRegistryEntries.setFullSyncIntervalSeconds(0);
+    Metacard remoteMetacard = getPopulatedTestRegistryMetacard();
+    when(federationAdminService.getInternalRegistryMetacards()).thenReturn(Collections.emptyList());
+    SourceResponse response =
+        new SourceResponseImpl(null, Collections.singletonList(new ResultImpl(remoteMetacard)));
+    when(registryStore.query(any(QueryRequest.class))).thenReturn(response);
+    refreshRegistryEntries.setRegistryStores(Collections.singletonList(registryStore));
+    when(registryStore.isPullAllowed()).thenReturn(true);
+    when(registryStore.isAvailable()).thenReturn(true);
+
+    refreshRegistryEntries.refreshRegistryEntries();
+    refreshRegistryEntries.refreshRegistryEntries();
+
+    ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+    verify(registryStore, times(3)).query(captor.capture());
+    QueryRequest countQuery = captor.getAllValues().get(1);
+    assertThat(countQuery.getQuery().getPageSize(), is(1));
+    assertThat(getQueryFilters(countQuery).size(), is(1));
+    assertThat(getQueryFilters(captor.getAllValues().get(2)).size(), is(2));
+  }
+
+  @Test
+  public void testFailedWriteForcesFullRefresh() throws Exception {
+    Metacard remoteMetacard = getPopulatedTestRegistryMetacard();
+    when(federationAdminService.getInternalRegistryMetacards()).thenReturn(Collections.emptyList());
+    when(federationAdminService.addRegistryEntries(any(), any()))
+        .thenThrow(new FederationAdminException("write error"))
+        .thenReturn(Collections.singletonList(TEST_METACARD_ID));
+    SourceResponse response =
+        new SourceResponseImpl(null, Collections.singletonList(new ResultImpl(remoteMetacard)));
+    when(registryStore.query(any(QueryRequest.class))).thenReturn(response);
+    refreshRegistryEntries.setRegistryStores(Collections.singletonList(registryStore));
+    when(registryStore.isPullAllowed()).thenReturn(true);
+    when(registryStore.isAvailable()).thenReturn(true);
+
+    refreshRegistryEntries.refreshRegistryEntries();
+    refreshRegistryEntries.refreshRegistryEntries();
+
+    ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+    verify(registryStore, times(2)).query(captor.capture());
+    assertThat(getQueryFilters(captor.getAllValues().get(1)).size(), is(1));
+    verify(federationAdminService, times(2))
+        .addRegistryEntries(Collections.singletonList(remoteMetacard), null);
+  }
+
   @Test
   public void testDestroy() throws Exception {
     when(executorService.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(true);
@@ -375,6 +500,29 @@ public void testDestroyInterrupt() throws Exception {
     verify(executorService, times(1)).shutdownNow();
   }
 
+  private List<Filter> getQueryFilters(QueryRequest request) {
+    return ((And) ((QueryImpl) request.getQuery()).getFilter()).getChildren();
+  }
+
+  private void setupRemovedRemoteEntry() throws Exception {
+    // the remote entry is returned by the first query only
+    Metacard remoteMetacard =
+        getPopulatedTestRegistryMetacard("deleteRemoteMcardId", "deleteRegId", 0);
+    Metacard localMetacard =
+        getPopulatedTestRegistryMetacard(
+            "localDeleteId", "deleteRegId", 0, true, "deleteRemoteMcardId");
+    when(federationAdminService.getInternalRegistryMetacards())
+        .thenReturn(Collections.singletonList(localMetacard));
+    when(registryStore.getRegistryId()).thenReturn("remoteRegId");
+    when(registryStore.query(any(QueryRequest.class)))
+        .thenReturn(
+            new SourceResponseImpl(null, Collections.singletonList(new ResultImpl(remoteMetacard))))
+        .thenReturn(new SourceResponseImpl(null, Collections.emptyList()));
+    refreshRegistryEntries.setRegistryStores(Collections.singletonList(registryStore));
+    when(registryStore.isPullAllowed()).thenReturn(true);
+    when(registryStore.isAvailable()).thenReturn(true);
+  }
+
   private MetacardImpl getPopulatedTestRegistryMetacard() {
     return getPopulatedTestRegistryMetacard(RegistryObjectMetacardType.REGISTRY_ID, 0);
   }
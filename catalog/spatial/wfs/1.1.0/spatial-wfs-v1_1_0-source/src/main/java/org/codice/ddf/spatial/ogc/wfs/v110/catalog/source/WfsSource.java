@@ -31,6 +31,7 @@
 import ddf.catalog.operation.impl.SourceResponseImpl;
 import ddf.catalog.resource.Resource;
 import ddf.catalog.resource.impl.ResourceImpl;
+import ddf.catalog.source.SourceAvailabilityService;
 import ddf.catalog.source.SourceMonitor;
 import ddf.catalog.source.UnsupportedQueryException;
 import ddf.catalog.transform.CatalogTransformerException;
@@ -204,6 +205,8 @@ public class WfsSource extends AbstractWfsSource {
 
   private AvailabilityTask availabilityTask;
 
+  private SourceAvailabilityService availabilityService;
+
   private Set<SourceMonitor> sourceMonitors = new HashSet<>();
 
   private SecureCxfClientFactory<Wfs> factory;
@@ -273,7 +276,12 @@ public void init() {
   })
   public void destroy(int code) {
     wfsMetacardTypeRegistry.clear();
-    availabilityPollFuture.cancel(true);
+    if (availabilityPollFuture != null) {
+      availabilityPollFuture.cancel(true);
+    }
+    if (availabilityTask != null) {
+      availabilityTask.unregister();
+    }
     scheduler.shutdownNow();
   }
 
@@ -312,7 +320,9 @@ public void refresh(Map<String, Object> configuration) {
     if (!pollInterval.equals(newPollInterval)) {
       LOGGER.trace("Poll Interval was changed for source {}.", getId());
       setPollInterval(newPollInterval);
-      availabilityPollFuture.cancel(true);
+      if (availabilityPollFuture != null) {
+        availabilityPollFuture.cancel(true);
+      }
       setupAvailabilityPoll();
     }
   }
@@ -400,9 +410,13 @@ private void setupAvailabilityPoll() {
       // This is necessary to allow the catalog framework to have the correct
       // availability when the source is bound
       availabilityTask.run();
+      if (availabilityService != null) {
+        availabilityTask.register(availabilityService);
+      }
       // Run the availability check every 1 second. The actually call to
       // the remote server will only occur if the pollInterval has
-      // elapsed.
+      // elapsed, and only while the availability service is not doing
+      // the checks.
       availabilityPollFuture =
           scheduler.scheduleWithFixedDelay(
               availabilityTask,
@@ -690,6 +704,7 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
       LOGGER.debug(WFS_ERROR_MESSAGE, wfse);
       throw new UnsupportedQueryException("Error received from WFS Server", wfse);
     } catch (Exception ce) {
+      availabilityTask.reportFailure();
       String msg = handleClientException(ce);
       throw new UnsupportedQueryException(msg, ce);
     }
@@ -894,6 +909,14 @@ public void setPollInterval(Integer interval) {
     this.pollInterval = interval;
   }
 
+  /**
+   * Sets the shared service that checks the availability of this source. Without it the source
+   * checks its own availability on a scheduler of its own.
+   */
+  public void setAvailabilityService(SourceAvailabilityService availabilityService) {
+    this.availabilityService = availabilityService;
+  }
+
   public void setConnectionTimeout(Integer timeout) {
     this.connectionTimeout = timeout;
   }
@@ -13,6 +13,9 @@
  */
 package org.codice.ddf.spatial.ogc.wfs.v2_0_0.catalog.source;
 
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import ddf.catalog.Constants;
 import ddf.catalog.data.ContentType;
 import ddf.catalog.data.Metacard;
@@ -21,16 +24,19 @@
 import ddf.catalog.data.impl.ContentTypeImpl;
 import ddf.catalog.data.impl.ResultImpl;
 import ddf.catalog.filter.FilterAdapter;
+import ddf.catalog.operation.CancellationToken;
 import ddf.catalog.operation.Query;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.ResourceResponse;
 import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.operation.impl.CancellationTokenImpl;
 import ddf.catalog.operation.impl.ResourceResponseImpl;
 import ddf.catalog.operation.impl.SourceResponseImpl;
 import ddf.catalog.resource.Resource;
 import ddf.catalog.resource.ResourceNotFoundException;
 import ddf.catalog.resource.ResourceNotSupportedException;
 import ddf.catalog.resource.impl.ResourceImpl;
+import ddf.catalog.source.SourceAvailabilityService;
 import ddf.catalog.source.SourceMonitor;
 import ddf.catalog.source.UnsupportedQueryException;
 import ddf.catalog.transform.CatalogTransformerException;
@@ -54,9 +60,13 @@
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.net.ssl.SSLHandshakeException;
 import javax.ws.rs.WebApplicationException;
@@ -77,11 +87,16 @@
 import net.opengis.wfs.v_2_0_0.FeatureTypeType;
 import net.opengis.wfs.v_2_0_0.GetFeatureType;
 import net.opengis.wfs.v_2_0_0.QueryType;
+import net.opengis.wfs.v_2_0_0.ResultTypeType;
 import net.opengis.wfs.v_2_0_0.WFSCapabilitiesType;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.cxf.jaxrs.client.Client;
+import org.apache.cxf.jaxrs.client.WebClient;
 import org.apache.cxf.jaxrs.provider.JAXBElementProvider;
+import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
 import org.apache.ws.commons.schema.XmlSchema;
 import org.codice.ddf.configuration.DictionaryMap;
 import org.codice.ddf.cxf.client.ClientFactoryFactory;
@@ -169,6 +184,12 @@ public class WfsSource extends AbstractWfsSource {
 
   private static final String POLL_INTERVAL_PROPERTY = "pollInterval";
 
+  private static final String MAX_CONCURRENT_PAGE_REQUESTS_PROPERTY = "maxConcurrentPageRequests";
+
+  private static final int DEFAULT_MAX_CONCURRENT_PAGE_REQUESTS = 4;
+
+  private static final String METRICS_DOMAIN = "ddf.metrics.catalog.source.wfs";
+
   public static final String DISABLE_CN_CHECK_PROPERTY = "disableCnCheck";
 
   private static Properties describableProperties = new Properties();
@@ -226,6 +247,8 @@ public class WfsSource extends AbstractWfsSource {
 
   private AvailabilityTask availabilityTask;
 
+  private SourceAvailabilityService availabilityService;
+
   private Set<SourceMonitor> sourceMonitors = new HashSet<SourceMonitor>();
 
   private List<MetacardMapper> metacardToFeatureMappers;
@@ -242,6 +265,16 @@ public class WfsSource extends AbstractWfsSource {
 
   private String srsName;
 
+  private int maxConcurrentPageRequests = DEFAULT_MAX_CONCURRENT_PAGE_REQUESTS;
+
+  private final ThreadPoolExecutor pageExecutor =
+      newPageExecutor(DEFAULT_MAX_CONCURRENT_PAGE_REQUESTS);
+
+  private final MetricRegistry metrics = new MetricRegistry();
+
+  private final JmxReporter reporter =
+      JmxReporter.forRegistry(metrics).inDomain(METRICS_DOMAIN).build();
+
   public WfsSource(
       FilterAdapter filterAdapter,
       BundleContext context,
@@ -282,14 +315,22 @@ public WfsSource(EncryptionService encryptionService, ClientFactoryFactory clien
   public void init() {
     createClientFactory();
     setupAvailabilityPoll();
+    reporter.start();
   }
 
   @SuppressWarnings(
       "squid:S1172" /* The code parameter is required in blueprint-cm-1.0.7. See https://issues.apache.org/jira/browse/ARIES-1436. */)
   public void destroy(int code) {
     unregisterAllMetacardTypes();
-    availabilityPollFuture.cancel(true);
+    if (availabilityPollFuture != null) {
+      availabilityPollFuture.cancel(true);
+    }
+    if (availabilityTask != null) {
+      availabilityTask.unregister();
+    }
     scheduler.shutdownNow();
+    pageExecutor.shutdownNow();
+    reporter.stop();
   }
 
   /**
@@ -314,6 +355,8 @@ public void refresh(Map<String, Object> configuration) throws SecurityServiceExc
     setConnectionTimeout((Integer) configuration.get(CONNECTION_TIMEOUT_PROPERTY));
     setReceiveTimeout((Integer) configuration.get(RECEIVE_TIMEOUT_PROPERTY));
     setSrsName((String) configuration.get(SRS_NAME_PROPERTY));
+    setMaxConcurrentPageRequests(
+        (Integer) configuration.get(MAX_CONCURRENT_PAGE_REQUESTS_PROPERTY));
 
     String[] nonQueryableProperties = (String[]) configuration.get(NON_QUERYABLE_PROPS_PROPERTY);
 
@@ -335,7 +378,9 @@ public void refresh(Map<String, Object> configuration) throws SecurityServiceExc
     if (!pollInterval.equals(newPollInterval)) {
       LOGGER.debug("Poll Interval was changed for source {}.", getId());
       setPollInterval(newPollInterval);
-      availabilityPollFuture.cancel(true);
+      if (availabilityPollFuture != null) {
+        availabilityPollFuture.cancel(true);
+      }
       setupAvailabilityPoll();
     }
   }
@@ -417,9 +462,13 @@ private void setupAvailabilityPoll() {
       // This is necessary to allow the catalog framework to have the correct
       // availability when the source is bound
       availabilityTask.run();
+      if (availabilityService != null) {
+        availabilityTask.register(availabilityService);
+      }
       // Run the availability check every 1 second. The actually call to
       // the remote server will only occur if the pollInterval has
-      // elapsed.
+      // elapsed, and only while the availability service is not doing
+      // the checks.
       availabilityPollFuture =
           scheduler.scheduleWithFixedDelay(
               availabilityTask,
@@ -742,42 +791,29 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
 
     LOGGER.debug("WFS Source {}: Received query: \n{}", getId(), query);
 
-    SourceResponseImpl simpleResponse = null;
+    CancellationToken token = CancellationTokenImpl.of(request);
+    if (token.isCancelled()) {
+      throw new UnsupportedQueryException(
+          "The query to source " + getId() + " was cancelled before it was sent.");
+    }
+
     GetFeatureType getFeature = buildGetFeatureRequest(query);
 
     try {
-      LOGGER.debug("WFS Source {}: Sending query ...", getId());
-      Wfs20FeatureCollection featureCollection = wfs.getFeature(getFeature);
-      int numResults = -1;
-
-      if (featureCollection == null) {
-        throw new UnsupportedQueryException("Invalid results returned from server");
-      }
-
-      numResults = featureCollection.getMembers().size();
-
-      if (featureCollection.getNumberReturned() == null) {
-        LOGGER.debug("Number Returned Attribute was not added to the response");
-      } else if (!featureCollection.getNumberReturned().equals(BigInteger.valueOf(numResults))) {
+      if (isPagedInParallel(query)) {
+        Long numberMatched = getNumberMatched(factory.getClient(), getFeature, token);
+        if (numberMatched != null) {
+          return queryPages(request, getFeature, numberMatched, token);
+        }
         LOGGER.debug(
-            "Number Returned Attribute ({}) did not match actual number returned ({})",
-            featureCollection.getNumberReturned(),
-            numResults);
+            "WFS Source {}: numberMatched is unknown, querying the features in one request.",
+            getId());
       }
 
-      availabilityTask.updateLastAvailableTimestamp(System.currentTimeMillis());
-      LOGGER.debug(
-          "WFS Source {}: Received featureCollection with {} metacards.", getId(), numResults);
-
-      List<Result> results = new ArrayList<Result>(numResults);
-
-      for (int i = 0; i < numResults; i++) {
-        Metacard mc = featureCollection.getMembers().get(i);
-        mc = transform(mc, DEFAULT_WFS_TRANSFORMER_ID);
-        Result result = new ResultImpl(mc);
-        results.add(result);
-        debugResult(result);
-      }
+      LOGGER.debug("WFS Source {}: Sending query ...", getId());
+      Wfs20FeatureCollection featureCollection = getFeatures(wfs, getFeature, token);
+      List<Result> results = toResults(featureCollection);
+      int numResults = results.size();
 
       // Fetch total results available
       long totalResults = 0;
@@ -789,17 +825,191 @@ public SourceResponse query(QueryRequest request) throws UnsupportedQueryExcepti
         totalResults = Long.parseLong(featureCollection.getNumberMatched());
       }
 
-      simpleResponse = new SourceResponseImpl(request, results, totalResults);
+      return new SourceResponseImpl(request, results, totalResults);
 
     } catch (WfsException wfse) {
       LOGGER.debug(WFS_ERROR_MESSAGE, wfse);
       throw new UnsupportedQueryException("Error received from WFS Server", wfse);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UnsupportedQueryException(
+          "The query to source " + getId() + " was interrupted.", e);
     } catch (Exception ce) {
+      availabilityTask.reportFailure();
       String msg = handleClientException(ce);
       throw new UnsupportedQueryException(msg, ce);
     }
+  }
+
+  /**
+   * Whether the requested window is large enough to be split into pages that are requested
+   * concurrently.
+   */
+  private boolean isPagedInParallel(Query query) {
+    return maxConcurrentPageRequests > 1 && query.getPageSize() > WFS_MAX_FEATURES_RETURNED;
+  }
+
+  /**
+   * Sends a hits-only request for the features.
+   *
+   * @return the number of features matched, or null if the server did not report it
+   */
+  private Long getNumberMatched(Wfs wfs, GetFeatureType getFeature, CancellationToken token)
+      throws WfsException, UnsupportedQueryException {
+    GetFeatureType hitsRequest =
+        copyGetFeatureRequest(getFeature, getFeature.getStartIndex(), getFeature.getCount());
+    hitsRequest.setResultType(ResultTypeType.HITS);
+
+    Wfs20FeatureCollection featureCollection;
+    try (CancellationToken.Registration registration = bindToCancellation(wfs, token);
+        Timer.Context time = metrics.timer(MetricRegistry.name(getId(), "HitsRequest")).time()) {
+      featureCollection = wfs.getFeature(hitsRequest);
+    }
+
+    if (featureCollection == null) {
+      throw new UnsupportedQueryException("Invalid results returned from server");
+    }
+
+    String numberMatched = featureCollection.getNumberMatched();
+    return StringUtils.isNumeric(numberMatched) && StringUtils.isNotEmpty(numberMatched)
+        ? Long.valueOf(numberMatched)
+        : null;
+  }
+
+  /**
+   * Splits the requested window into pages of at most {@link #WFS_MAX_FEATURES_RETURNED} features
+   * and requests them on the page executor, which bounds how many pages of this source are
+   * requested and parsed at a time. The results are returned in page order.
+   */
+  private SourceResponse queryPages(
+      QueryRequest request, GetFeatureType getFeature, long numberMatched, CancellationToken token)
+      throws WfsException, UnsupportedQueryException, InterruptedException {
+    long startIndex = getFeature.getStartIndex().longValue();
+    long endIndex = Math.min(numberMatched, startIndex + getFeature.getCount().longValue());
+
+    LOGGER.debug(
+        "WFS Source {}: Requesting features {} to {} of {} in pages of {}.",
+        getId(),
+        startIndex,
+        endIndex,
+        numberMatched,
+        WFS_MAX_FEATURES_RETURNED);
+
+    List<Future<List<Result>>> pages = new ArrayList<>();
+    try {
+      for (long pageStart = startIndex;
+          pageStart < endIndex;
+          pageStart += WFS_MAX_FEATURES_RETURNED) {
+        GetFeatureType page =
+            copyGetFeatureRequest(
+                getFeature,
+                BigInteger.valueOf(pageStart),
+                BigInteger.valueOf(Math.min(WFS_MAX_FEATURES_RETURNED, endIndex - pageStart)));
+        // Clients should not be shared between requests, so each page gets its own.
+        Wfs pageClient = factory.getClient();
+        pages.add(pageExecutor.submit(() -> toResults(getFeatures(pageClient, page, token))));
+      }
+
+      List<Result> results = new ArrayList<>((int) (endIndex - startIndex));
+      for (Future<List<Result>> page : pages) {
+        results.addAll(page.get());
+      }
+
+      return new SourceResponseImpl(request, results, numberMatched);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof WfsException) {
+        throw (WfsException) cause;
+      } else if (cause instanceof UnsupportedQueryException) {
+        throw (UnsupportedQueryException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new UnsupportedQueryException("Unable to query features from " + getId(), cause);
+    } finally {
+      pages.forEach(page -> page.cancel(true));
+    }
+  }
+
+  private GetFeatureType copyGetFeatureRequest(
+      GetFeatureType getFeature, BigInteger startIndex, BigInteger count) {
+    GetFeatureType copy = new GetFeatureType();
+    copy.getAbstractQueryExpression().addAll(getFeature.getAbstractQueryExpression());
+    copy.setStartIndex(startIndex);
+    copy.setCount(count);
+    return copy;
+  }
+
+  private Wfs20FeatureCollection getFeatures(
+      Wfs wfs, GetFeatureType getFeature, CancellationToken token)
+      throws WfsException, UnsupportedQueryException {
+    Wfs20FeatureCollection featureCollection;
+    // The feature collection is unmarshalled as the response is read, so this times the round trip
+    // and the parsing of the GML.
+    try (CancellationToken.Registration registration = bindToCancellation(wfs, token);
+        Timer.Context time = metrics.timer(MetricRegistry.name(getId(), "PageRequest")).time()) {
+      featureCollection = wfs.getFeature(getFeature);
+    }
+
+    if (featureCollection == null) {
+      throw new UnsupportedQueryException("Invalid results returned from server");
+    }
+
+    availabilityTask.updateLastAvailableTimestamp(System.currentTimeMillis());
+    return featureCollection;
+  }
+
+  private List<Result> toResults(Wfs20FeatureCollection featureCollection) {
+    int numResults = featureCollection.getMembers().size();
+
+    if (featureCollection.getNumberReturned() == null) {
+      LOGGER.debug("Number Returned Attribute was not added to the response");
+    } else if (!featureCollection.getNumberReturned().equals(BigInteger.valueOf(numResults))) {
+      LOGGER.debug(
+          "Number Returned Attribute ({}) did not match actual number returned ({})",
+          featureCollection.getNumberReturned(),
+          numResults);
+    }
+
+    LOGGER.debug(
+        "WFS Source {}: Received featureCollection with {} metacards.", getId(), numResults);
+
+    List<Result> results = new ArrayList<Result>(numResults);
+
+    try (Timer.Context time = metrics.timer(MetricRegistry.name(getId(), "PageTransform")).time()) {
+      for (int i = 0; i < numResults; i++) {
+        Metacard mc = featureCollection.getMembers().get(i);
+        mc = transform(mc, DEFAULT_WFS_TRANSFORMER_ID);
+        Result result = new ResultImpl(mc);
+        results.add(result);
+        debugResult(result);
+      }
+    }
+
+    return results;
+  }
+
+  /**
+   * Caps the receive timeout of the client at the time left before the deadline of the token, and
+   * closes the client if the token is cancelled while the query is running.
+   */
+  private CancellationToken.Registration bindToCancellation(Wfs wfs, CancellationToken token) {
+    if (!(wfs instanceof Client)) {
+      return () -> {};
+    }
 
-    return simpleResponse;
+    long remainingMillis = token.getRemainingMillis();
+    if (remainingMillis != Long.MAX_VALUE) {
+      HTTPConduit httpConduit = WebClient.getConfig(wfs).getHttpConduit();
+      HTTPClientPolicy clientPolicy = httpConduit == null ? null : httpConduit.getClient();
+      if (clientPolicy != null
+          && (clientPolicy.getReceiveTimeout() <= 0
+              || clientPolicy.getReceiveTimeout() > remainingMillis)) {
+        clientPolicy.setReceiveTimeout(Math.max(1, remainingMillis));
+      }
+    }
+
+    return token.onCancel(((Client) wfs)::close);
   }
 
   protected GetFeatureType buildGetFeatureRequest(Query query) throws UnsupportedQueryException {
@@ -1184,6 +1394,14 @@ public void setPollInterval(Integer interval) {
     this.pollInterval = interval;
   }
 
+  /**
+   * Sets the shared service that checks the availability of this source. Without it the source
+   * checks its own availability on a scheduler of its own.
+   */
+  public void setAvailabilityService(SourceAvailabilityService availabilityService) {
+    this.availabilityService = availabilityService;
+  }
+
   public Integer getPollInterval() {
     return pollInterval;
   }
@@ -1204,6 +1422,40 @@ public Integer getReceiveTimeout() {
     return this.receiveTimeout;
   }
 
+  public void setMaxConcurrentPageRequests(Integer maxConcurrentPageRequests) {
+    if (maxConcurrentPageRequests == null || maxConcurrentPageRequests < 1) {
+      return;
+    }
+
+    this.maxConcurrentPageRequests = maxConcurrentPageRequests;
+    // The core size can never be larger than the maximum size, so they are changed in an order
+    // that keeps that true.
+    if (maxConcurrentPageRequests > pageExecutor.getMaximumPoolSize()) {
+      pageExecutor.setMaximumPoolSize(maxConcurrentPageRequests);
+      pageExecutor.setCorePoolSize(maxConcurrentPageRequests);
+    } else {
+      pageExecutor.setCorePoolSize(maxConcurrentPageRequests);
+      pageExecutor.setMaximumPoolSize(maxConcurrentPageRequests);
+    }
+  }
+
+  public int getMaxConcurrentPageRequests() {
+    return maxConcurrentPageRequests;
+  }
+
+  private static ThreadPoolExecutor newPageExecutor(int threads) {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            StandardThreadFactoryBuilder.newThreadFactory("wfsPageThread"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   public void setSrsName(String srsName) {
     this.srsName = srsName;
   }
@@ -31,6 +31,7 @@
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -68,6 +69,7 @@
 import net.opengis.wfs.v_2_0_0.FeatureTypeType;
 import net.opengis.wfs.v_2_0_0.GetFeatureType;
 import net.opengis.wfs.v_2_0_0.QueryType;
+import net.opengis.wfs.v_2_0_0.ResultTypeType;
 import net.opengis.wfs.v_2_0_0.WFSCapabilitiesType;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ws.commons.schema.XmlSchema;
@@ -622,6 +624,64 @@ public void testPagingStartIndexZero()
     assertThat(startIndexGetFeature.intValue(), is(startIndex));
   }
 
+  @Test
+  public void testLargeQueryIsPagedInParallel() throws Exception {
+    // Setup
+    final int numberMatched = 2300;
+    final int pageSize = 2500;
+
+    WfsSource source =
+        getWfsSource(
+            ONE_TEXT_PROPERTY_SCHEMA,
+            MockWfsServer.getFilterCapabilities(),
+            GeospatialUtil.EPSG_4326_URN,
+            1,
+            false);
+    source.setMaxConcurrentPageRequests(3);
+
+    when(mockWfs.getFeature(any(GetFeatureType.class)))
+        .thenAnswer(
+            invocation -> {
+              GetFeatureType getFeature = (GetFeatureType) invocation.getArguments()[0];
+              List<Metacard> members = new ArrayList<>();
+              if (getFeature.getResultType() != ResultTypeType.HITS) {
+                int start = getFeature.getStartIndex().intValue();
+                for (int i = start; i < start + getFeature.getCount().intValue(); i++) {
+                  MetacardImpl mc = new MetacardImpl();
+                  mc.setId("ID_" + (i + 1));
+                  members.add(mc);
+                }
+              }
+              Wfs20FeatureCollection featureCollection = new Wfs20FeatureCollection();
+              featureCollection.setNumberMatched(String.valueOf(numberMatched));
+              featureCollection.setMembers(members);
+              return featureCollection;
+            });
+
+    Filter filter = builder.attribute(Metacard.ANY_TEXT).is().like().text(LITERAL);
+    Query query = new QueryImpl(filter, 1, pageSize, null, false, 0);
+
+    // Execute
+    SourceResponse response = source.query(new QueryRequestImpl(query));
+
+    // Verify
+    ArgumentCaptor<GetFeatureType> captor = ArgumentCaptor.forClass(GetFeatureType.class);
+    verify(mockWfs, times(4)).getFeature(captor.capture());
+    assertThat(
+        captor
+            .getAllValues()
+            .stream()
+            .filter(getFeature -> getFeature.getResultType() == ResultTypeType.HITS)
+            .count(),
+        is(1L));
+
+    assertThat(response.getHits(), is((long) numberMatched));
+    assertThat(response.getResults().size(), is(numberMatched));
+    for (int i = 0; i < numberMatched; i++) {
+      assertThat(response.getResults().get(i).getMetacard().getId(), is("ID_" + (i + 1)));
+    }
+  }
+
   /**
    * Verify that, per DDF Query API Javadoc, if the startIndex is negative, the WfsSource throws an
    * UnsupportedQueryException.
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) Codice Foundation
+ * <p>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.transformer.csv.common;
+
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.Metacard;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+/**
+ * An {@link InputStream} that renders the CSV rows of the metacards as it is read. Only the rows
+ * needed to fill the current buffer are held in memory, so the size of the output is not limited by
+ * the heap and the first bytes are available as soon as the header has been written.
+ */
+class CsvInputStream extends InputStream {
+
+  /** Rows are rendered until at least this many characters are buffered. */
+  private static final int MIN_CHUNK_LENGTH = 8 * 1024;
+
+  private final Iterator<Metacard> metacards;
+
+  private final List<AttributeDescriptor> orderedAttributeDescriptors;
+
+  private final Map<String, String> aliasMap;
+
+  private final StringBuilder rows = new StringBuilder(MIN_CHUNK_LENGTH * 2);
+
+  private CSVPrinter csvPrinter;
+
+  private byte[] buffer = new byte[0];
+
+  private int position;
+
+  /**
+   * @param metacards the metacards to render, read once and in order
+   * @param orderedAttributeDescriptors the columns, in order
+   * @param aliasMap a map of Strings from attribute name to column name (alias)
+   */
+  CsvInputStream(
+      final Iterator<Metacard> metacards,
+      final List<AttributeDescriptor> orderedAttributeDescriptors,
+      final Map<String, String> aliasMap) {
+    this.metacards = metacards;
+    this.orderedAttributeDescriptors = orderedAttributeDescriptors;
+    this.aliasMap = aliasMap;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!fill()) {
+      return -1;
+    }
+    return buffer[position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (!fill()) {
+      return -1;
+    }
+
+    int count = Math.min(length, buffer.length - position);
+    System.arraycopy(buffer, position, bytes, offset, count);
+    position += count;
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return buffer.length - position;
+  }
+
+  /** Renders the next rows once the buffer has been read. Returns false at the end of the CSV. */
+  private boolean fill() throws IOException {
+    if (position < buffer.length) {
+      return true;
+    }
+
+    if (csvPrinter == null) {
+      csvPrinter = new CSVPrinter(rows, CSVFormat.RFC4180);
+      CsvTransformer.printColumnHeaders(csvPrinter, orderedAttributeDescriptors, aliasMap);
+    }
+
+    while (rows.length() < MIN_CHUNK_LENGTH && metacards.hasNext()) {
+      CsvTransformer.printMetacard(csvPrinter, metacards.next(), orderedAttributeDescriptors);
+    }
+
+    if (rows.length() == 0) {
+      return false;
+    }
+
+    buffer = rows.toString().getBytes(StandardCharsets.UTF_8);
+    position = 0;
+    rows.setLength(0);
+    return true;
+  }
+}
@@ -28,6 +28,8 @@
 import java.io.InputStream;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -69,6 +71,22 @@ public static BinaryContent createResponse(final Appendable csv) {
     return new BinaryContentImpl(inputStream, CSV_MIME_TYPE);
   }
 
+  /**
+   * Creates a response whose content is rendered from the metacards while it is being read, rather
+   * than written to memory up front. The metacards are iterated once, when the content is read.
+   *
+   * @param metacards the metacards to write, one row each
+   * @param orderedAttributeDescriptors the columns, in order
+   * @param aliasMap a map of Strings from attribute name to column name (alias)
+   */
+  public static BinaryContent createResponse(
+      final Iterator<Metacard> metacards,
+      final List<AttributeDescriptor> orderedAttributeDescriptors,
+      final Map<String, String> aliasMap) {
+    return new BinaryContentImpl(
+        new CsvInputStream(metacards, orderedAttributeDescriptors, aliasMap), CSV_MIME_TYPE);
+  }
+
   public static Appendable writeMetacardsToCsv(
       final List<Metacard> metacards,
       final List<AttributeDescriptor> orderedAttributeDescriptors,
@@ -99,7 +117,7 @@ private static boolean attributeNotObject(AttributeDescriptor attributeDescripto
         attributeDescriptor.getType().getAttributeFormat());
   }
 
-  private static void printMetacard(
+  static void printMetacard(
       final CSVPrinter csvPrinter,
       final Metacard metacard,
       final List<AttributeDescriptor> orderedAttributeDescriptors) {
@@ -108,7 +126,7 @@ private static void printMetacard(
     printMetacardData(csvPrinter, metacardIterator, metacard);
   }
 
-  private static void printColumnHeaders(
+  static void printColumnHeaders(
       final CSVPrinter csvPrinter,
       final List<AttributeDescriptor> orderedAttributeDescriptors,
       final Map<String, String> aliasMap) {
@@ -152,10 +170,17 @@ public static List<AttributeDescriptor> sortAttributes(
   public static Set<AttributeDescriptor> getAllCsvAttributeDescriptors(
       final List<Metacard> metacards) {
 
-    return metacards
+    // Results usually share a handful of metacard types, so only visit the descriptors of each
+    // type once.
+    Set<MetacardType> metacardTypes = Collections.newSetFromMap(new IdentityHashMap<>());
+    metacards
         .stream()
         .filter(Objects::nonNull)
         .map(Metacard::getMetacardType)
+        .forEach(metacardTypes::add);
+
+    return metacardTypes
+        .stream()
         .map(MetacardType::getAttributeDescriptors)
         .flatMap(Set::stream)
         .filter(CsvTransformer::attributeNotBinary)
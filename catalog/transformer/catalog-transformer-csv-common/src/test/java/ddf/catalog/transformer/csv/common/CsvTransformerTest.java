@@ -25,6 +25,7 @@
 import ddf.catalog.data.Attribute;
 import ddf.catalog.data.AttributeDescriptor;
 import ddf.catalog.data.AttributeType;
+import ddf.catalog.data.BinaryContent;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.MetacardType;
 import ddf.catalog.data.impl.AttributeImpl;
@@ -32,7 +33,10 @@
 import ddf.catalog.data.impl.MetacardImpl;
 import ddf.catalog.data.impl.MetacardTypeImpl;
 import ddf.catalog.transform.CatalogTransformerException;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -175,6 +179,50 @@ public void writeSearchResultsToCsvWithAliasMap() throws CatalogTransformerExcep
     assertThat(scanner.hasNext(), is(false));
   }
 
+  @Test
+  public void createStreamingResponseMatchesWrittenCsv() throws Exception {
+    List<Metacard> metacards = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      metacards.add(buildMetacard());
+    }
+    List<AttributeDescriptor> attributes =
+        ATTRIBUTE_DESCRIPTOR_LIST
+            .stream()
+            .filter(descriptor -> !descriptor.getName().equals("attribute7"))
+            .filter(descriptor -> !descriptor.getName().equals("attribute8"))
+            .collect(Collectors.toList());
+    Map<String, String> aliasMap = ImmutableMap.of("attribute1", "column1");
+
+    String expected =
+        CsvTransformer.writeMetacardsToCsv(metacards, attributes, aliasMap).toString();
+
+    BinaryContent content =
+        CsvTransformer.createResponse(metacards.iterator(), attributes, aliasMap);
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    try (InputStream inputStream = content.getInputStream()) {
+      byte[] buffer = new byte[1000];
+      int read;
+      while ((read = inputStream.read(buffer)) != -1) {
+        actual.write(buffer, 0, read);
+      }
+    }
+
+    assertThat(content.getMimeTypeValue(), is("text/csv"));
+    assertThat(actual.toString(StandardCharsets.UTF_8.name()), is(expected));
+  }
+
+  @Test
+  public void createStreamingResponseWithNoMetacardsWritesHeaders() throws Exception {
+    List<AttributeDescriptor> requestedAttributes = new ArrayList<>();
+    requestedAttributes.add(buildAttributeDescriptor("attribute1", BasicTypes.STRING_TYPE));
+
+    BinaryContent content =
+        CsvTransformer.createResponse(
+            Collections.<Metacard>emptyIterator(), requestedAttributes, Collections.emptyMap());
+
+    assertThat(new String(content.getByteArray(), StandardCharsets.UTF_8), is("attribute1\r\n"));
+  }
+
   private Metacard buildMetacard() {
     MetacardType metacardType = new MetacardTypeImpl("", new HashSet<>(ATTRIBUTE_DESCRIPTOR_LIST));
     Metacard metacard = new MetacardImpl(metacardType);
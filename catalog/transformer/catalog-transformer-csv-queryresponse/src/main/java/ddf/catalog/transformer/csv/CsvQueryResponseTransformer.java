@@ -18,7 +18,6 @@
 import static ddf.catalog.transformer.csv.common.CsvTransformer.getAllCsvAttributeDescriptors;
 import static ddf.catalog.transformer.csv.common.CsvTransformer.getOnlyRequestedAttributes;
 import static ddf.catalog.transformer.csv.common.CsvTransformer.sortAttributes;
-import static ddf.catalog.transformer.csv.common.CsvTransformer.writeMetacardsToCsv;
 
 import ddf.catalog.data.AttributeDescriptor;
 import ddf.catalog.data.BinaryContent;
@@ -47,11 +46,13 @@ public class CsvQueryResponseTransformer implements QueryResponseTransformer {
 
   public static final String COLUMN_ALIAS_KEY = "aliases";
 
+  public static final String COLUMN_SAMPLE_SIZE_KEY = "columnSampleSize";
+
   private static final String HIDDEN_FIELDS_KEY = "hiddenFields";
 
   /**
    * @param upstreamResponse the SourceResponse to be converted.
-   * @param arguments this transformer accepts 2 parameters in the 'arguments' map.
+   * @param arguments this transformer accepts 3 parameters in the 'arguments' map.
    *     <ol>
    *       <li>key: 'columnOrder' value: a {@link List} of attribute names (as strings) that
    *           specifies the order in which the columns will appear in the output.
@@ -59,14 +60,14 @@ public class CsvQueryResponseTransformer implements QueryResponseTransformer {
    *           values that are the corresponding column headers that will be printed in the output.
    *           For example, if the key is 'title' and the value is 'Product' then the resulting CSV
    *           will have a column name of 'Product' instead of 'title'.
+   *       <li>key: 'columnSampleSize' value: an {@link Integer}. When no 'columnOrder' is given,
+   *           the columns are the attributes of the first 'columnSampleSize' results instead of the
+   *           attributes of every result.
    *     </ol>
    *
-   * @return a BinaryContent object that contains an InputStream with the CSV content.
-   * @throws CatalogTransformerException during processing, the CSV output is written to an
-   *     Appendable, whose 'append()' method signature declares that it throws IOException. When
-   *     that Appendable throws IOException, this class will theoretically convert that into a
-   *     CatalogTransformerException and raise that. Because this implementation uses a
-   *     StringBuilder which doesn't throw IOException, this will never occur.
+   * @return a BinaryContent object that contains an InputStream with the CSV content. The rows are
+   *     written as the stream is read, so the CSV is never held in memory as a whole.
+   * @throws CatalogTransformerException never thrown, kept for compatibility.
    */
   @Override
   public BinaryContent transform(
@@ -96,7 +97,7 @@ public BinaryContent transform(
 
     Set<AttributeDescriptor> requestedAttributeDescriptors =
         requestedFields.isEmpty()
-            ? getAllCsvAttributeDescriptors(metacards)
+            ? getAllCsvAttributeDescriptors(sample(metacards, arguments))
             : getOnlyRequestedAttributes(metacards, requestedFields);
 
     Set<AttributeDescriptor> filteredAttributeDescriptors =
@@ -108,8 +109,15 @@ public BinaryContent transform(
     List<AttributeDescriptor> sortedAttributeDescriptors =
         sortAttributes(filteredAttributeDescriptors, attributeOrder);
 
-    Appendable csv = writeMetacardsToCsv(metacards, sortedAttributeDescriptors, columnAliasMap);
+    return createResponse(metacards.iterator(), sortedAttributeDescriptors, columnAliasMap);
+  }
 
-    return createResponse(csv);
+  private static List<Metacard> sample(
+      List<Metacard> metacards, Map<String, Serializable> arguments) {
+    Serializable sampleSize = arguments.get(COLUMN_SAMPLE_SIZE_KEY);
+    if (sampleSize instanceof Integer && (Integer) sampleSize > 0) {
+      return metacards.subList(0, Math.min((Integer) sampleSize, metacards.size()));
+    }
+    return metacards;
   }
 }
@@ -119,6 +119,31 @@ public void testCsvQueryResponseTransformer() throws CatalogTransformerException
     assertThat(scanner.hasNext(), is(false));
   }
 
+  @Test
+  public void testColumnsDiscoveredFromSample() throws CatalogTransformerException {
+    MetacardType firstMetacardType = mock(MetacardType.class);
+    when(firstMetacardType.getAttributeDescriptors())
+        .thenReturn(new HashSet<>(ATTRIBUTE_DESCRIPTOR_LIST.subList(0, 1)));
+    Metacard firstMetacard = RESULT_LIST.get(0).getMetacard();
+    when(firstMetacard.getMetacardType()).thenReturn(firstMetacardType);
+
+    Map<String, Serializable> argumentsMap = new HashMap<>();
+    argumentsMap.put("columnSampleSize", 1);
+
+    BinaryContent bc = transformer.transform(sourceResponse, argumentsMap);
+    Scanner scanner = new Scanner(bc.getInputStream());
+    scanner.useDelimiter("\\n|\\r|,");
+
+    validate(scanner, new String[] {"attribute1"});
+    for (int i = 0; i < METACARD_COUNT; i++) {
+      validate(scanner, new String[] {"", "value1"});
+    }
+
+    assertThat(scanner.hasNext(), is(true));
+    assertThat(scanner.next(), is(""));
+    assertThat(scanner.hasNext(), is(false));
+  }
+
   private void validate(Scanner scanner, String[] expectedValues) {
     for (int i = 0; i < expectedValues.length; i++) {
       assertThat(scanner.hasNext(), is(true));
@@ -22,7 +22,7 @@
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiFunction;
-import javax.imageio.ImageIO;
+import org.codice.ddf.platform.util.SubsampledImageReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,16 +30,23 @@
     implements BiFunction<Metacard, Map<String, Serializable>, Optional<BufferedImage>> {
   private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailSupplier.class);
 
+  /** Thumbnails are overlaid at up to this width and height, whatever their original size. */
+  private static final int MAX_THUMBNAIL_SIZE = 512;
+
   @Override
   public Optional<BufferedImage> apply(Metacard metacard, Map<String, Serializable> arguments) {
     final byte[] thumbnailBytes = metacard.getThumbnail();
 
     if (thumbnailBytes != null) {
       try (final InputStream inputStream = new ByteArrayInputStream(thumbnailBytes)) {
-        final BufferedImage image = ImageIO.read(inputStream);
+        final BufferedImage image =
+            SubsampledImageReader.getInstance().read(inputStream, MAX_THUMBNAIL_SIZE);
         return Optional.ofNullable(image);
       } catch (IOException e) {
         LOGGER.debug("Could not read thumbnail bytes.", e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOGGER.debug("Interrupted while reading thumbnail bytes.", e);
       }
     }
 
@@ -14,11 +14,15 @@
 package ddf.catalog.transformer;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertThat;
 
 import ddf.catalog.data.impl.MetacardImpl;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import javax.imageio.ImageIO;
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 
@@ -32,6 +36,14 @@ private byte[] getImageBytes() throws IOException {
     }
   }
 
+  private byte[] getLargeImageBytes() throws IOException {
+    final BufferedImage image = new BufferedImage(4000, 2000, BufferedImage.TYPE_BYTE_GRAY);
+    try (final ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+      ImageIO.write(image, "png", outputStream);
+      return outputStream.toByteArray();
+    }
+  }
+
   @Test
   public void testSupplierWithThumbnail() throws IOException {
     final MetacardImpl metacard = new MetacardImpl();
@@ -39,6 +51,15 @@ public void testSupplierWithThumbnail() throws IOException {
     assertThat(supplier.apply(metacard, null).isPresent(), is(true));
   }
 
+  @Test
+  public void testLargeThumbnailIsSubsampled() throws IOException {
+    final MetacardImpl metacard = new MetacardImpl();
+    metacard.setThumbnail(getLargeImageBytes());
+    final BufferedImage image = supplier.apply(metacard, null).get();
+    assertThat(image.getWidth(), lessThanOrEqualTo(512));
+    assertThat(image.getHeight(), lessThanOrEqualTo(512));
+  }
+
   @Test
   public void testSupplierWithoutThumbnail() {
     assertThat(supplier.apply(new MetacardImpl(), null).isPresent(), is(false));
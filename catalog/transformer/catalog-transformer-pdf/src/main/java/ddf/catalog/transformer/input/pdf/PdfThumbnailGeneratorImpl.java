@@ -20,6 +20,8 @@
 import java.io.IOException;
 import java.util.Optional;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
 import org.apache.pdfbox.tools.imageio.ImageIOUtil;
@@ -34,6 +36,15 @@ public class PdfThumbnailGeneratorImpl implements PdfThumbnailGenerator {
 
   private static final String FORMAT_NAME = "jpg";
 
+  private static final float POINTS_PER_INCH = 72;
+
+  /**
+   * The largest side of the rendered page, in pixels. Pages that are large enough to be rendered
+   * bigger than this at {@link #RESOLUTION_DPI}, such as maps and plans, are rendered at a lower
+   * resolution instead.
+   */
+  private static final float MAX_RENDERED_SIZE = 4 * IMAGE_HEIGHTWIDTH;
+
   @Override
   public Optional<byte[]> apply(PDDocument pdfDocument) throws IOException {
     PDFRenderer pdfRenderer = new PDFRenderer(pdfDocument);
@@ -42,7 +53,8 @@ public Optional<byte[]> apply(PDDocument pdfDocument) throws IOException {
       return Optional.empty();
     }
 
-    BufferedImage image = pdfRenderer.renderImageWithDPI(0, RESOLUTION_DPI, ImageType.RGB);
+    BufferedImage image =
+        pdfRenderer.renderImageWithDPI(0, getResolution(pdfDocument.getPage(0)), ImageType.RGB);
 
     int largestDimension = Math.max(image.getHeight(), image.getWidth());
     float scalingFactor = IMAGE_HEIGHTWIDTH / largestDimension;
@@ -62,4 +74,14 @@ public Optional<byte[]> apply(PDDocument pdfDocument) throws IOException {
       return Optional.of(outputStream.toByteArray());
     }
   }
+
+  private float getResolution(PDPage page) {
+    PDRectangle cropBox = page.getCropBox();
+    float largestDimension = Math.max(cropBox.getWidth(), cropBox.getHeight());
+    if (largestDimension <= 0) {
+      return RESOLUTION_DPI;
+    }
+
+    return Math.min(RESOLUTION_DPI, MAX_RENDERED_SIZE * POINTS_PER_INCH / largestDimension);
+  }
 }
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.transformer.input.tika;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import javax.imageio.ImageIO;
+import org.codice.ddf.platform.util.SubsampledImageReader;
+import org.imgscalr.Scalr;
+
+/**
+ * Creates JPEG thumbnails of images without decoding them at full resolution.
+ *
+ * <p>Images are read through a {@link SubsampledImageReader}, which decodes them at up to twice the
+ * thumbnail size and bounds the memory used by concurrent decodes.
+ */
+class ImageThumbnailGenerator {
+
+  static final int THUMBNAIL_SIZE = 200;
+
+  /** Images are decoded at up to twice the thumbnail size and then scaled down, for quality. */
+  private static final int OVERSAMPLING = 2;
+
+  private final SubsampledImageReader imageReader;
+
+  ImageThumbnailGenerator() {
+    this(SubsampledImageReader.getInstance());
+  }
+
+  ImageThumbnailGenerator(SubsampledImageReader imageReader) {
+    this.imageReader = imageReader;
+  }
+
+  /**
+   * @param input the image, which is not closed
+   * @return the JPEG thumbnail, or empty if the input is not an image that can be read
+   */
+  Optional<byte[]> createThumbnail(InputStream input) throws IOException, InterruptedException {
+    BufferedImage image = decode(input);
+    if (image == null) {
+      return Optional.empty();
+    }
+
+    BufferedImage thumbnail = toRgb(Scalr.resize(image, THUMBNAIL_SIZE));
+
+    try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+      ImageIO.write(thumbnail, "jpeg", out);
+      return Optional.of(out.toByteArray());
+    }
+  }
+
+  @Nullable
+  BufferedImage decode(InputStream input) throws IOException, InterruptedException {
+    return imageReader.read(input, THUMBNAIL_SIZE * OVERSAMPLING);
+  }
+
+  /** The JPEG writer can not write images with an alpha channel. */
+  private static BufferedImage toRgb(BufferedImage image) {
+    if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+      return image;
+    }
+
+    BufferedImage rgb =
+        new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = rgb.createGraphics();
+    graphics.drawImage(image, null, null);
+    graphics.dispose();
+    return rgb;
+  }
+}
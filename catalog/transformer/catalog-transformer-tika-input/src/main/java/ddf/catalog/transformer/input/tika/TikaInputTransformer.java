@@ -34,10 +34,6 @@
 import ddf.catalog.transformer.common.tika.MetacardCreator;
 import ddf.catalog.transformer.common.tika.TikaMetadataExtractor;
 import ddf.catalog.util.impl.ServiceComparator;
-import java.awt.Graphics2D;
-import java.awt.Image;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -53,7 +49,6 @@
 import java.util.TreeMap;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
-import javax.imageio.ImageIO;
 import javax.imageio.spi.IIORegistry;
 import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerConfigurationException;
@@ -69,7 +64,6 @@
 import org.codice.ddf.configuration.DictionaryMap;
 import org.codice.ddf.platform.util.TemporaryFileBackedOutputStream;
 import org.codice.ddf.platform.util.XMLUtils;
-import org.imgscalr.Scalr;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -172,6 +166,8 @@ public class TikaInputTransformer implements InputTransformer {
 
   private boolean useResourceTitleAsTitle;
 
+  private final ImageThumbnailGenerator thumbnailGenerator = new ImageThumbnailGenerator();
+
   public TikaInputTransformer(BundleContext bundleContext, MetacardType metacardType) {
     this.commonTikaMetacardType = metacardType;
     classLoaderAndBundleContextSetup(bundleContext);
@@ -622,27 +618,17 @@ private void addMediaTypetoMimeTypes(MediaType mediaType, List<String> mimeTypes
 
   private void createThumbnail(InputStream input, Metacard metacard) {
     try {
-      Image image = ImageIO.read(new CloseShieldInputStream(input));
-
-      if (null != image) {
-        BufferedImage bufferedImage =
-            new BufferedImage(
-                image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_RGB);
-        Graphics2D graphics = bufferedImage.createGraphics();
-        graphics.drawImage(image, null, null);
-        graphics.dispose();
-
-        BufferedImage thumb = Scalr.resize(bufferedImage, 200);
+      Optional<byte[]> thumbnail =
+          thumbnailGenerator.createThumbnail(new CloseShieldInputStream(input));
 
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-          ImageIO.write(thumb, "jpeg", out);
-
-          byte[] thumbBytes = out.toByteArray();
-          metacard.setAttribute(new AttributeImpl(Metacard.THUMBNAIL, thumbBytes));
-        }
+      if (thumbnail.isPresent()) {
+        metacard.setAttribute(new AttributeImpl(Metacard.THUMBNAIL, thumbnail.get()));
       } else {
         LOGGER.debug("Unable to read image from input stream to create thumbnail.");
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOGGER.debug("Interrupted while creating thumbnail.", e);
     } catch (Exception e) {
       LOGGER.debug("Unable to read image from input stream to create thumbnail.", e);
     }
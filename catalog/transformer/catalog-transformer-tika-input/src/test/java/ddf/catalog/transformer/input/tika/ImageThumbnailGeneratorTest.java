@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package ddf.catalog.transformer.input.tika;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Optional;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+
+public class ImageThumbnailGeneratorTest {
+
+  private final ImageThumbnailGenerator generator = new ImageThumbnailGenerator();
+
+  @Test
+  public void testLargeImageIsSubsampled() throws Exception {
+    BufferedImage decoded = generator.decode(image(6000, 4000));
+
+    assertThat(decoded.getWidth(), lessThanOrEqualTo(2 * ImageThumbnailGenerator.THUMBNAIL_SIZE));
+    assertThat(decoded.getHeight(), lessThanOrEqualTo(2 * ImageThumbnailGenerator.THUMBNAIL_SIZE));
+  }
+
+  @Test
+  public void testSmallImageIsNotSubsampled() throws Exception {
+    BufferedImage decoded = generator.decode(image(300, 100));
+
+    assertThat(decoded.getWidth(), is(300));
+    assertThat(decoded.getHeight(), is(100));
+  }
+
+  @Test
+  public void testThumbnail() throws Exception {
+    Optional<byte[]> thumbnail = generator.createThumbnail(image(3000, 1500));
+
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(thumbnail.get()));
+    assertThat(image.getWidth(), is(ImageThumbnailGenerator.THUMBNAIL_SIZE));
+    assertThat(image.getHeight(), is(ImageThumbnailGenerator.THUMBNAIL_SIZE / 2));
+  }
+
+  @Test
+  public void testNotAnImage() throws Exception {
+    Optional<byte[]> thumbnail =
+        generator.createThumbnail(new ByteArrayInputStream("not an image".getBytes()));
+
+    assertThat(thumbnail.isPresent(), is(false));
+  }
+
+  private static InputStream image(int width, int height) throws Exception {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+    try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+      ImageIO.write(image, "png", out);
+      return new ByteArrayInputStream(out.toByteArray());
+    }
+  }
+}
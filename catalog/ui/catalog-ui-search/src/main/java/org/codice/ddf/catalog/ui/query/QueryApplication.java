@@ -22,12 +22,17 @@
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 import ddf.catalog.source.UnsupportedQueryException;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.function.Function;
+import java.util.function.Consumer;
+import javax.servlet.http.HttpServletResponse;
 import org.codice.ddf.catalog.ui.metacard.EntityTooLargeException;
 import org.codice.ddf.catalog.ui.query.cql.CqlQueryResponse;
 import org.codice.ddf.catalog.ui.query.cql.CqlRequest;
@@ -48,7 +53,7 @@
 import org.slf4j.LoggerFactory;
 import spark.servlet.SparkApplication;
 
-public class QueryApplication implements SparkApplication, Function {
+public class QueryApplication implements SparkApplication, JsonRpc.NotifyingMethod {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(QueryApplication.class);
 
@@ -102,8 +107,11 @@ public void init() {
         APPLICATION_JSON,
         (req, res) -> {
           CqlRequest cqlRequest = GSON.fromJson(util.safeGetBody(req), CqlRequest.class);
+          // The query and everything computed from its results are done before the first byte
+          // is written, so only the JSON encoding happens while streaming
           CqlQueryResponse cqlQueryResponse = util.executeCqlQuery(cqlRequest);
-          return GSON.toJson(cqlQueryResponse);
+          writeJson(res.raw(), cqlQueryResponse);
+          return "";
         });
 
     post("/cql/transform/:transformerId", cqlTransformHandler, GSON::toJson);
@@ -159,8 +167,26 @@ public void init() {
         });
   }
 
+  private static void writeJson(HttpServletResponse response, CqlQueryResponse cqlQueryResponse)
+      throws IOException {
+    JsonWriter writer =
+        new JsonWriter(
+            new BufferedWriter(
+                new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8)));
+    try {
+      GSON.toJson(cqlQueryResponse, CqlQueryResponse.class, writer);
+      writer.flush();
+    } catch (IOException | RuntimeException e) {
+      // Until the response is committed, the exception handlers can still replace it
+      if (!response.isCommitted()) {
+        response.resetBuffer();
+      }
+      throw e;
+    }
+  }
+
   @Override
-  public Object apply(Object req) {
+  public Object apply(Object req, Consumer<Object> notifier) {
     if (!(req instanceof List)) {
       return JsonRpc.invalidParams("parameters not a list", req);
     }
@@ -186,7 +212,8 @@ public Object apply(Object req) {
     }
 
     try {
-      return util.executeCqlQuery(cqlRequest);
+      return util.executeCqlQuery(
+          cqlRequest, cqlRequest.isPartialResults() ? notifier::accept : null);
     } catch (UnsupportedQueryException e) {
       LOGGER.error(QUERY_ENDPOINT_FAILED, e);
       return JsonRpc.error(400, "Unsupported query request.");
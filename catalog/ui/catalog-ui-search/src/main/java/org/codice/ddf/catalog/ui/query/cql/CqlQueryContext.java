@@ -0,0 +1,325 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.cql;
+
+import com.google.common.collect.ImmutableMap;
+import ddf.action.Action;
+import ddf.action.ActionRegistry;
+import ddf.catalog.data.Attribute;
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.MetacardType;
+import ddf.catalog.data.Result;
+import ddf.catalog.filter.FilterAdapter;
+import ddf.catalog.operation.Query;
+import ddf.catalog.source.UnsupportedQueryException;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+import org.codice.ddf.catalog.ui.query.delegate.SearchTerm;
+import org.codice.ddf.catalog.ui.query.delegate.WktQueryDelegate;
+import org.codice.ddf.catalog.ui.transformer.TransformerDescriptors;
+import org.locationtech.spatial4j.context.SpatialContext;
+import org.locationtech.spatial4j.context.SpatialContextFactory;
+import org.locationtech.spatial4j.context.jts.JtsSpatialContextFactory;
+import org.locationtech.spatial4j.context.jts.ValidationRule;
+import org.locationtech.spatial4j.distance.DistanceUtils;
+import org.locationtech.spatial4j.io.ShapeReader;
+import org.locationtech.spatial4j.shape.Point;
+import org.locationtech.spatial4j.shape.Shape;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds everything a {@link CqlResult} needs that depends only on the query and not on the
+ * individual result: the center of the query geometry, the search terms split into exact and
+ * wildcard matchers, and the resolved display names of the available actions. It is built once per
+ * {@link CqlRequest} so that the per-result work is limited to the result itself.
+ *
+ * <p>Instances are not thread-safe and are meant to be used while building a single response.
+ */
+public class CqlQueryContext {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CqlQueryContext.class);
+
+  // For queries we use repairConvexHull which my cause false positives to be returned but this
+  // is better than potentially missing some results due to false negatives.
+  private static final Map<String, String> SPATIAL_CONTEXT_ARGUMENTS =
+      ImmutableMap.of(
+          "spatialContextFactory",
+          JtsSpatialContextFactory.class.getName(),
+          "validationRule",
+          ValidationRule.repairConvexHull.name(),
+          "allowMultiOverlap",
+          "true");
+
+  private static final SpatialContext SPATIAL_CONTEXT =
+      SpatialContextFactory.makeSpatialContext(
+          SPATIAL_CONTEXT_ARGUMENTS, CqlQueryContext.class.getClassLoader());
+
+  private static final ShapeReader WKT_READER = SPATIAL_CONTEXT.getFormats().getWktReader();
+
+  private static final WktQueryDelegate WKT_QUERY_DELEGATE = new WktQueryDelegate();
+
+  private static final Pattern EXPORT_TITLE_PREFIX = Pattern.compile("^Export( as)?\\s+\\b");
+
+  private static final String WILDCARD = "*";
+
+  private final boolean normalize;
+
+  private final ActionRegistry actionRegistry;
+
+  @Nullable private final TransformerDescriptors descriptors;
+
+  @Nullable private final Point queryCenter;
+
+  private final Set<String> exactTerms = new HashSet<>();
+
+  private final List<SearchTerm> wildcardTerms = new ArrayList<>();
+
+  private final Map<MetacardType, List<String>> textAttributeNames = new IdentityHashMap<>();
+
+  private final Map<String, Boolean> blacklistedActionIds = new HashMap<>();
+
+  private final Map<String, String> actionDisplayNames = new HashMap<>();
+
+  public CqlQueryContext(
+      Query query,
+      @Nullable Set<SearchTerm> searchTerms,
+      boolean normalize,
+      FilterAdapter filterAdapter,
+      ActionRegistry actionRegistry,
+      @Nullable TransformerDescriptors descriptors) {
+    this.normalize = normalize;
+    this.actionRegistry = actionRegistry;
+    this.descriptors = descriptors;
+    this.queryCenter = parseQueryCenter(query, filterAdapter);
+
+    if (normalize && searchTerms != null) {
+      for (SearchTerm term : searchTerms) {
+        if (WILDCARD.equals(term.getTerm())) {
+          continue;
+        }
+        if (term.getTerm().contains(WILDCARD)) {
+          wildcardTerms.add(term);
+        } else {
+          exactTerms.add(term.getTerm());
+        }
+      }
+    }
+  }
+
+  @Nullable
+  private static Point parseQueryCenter(Query query, FilterAdapter filterAdapter) {
+    try {
+      String queryWkt = filterAdapter.adapt(query, WKT_QUERY_DELEGATE);
+      if (StringUtils.isNotBlank(queryWkt)) {
+        return WKT_READER.read(queryWkt).getCenter();
+      }
+    } catch (IOException | ParseException | UnsupportedQueryException e) {
+      LOGGER.debug("Unable to parse query wkt", e);
+    }
+    return null;
+  }
+
+  public boolean isNormalize() {
+    return normalize;
+  }
+
+  /**
+   * Returns the distance in meters between the result location and the center of the query
+   * geometry, falling back to the distance reported by the source when either is unavailable.
+   */
+  @Nullable
+  Double normalizeDistance(Result result) {
+    Double resultDistance = result.getDistanceInMeters();
+
+    Metacard metacard = result.getMetacard();
+    if (queryCenter != null && metacard != null && StringUtils.isNotBlank(metacard.getLocation())) {
+      try {
+        Shape locationShape = WKT_READER.read(metacard.getLocation());
+        resultDistance =
+            DistanceUtils.degrees2Dist(
+                    SPATIAL_CONTEXT.calcDistance(locationShape.getCenter(), queryCenter),
+                    DistanceUtils.EARTH_MEAN_RADIUS_KM)
+                * 1000;
+      } catch (IOException | ParseException e) {
+        LOGGER.debug("Unable to parse metacard location wkt", e);
+      }
+    }
+
+    if (resultDistance != null && (resultDistance < 0 || resultDistance > Double.MAX_VALUE)) {
+      resultDistance = null;
+    }
+    return resultDistance;
+  }
+
+  /**
+   * Counts the occurrences of every search term in the text attributes of the metacard. The total
+   * number of tokens is stored under {@code "*"}.
+   */
+  Map<String, Integer> countMatches(Metacard metacard) {
+    List<String> attributeNames = getTextAttributeNames(metacard.getMetacardType());
+    if (attributeNames.isEmpty()) {
+      return new HashMap<>();
+    }
+
+    Map<String, Integer> matches = new HashMap<>();
+    boolean hasTextValue = false;
+    int totalTokens = 0;
+    for (String name : attributeNames) {
+      Attribute attribute = metacard.getAttribute(name);
+      if (attribute == null || attribute.getValue() == null) {
+        continue;
+      }
+      hasTextValue = true;
+      totalTokens += countTokens(attribute.getValue().toString().toLowerCase(), matches);
+    }
+
+    if (hasTextValue) {
+      matches.put(WILDCARD, totalTokens);
+    }
+    return matches;
+  }
+
+  private int countTokens(String value, Map<String, Integer> matches) {
+    int tokens = 0;
+    int start = -1;
+    for (int i = 0; i <= value.length(); i++) {
+      if (i == value.length() || isDelimiter(value.charAt(i))) {
+        if (start >= 0) {
+          tokens++;
+          matchToken(value.substring(start, i), matches);
+          start = -1;
+        }
+      } else if (start < 0) {
+        start = i;
+      }
+    }
+    return tokens;
+  }
+
+  private void matchToken(String token, Map<String, Integer> matches) {
+    if (exactTerms.contains(token)) {
+      matches.merge(token, 1, Integer::sum);
+    }
+    for (SearchTerm term : wildcardTerms) {
+      if (term.match(token)) {
+        matches.merge(term.getTerm(), 1, Integer::sum);
+      }
+    }
+  }
+
+  /** Matches the {@code [\s\p{Punct}]} character class without going through the regex engine. */
+  private static boolean isDelimiter(char c) {
+    switch (c) {
+      case ' ':
+      case '\t':
+      case '\n':
+      case '\u000B':
+      case '\f':
+      case '\r':
+        return true;
+      default:
+        return (c >= '!' && c <= '/')
+            || (c >= ':' && c <= '@')
+            || (c >= '[' && c <= '`')
+            || (c >= '{' && c <= '~');
+    }
+  }
+
+  private List<String> getTextAttributeNames(MetacardType metacardType) {
+    return textAttributeNames.computeIfAbsent(
+        metacardType,
+        type -> {
+          List<String> names = new ArrayList<>();
+          for (AttributeDescriptor descriptor : type.getAttributeDescriptors()) {
+            if (descriptor != null && isTextAttribute(descriptor)) {
+              names.add(descriptor.getName());
+            }
+          }
+          return names;
+        });
+  }
+
+  private static boolean isTextAttribute(AttributeDescriptor descriptor) {
+    switch (descriptor.getType().getAttributeFormat()) {
+      case STRING:
+      case XML:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Lists the actions for the metacard, dropping blacklisted transformers. The blacklist and
+   * display name lookups are done once per action id for the whole query.
+   */
+  List<Action> getActions(Metacard metacard) {
+    List<Action> actions = actionRegistry.list(metacard);
+    if (actions.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    List<Action> displayableActions = new ArrayList<>(actions.size());
+    for (Action action : actions) {
+      String id = action.getId();
+      if (isBlacklistedTransformer(id)) {
+        continue;
+      }
+      if (!actionDisplayNames.containsKey(id)) {
+        actionDisplayNames.put(id, getDisplayName(id, action.getTitle()));
+      }
+      displayableActions.add(new DisplayableAction(action, actionDisplayNames.get(id)));
+    }
+    return displayableActions;
+  }
+
+  private boolean isBlacklistedTransformer(String id) {
+    if (descriptors == null) {
+      return false;
+    }
+    return blacklistedActionIds.computeIfAbsent(
+        id,
+        actionId ->
+            descriptors
+                .getBlackListedMetacardTransformerIds()
+                .stream()
+                .anyMatch(actionId::endsWith));
+  }
+
+  private String getDisplayName(String id, String title) {
+    if (descriptors == null) {
+      return id;
+    }
+
+    Map<String, String> transformerDescriptor = descriptors.getMetacardTransformer(id);
+    if (transformerDescriptor != null) {
+      return transformerDescriptor.get("displayName");
+    }
+
+    return EXPORT_TITLE_PREFIX.matcher(title).replaceFirst("");
+  }
+}
@@ -63,6 +63,9 @@ public class CqlQueryResponse {
 
   private final Boolean userSpellcheckIsOn;
 
+  // The status of each source, only set when the results of each source were sent as they came in
+  private List<Status> sources;
+
   // Transient so as not to be serialized to/from JSON
   private final transient QueryResponse queryResponse;
 
@@ -125,21 +128,21 @@ public CqlQueryResponse(
                       return mt1;
                     }));
 
-    final Set<SearchTerm> searchTerms = extractSearchTerms(request.getQuery(), filterAdapter);
+    final Set<SearchTerm> searchTerms =
+        normalize ? extractSearchTerms(request.getQuery(), filterAdapter) : Collections.emptySet();
+    final CqlQueryContext context =
+        new CqlQueryContext(
+            queryResponse.getRequest().getQuery(),
+            searchTerms,
+            normalize,
+            filterAdapter,
+            actionRegistry,
+            descriptors);
     results =
         queryResponse
             .getResults()
             .stream()
-            .map(
-                result ->
-                    new CqlResult(
-                        result,
-                        searchTerms,
-                        queryResponse.getRequest(),
-                        normalize,
-                        filterAdapter,
-                        actionRegistry))
-            .map(cqlResult -> new CqlResult(cqlResult, descriptors))
+            .map(result -> new CqlResult(result, context))
             .collect(Collectors.toList());
 
     this.facets = getFacetResults(queryResponse.getPropertyValue(EXPERIMENTAL_FACET_RESULTS_KEY));
@@ -194,4 +197,12 @@ public String getId() {
   public Status getStatus() {
     return status;
   }
+
+  public List<Status> getSources() {
+    return sources;
+  }
+
+  public void setSources(List<Status> sources) {
+    this.sources = sources;
+  }
 }
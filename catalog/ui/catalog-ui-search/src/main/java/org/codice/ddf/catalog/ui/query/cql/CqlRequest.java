@@ -95,6 +95,8 @@ public void setFacets(Set<String> facets) {
 
   private boolean excludeUnnecessaryAttributes = true;
 
+  private boolean partialResults = false;
+
   public List<String> getSrcs() {
     return srcs;
   }
@@ -351,6 +353,18 @@ public void setExcludeUnnecessaryAttributes(boolean excludeUnnecessaryAttributes
     this.excludeUnnecessaryAttributes = excludeUnnecessaryAttributes;
   }
 
+  /**
+   * Whether the results of each source should be sent as soon as that source completes, before the
+   * merged results of all sources. Only supported over the websocket.
+   */
+  public boolean isPartialResults() {
+    return partialResults;
+  }
+
+  public void setPartialResults(boolean partialResults) {
+    this.partialResults = partialResults;
+  }
+
   public static class Sort {
 
     private String attribute;
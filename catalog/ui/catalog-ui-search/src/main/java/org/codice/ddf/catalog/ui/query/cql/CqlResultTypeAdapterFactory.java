@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.cql;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import ddf.action.Action;
+import ddf.catalog.data.Attribute;
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.AttributeType.AttributeFormat;
+import ddf.catalog.data.Metacard;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Map;
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a {@link CqlResult} directly to the {@link JsonWriter}, including the metacard in the
+ * property JSON format, without first copying the metacard into a {@code MetacardImpl} and a map.
+ * Reading is left to the default reflective adapter.
+ */
+public class CqlResultTypeAdapterFactory implements TypeAdapterFactory {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CqlResultTypeAdapterFactory.class);
+
+  private static final DateTimeFormatter ISO_8601_DATE_FORMAT =
+      DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ").withZoneUTC();
+
+  private static final String METACARD_TYPE_PROPERTY_KEY = "metacard-type";
+
+  private static final String SOURCE_ID_PROPERTY = "source-id";
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    if (!CqlResult.class.isAssignableFrom(type.getRawType())) {
+      return null;
+    }
+    TypeAdapter<CqlResult> delegate = gson.getDelegateAdapter(this, TypeToken.get(CqlResult.class));
+    return (TypeAdapter<T>) new CqlResultTypeAdapter(gson, delegate);
+  }
+
+  private static class CqlResultTypeAdapter extends TypeAdapter<CqlResult> {
+
+    private final Gson gson;
+
+    private final TypeAdapter<CqlResult> delegate;
+
+    private final TypeAdapter<Map<String, Integer>> matchesAdapter;
+
+    CqlResultTypeAdapter(Gson gson, TypeAdapter<CqlResult> delegate) {
+      this.gson = gson;
+      this.delegate = delegate;
+      this.matchesAdapter = gson.getAdapter(new TypeToken<Map<String, Integer>>() {});
+    }
+
+    @Override
+    public void write(JsonWriter out, CqlResult cqlResult) throws IOException {
+      if (cqlResult == null) {
+        out.nullValue();
+        return;
+      }
+
+      if (cqlResult.getResult() == null) {
+        delegate.write(out, cqlResult);
+        return;
+      }
+
+      out.beginObject();
+      out.name("matches");
+      matchesAdapter.write(out, cqlResult.getMatches());
+      out.name("metacard");
+      writeMetacard(out, cqlResult.getResult().getMetacard());
+      out.name("distance").value(cqlResult.getDistance());
+      out.name("relevance").value(cqlResult.getRelevance());
+      out.name("actions");
+      writeActions(out, cqlResult);
+      out.name("hasThumbnail").value(cqlResult.getHasThumbnail());
+      out.name("isResourceLocal").value(cqlResult.getIsResourceLocal());
+      out.endObject();
+    }
+
+    private void writeActions(JsonWriter out, CqlResult cqlResult) throws IOException {
+      out.beginArray();
+      for (Action action : cqlResult.getActions()) {
+        gson.toJson(action, action.getClass(), out);
+      }
+      out.endArray();
+    }
+
+    private void writeMetacard(JsonWriter out, Metacard metacard) throws IOException {
+      if (metacard == null) {
+        out.nullValue();
+        return;
+      }
+
+      out.beginObject();
+      out.name("properties");
+      out.beginObject();
+      for (AttributeDescriptor descriptor : metacard.getMetacardType().getAttributeDescriptors()) {
+        writeAttribute(out, metacard.getAttribute(descriptor.getName()), descriptor);
+      }
+      out.name(METACARD_TYPE_PROPERTY_KEY).value(metacard.getMetacardType().getName());
+      if (StringUtils.isNotBlank(metacard.getSourceId())) {
+        out.name(SOURCE_ID_PROPERTY).value(metacard.getSourceId());
+      }
+      out.endObject();
+      out.name("cached").value(CqlResult.getCachedDate(metacard));
+      out.endObject();
+    }
+
+    private void writeAttribute(JsonWriter out, Attribute attribute, AttributeDescriptor descriptor)
+        throws IOException {
+      if (attribute == null || attribute.getValue() == null) {
+        return;
+      }
+
+      AttributeFormat format = descriptor.getType().getAttributeFormat();
+      switch (format) {
+        case BINARY:
+        case XML:
+        case OBJECT:
+          return;
+        default:
+          break;
+      }
+
+      if (descriptor.isMultiValued()) {
+        out.name(attribute.getName());
+        out.beginArray();
+        for (Serializable value : attribute.getValues()) {
+          writeValue(out, attribute.getName(), value, format);
+        }
+        out.endArray();
+      } else if (isWritable(attribute.getValue(), format)) {
+        out.name(attribute.getName());
+        writeValue(out, attribute.getName(), attribute.getValue(), format);
+      }
+    }
+
+    private static boolean isWritable(Serializable value, AttributeFormat format) {
+      return format != AttributeFormat.DATE || value instanceof Date;
+    }
+
+    private static void writeValue(
+        JsonWriter out, String name, Serializable value, AttributeFormat format)
+        throws IOException {
+      if (value == null) {
+        out.nullValue();
+        return;
+      }
+
+      switch (format) {
+        case DATE:
+          if (value instanceof Date) {
+            out.value(ISO_8601_DATE_FORMAT.print(((Date) value).getTime()));
+          } else {
+            LOGGER.debug(
+                "Dropping attribute date value {} for {} because it isn't a Date object.",
+                value,
+                name);
+            out.nullValue();
+          }
+          break;
+        case BOOLEAN:
+          out.value((Boolean) value);
+          break;
+        case DOUBLE:
+        case LONG:
+        case INTEGER:
+        case SHORT:
+          out.value((Number) value);
+          break;
+        default:
+          out.value(value.toString());
+          break;
+      }
+    }
+
+    @Override
+    public CqlResult read(JsonReader in) throws IOException {
+      return delegate.read(in);
+    }
+  }
+}
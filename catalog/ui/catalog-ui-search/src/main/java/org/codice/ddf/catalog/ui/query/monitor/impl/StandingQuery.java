@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.event.DeliveryMethod;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.opengis.filter.Filter;
+
+/**
+ * A saved query over the local catalog that is kept up to date by catalog events instead of being
+ * re-run on every trigger. It is shared by every workspace that contains the same query and
+ * remembers the modified date of each metacard that currently matches, so the hit count for any
+ * window it covers can be read without querying the catalog.
+ */
+class StandingQuery implements DeliveryMethod {
+
+  private final String cql;
+
+  private final Filter filter;
+
+  private final Map<String, Long> matches = new ConcurrentHashMap<>();
+
+  @Nullable private volatile String subscriptionId;
+
+  private volatile long coveredSince = Long.MAX_VALUE;
+
+  StandingQuery(String cql, Filter filter) {
+    this.cql = cql;
+    this.filter = filter;
+  }
+
+  String getCql() {
+    return cql;
+  }
+
+  Filter getFilter() {
+    return filter;
+  }
+
+  @Nullable
+  String getSubscriptionId() {
+    return subscriptionId;
+  }
+
+  void setSubscriptionId(@Nullable String subscriptionId) {
+    this.subscriptionId = subscriptionId;
+  }
+
+  /**
+   * Returns true if the query is subscribed and every metacard modified after {@code since} is
+   * known to it.
+   */
+  boolean covers(long since) {
+    return subscriptionId != null && coveredSince <= since;
+  }
+
+  /**
+   * Adds the matches found by querying the catalog and marks the query as covering everything
+   * modified after {@code since}. Matches already delivered by events are kept when they are newer.
+   */
+  void seed(Map<String, Long> seedMatches, long since) {
+    seedMatches.forEach((id, modified) -> matches.merge(id, modified, Math::max));
+    coveredSince = since;
+  }
+
+  /** Returns the ids of the matching metacards modified after {@code since}. */
+  Set<String> getMatches(long since) {
+    return matches
+        .entrySet()
+        .stream()
+        .filter(entry -> entry.getValue() > since)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toSet());
+  }
+
+  /** Forgets the matches that were modified at or before {@code since}. */
+  void prune(long since) {
+    matches.values().removeIf(modified -> modified <= since);
+  }
+
+  @Override
+  public void created(Metacard newMetacard) {
+    match(newMetacard);
+  }
+
+  @Override
+  public void updatedHit(Metacard newMetacard, Metacard oldMetacard) {
+    match(newMetacard);
+  }
+
+  @Override
+  public void updatedMiss(Metacard newMetacard, Metacard oldMetacard) {
+    unmatch(oldMetacard);
+    unmatch(newMetacard);
+  }
+
+  @Override
+  public void deleted(Metacard oldMetacard) {
+    unmatch(oldMetacard);
+  }
+
+  private void match(Metacard metacard) {
+    if (metacard != null && metacard.getId() != null) {
+      Date modified = metacard.getModifiedDate();
+      matches.put(
+          metacard.getId(), modified != null ? modified.getTime() : System.currentTimeMillis());
+    }
+  }
+
+  private void unmatch(Metacard metacard) {
+    if (metacard != null && metacard.getId() != null) {
+      matches.remove(metacard.getId());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "StandingQuery{cql=" + cql + ", subscriptionId=" + subscriptionId + '}';
+  }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import ddf.catalog.event.EventProcessor;
+import ddf.catalog.event.InvalidSubscriptionException;
+import ddf.catalog.event.SubscriptionNotFoundException;
+import ddf.catalog.event.impl.SubscriptionImpl;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.geotools.filter.text.cql2.CQLException;
+import org.geotools.filter.text.ecql.ECQL;
+import org.opengis.filter.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps one {@link StandingQuery} per distinct saved query over the local catalog and subscribes
+ * each of them with the {@link EventProcessor}. Queries are keyed by their normalized CQL so that
+ * the same query saved in several workspaces is only evaluated once per catalog event.
+ *
+ * <p>Queries that cannot be turned into a subscription are remembered as such and left to be
+ * polled, so they are not retried on every run.
+ */
+class StandingQueryRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StandingQueryRegistry.class);
+
+  private final EventProcessor eventProcessor;
+
+  private final Map<String, StandingQuery> standingQueries = new ConcurrentHashMap<>();
+
+  StandingQueryRegistry(EventProcessor eventProcessor) {
+    this.eventProcessor = eventProcessor;
+  }
+
+  /**
+   * Returns the standing query for the CQL, subscribing it on first use.
+   *
+   * @return the standing query, or null if the CQL cannot be parsed
+   */
+  @Nullable
+  StandingQuery register(String cql) {
+    final Filter filter;
+    final String key;
+    try {
+      filter = ECQL.toFilter(cql);
+      key = ECQL.toCQL(filter);
+    } catch (CQLException e) {
+      LOGGER.debug("Unable to parse CQL for standing query: cql=[{}]", cql, e);
+      return null;
+    }
+
+    return standingQueries.computeIfAbsent(key, k -> subscribe(new StandingQuery(k, filter)));
+  }
+
+  private StandingQuery subscribe(StandingQuery standingQuery) {
+    try {
+      standingQuery.setSubscriptionId(
+          eventProcessor.createSubscription(
+              new SubscriptionImpl(standingQuery.getFilter(), standingQuery, null, false)));
+      LOGGER.debug("Subscribed {}", standingQuery);
+    } catch (InvalidSubscriptionException | RuntimeException e) {
+      LOGGER.debug(
+          "Unable to subscribe standing query, it will be polled instead: cql=[{}]",
+          standingQuery.getCql(),
+          e);
+    }
+    return standingQuery;
+  }
+
+  /** Unsubscribes and forgets every standing query that is not in {@code inUse}. */
+  void retain(Set<StandingQuery> inUse) {
+    Iterator<StandingQuery> iterator = standingQueries.values().iterator();
+    while (iterator.hasNext()) {
+      StandingQuery standingQuery = iterator.next();
+      if (!inUse.contains(standingQuery)) {
+        iterator.remove();
+        unsubscribe(standingQuery);
+      }
+    }
+  }
+
+  Collection<StandingQuery> getStandingQueries() {
+    return standingQueries.values();
+  }
+
+  /** Unsubscribes and forgets every standing query. */
+  void close() {
+    standingQueries.values().forEach(this::unsubscribe);
+    standingQueries.clear();
+  }
+
+  private void unsubscribe(StandingQuery standingQuery) {
+    String subscriptionId = standingQuery.getSubscriptionId();
+    if (subscriptionId == null) {
+      return;
+    }
+    standingQuery.setSubscriptionId(null);
+    try {
+      eventProcessor.deleteSubscription(subscriptionId);
+      LOGGER.debug("Unsubscribed {}", standingQuery);
+    } catch (SubscriptionNotFoundException | RuntimeException e) {
+      LOGGER.debug("Unable to delete standing query subscription {}", subscriptionId, e);
+    }
+  }
+}
@@ -13,7 +13,6 @@
  */
 package org.codice.ddf.catalog.ui.query.monitor.impl;
 
-import static org.apache.commons.lang3.Validate.notEmpty;
 import static org.apache.commons.lang3.Validate.notNull;
 import static org.quartz.CronScheduleBuilder.cronSchedule;
 import static org.quartz.JobBuilder.newJob;
@@ -21,8 +20,12 @@
 
 import com.google.common.collect.Lists;
 import ddf.catalog.CatalogFramework;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.event.EventProcessor;
 import ddf.catalog.federation.FederationException;
 import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.filter.impl.SortByImpl;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryResponse;
 import ddf.catalog.operation.impl.QueryImpl;
@@ -34,23 +37,26 @@
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinTask;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import org.apache.commons.lang3.tuple.ImmutablePair;
+import javax.annotation.Nullable;
 import org.apache.commons.lang3.tuple.Pair;
 import org.codice.ddf.catalog.ui.metacard.query.data.metacard.QueryMetacardImpl;
 import org.codice.ddf.catalog.ui.metacard.workspace.WorkspaceMetacardImpl;
@@ -59,12 +65,13 @@
 import org.codice.ddf.catalog.ui.query.monitor.api.SecurityService;
 import org.codice.ddf.catalog.ui.query.monitor.api.WorkspaceQueryService;
 import org.codice.ddf.catalog.ui.query.monitor.api.WorkspaceService;
-import org.codice.ddf.platform.util.ForkJoinPoolFactory;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
 import org.codice.ddf.security.common.Security;
 import org.geotools.filter.text.cql2.CQLException;
 import org.geotools.filter.text.ecql.ECQL;
-import org.opengis.filter.And;
 import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
 import org.quartz.CronTrigger;
 import org.quartz.JobDetail;
 import org.quartz.Scheduler;
@@ -84,6 +91,10 @@ public class WorkspaceQueryServiceImpl implements WorkspaceQueryService {
 
   private static final Security SECURITY = Security.getInstance();
 
+  private static final int DEFAULT_POLL_THREADS = 8;
+
+  private static final int SEED_PAGE_SIZE = 1000;
+
   private final QueryUpdateSubscriber queryUpdateSubscriber;
 
   private final WorkspaceService workspaceService;
@@ -107,6 +118,17 @@ public class WorkspaceQueryServiceImpl implements WorkspaceQueryService {
 
   private Subject subject;
 
+  private final ThreadPoolExecutor pollExecutor =
+      new ThreadPoolExecutor(
+          DEFAULT_POLL_THREADS,
+          DEFAULT_POLL_THREADS,
+          0L,
+          TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<>(),
+          StandardThreadFactoryBuilder.newThreadFactory("workspaceQueryThread"));
+
+  @Nullable private volatile StandingQueryRegistry standingQueryRegistry;
+
   /**
    * @param queryUpdateSubscriber must be non-null
    * @param workspaceService must be non-null
@@ -198,12 +220,48 @@ public void setQueryTimeoutMinutes(Long queryTimeoutMinutes) {
     this.queryTimeoutMinutes = queryTimeoutMinutes;
   }
 
+  /** @param pollThreads number of threads shared by all polls of remote sources (must be > 0) */
+  @SuppressWarnings("unused")
+  public void setPollThreads(Integer pollThreads) {
+    notNull(pollThreads, "pollThreads must be non-null");
+    if (pollThreads <= 0) {
+      LOGGER.debug("Ignoring invalid poll thread count : {}", pollThreads);
+      return;
+    }
+    LOGGER.debug("Setting poll threads : {}", pollThreads);
+    if (pollThreads > pollExecutor.getMaximumPoolSize()) {
+      pollExecutor.setMaximumPoolSize(pollThreads);
+      pollExecutor.setCorePoolSize(pollThreads);
+    } else {
+      pollExecutor.setCorePoolSize(pollThreads);
+      pollExecutor.setMaximumPoolSize(pollThreads);
+    }
+  }
+
+  /**
+   * Sets the event processor used to keep saved queries over the local catalog up to date as
+   * metacards are ingested, updated and deleted. Without one, every query is polled.
+   */
+  public void setEventProcessor(@Nullable EventProcessor eventProcessor) {
+    StandingQueryRegistry previous = standingQueryRegistry;
+    standingQueryRegistry =
+        eventProcessor != null ? new StandingQueryRegistry(eventProcessor) : null;
+    if (previous != null) {
+      previous.close();
+    }
+  }
+
   public void setSubject(Subject subject) {
     this.subject = subject;
   }
 
   public void destroy() {
     LOGGER.trace("Shutting down");
+    pollExecutor.shutdownNow();
+    StandingQueryRegistry registry = standingQueryRegistry;
+    if (registry != null) {
+      registry.close();
+    }
     try {
       scheduler.shutdown();
     } catch (SchedulerException e) {
@@ -226,12 +284,8 @@ public void run() {
 
                 LOGGER.debug("queryMetacards: size={}", queryMetacards.size());
 
-                List<WorkspaceTask> workspaceTasks = createWorkspaceTasks(queryMetacards);
-
-                LOGGER.debug("workspaceTasks: size={}", workspaceTasks.size());
-
                 Map<String, Pair<WorkspaceMetacardImpl, Long>> results =
-                    executeWorkspaceTasks(workspaceTasks, queryTimeoutMinutes, TimeUnit.MINUTES);
+                    countHits(queryMetacards, queryTimeoutMinutes, TimeUnit.MINUTES);
 
                 LOGGER.debug("results: {}", results);
 
@@ -242,55 +296,190 @@ public void run() {
         });
   }
 
-  private Map<String, Pair<WorkspaceMetacardImpl, Long>> executeWorkspaceTasks(
-      List<WorkspaceTask> workspaceTasks, long timeout, TimeUnit timeoutUnit) {
-    Map<String, Pair<WorkspaceMetacardImpl, Long>> results = new ConcurrentHashMap<>();
+  private Map<String, Pair<WorkspaceMetacardImpl, Long>> countHits(
+      Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> queryMetacards,
+      long timeout,
+      TimeUnit timeoutUnit) {
+    final Date since = calculateQueryTimeInterval();
+    final long deadline = System.nanoTime() + timeoutUnit.toNanos(timeout);
+    final StandingQueryRegistry registry = standingQueryRegistry;
+
+    List<WorkspacePlan> plans =
+        queryMetacards
+            .values()
+            .stream()
+            .map(workspaceQueryPair -> planWorkspace(workspaceQueryPair, registry))
+            .collect(Collectors.toList());
+
+    Map<PollKey, Future<Long>> polls = new HashMap<>();
+    plans.forEach(plan -> submitPolls(plan, polls, since));
+
+    if (registry != null) {
+      registry.retain(
+          plans
+              .stream()
+              .flatMap(plan -> plan.standingQueries.stream())
+              .collect(Collectors.toSet()));
+      seedStandingQueries(registry, since, deadline);
+    }
 
-    workspaceTasks
-        .stream()
-        .map(ForkJoinPoolFactory.getNewForkJoinPool(null, false)::submit)
-        .map(task -> getTaskResult(task, timeout, timeoutUnit))
-        .filter(Objects::nonNull)
-        .forEach(
-            pair ->
-                results.put(
-                    pair.getLeft().getId(), new ImmutablePair<>(pair.getLeft(), pair.getRight())));
+    for (WorkspacePlan plan : plans) {
+      if (!plan.isLocalCovered(since.getTime())) {
+        plan.pollLocal();
+        submitPolls(plan, polls, since);
+      }
+    }
+
+    LOGGER.debug("workspaces: size={}, distinct polls: size={}", plans.size(), polls.size());
+
+    Map<PollKey, Long> pollResults = new HashMap<>();
+    polls.forEach((pollKey, poll) -> pollResults.put(pollKey, getFutureResult(poll, deadline)));
+
+    Map<String, Pair<WorkspaceMetacardImpl, Long>> results = new HashMap<>();
+    for (WorkspacePlan plan : plans) {
+      Long hits = plan.countHits(since.getTime(), pollResults);
+      if (hits != null) {
+        results.put(plan.workspaceMetacard.getId(), Pair.of(plan.workspaceMetacard, hits));
+      }
+    }
+
+    if (registry != null) {
+      registry.getStandingQueries().forEach(standingQuery -> standingQuery.prune(since.getTime()));
+    }
 
     return results;
   }
 
-  private Pair<WorkspaceMetacardImpl, Long> getTaskResult(
-      ForkJoinTask<Pair<WorkspaceMetacardImpl, Long>> workspaceTask,
-      long timeout,
-      TimeUnit timeoutUnit) {
-    try {
-      return workspaceTask.get(timeout, timeoutUnit);
-    } catch (TimeoutException e) {
-      LOGGER.warn("Timeout", e);
-    } catch (ExecutionException | InterruptedException e) {
-      LOGGER.warn("ForkJoinPool error", e);
+  /**
+   * Splits the queries of a workspace into the standing queries that answer for the local catalog
+   * and, for every other source, the group of queries that has to be polled.
+   */
+  private WorkspacePlan planWorkspace(
+      Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>> workspaceQueryPair,
+      @Nullable StandingQueryRegistry registry) {
+    WorkspacePlan plan = new WorkspacePlan(workspaceQueryPair.getLeft());
+    String localSourceId = catalogFramework.getId();
+
+    for (Map.Entry<String, List<QueryMetacardImpl>> entry :
+        groupBySource(workspaceQueryPair.getRight()).entrySet()) {
+      String sourceId = entry.getKey();
+      if (UNKNOWN_SOURCE.equals(sourceId) || sourceId.equals(localSourceId)) {
+        plan.localQueries.addAll(entry.getValue());
+      } else {
+        plan.polls.put(new PollKey(sourceId, entry.getValue()), entry.getValue());
+      }
+    }
 
-      Thread.currentThread().interrupt();
+    if (registry != null) {
+      for (QueryMetacardImpl queryMetacard : plan.localQueries) {
+        StandingQuery standingQuery = registry.register(queryMetacard.getCql());
+        if (standingQuery == null) {
+          plan.localCoverable = false;
+        } else {
+          plan.standingQueries.add(standingQuery);
+        }
+      }
+    } else {
+      plan.localCoverable = false;
     }
-    return null;
+
+    return plan;
   }
 
-  private List<WorkspaceTask> createWorkspaceTasks(
-      Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> queryMetacards) {
-    List<WorkspaceTask> workspaceTasks = new ArrayList<>();
-
-    for (Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>> workspaceQueryPair :
-        queryMetacards.values()) {
-      Map<String, List<QueryMetacardImpl>> queryMetacardsGroupedBySource =
-          groupBySource(workspaceQueryPair.getRight());
-      List<QueryRequest> queryRequests =
-          getQueryRequests(queryMetacardsGroupedBySource.values().stream());
-      if (!queryRequests.isEmpty()) {
-        workspaceTasks.add(new WorkspaceTask(workspaceQueryPair.getLeft(), queryRequests));
+  /** Submits the polls of the workspace that are not already shared with another workspace. */
+  private void submitPolls(WorkspacePlan plan, Map<PollKey, Future<Long>> polls, Date since) {
+    plan.polls.forEach(
+        (pollKey, queries) ->
+            polls.computeIfAbsent(pollKey, key -> submitPoll(key, queries, since)));
+  }
+
+  /**
+   * Fills in the matches of standing queries that do not yet cover the window, which is the case
+   * when they are new or when the window has grown. Standing queries that cannot be seeded before
+   * the deadline are polled on this run and seeded again on the next one.
+   */
+  private void seedStandingQueries(StandingQueryRegistry registry, Date since, long deadline) {
+    List<Pair<StandingQuery, Future<Map<String, Long>>>> seeds =
+        registry
+            .getStandingQueries()
+            .stream()
+            .filter(standingQuery -> standingQuery.getSubscriptionId() != null)
+            .filter(standingQuery -> !standingQuery.covers(since.getTime()))
+            .map(
+                standingQuery ->
+                    Pair.of(
+                        standingQuery,
+                        pollExecutor.submit(() -> findMatches(standingQuery.getFilter(), since))))
+            .collect(Collectors.toList());
+
+    LOGGER.debug("seeding standing queries: size={}", seeds.size());
+
+    for (Pair<StandingQuery, Future<Map<String, Long>>> seed : seeds) {
+      Map<String, Long> matches = getFutureResult(seed.getRight(), deadline);
+      if (matches != null) {
+        seed.getLeft().seed(matches, since.getTime());
+      }
+    }
+  }
+
+  private Map<String, Long> findMatches(Filter filter, Date since)
+      throws UnsupportedQueryException, SourceUnavailableException, FederationException {
+    final Filter seedFilter =
+        filterBuilder.allOf(filterService.getModifiedDateFilter(since), filter);
+    final SortBy sortBy = new SortByImpl(Metacard.MODIFIED, SortOrder.ASCENDING);
+    final Map<String, Long> matches = new HashMap<>();
+
+    int startIndex = 1;
+    List<Result> results;
+    do {
+      QueryImpl query = new QueryImpl(seedFilter, startIndex, SEED_PAGE_SIZE, sortBy, false, 0);
+      results = catalogFramework.query(queryToQueryRequest(query, null)).getResults();
+      for (Result result : results) {
+        Metacard metacard = result.getMetacard();
+        Date modified = metacard.getModifiedDate();
+        matches.put(metacard.getId(), modified != null ? modified.getTime() : since.getTime() + 1);
       }
+      startIndex += SEED_PAGE_SIZE;
+    } while (results.size() == SEED_PAGE_SIZE);
+
+    return matches;
+  }
+
+  private Future<Long> submitPoll(PollKey pollKey, List<QueryMetacardImpl> queries, Date since) {
+    final Filter modifiedFilter = filterService.getModifiedDateFilter(since);
+    final List<Filter> filters = queryMetacardsToFilters(queries);
+    final QueryRequest queryRequest =
+        queryToQueryRequest(
+            filterToQuery(filterBuilder.allOf(modifiedFilter, filterBuilder.anyOf(filters))),
+            pollKey.sourceId);
+
+    return pollExecutor.submit(() -> poll(queryRequest));
+  }
+
+  private long poll(QueryRequest queryRequest) {
+    try {
+      final QueryResponse response = catalogFramework.query(queryRequest);
+      return response.getHits();
+    } catch (UnsupportedQueryException | FederationException | SourceUnavailableException e) {
+      LOGGER.warn("Query error", e);
+      return 0L;
     }
+  }
 
-    return workspaceTasks;
+  @Nullable
+  private <T> T getFutureResult(Future<T> future, long deadline) {
+    try {
+      return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      LOGGER.warn("Timeout", e);
+      future.cancel(true);
+    } catch (ExecutionException e) {
+      LOGGER.warn("Workspace query error", e);
+    } catch (InterruptedException e) {
+      LOGGER.warn("Interrupted while waiting for workspace query", e);
+      Thread.currentThread().interrupt();
+    }
+    return null;
   }
 
   private Map<String, List<QueryMetacardImpl>> groupBySource(
@@ -319,18 +508,6 @@ private BiFunction<String, List<QueryMetacardImpl>, List<QueryMetacardImpl>> add
     };
   }
 
-  private List<QueryRequest> getQueryRequests(
-      Stream<List<QueryMetacardImpl>> queriesGroupedBySource) {
-    final Filter modifiedFilter = filterService.getModifiedDateFilter(calculateQueryTimeInterval());
-    return queriesGroupedBySource
-        .map(this::queryMetacardsToFilters)
-        .map(filterBuilder::anyOf)
-        .map(filter -> filterBuilder.allOf(modifiedFilter, filter))
-        .map(this::filterToQuery)
-        .map(this::queryToQueryRequest)
-        .collect(Collectors.toList());
-  }
-
   private List<Filter> queryMetacardsToFilters(List<QueryMetacardImpl> queriesForSource) {
     return queriesForSource
         .stream()
@@ -339,12 +516,13 @@ private List<Filter> queryMetacardsToFilters(List<QueryMetacardImpl> queriesForS
         .collect(Collectors.toList());
   }
 
-  private QueryRequestImpl queryToQueryRequest(QueryImpl query) {
+  private QueryRequestImpl queryToQueryRequest(QueryImpl query, @Nullable String sourceId) {
     final Map<String, Serializable> properties = securityService.addSystemSubject(new HashMap<>());
-    return new QueryRequestImpl(query, properties);
+    return new QueryRequestImpl(
+        query, false, sourceId != null ? Collections.singleton(sourceId) : null, properties);
   }
 
-  private QueryImpl filterToQuery(And filter) {
+  private QueryImpl filterToQuery(Filter filter) {
     final QueryImpl query = new QueryImpl(filter);
     query.setRequestsTotalResultsCount(true);
     return query;
@@ -363,50 +541,96 @@ private Date calculateQueryTimeInterval() {
     return Date.from(Instant.now().minus(queryTimeInterval, ChronoUnit.MINUTES));
   }
 
-  private class QueryTask extends RecursiveTask<Long> {
-    private final QueryRequest queryRequest;
+  /**
+   * Identifies a poll by the source it is sent to and the CQL of the queries it combines, so that
+   * workspaces that share the same queries for a source share a single poll. A null source is the
+   * local catalog.
+   */
+  private static class PollKey {
+    @Nullable private final String sourceId;
+
+    private final Set<String> cql;
 
-    private QueryTask(QueryRequest queryRequest) {
-      this.queryRequest = queryRequest;
+    private PollKey(@Nullable String sourceId, Collection<QueryMetacardImpl> queries) {
+      this.sourceId = sourceId;
+      this.cql = queries.stream().map(QueryMetacardImpl::getCql).collect(Collectors.toSet());
     }
 
     @Override
-    protected Long compute() {
-      try {
-        final QueryResponse response = catalogFramework.query(queryRequest);
-        return response.getHits();
-      } catch (UnsupportedQueryException | FederationException | SourceUnavailableException e) {
-        LOGGER.warn("Query error", e);
-        return 0L;
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
       }
+      PollKey pollKey = (PollKey) o;
+      return Objects.equals(sourceId, pollKey.sourceId) && cql.equals(pollKey.cql);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(sourceId, cql);
     }
   }
 
-  private class WorkspaceTask extends RecursiveTask<Pair<WorkspaceMetacardImpl, Long>> {
+  /** What has to be counted to get the hits for one workspace. */
+  private static class WorkspacePlan {
     private final WorkspaceMetacardImpl workspaceMetacard;
 
-    private final List<QueryRequest> queryRequests;
+    private final List<QueryMetacardImpl> localQueries = new ArrayList<>();
+
+    private final Set<StandingQuery> standingQueries = new HashSet<>();
+
+    private final Map<PollKey, List<QueryMetacardImpl>> polls = new HashMap<>();
+
+    private boolean localCoverable = true;
+
+    private boolean localPolled = false;
 
-    private WorkspaceTask(
-        WorkspaceMetacardImpl workspaceMetacard, List<QueryRequest> queryRequests) {
+    private WorkspacePlan(WorkspaceMetacardImpl workspaceMetacard) {
       notNull(workspaceMetacard, "WorkspaceMetacardImpl must be non-null");
-      notNull(queryRequests, "queryRequests must be non-null");
-      notEmpty(queryRequests, "queryRequests must be non-empty");
       this.workspaceMetacard = workspaceMetacard;
-      this.queryRequests = queryRequests;
     }
 
-    @Override
-    protected Pair<WorkspaceMetacardImpl, Long> compute() {
-      final long result =
-          queryRequests
-              .stream()
-              .map(QueryTask::new)
-              .map(QueryTask::fork)
-              .mapToLong(ForkJoinTask::join)
-              .sum();
+    private boolean isLocalCovered(long since) {
+      return localQueries.isEmpty()
+          || (localCoverable
+              && standingQueries.stream().allMatch(standingQuery -> standingQuery.covers(since)));
+    }
+
+    private void pollLocal() {
+      polls.put(new PollKey(null, localQueries), localQueries);
+      localPolled = true;
+    }
+
+    /**
+     * Adds the distinct local matches of the standing queries to the hits of the polls, or returns
+     * null if a poll did not complete.
+     */
+    @Nullable
+    private Long countHits(long since, Map<PollKey, Long> pollResults) {
+      if (polls.isEmpty() && localQueries.isEmpty()) {
+        return null;
+      }
+
+      long hits = 0;
+      for (PollKey pollKey : polls.keySet()) {
+        Long pollHits = pollResults.get(pollKey);
+        if (pollHits == null) {
+          return null;
+        }
+        hits += pollHits;
+      }
+
+      if (!localQueries.isEmpty() && !localPolled) {
+        Set<String> localMatches = new HashSet<>();
+        standingQueries.forEach(
+            standingQuery -> localMatches.addAll(standingQuery.getMatches(since)));
+        hits += localMatches.size();
+      }
 
-      return Pair.of(workspaceMetacard, result);
+      return hits;
     }
   }
 }
@@ -14,6 +14,7 @@
 package org.codice.ddf.catalog.ui.util;
 
 import static ddf.catalog.Constants.ADDITIONAL_SORT_BYS;
+import static ddf.catalog.Constants.SOURCE_RESPONSE_LISTENER_KEY;
 import static ddf.catalog.util.impl.ResultIterable.resultIterable;
 import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
 
@@ -40,6 +41,7 @@
 import ddf.catalog.impl.filter.GeoToolsFunctionFactory;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.operation.SourceResponseListener;
 import ddf.catalog.operation.impl.QueryImpl;
 import ddf.catalog.operation.impl.QueryRequestImpl;
 import ddf.catalog.operation.impl.QueryResponseImpl;
@@ -55,6 +57,7 @@
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collection;
@@ -67,13 +70,23 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import javax.ws.rs.NotFoundException;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.io.IOUtils;
@@ -83,7 +96,9 @@
 import org.codice.ddf.catalog.ui.metacard.EntityTooLargeException;
 import org.codice.ddf.catalog.ui.query.cql.CqlQueryResponse;
 import org.codice.ddf.catalog.ui.query.cql.CqlRequest;
+import org.codice.ddf.catalog.ui.query.cql.Status;
 import org.codice.ddf.catalog.ui.transformer.TransformerDescriptors;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
 import org.codice.gsonsupport.GsonTypeAdapters.LongDoubleTypeAdapter;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.factory.FactoryIteratorProvider;
@@ -130,6 +145,13 @@ public class EndpointUtil {
 
   private static final String ISINJECTED_KEY = "isInjected";
 
+  private static final long PARTIAL_RESPONSE_TIMEOUT_SECONDS = 30;
+
+  private static final int PARTIAL_RESPONSE_THREADS = 4;
+
+  /** A query only ever queues one task, so this bounds the number of concurrent queries. */
+  private static final int PARTIAL_RESPONSE_QUEUE_SIZE = 1000;
+
   private static int pageSize = 250;
 
   private static final Gson GSON =
@@ -142,6 +164,8 @@ public class EndpointUtil {
 
   private final Random random = new Random();
 
+  private final ExecutorService partialResponseExecutor = createPartialResponseExecutor();
+
   private List<String> whiteListedMetacardTypes = Collections.emptyList();
 
   private TransformerDescriptors descriptors;
@@ -166,6 +190,23 @@ public EndpointUtil(
     registerGeoToolsFunctionFactory();
   }
 
+  private static ExecutorService createPartialResponseExecutor() {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            PARTIAL_RESPONSE_THREADS,
+            PARTIAL_RESPONSE_THREADS,
+            60L,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(PARTIAL_RESPONSE_QUEUE_SIZE),
+            StandardThreadFactoryBuilder.newThreadFactory("cqlPartialResponseThread"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  public void destroy() {
+    partialResponseExecutor.shutdownNow();
+  }
+
   public List<String> getWhiteListedMetacardTypes() {
     return whiteListedMetacardTypes;
   }
@@ -523,48 +564,111 @@ public String getJson(Object result) {
 
   public CqlQueryResponse executeCqlQuery(CqlRequest cqlRequest)
       throws UnsupportedQueryException, SourceUnavailableException, FederationException {
+    return executeCqlQuery(cqlRequest, null);
+  }
+
+  /**
+   * Executes the query, handing a partial response to {@code partialResponseConsumer} as soon as
+   * each source completes. A partial response holds the sorted results and the status of a single
+   * source, the returned response holds the merged results of all sources along with the status of
+   * each of them.
+   */
+  public CqlQueryResponse executeCqlQuery(
+      CqlRequest cqlRequest, @Nullable Consumer<CqlQueryResponse> partialResponseConsumer)
+      throws UnsupportedQueryException, SourceUnavailableException, FederationException {
     QueryRequest request = cqlRequest.createQueryRequest(catalogFramework.getId(), filterBuilder);
     Stopwatch stopwatch = Stopwatch.createStarted();
 
-    List<QueryResponse> responses = Collections.synchronizedList(new ArrayList<>());
-
-    List<Result> results;
-    if (cqlRequest.getCount() == 0) {
-      results = retrieveHitCount(request, responses);
-    } else {
-      results = retrieveResults(cqlRequest, request, responses);
+    List<Status> sourceStatuses = Collections.synchronizedList(new ArrayList<>());
+    PartialResponseListener partialResponseListener = null;
+    if (partialResponseConsumer != null) {
+      partialResponseListener =
+          new PartialResponseListener(
+              partialResponseExecutor,
+              (sourceId, sourceResponse) -> {
+                CqlQueryResponse partialResponse =
+                    new CqlQueryResponse(
+                        cqlRequest.getId(),
+                        request,
+                        sourceResponse,
+                        sourceId,
+                        stopwatch.elapsed(TimeUnit.MILLISECONDS),
+                        cqlRequest.isNormalize(),
+                        filterAdapter,
+                        actionRegistry,
+                        descriptors);
+                sourceStatuses.add(partialResponse.getStatus());
+                partialResponseConsumer.accept(partialResponse);
+              });
+      request.getProperties().put(SOURCE_RESPONSE_LISTENER_KEY, partialResponseListener);
     }
 
-    QueryResponse response =
-        new QueryResponseImpl(
-            request,
-            results,
-            true,
-            responses
-                .stream()
-                .filter(Objects::nonNull)
-                .map(QueryResponse::getHits)
-                .findFirst()
-                .orElse(-1L),
-            responses
-                .stream()
-                .filter(Objects::nonNull)
-                .map(QueryResponse::getProperties)
-                .findFirst()
-                .orElse(Collections.emptyMap()));
+    QueryResponse response;
+    try {
+      List<QueryResponse> responses = Collections.synchronizedList(new ArrayList<>());
+
+      List<Result> results;
+      if (cqlRequest.getCount() == 0) {
+        results = retrieveHitCount(request, responses);
+      } else {
+        results = retrieveResults(cqlRequest, request, responses);
+      }
+
+      response =
+          new QueryResponseImpl(
+              request,
+              results,
+              true,
+              responses
+                  .stream()
+                  .filter(Objects::nonNull)
+                  .map(QueryResponse::getHits)
+                  .findFirst()
+                  .orElse(-1L),
+              responses
+                  .stream()
+                  .filter(Objects::nonNull)
+                  .map(QueryResponse::getProperties)
+                  .findFirst()
+                  .orElse(Collections.emptyMap()));
+    } finally {
+      if (partialResponseListener != null) {
+        request.getProperties().remove(SOURCE_RESPONSE_LISTENER_KEY);
+        awaitPartialResponses(partialResponseListener);
+      }
+    }
 
     stopwatch.stop();
 
-    return new CqlQueryResponse(
-        cqlRequest.getId(),
-        request,
-        response,
-        cqlRequest.getSourceResponseString(),
-        stopwatch.elapsed(TimeUnit.MILLISECONDS),
-        cqlRequest.isNormalize(),
-        filterAdapter,
-        actionRegistry,
-        descriptors);
+    CqlQueryResponse cqlQueryResponse =
+        new CqlQueryResponse(
+            cqlRequest.getId(),
+            request,
+            response,
+            cqlRequest.getSourceResponseString(),
+            stopwatch.elapsed(TimeUnit.MILLISECONDS),
+            cqlRequest.isNormalize(),
+            filterAdapter,
+            actionRegistry,
+            descriptors);
+
+    if (partialResponseConsumer != null) {
+      synchronized (sourceStatuses) {
+        cqlQueryResponse.setSources(new ArrayList<>(sourceStatuses));
+      }
+    }
+    return cqlQueryResponse;
+  }
+
+  /** Lets the partial responses that are already queued be sent before the final response. */
+  private void awaitPartialResponses(PartialResponseListener partialResponseListener) {
+    try {
+      if (!partialResponseListener.close(PARTIAL_RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOGGER.debug("Timed out sending partial query responses");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
   }
 
   private List<Result> retrieveHitCount(QueryRequest request, List<QueryResponse> responses)
@@ -867,4 +971,114 @@ public Metacard findWorkspace(String workspaceId) {
   public void setDescriptors(TransformerDescriptors descriptors) {
     this.descriptors = descriptors;
   }
+
+  /**
+   * Passes each source response on to an executor, so that building and sending the partial
+   * response does not hold up the thread that collects the source responses. The partial responses
+   * of a query are sent one at a time and in order, and only once per source since the request, and
+   * so the listener, is reused for every page of the query. The listener is only used while the
+   * query runs, so its state is not serialized.
+   */
+  private static class PartialResponseListener implements SourceResponseListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Executor executor;
+
+    private final transient BiConsumer<String, QueryResponse> handler;
+
+    private final transient Set<String> sourceIds = ConcurrentHashMap.newKeySet();
+
+    /** Guarded by this. */
+    private final transient Queue<Runnable> pending = new ArrayDeque<>();
+
+    /** Whether a task is sending the pending responses. Guarded by this. */
+    private transient boolean sending = false;
+
+    /** Guarded by this. */
+    private transient boolean closed = false;
+
+    private PartialResponseListener(Executor executor, BiConsumer<String, QueryResponse> handler) {
+      this.executor = executor;
+      this.handler = handler;
+    }
+
+    @Override
+    public void onSourceResponse(String sourceId, QueryResponse sourceResponse) {
+      if (executor == null || handler == null) {
+        return;
+      }
+
+      if (!sourceIds.add(sourceId)) {
+        LOGGER.trace("Partial response of source {} was already sent", sourceId);
+        return;
+      }
+
+      synchronized (this) {
+        if (closed) {
+          LOGGER.debug("Query already completed, dropping the partial response of {}", sourceId);
+          return;
+        }
+        pending.add(() -> handler.accept(sourceId, sourceResponse));
+        if (sending) {
+          return;
+        }
+        sending = true;
+      }
+
+      try {
+        executor.execute(this::sendPending);
+      } catch (RejectedExecutionException e) {
+        LOGGER.debug("Too many queries, dropping the partial responses of this query");
+        synchronized (this) {
+          closed = true;
+          stopSending();
+        }
+      }
+    }
+
+    private void sendPending() {
+      while (true) {
+        Runnable send;
+        synchronized (this) {
+          send = closed ? null : pending.poll();
+          if (send == null) {
+            stopSending();
+            return;
+          }
+        }
+
+        try {
+          send.run();
+        } catch (RuntimeException e) {
+          LOGGER.debug("Unable to send a partial query response", e);
+        }
+      }
+    }
+
+    private void stopSending() {
+      pending.clear();
+      sending = false;
+      notifyAll();
+    }
+
+    /**
+     * Waits for the partial responses that are already queued to be sent, and drops any that come
+     * in afterwards.
+     *
+     * @return false if the queued responses were not all sent before the timeout
+     */
+    private synchronized boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+      try {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long remaining;
+        while (sending && (remaining = deadline - System.nanoTime()) > 0) {
+          TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return !sending;
+      } finally {
+        closed = true;
+      }
+    }
+  }
 }
@@ -22,6 +22,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import org.codice.gsonsupport.GsonTypeAdapters.DateLongFormatTypeAdapter;
 import org.codice.gsonsupport.GsonTypeAdapters.LongDoubleTypeAdapter;
@@ -51,8 +52,25 @@ public class JsonRpc implements WebSocket {
           .registerTypeAdapter(Date.class, new DateLongFormatTypeAdapter())
           .create();
 
+  private static final String PARAMS = "params";
+
   private final Map<String, Function> methods;
 
+  /**
+   * A method that can send notifications back to the caller while it runs, before its result is
+   * sent. Each notification carries the method name and, in its params, the id of the call and the
+   * notified value.
+   */
+  public interface NotifyingMethod extends Function<Object, Object> {
+
+    Object apply(Object params, Consumer<Object> notifier);
+
+    @Override
+    default Object apply(Object params) {
+      return apply(params, value -> {});
+    }
+  }
+
   public JsonRpc(Map<String, Function> methods) {
     this.methods = methods;
   }
@@ -81,6 +99,18 @@ private static Map<String, Object> response(Object id, Object value) {
     return response;
   }
 
+  private static Map<String, Object> notification(String method, Object id, Object value) {
+    Map<String, Object> params = new HashMap<>();
+    params.put(ID, id);
+    params.put("result", value);
+
+    Map<String, Object> notification = new HashMap<>();
+    notification.put(JSON_RPC, VERSION);
+    notification.put(METHOD, method);
+    notification.put(PARAMS, params);
+    return notification;
+  }
+
   private static Error invalid(String message) {
     return invalid(message, null);
   }
@@ -114,7 +144,7 @@ public void onError(Session session, Throwable ex) {
 
   @Override
   public void onMessage(Session session, String message) throws IOException {
-    handleMessage(session, message, this::callMethod);
+    handleMessage(session, message, (messageMap, id) -> callMethod(session, messageMap, id));
   }
 
   private void handleMessage(
@@ -176,7 +206,7 @@ private void validateJsonRpcVersion(Map message, Object id) throws JsonRpcExcept
     }
   }
 
-  private Object callMethod(Map message, Object id) throws JsonRpcException {
+  private Object callMethod(Session session, Map message, Object id) throws JsonRpcException {
     if (!message.containsKey(METHOD)) {
       throw new JsonRpcException(id, invalid(String.format("required key `%s` missing", METHOD)));
     }
@@ -193,15 +223,26 @@ private Object callMethod(Map message, Object id) throws JsonRpcException {
           id, error(METHOD_NOT_FOUND, String.format("method `%s` not found", method)));
     }
 
-    Object params = message.get("params");
+    Object params = message.get(PARAMS);
 
     if (params != null && !(params instanceof List || params instanceof Map)) {
       throw new JsonRpcException(
           id, invalidParams("parameters must be a structured value", params));
     }
 
+    Function function = methods.get(method);
+
     try {
-      return methods.get(method).apply(params);
+      if (function instanceof NotifyingMethod) {
+        return ((NotifyingMethod) function)
+            .apply(
+                params,
+                value ->
+                    session
+                        .getRemote()
+                        .sendStringByFuture(GSON.toJson(notification(method, id, value))));
+      }
+      return function.apply(params);
     } catch (RuntimeException e) {
       throw new JsonRpcException(id, error(INTERNAL_ERROR, "Internal Error"));
     }
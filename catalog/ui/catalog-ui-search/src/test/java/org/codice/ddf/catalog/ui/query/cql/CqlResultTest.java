@@ -14,12 +14,17 @@
 package org.codice.ddf.catalog.ui.query.cql;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import ddf.action.ActionRegistry;
+import ddf.catalog.data.Metacard;
 import ddf.catalog.data.impl.MetacardImpl;
 import ddf.catalog.data.impl.ResultImpl;
 import ddf.catalog.filter.FilterAdapter;
@@ -30,6 +35,8 @@
 import ddf.catalog.operation.impl.QueryImpl;
 import ddf.catalog.operation.impl.QueryRequestImpl;
 import java.util.Collections;
+import java.util.Map;
+import org.codice.ddf.catalog.ui.query.delegate.SearchTerm;
 import org.junit.Test;
 
 public class CqlResultTest {
@@ -53,6 +60,63 @@ public void testValidDistance() {
     distanceCheck(123.0, 123.0);
   }
 
+  @Test
+  public void testCountMatches() {
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setTitle("Flood, flooding and FLOODS");
+    metacard.setDescription("river flood");
+    ResultImpl result = new ResultImpl(metacard);
+
+    CqlResult cqlResult =
+        new CqlResult(
+            result,
+            ImmutableSet.of(new SearchTerm("flood"), new SearchTerm("flood*"), new SearchTerm("*")),
+            createRequest(),
+            true,
+            filterAdapter,
+            createActionRegistry());
+
+    Map<String, Integer> matches = cqlResult.getMatches();
+    assertThat(matches.get("flood"), is(2));
+    assertThat(matches.get("flood*"), is(4));
+    assertThat(matches.get("*"), is(6));
+  }
+
+  @Test
+  public void testSerializedMetacard() {
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setId("123");
+    metacard.setTitle("title");
+    metacard.setMetadata("<xml/>");
+    metacard.setSourceId("source");
+    ResultImpl result = new ResultImpl(metacard);
+
+    CqlResult cqlResult =
+        new CqlResult(result, null, createRequest(), false, filterAdapter, createActionRegistry());
+
+    JsonObject json = new Gson().toJsonTree(cqlResult).getAsJsonObject();
+    JsonObject properties = json.getAsJsonObject("metacard").getAsJsonObject("properties");
+    assertThat(properties.get(Metacard.ID).getAsString(), is("123"));
+    assertThat(properties.get(Metacard.TITLE).getAsString(), is("title"));
+    assertThat(properties.get(Metacard.METADATA), nullValue());
+    assertThat(properties.get("source-id").getAsString(), is("source"));
+    assertThat(
+        properties.get("metacard-type").getAsString(), is(metacard.getMetacardType().getName()));
+    assertThat(json.getAsJsonObject("metacard").has("cached"), is(true));
+    assertThat(json.get("hasThumbnail").getAsBoolean(), is(false));
+  }
+
+  private QueryRequest createRequest() {
+    return new QueryRequestImpl(
+        new QueryImpl(filterBuilder.attribute("test").equalTo().text("value")));
+  }
+
+  private ActionRegistry createActionRegistry() {
+    ActionRegistry actionRegistry = mock(ActionRegistry.class);
+    when(actionRegistry.list(any())).thenReturn(Collections.emptyList());
+    return actionRegistry;
+  }
+
   private void distanceCheck(Double input, Double output) {
     MetacardImpl metacard = new MetacardImpl();
     ResultImpl result = new ResultImpl(metacard);
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.event.EventProcessor;
+import ddf.catalog.event.InvalidSubscriptionException;
+import ddf.catalog.event.Subscription;
+import java.util.Collections;
+import java.util.Date;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StandingQueryRegistryTest {
+
+  private EventProcessor eventProcessor;
+
+  private StandingQueryRegistry registry;
+
+  @Before
+  public void setUp() throws Exception {
+    eventProcessor = mock(EventProcessor.class);
+    when(eventProcessor.createSubscription(any(Subscription.class))).thenReturn("subscription");
+    registry = new StandingQueryRegistry(eventProcessor);
+  }
+
+  @Test
+  public void testIdenticalQueriesShareASubscription() throws Exception {
+    StandingQuery first = registry.register("title = 'foo'");
+    StandingQuery second = registry.register("title='foo'");
+
+    assertThat(first, notNullValue());
+    assertThat(second, sameInstance(first));
+    verify(eventProcessor, times(1)).createSubscription(any(Subscription.class));
+  }
+
+  @Test
+  public void testUnparseableQueryIsNotRegistered() throws Exception {
+    assertThat(registry.register("title = "), nullValue());
+    verify(eventProcessor, never()).createSubscription(any(Subscription.class));
+  }
+
+  @Test
+  public void testQueryThatCannotBeSubscribedIsNotCovered() throws Exception {
+    when(eventProcessor.createSubscription(any(Subscription.class)))
+        .thenThrow(new InvalidSubscriptionException("unsupported"));
+
+    StandingQuery standingQuery = registry.register("title = 'foo'");
+    standingQuery.seed(Collections.emptyMap(), 0);
+
+    assertThat(standingQuery.covers(0), is(false));
+    assertThat(registry.register("title = 'foo'"), sameInstance(standingQuery));
+    verify(eventProcessor, times(1)).createSubscription(any(Subscription.class));
+  }
+
+  @Test
+  public void testRetainUnsubscribesUnusedQueries() throws Exception {
+    StandingQuery used = registry.register("title = 'foo'");
+    registry.register("title = 'bar'");
+
+    registry.retain(Collections.singleton(used));
+
+    assertThat(registry.getStandingQueries(), containsInAnyOrder(used));
+    verify(eventProcessor, times(1)).deleteSubscription("subscription");
+  }
+
+  @Test
+  public void testEventsMaintainMatches() {
+    StandingQuery standingQuery = registry.register("title = 'foo'");
+    assertThat(standingQuery.covers(1000), is(false));
+
+    standingQuery.seed(Collections.singletonMap("seeded", 2000L), 1000);
+    assertThat(standingQuery.covers(1000), is(true));
+    assertThat(standingQuery.covers(999), is(false));
+
+    Metacard created = metacard("created", 3000);
+    standingQuery.created(created);
+    assertThat(standingQuery.getMatches(1000), containsInAnyOrder("seeded", "created"));
+
+    standingQuery.updatedMiss(metacard("seeded", 4000), metacard("seeded", 2000));
+    assertThat(standingQuery.getMatches(1000), containsInAnyOrder("created"));
+
+    standingQuery.updatedHit(metacard("updated", 5000), metacard("updated", 500));
+    standingQuery.deleted(created);
+    assertThat(standingQuery.getMatches(1000), containsInAnyOrder("updated"));
+    assertThat(standingQuery.getMatches(5000), is(empty()));
+  }
+
+  @Test
+  public void testPruneDropsMatchesOutsideTheWindow() {
+    StandingQuery standingQuery = registry.register("title = 'foo'");
+    standingQuery.seed(Collections.emptyMap(), 1000);
+    standingQuery.created(metacard("old", 1500));
+    standingQuery.created(metacard("new", 2500));
+
+    standingQuery.prune(2000);
+
+    assertThat(standingQuery.getMatches(0), containsInAnyOrder("new"));
+    assertThat(standingQuery.covers(2000), is(true));
+  }
+
+  @Test
+  public void testCloseUnsubscribesEverything() throws Exception {
+    registry.register("title = 'foo'");
+    registry.register("title = 'bar'");
+
+    registry.close();
+
+    assertThat(registry.getStandingQueries(), is(empty()));
+    verify(eventProcessor, times(2)).deleteSubscription("subscription");
+  }
+
+  private static Metacard metacard(String id, long modified) {
+    Metacard metacard = mock(Metacard.class);
+    when(metacard.getId()).thenReturn(id);
+    when(metacard.getModifiedDate()).thenReturn(new Date(modified));
+    return metacard;
+  }
+}
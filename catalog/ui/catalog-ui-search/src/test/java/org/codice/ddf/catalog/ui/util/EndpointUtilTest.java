@@ -24,7 +24,9 @@
 import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyList;
 import static org.mockito.Matchers.anyString;
@@ -36,6 +38,7 @@
 import com.google.common.collect.ImmutableList;
 import ddf.action.ActionRegistry;
 import ddf.catalog.CatalogFramework;
+import ddf.catalog.Constants;
 import ddf.catalog.data.AttributeDescriptor;
 import ddf.catalog.data.AttributeRegistry;
 import ddf.catalog.data.AttributeType;
@@ -51,8 +54,11 @@
 import ddf.catalog.filter.EqualityExpressionBuilder;
 import ddf.catalog.filter.FilterAdapter;
 import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.operation.SourceResponseListener;
 import ddf.catalog.operation.impl.QueryRequestImpl;
+import ddf.catalog.source.UnsupportedQueryException;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
@@ -365,6 +371,76 @@ public void testHitCountOnlyQuery() throws Exception {
     assertThat(cqlQueryResponse.getQueryResponse().getHits(), is(hitCount));
   }
 
+  @Test
+  public void testPartialResponsesAreBuiltOffTheQueryThread() throws Exception {
+    when(responseMock.getResults()).thenReturn(Collections.emptyList());
+    when(catalogFrameworkMock.query(any(QueryRequestImpl.class)))
+        .thenAnswer(
+            invocation -> {
+              QueryRequest request = (QueryRequest) invocation.getArguments()[0];
+              ((SourceResponseListener)
+                      request.getPropertyValue(Constants.SOURCE_RESPONSE_LISTENER_KEY))
+                  .onSourceResponse("source", responseMock);
+              return responseMock;
+            });
+
+    List<Thread> partialResponseThreads = Collections.synchronizedList(new ArrayList<>());
+    ArgumentCaptor<QueryRequestImpl> requestCaptor =
+        ArgumentCaptor.forClass(QueryRequestImpl.class);
+
+    endpointUtil.executeCqlQuery(
+        generateCqlRequest(0),
+        partialResponse -> partialResponseThreads.add(Thread.currentThread()));
+
+    verify(catalogFrameworkMock).query(requestCaptor.capture());
+    assertThat(partialResponseThreads, hasSize(1));
+    assertThat(partialResponseThreads.get(0) == Thread.currentThread(), is(false));
+    assertThat(
+        requestCaptor.getValue().getProperties(),
+        not(hasKey(Constants.SOURCE_RESPONSE_LISTENER_KEY)));
+  }
+
+  @Test
+  public void testPartialResponsesAreSentOncePerSource() throws Exception {
+    when(responseMock.getResults()).thenReturn(Collections.emptyList());
+    when(catalogFrameworkMock.query(any(QueryRequestImpl.class)))
+        .thenAnswer(
+            invocation -> {
+              QueryRequest request = (QueryRequest) invocation.getArguments()[0];
+              SourceResponseListener listener =
+                  (SourceResponseListener)
+                      request.getPropertyValue(Constants.SOURCE_RESPONSE_LISTENER_KEY);
+              // a later page of the query reports the same sources again
+              listener.onSourceResponse("source", responseMock);
+              listener.onSourceResponse("other", responseMock);
+              listener.onSourceResponse("source", responseMock);
+              return responseMock;
+            });
+
+    List<CqlQueryResponse> partialResponses = Collections.synchronizedList(new ArrayList<>());
+    endpointUtil.executeCqlQuery(generateCqlRequest(0), partialResponses::add);
+
+    assertThat(partialResponses, hasSize(2));
+  }
+
+  @Test
+  public void testSourceResponseListenerIsRemovedWhenQueryFails() throws Exception {
+    when(catalogFrameworkMock.query(any(QueryRequestImpl.class)))
+        .thenThrow(new UnsupportedQueryException());
+    ArgumentCaptor<QueryRequestImpl> requestCaptor =
+        ArgumentCaptor.forClass(QueryRequestImpl.class);
+
+    try {
+      endpointUtil.executeCqlQuery(generateCqlRequest(0), partialResponse -> {});
+      fail("Expected the query to fail");
+    } catch (UnsupportedQueryException e) {
+      verify(catalogFrameworkMock).query(requestCaptor.capture());
+      assertThat(
+          requestCaptor.getValue().getProperties(),
+          not(hasKey(Constants.SOURCE_RESPONSE_LISTENER_KEY)));
+    }
+  }
+
   @Test
   public void testCopyAttributes() {
 
@@ -19,6 +19,7 @@
 import static org.hamcrest.core.Is.is;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import com.google.common.collect.ImmutableList;
@@ -87,6 +88,37 @@ public void testMethodNotFound() throws Exception {
     assertError(onMessage(rpc, message), JsonRpc.METHOD_NOT_FOUND);
   }
 
+  @Test
+  public void testNotificationsSentBeforeResult() throws Exception {
+    JsonRpc.NotifyingMethod notifying =
+        (params, notifier) -> {
+          notifier.accept("partial");
+          return "final";
+        };
+    JsonRpc notifyingRpc = new JsonRpc(ImmutableMap.<String, Function>of("notifying", notifying));
+
+    ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+    Session session = mock(Session.class);
+    RemoteEndpoint endpoint = mock(RemoteEndpoint.class);
+    doReturn(endpoint).when(session).getRemote();
+    notifyingRpc.onMessage(
+        session, "{\"method\":\"notifying\",\"id\":3,\"jsonrpc\":\"2.0\",\"params\":[]}");
+    verify(endpoint, times(2)).sendStringByFuture(captor.capture());
+
+    Map<String, Object> notification =
+        GSON.fromJson(captor.getAllValues().get(0), MAP_STRING_TO_OBJECT_TYPE);
+    assertThat(notification.get("method"), is("notifying"));
+    assertThat(notification.containsKey("id"), is(false));
+    Map params = (Map) notification.get("params");
+    assertThat(params.get("id"), is(3L));
+    assertThat(params.get("result"), is("partial"));
+
+    Map<String, Object> response =
+        GSON.fromJson(captor.getAllValues().get(1), MAP_STRING_TO_OBJECT_TYPE);
+    assertThat(response.get("id"), is(3L));
+    assertThat(response.get("result"), is("final"));
+  }
+
   @Test
   public void testSucessfulCall() throws Exception {
     List value = ImmutableList.of(0L);
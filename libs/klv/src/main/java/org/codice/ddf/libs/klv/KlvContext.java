@@ -21,6 +21,7 @@
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import org.codice.ddf.libs.klv.data.Klv;
 
 /**
  * Represents the context used for decoding KLV-encoded data. A {@code KlvContext} specifies the key
@@ -45,6 +46,8 @@ public class KlvContext {
 
   private final Map<String, KlvDataElement> keyToDataElementMap;
 
+  private volatile KlvKeyIndex keyIndex;
+
   /**
    * Constructs a {@code KlvContext} containing the properties of a specific KLV-encoded data set.
    *
@@ -95,6 +98,7 @@ public void addDataElement(final KlvDataElement dataElement) {
     Preconditions.checkArgument(dataElement != null, "The data element cannot be null.");
     nameToDataElementMap.put(dataElement.getName(), dataElement);
     keyToDataElementMap.put(dataElement.getKeyAsString(), dataElement);
+    keyIndex = null;
   }
 
   /**
@@ -111,6 +115,7 @@ public void addDataElements(final Collection<? extends KlvDataElement> dataEleme
           nameToDataElementMap.put(dataElement.getName(), dataElement);
           keyToDataElementMap.put(dataElement.getKeyAsString(), dataElement);
         });
+    keyIndex = null;
   }
 
   public KeyLength getKeyLength() {
@@ -157,4 +162,17 @@ public KlvDataElement getDataElementByName(final String name) {
   Map<String, KlvDataElement> getKeyToDataElementMap() {
     return keyToDataElementMap;
   }
+
+  /**
+   * Returns the {@link KlvDataElement} in this {@code KlvContext} whose key matches the key of the
+   * given KLV set, or null if there is none.
+   */
+  KlvDataElement getDataElementByKey(final Klv klv) {
+    KlvKeyIndex index = keyIndex;
+    if (index == null) {
+      index = new KlvKeyIndex(keyToDataElementMap.values());
+      keyIndex = index;
+    }
+    return index.get(klv);
+  }
 }
@@ -14,13 +14,15 @@
 package org.codice.ddf.libs.klv;
 
 import com.google.common.base.Preconditions;
-import java.util.List;
-import java.util.Map;
-import javax.xml.bind.DatatypeConverter;
 import org.codice.ddf.libs.klv.data.Klv;
+import org.codice.ddf.libs.klv.data.set.KlvLocalSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /** Decodes bytes that contain KLV-encoded data. */
 public class KlvDecoder {
+  private static final Logger LOGGER = LoggerFactory.getLogger(KlvDecoder.class);
+
   private final KlvContext klvContext;
 
   /**
@@ -52,39 +54,111 @@ public KlvDecoder(final KlvContext klvContext) {
   public KlvContext decode(final byte[] klvBytes) throws KlvDecodingException {
     Preconditions.checkArgument(klvBytes != null, "The array of bytes to decode cannot be null.");
 
-    List<Klv> klvDataElements;
-
-    try {
-      klvDataElements =
-          Klv.bytesToList(
-              klvBytes,
-              0,
-              klvBytes.length,
-              klvContext.getKeyLength(),
-              klvContext.getLengthEncoding());
-    } catch (RuntimeException e) {
-      throw new KlvDecodingException(
-          String.format(
-              "Could not decode KLV using the given key length %s and length encoding %s",
-              klvContext.getKeyLength(), klvContext.getLengthEncoding()),
-          e);
-    }
-
     final KlvContext decodedContext =
         new KlvContext(klvContext.getKeyLength(), klvContext.getLengthEncoding());
-    final Map<String, KlvDataElement> keyToDataElementMap = klvContext.getKeyToDataElementMap();
 
-    klvDataElements.forEach(
-        klv -> {
-          final String key = DatatypeConverter.printHexBinary(klv.getFullKey());
+    final Klv klv = new Klv();
+    int position = 0;
+    while (position < klvBytes.length) {
+      position = read(klvBytes, position, klv);
 
-          if (keyToDataElementMap.containsKey(key)) {
-            final KlvDataElement dataElementCopy = keyToDataElementMap.get(key).copy();
-            dataElementCopy.decodeValue(klv);
-            decodedContext.addDataElement(dataElementCopy);
-          }
-        });
+      final KlvDataElement dataElement = klvContext.getDataElementByKey(klv);
+      if (dataElement != null) {
+        final KlvDataElement dataElementCopy = dataElement.copy();
+        dataElementCopy.decodeValue(klv);
+        decodedContext.addDataElement(dataElementCopy);
+      }
+    }
 
     return decodedContext;
   }
+
+  /**
+   * Walks the KLV data inside {@code klvBytes} according to the properties in the {@link
+   * KlvContext} that was provided in the constructor, passing each data element it finds to the
+   * given {@link KlvVisitor}.
+   *
+   * <p>Nothing is copied and no values are decoded unless the visitor asks for them, which makes
+   * this much cheaper than {@link #decode(byte[])} when only some of the values are needed or when
+   * the values are consumed immediately. Local sets found in the {@code KlvContext} are walked
+   * recursively; a local set that cannot be decoded is skipped, as in {@link #decode(byte[])}.
+   *
+   * @param klvBytes bytes encoding data in KLV format
+   * @param visitor the visitor that receives the data elements
+   * @throws IllegalArgumentException if any of the arguments are null
+   * @throws KlvDecodingException if the KLV cannot be decoded using the given context information.
+   *     Data elements before the point of failure will already have been visited.
+   */
+  public void decode(final byte[] klvBytes, final KlvVisitor visitor) throws KlvDecodingException {
+    Preconditions.checkArgument(klvBytes != null, "The array of bytes to decode cannot be null.");
+    Preconditions.checkArgument(visitor != null, "The visitor cannot be null.");
+
+    final Klv klv = new Klv();
+    int position = 0;
+    while (position < klvBytes.length) {
+      position = read(klvBytes, position, klv);
+      visit(klv, visitor);
+    }
+  }
+
+  private void visitLocalSet(final Klv localSetKlv, final KlvVisitor visitor)
+      throws KlvDecodingException {
+    final Klv klv = new Klv();
+    int position = 0;
+    while (position < localSetKlv.getValueLength()) {
+      position = readFromValue(localSetKlv, position, klv);
+      visit(klv, visitor);
+    }
+  }
+
+  private void visit(final Klv klv, final KlvVisitor visitor) {
+    final KlvDataElement dataElement = klvContext.getDataElementByKey(klv);
+
+    if (dataElement instanceof KlvLocalSet) {
+      final KlvLocalSet localSet = (KlvLocalSet) dataElement;
+      if (visitor.enterLocalSet(localSet)) {
+        try {
+          new KlvDecoder(localSet.getLocalSetContext()).visitLocalSet(klv, visitor);
+        } catch (KlvDecodingException e) {
+          LOGGER.debug("Couldn't decode the KLV local set named {}", localSet.getName(), e);
+        } finally {
+          visitor.exitLocalSet(localSet);
+        }
+      }
+    } else if (dataElement != null) {
+      visitor.visit(dataElement, klv);
+    }
+  }
+
+  private int read(final byte[] klvBytes, final int position, final Klv klv)
+      throws KlvDecodingException {
+    try {
+      return klv.read(
+          klvBytes,
+          position,
+          klvBytes.length,
+          klvContext.getKeyLength(),
+          klvContext.getLengthEncoding());
+    } catch (RuntimeException e) {
+      throw decodingException(e);
+    }
+  }
+
+  private int readFromValue(final Klv localSetKlv, final int position, final Klv klv)
+      throws KlvDecodingException {
+    try {
+      return localSetKlv.readFromValue(
+          klv, position, klvContext.getKeyLength(), klvContext.getLengthEncoding());
+    } catch (RuntimeException e) {
+      throw decodingException(e);
+    }
+  }
+
+  private KlvDecodingException decodingException(final RuntimeException cause) {
+    return new KlvDecodingException(
+        String.format(
+            "Could not decode KLV using the given key length %s and length encoding %s",
+            klvContext.getKeyLength(), klvContext.getLengthEncoding()),
+        cause);
+  }
 }
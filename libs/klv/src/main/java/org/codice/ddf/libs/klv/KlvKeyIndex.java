@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.libs.klv;
+
+import com.google.common.primitives.UnsignedBytes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import org.codice.ddf.libs.klv.data.Klv;
+
+/**
+ * Finds the {@link KlvDataElement} for a key by comparing raw key bytes, so that decoding does not
+ * need to build a hex {@code String} for every key it reads. The data elements are kept sorted by
+ * key and searched with a binary search.
+ */
+final class KlvKeyIndex {
+  private static final Comparator<byte[]> KEY_ORDER = UnsignedBytes.lexicographicalComparator();
+
+  private final byte[][] keys;
+
+  private final KlvDataElement[] dataElements;
+
+  KlvKeyIndex(final Collection<KlvDataElement> dataElements) {
+    final List<KlvDataElement> sortedDataElements = new ArrayList<>(dataElements);
+    sortedDataElements.sort((first, second) -> KEY_ORDER.compare(first.keyBytes, second.keyBytes));
+
+    this.keys = new byte[sortedDataElements.size()][];
+    this.dataElements = new KlvDataElement[sortedDataElements.size()];
+    for (int i = 0; i < this.keys.length; i++) {
+      this.dataElements[i] = sortedDataElements.get(i);
+      this.keys[i] = this.dataElements[i].keyBytes;
+    }
+  }
+
+  /**
+   * Returns the data element whose key matches the key of the given KLV set.
+   *
+   * @param klv the KLV set
+   * @return the matching data element, or null if there is none
+   */
+  KlvDataElement get(final Klv klv) {
+    int low = 0;
+    int high = keys.length - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final int comparison = klv.compareKeyTo(keys[middle]);
+      if (comparison > 0) {
+        low = middle + 1;
+      } else if (comparison < 0) {
+        high = middle - 1;
+      } else {
+        return dataElements[middle];
+      }
+    }
+    return null;
+  }
+}
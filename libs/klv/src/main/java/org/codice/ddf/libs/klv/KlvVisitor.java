@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.libs.klv;
+
+import org.codice.ddf.libs.klv.data.Klv;
+import org.codice.ddf.libs.klv.data.set.KlvLocalSet;
+
+/**
+ * Receives the data elements found by {@link KlvDecoder#decode(byte[], KlvVisitor)}. Unlike {@link
+ * KlvDecoder#decode(byte[])}, no data element is copied or decoded on the visitor's behalf: the
+ * visitor reads only the values it needs, in the form it needs, from the {@link Klv}.
+ */
+public interface KlvVisitor {
+
+  /**
+   * Called for each KLV set whose key matches a data element in the {@link KlvContext}.
+   *
+   * @param dataElement the data element from the {@code KlvContext} describing the value. This is
+   *     the context's own instance and its value is not set.
+   * @param klv the KLV set. It refers to the bytes being decoded and is reused for the next KLV
+   *     set, so it is only valid for the duration of this call.
+   */
+  void visit(KlvDataElement dataElement, Klv klv);
+
+  /**
+   * Called when a local set from the {@link KlvContext} is found, before any of its data elements
+   * are visited.
+   *
+   * @param localSet the local set
+   * @return true to visit the data elements inside the local set, false to skip the local set
+   */
+  default boolean enterLocalSet(KlvLocalSet localSet) {
+    return true;
+  }
+
+  /**
+   * Called after the data elements inside a local set have been visited.
+   *
+   * @param localSet the local set
+   */
+  default void exitLocalSet(KlvLocalSet localSet) {}
+}
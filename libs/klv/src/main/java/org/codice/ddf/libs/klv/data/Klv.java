@@ -13,7 +13,6 @@
  */
 package org.codice.ddf.libs.klv.data;
 
-import com.google.common.base.Preconditions;
 import java.io.UnsupportedEncodingException;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -30,7 +29,9 @@
  * binary format.
  *
  * <p>The underlying byte array is always king. If you change the key length or the length encoding,
- * you only change how the underlying byte array is interpreted on subsequent calls.
+ * you only change how the underlying byte array is interpreted on subsequent calls. A KLV set read
+ * from a byte array refers to that array rather than copying its key and value, so the array must
+ * not be modified while the KLV set is in use.
  *
  * <p>Everything in KLV is Big Endian.
  *
@@ -91,9 +92,6 @@ public int value() {
   /** Number of bytes in key. */
   private KeyLength keyLength;
 
-  /** The key if the key length is greater than four bytes. */
-  private byte[] keyIfLong;
-
   /** The key if the key length is four bytes or fewer. */
   private int keyIfShort;
 
@@ -102,62 +100,90 @@ public int value() {
    * with offset and length specified separately so arrays can be passed around with a minimum of
    * copying.
    */
-  private byte[] value;
+  private byte[] bytes;
+
+  /** The offset of the key in {@link #bytes}. */
+  private int keyOffset;
+
+  /** The offset of the value in {@link #bytes}. */
+  private int valueOffset;
+
+  /** The number of bytes in the value. */
+  private int valueLength;
 
   /**
-   * When instantiated by reading a byte array, this private field will record the offset of the
-   * next byte in the array where perhaps another KLV set begins. This is used by the {@link
-   * #bytesToList} method to create a list of KLV sets from a long byte array.
+   * Creates a KLV that is not positioned over any bytes yet. Use {@link #read} to position it over
+   * successive KLV sets without creating a new {@code Klv} for each of them.
    */
-  private int offsetAfterInstantiation;
+  public Klv() {
+    // Positioned by read(..)
+  }
 
   /**
-   * Creates a KLV set from the given byte array, the given offset in that array, the total length
-   * of the KLV set in the byte array, the specified key length, and the specified length field
-   * encoding.
-   *
-   * <p>If there are not as many bytes in the array as the length field suggests, as many bytes as
-   * possible will be stored as the value, and the length field will reflect the actual length.
+   * Positions this KLV over the KLV set that starts at the given offset in the given byte array.
+   * The key and value are not copied; this KLV refers to {@code theBytes} until it is read again.
    *
-   * @param theBytes The bytes that make up the entire KLV set
-   * @param offset The offset from beginning of theBytes
+   * @param theBytes The bytes containing the KLV set
+   * @param offset The offset of the KLV set in theBytes
+   * @param limit The offset in theBytes that the KLV set must not extend past
    * @param keyLength The number of bytes in the key.
    * @param lengthEncoding The length field encoding type.
-   * @throws IndexOutOfBoundsException If offset is out of range of the byte array.
+   * @return the offset of the first byte after the KLV set
+   * @throws IndexOutOfBoundsException If the KLV set does not fit between offset and limit.
    */
-  private Klv(
+  public int read(
       final byte[] theBytes,
       final int offset,
+      final int limit,
       final KeyLength keyLength,
       final LengthEncoding lengthEncoding) {
-    Preconditions.checkElementIndex(
-        offset,
-        theBytes.length,
-        String.format(
-            "Offset %d is out of range (byte array length: %d).", offset, theBytes.length));
+    checkOffset(offset, limit);
+
+    this.bytes = theBytes;
 
     // These methods will interpret the byte array
     // and set the appropriate key length and length encoding flags.
     // setLength returns the offset of where the length field ends
-    // and the value portion begins. It also initializes an array in
-    // this.value of the appropriate length.
-    setKey(theBytes, offset, keyLength);
-
-    // Set length and verify enough bytes exist
-    // setLength(..) also establishes a this.value array.
-    final int valueOffset = setLength(theBytes, offset + keyLength.value(), lengthEncoding);
-    final int remaining = theBytes.length - valueOffset;
-    checkEnoughBytesRemaining(
-        remaining,
-        this.value.length,
-        String.format(
-            "Not enough bytes left in array (%d) for the declared length (%d).",
-            remaining, this.value.length));
-
-    System.arraycopy(theBytes, valueOffset, this.value, 0, this.value.length);
-
-    // Private field used when creating a list of KLVs from a long array.
-    this.offsetAfterInstantiation = valueOffset + this.value.length;
+    // and the value portion begins.
+    setKey(theBytes, offset, limit, keyLength);
+
+    final int valueStart = setLength(theBytes, offset + keyLength.value(), limit, lengthEncoding);
+    final int remaining = limit - valueStart;
+    if (remaining < this.valueLength) {
+      throw new IndexOutOfBoundsException(
+          String.format(
+              "Not enough bytes left in array (%d) for the declared length (%d).",
+              remaining, this.valueLength));
+    }
+    this.valueOffset = valueStart;
+
+    return valueStart + this.valueLength;
+  }
+
+  /**
+   * Positions the given KLV over the KLV set that starts at the given offset in the value of this
+   * KLV set. This is how a local set is read without copying its value.
+   *
+   * @param klv The KLV to position
+   * @param offset The offset of the KLV set relative to the start of this KLV set's value
+   * @param keyLength The number of bytes in the key.
+   * @param lengthEncoding The length field encoding type.
+   * @return the offset, relative to the start of this KLV set's value, of the first byte after the
+   *     KLV set that was read
+   * @throws IndexOutOfBoundsException If the KLV set does not fit inside this KLV set's value.
+   */
+  public int readFromValue(
+      final Klv klv,
+      final int offset,
+      final KeyLength keyLength,
+      final LengthEncoding lengthEncoding) {
+    return klv.read(
+            this.bytes,
+            this.valueOffset + offset,
+            this.valueOffset + this.valueLength,
+            keyLength,
+            lengthEncoding)
+        - this.valueOffset;
   }
 
   /**
@@ -188,20 +214,49 @@ public byte[] getFullKey() {
         break;
 
       case SixteenBytes:
-        System.arraycopy(this.keyIfLong, 0, key, 0, 16);
+        System.arraycopy(this.bytes, this.keyOffset, key, 0, 16);
         break;
     }
 
     return key;
   }
 
+  /**
+   * Compares the key of this KLV set with the given key, treating the bytes as unsigned. A shorter
+   * key that is a prefix of a longer key comes first.
+   *
+   * @param key the key to compare with
+   * @return a negative number, zero or a positive number as the key of this KLV set comes before,
+   *     is equal to or comes after {@code key}
+   */
+  public int compareKeyTo(final byte[] key) {
+    final int length = this.keyLength.value;
+    final int commonLength = Math.min(length, key.length);
+    for (int i = 0; i < commonLength; i++) {
+      final int difference = (this.bytes[this.keyOffset + i] & 0xFF) - (key[i] & 0xFF);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+    return length - key.length;
+  }
+
   /**
    * Returns the value of this KLV set as a copy of the underlying byte array.
    *
    * @return the value
    */
   public byte[] getValue() {
-    return Arrays.copyOf(this.value, this.value.length);
+    return Arrays.copyOfRange(this.bytes, this.valueOffset, this.valueOffset + this.valueLength);
+  }
+
+  /**
+   * Returns the number of bytes in the value of this KLV set.
+   *
+   * @return the value length
+   */
+  public int getValueLength() {
+    return this.valueLength;
   }
 
   /**
@@ -210,10 +265,9 @@ public byte[] getValue() {
    * @return the value as an 8-bit signed integer
    */
   public int getValueAs8bitSignedInt() {
-    final byte[] bytes = getValue();
     byte value = 0;
-    if (bytes.length > 0) {
-      value = bytes[0];
+    if (this.valueLength > 0) {
+      value = this.bytes[this.valueOffset];
     }
     return value;
   }
@@ -224,10 +278,9 @@ public int getValueAs8bitSignedInt() {
    * @return the value as an 8-bit unsigned integer
    */
   public int getValueAs8bitUnsignedInt() {
-    final byte[] bytes = getValue();
     int value = 0;
-    if (bytes.length > 0) {
-      value = bytes[0] & 0xFF;
+    if (this.valueLength > 0) {
+      value = this.bytes[this.valueOffset] & 0xFF;
     }
     return value;
   }
@@ -238,14 +291,7 @@ public int getValueAs8bitUnsignedInt() {
    * @return the value as a 16-bit signed integer
    */
   public int getValueAs16bitSignedInt() {
-    final byte[] bytes = getValue();
-    final int length = bytes.length;
-    final int shortLen = length < 2 ? length : 2;
-    short value = 0;
-    for (int i = 0; i < shortLen; i++) {
-      value |= (bytes[i] & 0xFF) << (shortLen * 8 - i * 8 - 8);
-    }
-    return value;
+    return (short) getValueAsUnsignedBits(2);
   }
 
   /**
@@ -254,14 +300,7 @@ public int getValueAs16bitSignedInt() {
    * @return the value as a 16-bit unsigned integer
    */
   public int getValueAs16bitUnsignedInt() {
-    final byte[] bytes = getValue();
-    final int length = bytes.length;
-    final int shortLen = length < 2 ? length : 2;
-    int value = 0;
-    for (int i = 0; i < shortLen; i++) {
-      value |= (bytes[i] & 0xFF) << (shortLen * 8 - i * 8 - 8);
-    }
-    return value;
+    return (int) getValueAsUnsignedBits(2);
   }
 
   /**
@@ -272,14 +311,7 @@ public int getValueAs16bitUnsignedInt() {
    * @return the value as an int
    */
   public int getValueAs32bitInt() {
-    final byte[] bytes = getValue();
-    final int length = bytes.length;
-    final int shortLen = length < 4 ? length : 4;
-    int value = 0;
-    for (int i = 0; i < shortLen; i++) {
-      value |= (bytes[i] & 0xFF) << (shortLen * 8 - i * 8 - 8);
-    }
-    return value;
+    return (int) getValueAsUnsignedBits(4);
   }
 
   /**
@@ -290,12 +322,15 @@ public int getValueAs32bitInt() {
    * @return the value as a long
    */
   public long getValueAs64bitLong() {
-    final byte[] bytes = getValue();
-    final int length = bytes.length;
-    final int shortLen = length < 8 ? length : 8;
+    return getValueAsUnsignedBits(8);
+  }
+
+  /** Reads up to the first {@code maxBytes} bytes of the value as a big-endian number. */
+  private long getValueAsUnsignedBits(final int maxBytes) {
+    final int shortLen = this.valueLength < maxBytes ? this.valueLength : maxBytes;
     long value = 0;
     for (int i = 0; i < shortLen; i++) {
-      value |= (long) (bytes[i] & 0xFF) << (shortLen * 8 - i * 8 - 8);
+      value = (value << 8) | (this.bytes[this.valueOffset + i] & 0xFF);
     }
     return value;
   }
@@ -309,7 +344,7 @@ public long getValueAs64bitLong() {
    * @return the value as a float
    */
   public float getValueAsFloat() {
-    return this.getValue().length < 4 ? Float.NaN : Float.intBitsToFloat(getValueAs32bitInt());
+    return this.valueLength < 4 ? Float.NaN : Float.intBitsToFloat(getValueAs32bitInt());
   }
 
   /**
@@ -321,7 +356,7 @@ public float getValueAsFloat() {
    * @return the value as a double
    */
   public double getValueAsDouble() {
-    return this.getValue().length < 8 ? Double.NaN : Double.longBitsToDouble(getValueAs64bitLong());
+    return this.valueLength < 8 ? Double.NaN : Double.longBitsToDouble(getValueAs64bitLong());
   }
 
   /**
@@ -333,7 +368,7 @@ public double getValueAsDouble() {
    *     encoding
    */
   public String getValueAsString(final String charsetName) throws UnsupportedEncodingException {
-    return new String(getValue(), charsetName);
+    return new String(this.bytes, this.valueOffset, this.valueLength, charsetName);
   }
 
   /**
@@ -343,35 +378,32 @@ public String getValueAsString(final String charsetName) throws UnsupportedEncod
    *
    * @param inTheseBytes The byte array containing the key (and other stuff)
    * @param offset The offset where to look for the key
+   * @param limit The offset the key must not extend past
    * @param keyLength The length of the key
    * @return <tt>this</tt> to aid in stringing together commands
    * @throws IndexOutOfBoundsException If offset is invalid
    */
-  private Klv setKey(final byte[] inTheseBytes, final int offset, final KeyLength keyLength) {
-    Preconditions.checkElementIndex(
-        offset,
-        inTheseBytes.length,
-        String.format(
-            "Offset %d is out of range (byte array length: %d).", offset, inTheseBytes.length));
-
-    final int remaining = inTheseBytes.length - offset;
-    checkEnoughBytesRemaining(
-        remaining,
-        keyLength.value(),
-        String.format("Not enough bytes for %d-byte key.", keyLength.value()));
+  private Klv setKey(
+      final byte[] inTheseBytes, final int offset, final int limit, final KeyLength keyLength) {
+    checkOffset(offset, limit);
+
+    final int remaining = limit - offset;
+    if (remaining < keyLength.value()) {
+      throw new IndexOutOfBoundsException(
+          String.format("Not enough bytes for %d-byte key.", keyLength.value()));
+    }
 
     // Set key according to length of key
     this.keyLength = keyLength;
+    this.keyOffset = offset;
     switch (keyLength) {
       case OneByte:
         this.keyIfShort = inTheseBytes[offset] & 0xFF;
-        this.keyIfLong = null;
         break;
 
       case TwoBytes:
         this.keyIfShort = (inTheseBytes[offset] & 0xFF) << 8;
         this.keyIfShort |= inTheseBytes[offset + 1] & 0xFF;
-        this.keyIfLong = null;
         break;
 
       case FourBytes:
@@ -379,12 +411,9 @@ private Klv setKey(final byte[] inTheseBytes, final int offset, final KeyLength
         this.keyIfShort |= (inTheseBytes[offset + 1] & 0xFF) << 16;
         this.keyIfShort |= (inTheseBytes[offset + 2] & 0xFF) << 8;
         this.keyIfShort |= inTheseBytes[offset + 3] & 0xFF;
-        this.keyIfLong = null;
         break;
 
       case SixteenBytes:
-        this.keyIfLong = new byte[16];
-        System.arraycopy(inTheseBytes, offset, this.keyIfLong, 0, 16);
         this.keyIfShort = 0;
         break;
     }
@@ -394,56 +423,50 @@ private Klv setKey(final byte[] inTheseBytes, final int offset, final KeyLength
   /**
    * Sets the length according to the length found in the byte array and of the given length
    * encoding. If <tt>lengthEncoding</tt> is different than what was previously set for this KLV,
-   * then this KLV's length encoding parameter will be updated. An array of the appropriate length
-   * will be initialized.
+   * then this KLV's length encoding parameter will be updated.
    *
    * @param inTheseBytes The byte array containing the key (and other stuff)
    * @param offset The offset where to look for the key
+   * @param limit The offset the length field must not extend past
    * @param lengthEncoding The length of the key
    * @return Offset where value field would begin after length
    * @throws IndexOutOfBoundsException If offset is invalid
    */
   private int setLength(
-      final byte[] inTheseBytes, final int offset, final LengthEncoding lengthEncoding) {
-    Preconditions.checkElementIndex(
-        offset,
-        inTheseBytes.length,
-        String.format(
-            "Offset %d is out of range (byte array length: %d).", offset, inTheseBytes.length));
+      final byte[] inTheseBytes,
+      final int offset,
+      final int limit,
+      final LengthEncoding lengthEncoding) {
+    checkOffset(offset, limit);
 
     int length = 0;
-    int valueOffset = 0;
-    final int remaining = inTheseBytes.length - offset;
-    final String lengthEncodingErrorMessage =
-        String.format("Not enough bytes for %s length encoding.", lengthEncoding);
+    int valueStart = 0;
+    final int remaining = limit - offset;
 
     switch (lengthEncoding) {
       case OneByte:
-        checkEnoughBytesRemaining(remaining, 1, lengthEncodingErrorMessage);
+        checkEnoughBytesForLength(remaining, 1, lengthEncoding);
 
         length = inTheseBytes[offset] & 0xFF;
-        setLength(length, lengthEncoding);
-        valueOffset = offset + 1;
+        valueStart = offset + 1;
         break;
 
       case TwoBytes:
-        checkEnoughBytesRemaining(remaining, 2, lengthEncodingErrorMessage);
+        checkEnoughBytesForLength(remaining, 2, lengthEncoding);
 
         length = (inTheseBytes[offset] & 0xFF) << 8;
         length |= inTheseBytes[offset + 1] & 0xFF;
-        setLength(length, lengthEncoding);
-        valueOffset = offset + 2;
+        valueStart = offset + 2;
         break;
 
       case FourBytes:
-        checkEnoughBytesRemaining(remaining, 4, lengthEncodingErrorMessage);
+        checkEnoughBytesForLength(remaining, 4, lengthEncoding);
 
         length = (inTheseBytes[offset] & 0xFF) << 24;
         length |= (inTheseBytes[offset + 1] & 0xFF) << 16;
         length |= (inTheseBytes[offset + 2] & 0xFF) << 8;
         length |= inTheseBytes[offset + 3] & 0xFF;
-        setLength(length, lengthEncoding);
-        valueOffset = offset + 4;
+        valueStart = offset + 4;
         break;
 
       case BER:
@@ -456,46 +479,32 @@ private int setLength(
         // Using more than four bytes to specify the length
         // is not supported in this code, though it's not
         // exactly illegal KLV notation either.
-        checkEnoughBytesRemaining(remaining, 1, lengthEncodingErrorMessage);
+        checkEnoughBytesForLength(remaining, 1, lengthEncoding);
         final int ber = inTheseBytes[offset] & 0xFF;
 
         // Easy case: low seven bits is length
         if ((ber & 0x80) == 0) {
-          setLength(ber, lengthEncoding);
-          valueOffset = offset + 1;
+          length = ber;
+          valueStart = offset + 1;
         } else {
           final int following = ber & 0x7F; // Low seven bits
-          checkEnoughBytesRemaining(remaining, following + 1, lengthEncodingErrorMessage);
+          checkEnoughBytesForLength(remaining, following + 1, lengthEncoding);
 
           for (int i = 0; i < following; i++) {
             length |= (inTheseBytes[offset + 1 + i] & 0xFF) << (following - 1 - i) * 8;
           }
-          setLength(length, lengthEncoding);
-          valueOffset = offset + 1 + following;
+          valueStart = offset + 1 + following;
         }
         break;
     }
 
-    return valueOffset;
-  }
-
-  /**
-   * Sets the length of the value, copying or truncating the old value as appropriate for the new
-   * length.
-   *
-   * @param length The new number of bytes in the Value
-   * @param lengthEncoding The length encoding to use
-   * @return <tt>this</tt> to aid in stringing commands together
-   */
-  private Klv setLength(final int length, final LengthEncoding lengthEncoding) {
-    // Copy old value
-    final byte[] bytes = new byte[length];
-    if (this.value != null) {
-      System.arraycopy(value, 0, bytes, 0, Math.min(length, this.value.length));
+    if (length < 0) {
+      throw new IndexOutOfBoundsException(
+          String.format("The declared length (%d) is not valid.", length));
     }
-    this.value = bytes;
+    this.valueLength = length;
 
-    return this;
+    return valueStart;
   }
 
   /**
@@ -519,20 +528,28 @@ public static List<Klv> bytesToList(
 
     int currentPos = offset;
     while (currentPos < offset + length) {
-      final Klv klv = new Klv(bytes, currentPos, keyLength, lengthEncoding);
-      currentPos = klv.offsetAfterInstantiation;
+      final Klv klv = new Klv();
+      currentPos = klv.read(bytes, currentPos, bytes.length, keyLength, lengthEncoding);
       list.add(klv);
     }
 
     return list;
   }
 
-  private void checkEnoughBytesRemaining(
+  private static void checkOffset(final int offset, final int limit) {
+    if (offset < 0 || offset >= limit) {
+      throw new IndexOutOfBoundsException(
+          String.format("Offset %d is out of range (byte array length: %d).", offset, limit));
+    }
+  }
+
+  private static void checkEnoughBytesForLength(
       final int actualNumberOfBytesRemaining,
       final int minimumExpectedNumberOfBytesRemaining,
-      final String message) {
+      final LengthEncoding lengthEncoding) {
     if (actualNumberOfBytesRemaining < minimumExpectedNumberOfBytesRemaining) {
-      throw new IndexOutOfBoundsException(message);
+      throw new IndexOutOfBoundsException(
+          String.format("Not enough bytes for %s length encoding.", lengthEncoding));
     }
   }
 }
@@ -40,6 +40,15 @@ public KlvLocalSet(final byte[] key, final String name, final KlvContext localSe
     this.localSetKlvContext = localSetKlvContext;
   }
 
+  /**
+   * Returns the {@link KlvContext} describing the data elements inside this local set.
+   *
+   * @return the local set's {@code KlvContext}
+   */
+  public KlvContext getLocalSetContext() {
+    return localSetKlvContext;
+  }
+
   @Override
   protected void decodeValue(final Klv klv) {
     try {
@@ -28,15 +28,18 @@
 
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
+import org.codice.ddf.libs.klv.data.Klv;
 import org.codice.ddf.libs.klv.data.numerical.KlvByte;
 import org.codice.ddf.libs.klv.data.numerical.KlvDouble;
 import org.codice.ddf.libs.klv.data.numerical.KlvFloat;
@@ -224,6 +227,129 @@ public void testKLVSet() throws Exception {
         });
   }
 
+  @Test
+  public void testKLVSetWithVisitor() throws Exception {
+    byte[] klvBytes;
+
+    try (final InputStream inputStream =
+        getClass().getClassLoader().getResourceAsStream("testKLV.klv")) {
+      klvBytes = IOUtils.toByteArray(inputStream);
+    }
+
+    final Map<String, Object> visitedValues = new HashMap<>();
+    final List<String> localSetEvents = new ArrayList<>();
+
+    new KlvDecoder(getKLVContext(DATA_ELEMENTS))
+        .decode(
+            klvBytes,
+            new KlvVisitor() {
+              @Override
+              public void visit(final KlvDataElement dataElement, final Klv klv) {
+                final KlvDataElement decoded = dataElement.copy();
+                decoded.decodeValue(klv);
+                visitedValues.put(decoded.getName(), decoded.getValue());
+              }
+
+              @Override
+              public boolean enterLocalSet(final KlvLocalSet localSet) {
+                localSetEvents.add("enter " + localSet.getName());
+                return true;
+              }
+
+              @Override
+              public void exitLocalSet(final KlvLocalSet localSet) {
+                localSetEvents.add("exit " + localSet.getName());
+              }
+            });
+
+    assertThat(
+        localSetEvents,
+        is(
+            Arrays.asList(
+                "enter " + UAS_DATALINK_LOCAL_SET_UNIVERSAL_KEY,
+                "exit " + UAS_DATALINK_LOCAL_SET_UNIVERSAL_KEY)));
+    assertThat(visitedValues.size(), is(DATA_ELEMENTS.size()));
+    visitedValues.forEach(
+        (name, value) ->
+            assertThat(
+                String.format("%s is not %s", name, EXPECTED_VALUES.get(name)),
+                value,
+                is(EXPECTED_VALUES.get(name))));
+  }
+
+  @Test
+  public void testVisitorCanSkipLocalSet() throws Exception {
+    byte[] klvBytes;
+
+    try (final InputStream inputStream =
+        getClass().getClassLoader().getResourceAsStream("testKLV.klv")) {
+      klvBytes = IOUtils.toByteArray(inputStream);
+    }
+
+    final List<String> visitedNames = new ArrayList<>();
+
+    new KlvDecoder(getKLVContext(DATA_ELEMENTS))
+        .decode(
+            klvBytes,
+            new KlvVisitor() {
+              @Override
+              public void visit(final KlvDataElement dataElement, final Klv klv) {
+                visitedNames.add(dataElement.getName());
+              }
+
+              @Override
+              public boolean enterLocalSet(final KlvLocalSet localSet) {
+                return false;
+              }
+            });
+
+    assertThat(visitedNames.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testVisitorReadsValuesInPlace() throws KlvDecodingException {
+    final byte[] klvBytes = {1, 2, (byte) 0x81, 3, 9, 8, 7, -14, 99, 2, -1, -2, 5, 5, 1, 0};
+    final KlvContext klvContext = new KlvContext(KeyLength.TwoBytes, LengthEncoding.BER);
+    klvContext.addDataElement(new KlvBytes(new byte[] {-14, 99}, "second"));
+    klvContext.addDataElement(new KlvBytes(new byte[] {1, 2}, "first"));
+
+    final List<String> visited = new ArrayList<>();
+    new KlvDecoder(klvContext)
+        .decode(
+            klvBytes,
+            (dataElement, klv) ->
+                visited.add(dataElement.getName() + "=" + klv.getValueAs16bitUnsignedInt()));
+
+    assertThat(visited, is(Arrays.asList("first=2312", "second=65534")));
+  }
+
+  @Test
+  public void testVisitorMissingBytes() {
+    final byte[] klvBytes = {-8, 4, (byte) 0x87, (byte) 0xF8, 0x4B};
+    final KlvContext klvContext = new KlvContext(KeyLength.OneByte, LengthEncoding.OneByte);
+    klvContext.addDataElement(new KlvInt(new byte[] {-8}, "test"));
+    try {
+      new KlvDecoder(klvContext).decode(klvBytes, (dataElement, klv) -> {});
+      fail("Should have thrown a KlvDecodingException.");
+    } catch (KlvDecodingException e) {
+      assertThat(e.getCause(), instanceOf(IndexOutOfBoundsException.class));
+    }
+  }
+
+  @Test
+  public void testKeysOfDifferentLengthDoNotMatch() throws KlvDecodingException {
+    final byte[] klvBytes = {5, 1, 7, 6, 1, 8};
+    final KlvContext klvContext = new KlvContext(KeyLength.OneByte, LengthEncoding.OneByte);
+    klvContext.addDataElement(new KlvBytes(new byte[] {5, 1}, "two byte key"));
+    klvContext.addDataElement(new KlvBytes(new byte[] {6}, "one byte key"));
+
+    final Map<String, KlvDataElement> decodedDataElements =
+        new KlvDecoder(klvContext).decode(klvBytes).getDataElements();
+
+    assertThat(decodedDataElements.size(), is(1));
+    assertThat(((KlvBytes) decodedDataElements.get("one byte key")).getValue(), is(new byte[] {8}));
+  }
+
   private KlvContext decodeKLV(
       final KeyLength keyLength,
       final LengthEncoding lengthEncoding,
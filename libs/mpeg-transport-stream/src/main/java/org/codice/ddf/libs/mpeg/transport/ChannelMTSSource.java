@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.libs.mpeg.transport;
+
+import com.google.common.io.ByteSource;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import org.taktik.mpegts.MTSPacket;
+import org.taktik.mpegts.sources.ResettableMTSSource;
+
+/**
+ * A {@link ResettableMTSSource} that reads the transport stream from a {@link ByteSource} in large
+ * blocks instead of one 188-byte packet at a time. File-backed sources are read through their
+ * {@link java.nio.channels.FileChannel} directly.
+ *
+ * <p>The packets returned by {@link #nextPacket()} are views over the internal read buffer rather
+ * than copies, so a packet (and its payload) is only valid until the next call to {@link
+ * #nextPacket()}. Callers that need to keep the packet contents must copy them.
+ */
+class ChannelMTSSource implements ResettableMTSSource {
+
+  static final int PACKET_SIZE = 188;
+
+  static final int DEFAULT_BUFFERED_PACKETS = 4096;
+
+  private final ByteSource byteSource;
+
+  private final ByteBuffer buffer;
+
+  private ReadableByteChannel channel;
+
+  private boolean endOfStream;
+
+  ChannelMTSSource(final ByteSource byteSource) {
+    this(byteSource, DEFAULT_BUFFERED_PACKETS);
+  }
+
+  ChannelMTSSource(final ByteSource byteSource, final int bufferedPackets) {
+    this.byteSource = byteSource;
+    this.buffer = ByteBuffer.allocate(PACKET_SIZE * Math.max(1, bufferedPackets));
+    buffer.limit(0);
+  }
+
+  @Override
+  public MTSPacket nextPacket() throws IOException {
+    if (buffer.remaining() < PACKET_SIZE && !fillBuffer()) {
+      return null;
+    }
+
+    final ByteBuffer packetBuffer = buffer.slice();
+    packetBuffer.limit(PACKET_SIZE);
+    buffer.position(buffer.position() + PACKET_SIZE);
+
+    return new MTSPacket(packetBuffer);
+  }
+
+  private boolean fillBuffer() throws IOException {
+    if (endOfStream) {
+      return false;
+    }
+
+    if (channel == null) {
+      channel = openChannel();
+    }
+
+    buffer.compact();
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        endOfStream = true;
+        break;
+      }
+    }
+    buffer.flip();
+
+    return buffer.remaining() >= PACKET_SIZE;
+  }
+
+  private ReadableByteChannel openChannel() throws IOException {
+    final InputStream inputStream = byteSource.openStream();
+    if (inputStream instanceof FileInputStream) {
+      return ((FileInputStream) inputStream).getChannel();
+    }
+    return Channels.newChannel(inputStream);
+  }
+
+  @Override
+  public void reset() throws IOException {
+    close();
+    buffer.clear();
+    buffer.limit(0);
+    endOfStream = false;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      try {
+        channel.close();
+      } finally {
+        channel = null;
+      }
+    }
+  }
+}
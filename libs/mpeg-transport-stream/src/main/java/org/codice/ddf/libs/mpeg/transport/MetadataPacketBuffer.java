@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.libs.mpeg.transport;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Accumulates the transport stream packet payloads that make up a single metadata packet. The
+ * backing array grows geometrically and is kept between metadata packets of the same stream, so
+ * assembling a packet is linear in its length and steady state assembly does not allocate.
+ */
+class MetadataPacketBuffer {
+
+  private static final int INITIAL_CAPACITY = 4096;
+
+  private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+  private int size;
+
+  private boolean started;
+
+  /** Discards the current contents and starts a new metadata packet with the given payload. */
+  void start(final ByteBuffer payload) {
+    size = 0;
+    started = true;
+    append(payload);
+  }
+
+  /** Appends the given payload to the current metadata packet. */
+  void append(final ByteBuffer payload) {
+    if (payload == null) {
+      return;
+    }
+
+    final int length = payload.remaining();
+    ensureCapacity(size + length);
+    payload.get(bytes, size, length);
+    size += length;
+  }
+
+  /** Returns true if a metadata packet has been started and not yet taken. */
+  boolean isStarted() {
+    return started;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Returns a copy of the current metadata packet and marks the buffer as empty. */
+  byte[] take() {
+    final byte[] packet = Arrays.copyOf(bytes, size);
+    size = 0;
+    started = false;
+    return packet;
+  }
+
+  private void ensureCapacity(final int capacity) {
+    if (capacity > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length << 1));
+    }
+  }
+}
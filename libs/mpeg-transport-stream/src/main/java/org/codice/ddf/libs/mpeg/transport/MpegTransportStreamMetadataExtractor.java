@@ -23,7 +23,6 @@
 import java.util.Set;
 import java.util.function.BiConsumer;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.lang.ArrayUtils;
 import org.jcodec.api.JCodecException;
 import org.jcodec.containers.mps.MTSUtils.StreamType;
 import org.jcodec.containers.mps.psi.PMTSection;
@@ -33,7 +32,6 @@
 import org.taktik.mpegts.MTSPacket;
 import org.taktik.mpegts.PATSection;
 import org.taktik.mpegts.sources.MTSSource;
-import org.taktik.mpegts.sources.MTSSources;
 import org.taktik.mpegts.sources.ResettableMTSSource;
 
 /** This class is for extracting arbitrary metadata (as raw bytes) from an MPEG transport stream. */
@@ -49,7 +47,8 @@ public class MpegTransportStreamMetadataExtractor {
 
   private final Map<Integer, PMTStream> programElementaryStreams = new HashMap<>();
 
-  private final Map<Integer, byte[]> currentMetadataPacketBytesByStream = new HashMap<>();
+  private final Map<Integer, MetadataPacketBuffer> currentMetadataPacketBytesByStream =
+      new HashMap<>();
 
   /**
    * Constructs an {@code MpegTransportStreamMetadataExtractor} with the given {@link ByteSource} as
@@ -66,6 +65,9 @@ public MpegTransportStreamMetadataExtractor(final ByteSource byteSource) {
    * metadata stream found in the transport stream. The callback is called immediately upon finding
    * a complete metadata packet.
    *
+   * <p>The transport stream is read in large blocks and only the metadata packets currently being
+   * assembled are held in memory, so this is the method to use for large transport streams.
+   *
    * @param callback a callback that will be called for each metadata packet in each metadata stream
    *     found in the transport stream, where the first parameter is the packet ID of the metadata
    *     stream and the second parameter is the metadata packet's payload
@@ -79,6 +81,9 @@ public void getMetadata(final BiConsumer<Integer, byte[]> callback) throws Excep
    * Parses the transport stream and returns all the metadata packet payloads (in the order in which
    * they were encountered) that belong to each metadata stream.
    *
+   * <p>Every metadata packet in the transport stream is held in memory until parsing completes.
+   * Prefer {@link #getMetadata(BiConsumer)} for large transport streams.
+   *
    * @return a {@link Map} whose keys are the packet IDs of the metadata streams and whose values
    *     are the packet payloads belonging to that stream
    * @throws Exception if an error occurs while parsing the transport stream
@@ -100,8 +105,17 @@ public Map<Integer, List<byte[]>> getMetadata() throws Exception {
 
   private void extractTransportStreamMetadata(final BiConsumer<Integer, byte[]> callback)
       throws Exception {
-    final ResettableMTSSource source = MTSSources.from(byteSource);
+    final ResettableMTSSource source = new ChannelMTSSource(byteSource);
+    try {
+      extractTransportStreamMetadata(source, callback);
+    } finally {
+      source.close();
+    }
+  }
 
+  private void extractTransportStreamMetadata(
+      final ResettableMTSSource source, final BiConsumer<Integer, byte[]> callback)
+      throws Exception {
     getProgramSpecificInformation(source);
 
     source.reset();
@@ -206,36 +220,30 @@ private boolean isElementaryStreamPacket(final int packetId) {
     return packetId != 0 && !programMapTablePacketIdDirectory.contains(packetId);
   }
 
-  private byte[] getByteBufferAsBytes(final ByteBuffer buffer) {
-    final byte[] bytes = new byte[buffer.remaining()];
-    buffer.get(bytes);
-    return bytes;
-  }
-
   private void handleElementaryStreamPacket(
       final MTSPacket packet, final int packetId, final BiConsumer<Integer, byte[]> callback) {
     if (programElementaryStreams.containsKey(packetId)) {
       final PMTStream stream = programElementaryStreams.get(packetId);
 
       if (isMetadataStream(stream)) {
-        final byte[] currentMetadataPacketBytes = currentMetadataPacketBytesByStream.get(packetId);
+        final MetadataPacketBuffer currentMetadataPacketBytes =
+            currentMetadataPacketBytesByStream.computeIfAbsent(
+                packetId, id -> new MetadataPacketBuffer());
 
         final boolean startingNewMetadataPacket = packet.isPayloadUnitStartIndicator();
-        final boolean currentMetadataPacketToHandle = currentMetadataPacketBytes != null;
+        final boolean currentMetadataPacketToHandle = currentMetadataPacketBytes.isStarted();
         final boolean reachedEndOfCurrentMetadataPacket =
             startingNewMetadataPacket && currentMetadataPacketToHandle;
 
-        final byte[] payloadBytes = getByteBufferAsBytes(packet.getPayload());
+        final ByteBuffer payload = packet.getPayload();
 
         if (reachedEndOfCurrentMetadataPacket) {
-          callback.accept(packetId, currentMetadataPacketBytes);
-          startNewMetadataPacketBytes(packetId, payloadBytes);
+          callback.accept(packetId, currentMetadataPacketBytes.take());
+          currentMetadataPacketBytes.start(payload);
         } else if (startingNewMetadataPacket) {
-          startNewMetadataPacketBytes(packetId, payloadBytes);
+          currentMetadataPacketBytes.start(payload);
         } else if (currentMetadataPacketToHandle) {
-          final byte[] concatenatedMetadataPacket =
-              ArrayUtils.addAll(currentMetadataPacketBytes, payloadBytes);
-          currentMetadataPacketBytesByStream.put(packetId, concatenatedMetadataPacket);
+          currentMetadataPacketBytes.append(payload);
         }
       }
     }
@@ -253,10 +261,6 @@ private boolean isMetadataStream(final PMTStream stream) {
     return isPrivateDataStream(stream) || isMetadataPesStream(stream);
   }
 
-  private void startNewMetadataPacketBytes(final int packetId, final byte[] newMetadataBytes) {
-    currentMetadataPacketBytesByStream.put(packetId, newMetadataBytes);
-  }
-
   /*
    * In a transport stream, any elementary stream packet can be large enough to require multiple
    * transport stream packets to hold it. Therefore, when analyzing the transport stream packets,
@@ -266,6 +270,11 @@ private void startNewMetadataPacketBytes(final int packetId, final byte[] newMet
    * over the transport stream and they will need to be handled separately.
    */
   private void handleLastPacketOfEachStream(final BiConsumer<Integer, byte[]> callback) {
-    currentMetadataPacketBytesByStream.forEach(callback);
+    currentMetadataPacketBytesByStream.forEach(
+        (packetId, metadataPacketBytes) -> {
+          if (metadataPacketBytes.isStarted()) {
+            callback.accept(packetId, metadataPacketBytes.take());
+          }
+        });
   }
 }
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.libs.mpeg.transport;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import com.google.common.io.ByteSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.taktik.mpegts.MTSPacket;
+
+public class ChannelMTSSourceTest {
+
+  private static final byte[] TRANSPORT_STREAM =
+      new SyntheticTransportStream()
+          .addStream(0x101, SyntheticTransportStream.METADATA_PES_STREAM_TYPE)
+          .addPesPacket(0x101, SyntheticTransportStream.pesPacket(0xFC, 184 * 8, 1))
+          .toByteArray();
+
+  @Test
+  public void testReadsPacketsAcrossBufferRefills() throws Exception {
+    final ChannelMTSSource source = new ChannelMTSSource(ByteSource.wrap(TRANSPORT_STREAM), 3);
+
+    assertThat(readPacketIds(source), is(expectedPacketIds()));
+  }
+
+  @Test
+  public void testResetStartsOver() throws Exception {
+    final ChannelMTSSource source = new ChannelMTSSource(ByteSource.wrap(TRANSPORT_STREAM), 4);
+
+    source.nextPacket();
+    source.nextPacket();
+    source.nextPacket();
+    source.reset();
+
+    assertThat(readPacketIds(source), is(expectedPacketIds()));
+  }
+
+  @Test
+  public void testTrailingPartialPacketIsIgnored() throws Exception {
+    final byte[] truncated = Arrays.copyOf(TRANSPORT_STREAM, TRANSPORT_STREAM.length - 100);
+    final ChannelMTSSource source = new ChannelMTSSource(ByteSource.wrap(truncated), 3);
+
+    final List<Integer> packetIds = readPacketIds(source);
+
+    assertThat(packetIds.size(), is(expectedPacketIds().size() - 1));
+    assertThat(source.nextPacket(), is(nullValue()));
+  }
+
+  private static List<Integer> readPacketIds(final ChannelMTSSource source) throws Exception {
+    final List<Integer> packetIds = new ArrayList<>();
+    MTSPacket packet;
+    while ((packet = source.nextPacket()) != null) {
+      packetIds.add(packet.getPid());
+    }
+    source.close();
+    return packetIds;
+  }
+
+  private static List<Integer> expectedPacketIds() {
+    final List<Integer> packetIds = new ArrayList<>();
+    packetIds.add(0);
+    packetIds.add(SyntheticTransportStream.PROGRAM_MAP_TABLE_PID);
+    for (int i = 0; i < 8; i++) {
+      packetIds.add(0x101);
+    }
+    return packetIds;
+  }
+}
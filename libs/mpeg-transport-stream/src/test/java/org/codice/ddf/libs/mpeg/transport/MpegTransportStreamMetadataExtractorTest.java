@@ -15,6 +15,7 @@
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.collection.IsMapContaining.hasKey;
+import static org.hamcrest.core.IsCollectionContaining.hasItems;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.spy;
@@ -23,6 +24,7 @@
 
 import com.google.common.io.ByteSource;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -72,6 +74,58 @@ public void testExtractAll() throws Exception {
     verifyExtractedBytes(metadataStreams.get(497));
   }
 
+  @Test
+  public void testExtractLargeMetadataPacketsFromSyntheticStream() throws Exception {
+    final byte[] firstPacket = SyntheticTransportStream.pesPacket(0xFC, 184 * 300, 1);
+    final byte[] secondPacket = SyntheticTransportStream.pesPacket(0xFC, 184 * 2, 2);
+    final byte[] privateDataPacket = SyntheticTransportStream.pesPacket(0xBD, 184 * 5, 3);
+    final byte[] videoPacket = SyntheticTransportStream.pesPacket(0xE0, 184 * 4, 4);
+
+    final ByteSource transportStream =
+        new SyntheticTransportStream()
+            .addStream(0x100, SyntheticTransportStream.VIDEO_STREAM_TYPE)
+            .addStream(0x101, SyntheticTransportStream.METADATA_PES_STREAM_TYPE)
+            .addStream(0x102, SyntheticTransportStream.PRIVATE_DATA_STREAM_TYPE)
+            .addPesPacket(0x101, firstPacket)
+            .addPesPacket(0x100, videoPacket)
+            .addPesPacket(0x102, privateDataPacket)
+            .addPesPacket(0x101, secondPacket)
+            .toByteSource();
+
+    final Map<Integer, List<byte[]>> metadataStreams =
+        new MpegTransportStreamMetadataExtractor(transportStream).getMetadata();
+
+    assertThat(metadataStreams.keySet(), hasItems(0x101, 0x102));
+    assertThat(metadataStreams.size(), is(2));
+    assertThat(metadataStreams.get(0x101).size(), is(2));
+    assertThat(metadataStreams.get(0x101).get(0), is(firstPacket));
+    assertThat(metadataStreams.get(0x101).get(1), is(secondPacket));
+    assertThat(metadataStreams.get(0x102).size(), is(1));
+    assertThat(metadataStreams.get(0x102).get(0), is(privateDataPacket));
+  }
+
+  @Test
+  public void testInvalidPacketsInSyntheticStreamAreSkipped() throws Exception {
+    final byte[] metadataPacket = SyntheticTransportStream.pesPacket(0xFC, 184 * 3, 1);
+
+    final ByteSource transportStream =
+        new SyntheticTransportStream()
+            .addStream(0x101, SyntheticTransportStream.METADATA_PES_STREAM_TYPE)
+            .addInvalidPacket()
+            .addPesPacket(0x101, metadataPacket)
+            .addInvalidPacket()
+            .addPesPacket(0x101, metadataPacket)
+            .toByteSource();
+
+    final List<byte[]> metadataPackets = new ArrayList<>();
+    new MpegTransportStreamMetadataExtractor(transportStream)
+        .getMetadata((packetId, bytes) -> metadataPackets.add(bytes));
+
+    assertThat(metadataPackets.size(), is(2));
+    assertThat(metadataPackets.get(0), is(metadataPacket));
+    assertThat(metadataPackets.get(1), is(metadataPacket));
+  }
+
   private void verifyExtractedBytes(final List<byte[]> metadataPackets) {
     assertThat(metadataPackets.size(), is(12));
 
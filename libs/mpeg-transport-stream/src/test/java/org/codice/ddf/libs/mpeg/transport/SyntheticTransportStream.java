@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.libs.mpeg.transport;
+
+import com.google.common.io.ByteSource;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Builds minimal single-program transport streams for tests: a program association table, a program
+ * map table and the packets of the elementary streams added to it.
+ */
+class SyntheticTransportStream {
+
+  static final int PROGRAM_MAP_TABLE_PID = 0x1000;
+
+  static final int PRIVATE_DATA_STREAM_TYPE = 0x06;
+
+  static final int METADATA_PES_STREAM_TYPE = 0x15;
+
+  static final int VIDEO_STREAM_TYPE = 0x1B;
+
+  private static final int PAYLOAD_SIZE = ChannelMTSSource.PACKET_SIZE - 4;
+
+  private final ByteArrayOutputStream elementaryStreamPackets = new ByteArrayOutputStream();
+
+  private final ByteArrayOutputStream streamEntries = new ByteArrayOutputStream();
+
+  private int continuityCounter;
+
+  /** Declares an elementary stream in the program map table. */
+  SyntheticTransportStream addStream(final int packetId, final int streamType) {
+    streamEntries.write(streamType);
+    streamEntries.write(0xE0 | (packetId >> 8));
+    streamEntries.write(packetId & 0xFF);
+    streamEntries.write(0xF0);
+    streamEntries.write(0x00);
+    return this;
+  }
+
+  /**
+   * Splits the given PES packet across as many transport stream packets as needed. The length of
+   * the PES packet must be a multiple of 184 bytes so that no adaptation field stuffing is needed.
+   */
+  SyntheticTransportStream addPesPacket(final int packetId, final byte[] pesPacket) {
+    if (pesPacket.length % PAYLOAD_SIZE != 0) {
+      throw new IllegalArgumentException("PES packet length must be a multiple of 184.");
+    }
+
+    for (int offset = 0; offset < pesPacket.length; offset += PAYLOAD_SIZE) {
+      writePacket(
+          elementaryStreamPackets,
+          packetId,
+          offset == 0,
+          Arrays.copyOfRange(pesPacket, offset, offset + PAYLOAD_SIZE));
+    }
+    return this;
+  }
+
+  /** Adds a packet that does not start with the transport stream sync byte. */
+  SyntheticTransportStream addInvalidPacket() {
+    elementaryStreamPackets.write(
+        new byte[ChannelMTSSource.PACKET_SIZE], 0, ChannelMTSSource.PACKET_SIZE);
+    return this;
+  }
+
+  byte[] toByteArray() {
+    final ByteArrayOutputStream transportStream = new ByteArrayOutputStream();
+    writePacket(transportStream, 0, true, programAssociationTable());
+    writePacket(transportStream, PROGRAM_MAP_TABLE_PID, true, programMapTable());
+    final byte[] packets = elementaryStreamPackets.toByteArray();
+    transportStream.write(packets, 0, packets.length);
+    return transportStream.toByteArray();
+  }
+
+  ByteSource toByteSource() {
+    return ByteSource.wrap(toByteArray());
+  }
+
+  /** Builds a PES packet of the given total length whose bytes after the header are a pattern. */
+  static byte[] pesPacket(final int streamId, final int length, final int seed) {
+    final byte[] pesPacket = new byte[length];
+    pesPacket[2] = 0x01;
+    pesPacket[3] = (byte) streamId;
+    pesPacket[4] = (byte) ((length - 6) >> 8);
+    pesPacket[5] = (byte) (length - 6);
+    for (int i = 6; i < length; i++) {
+      pesPacket[i] = (byte) (seed + i);
+    }
+    return pesPacket;
+  }
+
+  private byte[] programAssociationTable() {
+    return section(
+        new byte[] {
+          0x00, // table id
+          0x00, // section length, filled in by section()
+          0x00,
+          0x00, // transport stream id
+          0x01,
+          (byte) 0xC1, // version 0, current
+          0x00, // section number
+          0x00, // last section number
+          0x00, // program number 1
+          0x01,
+          (byte) (0xE0 | (PROGRAM_MAP_TABLE_PID >> 8)),
+          (byte) (PROGRAM_MAP_TABLE_PID & 0xFF)
+        });
+  }
+
+  private byte[] programMapTable() {
+    final ByteArrayOutputStream table = new ByteArrayOutputStream();
+    final byte[] header = {
+      0x02, // table id
+      0x00, // section length, filled in by section()
+      0x00,
+      0x00, // program number 1
+      0x01,
+      (byte) 0xC1, // version 0, current
+      0x00, // section number
+      0x00, // last section number
+      (byte) 0xFF, // no PCR PID
+      (byte) 0xFF,
+      (byte) 0xF0, // no program descriptors
+      0x00
+    };
+    table.write(header, 0, header.length);
+    final byte[] streams = streamEntries.toByteArray();
+    table.write(streams, 0, streams.length);
+    return section(table.toByteArray());
+  }
+
+  /** Fills in the section length, appends the CRC and prefixes the pointer field. */
+  private static byte[] section(final byte[] table) {
+    final int sectionLength = table.length - 3 + 4;
+    table[1] = (byte) (0xB0 | (sectionLength >> 8));
+    table[2] = (byte) sectionLength;
+
+    final int crc = crc32(table);
+    final byte[] section = new byte[table.length + 5];
+    System.arraycopy(table, 0, section, 1, table.length);
+    section[section.length - 4] = (byte) (crc >> 24);
+    section[section.length - 3] = (byte) (crc >> 16);
+    section[section.length - 2] = (byte) (crc >> 8);
+    section[section.length - 1] = (byte) crc;
+    return section;
+  }
+
+  private static int crc32(final byte[] bytes) {
+    int crc = 0xFFFFFFFF;
+    for (final byte b : bytes) {
+      crc ^= (b & 0xFF) << 24;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = (crc & 0x80000000) != 0 ? (crc << 1) ^ 0x04C11DB7 : crc << 1;
+      }
+    }
+    return crc;
+  }
+
+  private void writePacket(
+      final ByteArrayOutputStream out,
+      final int packetId,
+      final boolean payloadUnitStart,
+      final byte[] payload) {
+    final byte[] packet = new byte[ChannelMTSSource.PACKET_SIZE];
+    Arrays.fill(packet, (byte) 0xFF);
+    packet[0] = 0x47;
+    packet[1] = (byte) ((payloadUnitStart ? 0x40 : 0x00) | (packetId >> 8));
+    packet[2] = (byte) packetId;
+    packet[3] = (byte) (0x10 | (continuityCounter++ & 0x0F));
+    System.arraycopy(payload, 0, packet, 4, Math.min(payload.length, PAYLOAD_SIZE));
+    out.write(packet, 0, packet.length);
+  }
+}
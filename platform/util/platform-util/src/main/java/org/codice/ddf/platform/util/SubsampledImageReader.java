@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.platform.util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Reads images at a reduced resolution without decoding them at full resolution.
+ *
+ * <p>Images are decoded with source subsampling, so the reader only keeps every nth pixel of every
+ * nth row. At most {@code maxDecodedPixels} pixels are decoded per image, and at most {@code
+ * maxConcurrentReads} images are decoded at a time. Together these bound the memory used to read
+ * images for thumbnails, whatever the size of the images.
+ *
+ * <p>Code that reads images for thumbnails should use the shared {@link #getInstance()} so that it
+ * takes part in the same budget. Since this class is embedded, the budget is shared by the
+ * thumbnail code in a bundle rather than across bundles.
+ */
+public class SubsampledImageReader {
+
+  private static final int DEFAULT_MAX_CONCURRENT_READS = 2;
+
+  /** 4 megapixels, or 16 MB as 32-bit pixels. */
+  private static final int DEFAULT_MAX_DECODED_PIXELS = 4 * 1024 * 1024;
+
+  private static final SubsampledImageReader INSTANCE =
+      new SubsampledImageReader(DEFAULT_MAX_CONCURRENT_READS, DEFAULT_MAX_DECODED_PIXELS);
+
+  private final int maxDecodedPixels;
+
+  private final Semaphore readPermits;
+
+  public SubsampledImageReader(int maxConcurrentReads, int maxDecodedPixels) {
+    this.readPermits = new Semaphore(maxConcurrentReads, true);
+    this.maxDecodedPixels = maxDecodedPixels;
+  }
+
+  public static SubsampledImageReader getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Reads the first image of the input, subsampled so that neither side is larger than {@code
+   * size}.
+   *
+   * @param input the image, which is not closed
+   * @param size the largest width or height that is needed
+   * @return the image, or null if the input is not an image that can be read
+   * @throws InterruptedException if interrupted while waiting for other images to be read
+   */
+  public BufferedImage read(InputStream input, int size) throws IOException, InterruptedException {
+    readPermits.acquire();
+    try (ImageInputStream imageInput = ImageIO.createImageInputStream(input)) {
+      if (imageInput == null) {
+        return null;
+      }
+
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+      if (!readers.hasNext()) {
+        return null;
+      }
+
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(imageInput, true, true);
+        int subsampling = getSubsampling(reader.getWidth(0), reader.getHeight(0), size);
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        return reader.read(0, param);
+      } finally {
+        reader.dispose();
+      }
+    } finally {
+      readPermits.release();
+    }
+  }
+
+  int getSubsampling(int width, int height, int size) {
+    int subsampling = Math.max(1, (Math.max(width, height) + size - 1) / size);
+    while (subsampledLength(width, subsampling) * subsampledLength(height, subsampling)
+        > maxDecodedPixels) {
+      subsampling++;
+    }
+    return subsampling;
+  }
+
+  private static long subsampledLength(int length, int subsampling) {
+    return (length + subsampling - 1L) / subsampling;
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.platform.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+
+public class SubsampledImageReaderTest {
+
+  private final SubsampledImageReader reader = SubsampledImageReader.getInstance();
+
+  @Test
+  public void testLargeImageIsSubsampled() throws Exception {
+    BufferedImage image = reader.read(image(6000, 4000), 400);
+
+    assertThat(image.getWidth(), lessThanOrEqualTo(400));
+    assertThat(image.getHeight(), lessThanOrEqualTo(400));
+  }
+
+  @Test
+  public void testSmallImageIsNotSubsampled() throws Exception {
+    BufferedImage image = reader.read(image(300, 100), 400);
+
+    assertThat(image.getWidth(), is(300));
+    assertThat(image.getHeight(), is(100));
+  }
+
+  @Test
+  public void testSubsamplingKeepsDecodedPixelsWithinBudget() {
+    SubsampledImageReader budgeted = new SubsampledImageReader(1, 10_000);
+
+    int subsampling = budgeted.getSubsampling(20_000, 20_000, 400);
+    long side = (20_000 + subsampling - 1) / subsampling;
+
+    assertThat(side * side, lessThanOrEqualTo(10_000L));
+  }
+
+  @Test
+  public void testNotAnImage() throws Exception {
+    assertThat(
+        reader.read(new ByteArrayInputStream("not an image".getBytes()), 400), is(nullValue()));
+  }
+
+  private static InputStream image(int width, int height) throws Exception {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+    try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+      ImageIO.write(image, "png", out);
+      return new ByteArrayInputStream(out.toByteArray());
+    }
+  }
+}